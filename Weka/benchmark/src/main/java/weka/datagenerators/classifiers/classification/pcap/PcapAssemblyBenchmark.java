@@ -0,0 +1,54 @@
+package weka.datagenerators.classifiers.classification.pcap;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import weka.core.Instances;
+import weka.core.SelectedTag;
+import weka.datagenerators.classifiers.classification.Pcap;
+
+/**
+ * Benchmark of the whole replay of a synthetic capture by the Pcap generator,
+ * from the decoding to the assembly of the Instances, in each dataset format.
+ *
+ * An operation is a packet, so the scores are packets per second, and the
+ * gc.alloc.rate.norm of the GC profiler (-prof gc) is the number of bytes
+ * allocated per packet.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class PcapAssemblyBenchmark {
+
+    /** The dataset format. */
+    @Param({ "packet", "flow", "window" })
+    public String format;
+
+    /**
+     * Generates the dataset of the capture.
+     */
+    @Benchmark
+    @OperationsPerInvocation(SyntheticCapture.PACKETS)
+    public Instances generateExamples(SyntheticCapture capture) throws Exception {
+        Pcap generator = new Pcap();
+        generator.setReplay(capture.file.getAbsolutePath());
+        generator.setMaxPackets(SyntheticCapture.PACKETS);
+        generator.setFormat(new SelectedTag(format, Pcap.TAGS_FORMAT));
+        generator.defineDataFormat();
+        return generator.generateExamples();
+    }
+}
@@ -0,0 +1,73 @@
+package weka.datagenerators.classifiers.classification.pcap;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the decoding and the flow aggregation of a synthetic capture.
+ *
+ * An operation is a packet, so the scores are packets per second, and the
+ * gc.alloc.rate.norm of the GC profiler (-prof gc) is the number of bytes
+ * allocated per packet.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class PcapBenchmark {
+
+    /**
+     * Decodes all the packets of the capture.
+     */
+    @Benchmark
+    @OperationsPerInvocation(SyntheticCapture.PACKETS)
+    public long decode(SyntheticCapture capture) throws IOException {
+        PacketRecord record = new PacketRecord();
+        long bytes = 0;
+        PacketSource source = new MappedPcapSource(capture.file.getAbsolutePath());
+        try {
+            while (source.next(record)) {
+                bytes += record.length;
+            }
+        } finally {
+            source.close();
+        }
+        return bytes;
+    }
+
+    /**
+     * Decodes all the packets of the capture and aggregates them into flows.
+     */
+    @Benchmark
+    @OperationsPerInvocation(SyntheticCapture.PACKETS)
+    public long aggregateFlows(SyntheticCapture capture) throws IOException {
+        final long[] packets = new long[1];
+        FlowTable flows = new FlowTable(15000000000L, 120000000000L, 100000, new FlowTable.FlowListener() {
+            @Override
+            public void flowCompleted(Flow flow) {
+                packets[0] += flow.getFwdPackets() + flow.getBwdPackets();
+            }
+        });
+        PacketRecord record = new PacketRecord();
+        PacketSource source = new MappedPcapSource(capture.file.getAbsolutePath());
+        try {
+            while (source.next(record)) {
+                flows.add(record, source.getTimestamp());
+            }
+        } finally {
+            source.close();
+        }
+        flows.flush();
+        return packets[0];
+    }
+}
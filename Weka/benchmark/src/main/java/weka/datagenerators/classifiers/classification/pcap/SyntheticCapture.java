@@ -0,0 +1,56 @@
+package weka.datagenerators.classifiers.classification.pcap;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Synthetic capture shared by the benchmarks of a trial, written once with
+ * the {@link SyntheticPcapWriter} in the temporary directory.
+ */
+@State(Scope.Benchmark)
+public class SyntheticCapture {
+
+    /** The number of packets of the capture (the operations of an invocation). */
+    public static final int PACKETS = 1000000;
+
+    /** The packet mix: mostly TCP (web), mostly UDP (dns) or balanced. */
+    @Param({ "web", "dns", "mixed" })
+    public String mix;
+
+    /** The range of the payload sizes (min:max bytes). */
+    @Param({ "0:1400" })
+    public String payload;
+
+    /** The capture file. */
+    public File file;
+
+    @Setup(Level.Trial)
+    public void write() throws IOException {
+        SyntheticPcapWriter writer = new SyntheticPcapWriter();
+        if (mix.equals("web")) {
+            writer.setMix(0.9, 0.08, 0.02);
+        } else if (mix.equals("dns")) {
+            writer.setMix(0.1, 0.85, 0.05);
+        } else {
+            writer.setMix(0.45, 0.45, 0.1);
+        }
+        String[] sizes = payload.split(":");
+        writer.setPayloadSize(Integer.parseInt(sizes[0]), Integer.parseInt(sizes[1]));
+
+        file = File.createTempFile("weka_pcap_benchmark", ".pcap");
+        file.deleteOnExit();
+        writer.write(file.getAbsolutePath(), PACKETS);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() {
+        file.delete();
+    }
+}
@@ -0,0 +1,961 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * PcapLoader.java
+ */
+
+package weka.core.converters;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.Vector;
+
+import weka.core.Environment;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Option;
+import weka.core.OptionHandler;
+import weka.core.RevisionUtils;
+import weka.core.SelectedTag;
+import weka.core.Utils;
+import weka.datagenerators.classifiers.classification.Pcap;
+
+/**
+ <!-- globalinfo-start -->
+ * Reads network captures in the pcap or pcapng format, or all the captures
+ * of a directory, through the feature pipeline of the Pcap data generator
+ * (packets, flows or time windows). No container is run: all the packets are
+ * labelled benign. All the packets of each file are read, unless a max number
+ * of packets per file is set.
+ * <p/>
+ <!-- globalinfo-end -->
+ *
+ <!-- options-start -->
+ * Valid options are: <p/>
+ *
+ * <pre> -format &lt;packet|flow|window&gt;
+ *  The dataset format. (default: packet)</pre>
+ *
+ * <pre> -maxPackets &lt;maxPackets&gt;
+ *  The max number of packets read from each file, 0 for no limit.
+ *  (default: 0)</pre>
+ *
+ * <pre> -flowIdleTimeout &lt;seconds&gt;
+ *  The idle timeout of the flows. (default: 15)</pre>
+ *
+ * <pre> -flowActiveTimeout &lt;seconds&gt;
+ *  The active timeout of the flows. (default: 120)</pre>
+ *
+ * <pre> -http
+ *  Reassembles the TCP streams of the flows and adds their HTTP
+ *  features (flow format).</pre>
+ *
+ * <pre> -windowType &lt;tumbling|sliding&gt;
+ *  The type of the time windows. (default: tumbling)</pre>
+ *
+ * <pre> -windowSize &lt;milliseconds&gt;
+ *  The size of the time windows. (default: 1000)</pre>
+ *
+ * <pre> -timerPrecision &lt;milli|micro|nano&gt;
+ *  The precision of the time of the packets since the start of the
+ *  capture (timer). (default: milli)</pre>
+ *
+ * <pre> -encoding &lt;string|numeric|nominal&gt;
+ *  The encoding of the addresses, ports, ether type and checksum.
+ *  (default: string)</pre>
+ *
+ * <pre> -maxNominalValues &lt;values&gt;
+ *  The max number of values of the nominal attributes. (default: 100)</pre>
+ *
+ * <pre> -snaplen &lt;bytes&gt;
+ *  The max number of bytes decoded per frame, 0 for no limit.
+ *  (default: 0)</pre>
+ *
+ * <pre> -sampling &lt;none|systematic|reservoir&gt;
+ *  The sampling of the packets: none, 1 packet in N, or a uniform
+ *  sample of K packets per file. (default: none)</pre>
+ *
+ * <pre> -samplingInterval &lt;N&gt;
+ *  The interval N of the systematic sampling. (default: 10)</pre>
+ *
+ * <pre> -samplingSize &lt;K&gt;
+ *  The size K of the reservoir sample. (default: 100000)</pre>
+ *
+ * <pre> -workers &lt;workers&gt;
+ *  The number of files decoded in parallel. (default: 4)</pre>
+ *
+ <!-- options-end -->
+ *
+ * @version $Revision$
+ * @see Loader
+ * @see Pcap
+ */
+public class PcapLoader extends AbstractFileLoader implements BatchConverter,
+  IncrementalConverter, OptionHandler {
+
+  /** for serialization. */
+  private static final long serialVersionUID = -3186470853210946213L;
+
+  /** the file extension. */
+  public static String FILE_EXTENSION = ".pcap";
+
+  /** the generator decoding the captures. */
+  protected Pcap m_Generator = new Pcap();
+
+  /** whether the incremental stream was started. */
+  protected transient boolean m_Streaming = false;
+
+  /**
+   * Creates a loader reading all the packets of the files.
+   */
+  public PcapLoader() {
+    setMaxPackets(0);
+  }
+
+  /**
+   * Returns a string describing this Loader.
+   *
+   * @return a description of the Loader suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String globalInfo() {
+    return "Reads network captures in the pcap or pcapng format, or all the "
+      + "captures of a directory, through the feature pipeline of the Pcap "
+      + "data generator (packets, flows or time windows). No container is "
+      + "run: all the packets are labelled benign. All the packets of each "
+      + "file are read, unless a max number of packets per file is set.";
+  }
+
+  /**
+   * Get the file extension used for pcap files.
+   *
+   * @return the file extension
+   */
+  @Override
+  public String getFileExtension() {
+    return FILE_EXTENSION;
+  }
+
+  /**
+   * Gets all the file extensions used for this type of file.
+   *
+   * @return the file extensions
+   */
+  @Override
+  public String[] getFileExtensions() {
+    return new String[] { ".pcap", ".pcapng", ".cap" };
+  }
+
+  /**
+   * Returns a description of the file type.
+   *
+   * @return a short file description
+   */
+  @Override
+  public String getFileDescription() {
+    return "Network captures (pcap, pcapng)";
+  }
+
+  @Override
+  public Enumeration<Option> listOptions() {
+    Vector<Option> result = new Vector<Option>();
+
+    result.add(new Option("\tThe dataset format. (default: packet)",
+      "format", 1, "-format <packet|flow|window>"));
+    result.add(new Option("\tThe max number of packets read from each file, 0 "
+      + "for no limit.\n\t(default: 0)", "maxPackets", 1,
+      "-maxPackets <maxPackets>"));
+    result.add(new Option("\tThe idle timeout of the flows. (default: 15)",
+      "flowIdleTimeout", 1, "-flowIdleTimeout <seconds>"));
+    result.add(new Option("\tThe active timeout of the flows. (default: 120)",
+      "flowActiveTimeout", 1, "-flowActiveTimeout <seconds>"));
+    result.add(new Option("\tReassembles the TCP streams of the flows and adds "
+      + "their HTTP\n\tfeatures (flow format).", "http", 0, "-http"));
+    result.add(new Option("\tThe type of the time windows. (default: tumbling)",
+      "windowType", 1, "-windowType <tumbling|sliding>"));
+    result.add(new Option("\tThe size of the time windows. (default: 1000)",
+      "windowSize", 1, "-windowSize <milliseconds>"));
+    result.add(new Option("\tThe precision of the time of the packets since "
+      + "the start of the\n\tcapture (timer). (default: milli)",
+      "timerPrecision", 1, "-timerPrecision <milli|micro|nano>"));
+    result.add(new Option("\tThe encoding of the addresses, ports, ether type "
+      + "and checksum.\n\t(default: string)", "encoding", 1,
+      "-encoding <string|numeric|nominal>"));
+    result.add(new Option(
+      "\tThe max number of values of the nominal attributes. (default: 100)",
+      "maxNominalValues", 1, "-maxNominalValues <values>"));
+    result.add(new Option("\tThe max number of bytes decoded per frame, 0 for "
+      + "no limit.\n\t(default: 0)", "snaplen", 1, "-snaplen <bytes>"));
+    result.add(new Option("\tThe sampling of the packets: none, 1 packet in N, "
+      + "or a uniform\n\tsample of K packets per file. (default: none)",
+      "sampling", 1, "-sampling <none|systematic|reservoir>"));
+    result.add(new Option(
+      "\tThe interval N of the systematic sampling. (default: 10)",
+      "samplingInterval", 1, "-samplingInterval <N>"));
+    result.add(new Option(
+      "\tThe size K of the reservoir sample. (default: 100000)",
+      "samplingSize", 1, "-samplingSize <K>"));
+    result.add(new Option(
+      "\tThe number of files decoded in parallel. (default: 4)", "workers", 1,
+      "-workers <workers>"));
+
+    return result.elements();
+  }
+
+  @Override
+  public String[] getOptions() {
+    Vector<String> result = new Vector<String>();
+
+    result.add("-format");
+    result.add(getFormat().getSelectedTag().getIDStr());
+    result.add("-maxPackets");
+    result.add("" + getMaxPackets());
+    result.add("-flowIdleTimeout");
+    result.add("" + getFlowIdleTimeout());
+    result.add("-flowActiveTimeout");
+    result.add("" + getFlowActiveTimeout());
+    if (getHttp()) {
+      result.add("-http");
+    }
+    result.add("-windowType");
+    result.add(getWindowType().getSelectedTag().getIDStr());
+    result.add("-windowSize");
+    result.add("" + getWindowSize());
+    result.add("-timerPrecision");
+    result.add(getTimerPrecision().getSelectedTag().getIDStr());
+    result.add("-encoding");
+    result.add(getEncoding().getSelectedTag().getIDStr());
+    result.add("-maxNominalValues");
+    result.add("" + getMaxNominalValues());
+    result.add("-snaplen");
+    result.add("" + getSnaplen());
+    result.add("-sampling");
+    result.add(getSampling().getSelectedTag().getIDStr());
+    result.add("-samplingInterval");
+    result.add("" + getSamplingInterval());
+    result.add("-samplingSize");
+    result.add("" + getSamplingSize());
+    result.add("-workers");
+    result.add("" + getWorkers());
+
+    return result.toArray(new String[result.size()]);
+  }
+
+  @Override
+  public void setOptions(String[] options) throws Exception {
+    String tmpStr;
+    Pcap defaults = new Pcap();
+
+    tmpStr = Utils.getOption("format", options);
+    if (tmpStr.length() != 0) {
+      setFormat(new SelectedTag(tmpStr, Pcap.TAGS_FORMAT));
+    } else {
+      setFormat(defaults.getFormat());
+    }
+
+    tmpStr = Utils.getOption("maxPackets", options);
+    if (tmpStr.length() != 0) {
+      setMaxPackets(Integer.parseInt(tmpStr));
+    } else {
+      setMaxPackets(0);
+    }
+
+    tmpStr = Utils.getOption("flowIdleTimeout", options);
+    if (tmpStr.length() != 0) {
+      setFlowIdleTimeout(Integer.parseInt(tmpStr));
+    } else {
+      setFlowIdleTimeout(defaults.getFlowIdleTimeout());
+    }
+
+    tmpStr = Utils.getOption("flowActiveTimeout", options);
+    if (tmpStr.length() != 0) {
+      setFlowActiveTimeout(Integer.parseInt(tmpStr));
+    } else {
+      setFlowActiveTimeout(defaults.getFlowActiveTimeout());
+    }
+
+    setHttp(Utils.getFlag("http", options));
+
+    tmpStr = Utils.getOption("windowType", options);
+    if (tmpStr.length() != 0) {
+      setWindowType(new SelectedTag(tmpStr, Pcap.TAGS_WINDOW));
+    } else {
+      setWindowType(defaults.getWindowType());
+    }
+
+    tmpStr = Utils.getOption("windowSize", options);
+    if (tmpStr.length() != 0) {
+      setWindowSize(Integer.parseInt(tmpStr));
+    } else {
+      setWindowSize(defaults.getWindowSize());
+    }
+
+    tmpStr = Utils.getOption("timerPrecision", options);
+    if (tmpStr.length() != 0) {
+      setTimerPrecision(new SelectedTag(tmpStr, Pcap.TAGS_PRECISION));
+    } else {
+      setTimerPrecision(defaults.getTimerPrecision());
+    }
+
+    tmpStr = Utils.getOption("encoding", options);
+    if (tmpStr.length() != 0) {
+      setEncoding(new SelectedTag(tmpStr, Pcap.TAGS_ENCODING));
+    } else {
+      setEncoding(defaults.getEncoding());
+    }
+
+    tmpStr = Utils.getOption("maxNominalValues", options);
+    if (tmpStr.length() != 0) {
+      setMaxNominalValues(Integer.parseInt(tmpStr));
+    } else {
+      setMaxNominalValues(defaults.getMaxNominalValues());
+    }
+
+    tmpStr = Utils.getOption("snaplen", options);
+    if (tmpStr.length() != 0) {
+      setSnaplen(Integer.parseInt(tmpStr));
+    } else {
+      setSnaplen(defaults.getSnaplen());
+    }
+
+    tmpStr = Utils.getOption("sampling", options);
+    if (tmpStr.length() != 0) {
+      setSampling(new SelectedTag(tmpStr, Pcap.TAGS_SAMPLING));
+    } else {
+      setSampling(defaults.getSampling());
+    }
+
+    tmpStr = Utils.getOption("samplingInterval", options);
+    if (tmpStr.length() != 0) {
+      setSamplingInterval(Integer.parseInt(tmpStr));
+    } else {
+      setSamplingInterval(defaults.getSamplingInterval());
+    }
+
+    tmpStr = Utils.getOption("samplingSize", options);
+    if (tmpStr.length() != 0) {
+      setSamplingSize(Integer.parseInt(tmpStr));
+    } else {
+      setSamplingSize(defaults.getSamplingSize());
+    }
+
+    tmpStr = Utils.getOption("workers", options);
+    if (tmpStr.length() != 0) {
+      setWorkers(Integer.parseInt(tmpStr));
+    } else {
+      setWorkers(defaults.getWorkers());
+    }
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String formatTipText() {
+    return "The dataset format: one row per packet, per flow or per time "
+      + "window and destination.";
+  }
+
+  /**
+   * Gets the dataset format.
+   *
+   * @return the dataset format
+   */
+  public SelectedTag getFormat() {
+    return m_Generator.getFormat();
+  }
+
+  /**
+   * Sets the dataset format.
+   *
+   * @param value the dataset format
+   */
+  public void setFormat(SelectedTag value) {
+    m_Generator.setFormat(value);
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String maxPacketsTipText() {
+    return "The max number of packets read from each file, 0 for no limit "
+      + "(default).";
+  }
+
+  /**
+   * Gets the max number of packets read from each file.
+   *
+   * @return the max number of packets, 0 for no limit
+   */
+  public int getMaxPackets() {
+    int result = m_Generator.getMaxPackets();
+    return result == Integer.MAX_VALUE ? 0 : result;
+  }
+
+  /**
+   * Sets the max number of packets read from each file.
+   *
+   * @param value the max number of packets, 0 (or less) for no limit
+   */
+  public void setMaxPackets(int value) {
+    m_Generator.setMaxPackets(value > 0 ? value : Integer.MAX_VALUE);
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String flowIdleTimeoutTipText() {
+    return "The idle timeout of the flows (seconds).";
+  }
+
+  /**
+   * Gets the idle timeout of the flows.
+   *
+   * @return the idle timeout (seconds)
+   */
+  public int getFlowIdleTimeout() {
+    return m_Generator.getFlowIdleTimeout();
+  }
+
+  /**
+   * Sets the idle timeout of the flows.
+   *
+   * @param value the idle timeout (seconds)
+   */
+  public void setFlowIdleTimeout(int value) {
+    m_Generator.setFlowIdleTimeout(value);
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String flowActiveTimeoutTipText() {
+    return "The active timeout of the flows (seconds).";
+  }
+
+  /**
+   * Gets the active timeout of the flows.
+   *
+   * @return the active timeout (seconds)
+   */
+  public int getFlowActiveTimeout() {
+    return m_Generator.getFlowActiveTimeout();
+  }
+
+  /**
+   * Sets the active timeout of the flows.
+   *
+   * @param value the active timeout (seconds)
+   */
+  public void setFlowActiveTimeout(int value) {
+    m_Generator.setFlowActiveTimeout(value);
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String httpTipText() {
+    return "Whether the TCP streams of the flows are reassembled to add their "
+      + "HTTP features: method, URI length, headers, status, incomplete "
+      + "requests and client request rate (flow format only).";
+  }
+
+  /**
+   * Gets whether the HTTP features are added.
+   *
+   * @return true if the TCP streams are reassembled
+   */
+  public boolean getHttp() {
+    return m_Generator.getHttp();
+  }
+
+  /**
+   * Sets whether the HTTP features are added.
+   *
+   * @param value true to reassemble the TCP streams
+   */
+  public void setHttp(boolean value) {
+    m_Generator.setHttp(value);
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String windowTypeTipText() {
+    return "The type of the time windows: tumbling or sliding.";
+  }
+
+  /**
+   * Gets the type of the time windows.
+   *
+   * @return the window type
+   */
+  public SelectedTag getWindowType() {
+    return m_Generator.getWindowType();
+  }
+
+  /**
+   * Sets the type of the time windows.
+   *
+   * @param value the window type
+   */
+  public void setWindowType(SelectedTag value) {
+    m_Generator.setWindowType(value);
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String windowSizeTipText() {
+    return "The size of the time windows (milliseconds).";
+  }
+
+  /**
+   * Gets the size of the time windows.
+   *
+   * @return the window size (milliseconds)
+   */
+  public int getWindowSize() {
+    return m_Generator.getWindowSize();
+  }
+
+  /**
+   * Sets the size of the time windows.
+   *
+   * @param value the window size (milliseconds)
+   */
+  public void setWindowSize(int value) {
+    m_Generator.setWindowSize(value);
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String timerPrecisionTipText() {
+    return "The precision of the time of the packets since the start of the "
+      + "capture (timer): milli, micro or nano seconds.";
+  }
+
+  /**
+   * Gets the precision of the timer.
+   *
+   * @return the timer precision
+   */
+  public SelectedTag getTimerPrecision() {
+    return m_Generator.getTimerPrecision();
+  }
+
+  /**
+   * Sets the precision of the timer.
+   *
+   * @param value the timer precision
+   */
+  public void setTimerPrecision(SelectedTag value) {
+    m_Generator.setTimerPrecision(value);
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String encodingTipText() {
+    return "The encoding of the addresses, ports, ether type and checksum: "
+      + "strings, numbers (with the subnet and the port class) or nominals "
+      + "(batch retrieval only).";
+  }
+
+  /**
+   * Gets the encoding of the addresses, ports, ether type and checksum.
+   *
+   * @return the encoding
+   */
+  public SelectedTag getEncoding() {
+    return m_Generator.getEncoding();
+  }
+
+  /**
+   * Sets the encoding of the addresses, ports, ether type and checksum.
+   *
+   * @param value the encoding
+   */
+  public void setEncoding(SelectedTag value) {
+    m_Generator.setEncoding(value);
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String maxNominalValuesTipText() {
+    return "The max number of values of the nominal attributes, the less "
+      + "frequent values are merged into 'other'.";
+  }
+
+  /**
+   * Gets the max number of values of the nominal attributes.
+   *
+   * @return the max number of values
+   */
+  public int getMaxNominalValues() {
+    return m_Generator.getMaxNominalValues();
+  }
+
+  /**
+   * Sets the max number of values of the nominal attributes.
+   *
+   * @param value the max number of values
+   */
+  public void setMaxNominalValues(int value) {
+    m_Generator.setMaxNominalValues(value);
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String snaplenTipText() {
+    return "The max number of bytes decoded per frame, 0 for no limit.";
+  }
+
+  /**
+   * Gets the snap length.
+   *
+   * @return the max number of bytes per frame
+   */
+  public int getSnaplen() {
+    return m_Generator.getSnaplen();
+  }
+
+  /**
+   * Sets the snap length.
+   *
+   * @param value the max number of bytes per frame
+   */
+  public void setSnaplen(int value) {
+    m_Generator.setSnaplen(value);
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String samplingTipText() {
+    return "The sampling of the packets: none, 1 packet in N (systematic) or a "
+      + "uniform sample of K packets per file (reservoir). The records that "
+      + "are not sampled are not decoded; the rate is recorded in the "
+      + "samplingRate attribute.";
+  }
+
+  /**
+   * Gets the sampling of the packets.
+   *
+   * @return the sampling
+   */
+  public SelectedTag getSampling() {
+    return m_Generator.getSampling();
+  }
+
+  /**
+   * Sets the sampling of the packets.
+   *
+   * @param value the sampling
+   */
+  public void setSampling(SelectedTag value) {
+    m_Generator.setSampling(value);
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String samplingIntervalTipText() {
+    return "The interval N of the systematic sampling (1 packet in N).";
+  }
+
+  /**
+   * Gets the interval of the systematic sampling.
+   *
+   * @return the interval N
+   */
+  public int getSamplingInterval() {
+    return m_Generator.getSamplingInterval();
+  }
+
+  /**
+   * Sets the interval of the systematic sampling.
+   *
+   * @param value the interval N
+   */
+  public void setSamplingInterval(int value) {
+    m_Generator.setSamplingInterval(value);
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String samplingSizeTipText() {
+    return "The size K of the reservoir sample of each file.";
+  }
+
+  /**
+   * Gets the size of the reservoir sample.
+   *
+   * @return the size K
+   */
+  public int getSamplingSize() {
+    return m_Generator.getSamplingSize();
+  }
+
+  /**
+   * Sets the size of the reservoir sample.
+   *
+   * @param value the size K
+   */
+  public void setSamplingSize(int value) {
+    m_Generator.setSamplingSize(value);
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String workersTipText() {
+    return "The number of files decoded in parallel.";
+  }
+
+  /**
+   * Gets the number of files decoded in parallel.
+   *
+   * @return the number of workers
+   */
+  public int getWorkers() {
+    return m_Generator.getWorkers();
+  }
+
+  /**
+   * Sets the number of files decoded in parallel.
+   *
+   * @param value the number of workers
+   */
+  public void setWorkers(int value) {
+    m_Generator.setWorkers(value);
+  }
+
+  /**
+   * Resets the Loader ready to read a new data set.
+   *
+   * @throws IOException if something goes wrong
+   */
+  @Override
+  public void reset() throws IOException {
+    m_structure = null;
+    m_Streaming = false;
+    setRetrieval(NONE);
+  }
+
+  /**
+   * Resets the Loader object and sets the source of the data set to be the
+   * supplied file or directory. A directory is walked recursively for pcap
+   * and pcapng files.
+   *
+   * @param file the source file or directory.
+   * @throws IOException if an error occurs
+   */
+  @Override
+  public void setSource(File file) throws IOException {
+    reset();
+
+    if (file == null) {
+      throw new IOException("Source file object is null!");
+    }
+
+    if (m_useRelativePath) {
+      try {
+        m_sourceFile = Utils.convertToRelativePath(file);
+      } catch (Exception ex) {
+        m_sourceFile = file;
+      }
+    } else {
+      m_sourceFile = file;
+    }
+    m_File = m_sourceFile.getPath();
+  }
+
+  /**
+   * Pcap files can't be read from a stream.
+   *
+   * @param in ignored
+   * @throws IOException always
+   */
+  @Override
+  public void setSource(InputStream in) throws IOException {
+    throw new IOException("PcapLoader can only read files or directories.");
+  }
+
+  /**
+   * Gets the replayed path, with the environment variables resolved.
+   *
+   * @return the path
+   * @throws IOException if no source has been specified
+   */
+  protected String getReplayPath() throws IOException {
+    if (m_sourceFile == null) {
+      throw new IOException("No source has been specified");
+    }
+    String path = m_sourceFile.getPath();
+    try {
+      if (m_env == null) {
+        m_env = Environment.getSystemWide();
+      }
+      path = m_env.substitute(path);
+    } catch (Exception ex) {
+      // ignore any missing environment variables
+    }
+    return path;
+  }
+
+  /**
+   * Determines and returns the structure of the data set as an empty set of
+   * instances.
+   *
+   * @return the structure of the data set as an empty set of Instances
+   * @throws IOException if an error occurs
+   */
+  @Override
+  public Instances getStructure() throws IOException {
+    if (m_structure == null) {
+      m_Generator.setReplay(getReplayPath());
+      m_Generator.setStreaming(getRetrieval() == INCREMENTAL);
+      try {
+        m_structure = m_Generator.defineDataFormat();
+      } catch (Exception ex) {
+        throw new IOException("Unable to determine structure as pcap: " + ex,
+          ex);
+      }
+    }
+
+    return new Instances(m_structure, 0);
+  }
+
+  /**
+   * Return the full data set. The files are decoded in parallel.
+   *
+   * @return the data set
+   * @throws IOException if there is no source or decoding fails
+   */
+  @Override
+  public Instances getDataSet() throws IOException {
+    if (getRetrieval() == INCREMENTAL) {
+      throw new IOException(
+        "Cannot mix getting Instances in both incremental and batch modes");
+    }
+    setRetrieval(BATCH);
+    getStructure();
+
+    try {
+      m_Generator.setStreaming(false);
+      return m_Generator.generateExamples();
+    } catch (Exception ex) {
+      throw new IOException("Unable to decode the pcap files: " + ex, ex);
+    }
+  }
+
+  /**
+   * Reads the next instance, the packets are decoded lazily.
+   *
+   * @param structure the dataset header information
+   * @return the next instance, or null at the end of the captures
+   * @throws IOException if there is no source or decoding fails
+   */
+  @Override
+  public Instance getNextInstance(Instances structure) throws IOException {
+    if (getRetrieval() == BATCH) {
+      throw new IOException(
+        "Cannot mix getting Instances in both incremental and batch modes");
+    }
+    setRetrieval(INCREMENTAL);
+
+    try {
+      if (!m_Streaming) {
+        m_structure = null;
+        getStructure();
+        m_Streaming = true;
+      }
+      return m_Generator.generateExample();
+    } catch (Exception ex) {
+      throw new IOException("Unable to decode the pcap files: " + ex, ex);
+    }
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+
+  /**
+   * Main method.
+   *
+   * @param args should contain the name of an input file.
+   */
+  public static void main(String[] args) {
+    runFileLoader(new PcapLoader(), args);
+  }
+}
@@ -232,7 +232,8 @@ public abstract class DataGenerator implements OptionHandler, Randomizable,
   /**
    * Generates one example of the dataset.
    * 
-   * @return the generated example
+   * @return the generated example, or null if the generator ran out of
+   *         examples (e.g., the end of an external source was reached)
    * @throws Exception if the format of the dataset is not yet defined
    * @throws Exception if the generator only works with generateExamples which
    *           means in non single mode
@@ -780,7 +781,12 @@ public abstract class DataGenerator implements OptionHandler, Randomizable,
       output.println(generator.toStringFormat());
       for (int i = 0; i < generator.getNumExamplesAct(); i++) {
         // over all examples to be produced
-        output.println(generator.generateExample());
+        Instance example = generator.generateExample();
+        // generators reading an external source can run out of examples
+        if (example == null) {
+          break;
+        }
+        output.println(example);
       }
     } else { // generator produces all instances at once
       Instances data = generator.generateExamples();
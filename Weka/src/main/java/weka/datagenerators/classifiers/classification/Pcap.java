@@ -1,35 +1,38 @@
 package weka.datagenerators.classifiers.classification;
 
-import java.io.EOFException;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.sql.Timestamp;
+import java.nio.file.StandardCopyOption;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Date;
 import java.util.Enumeration;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.Vector;
-import java.util.concurrent.TimeoutException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang3.ArrayUtils;
-import org.pcap4j.core.NotOpenException;
-import org.pcap4j.core.PcapHandle;
-import org.pcap4j.core.PcapNativeException;
-import org.pcap4j.core.Pcaps;
-import org.pcap4j.packet.Packet;
 
 import com.github.dockerjava.api.DockerClient;
 import com.github.dockerjava.api.async.ResultCallback;
@@ -38,11 +41,11 @@ import com.github.dockerjava.api.command.PullImageResultCallback;
 import com.github.dockerjava.api.exception.NotFoundException;
 import com.github.dockerjava.api.model.Container;
 import com.github.dockerjava.api.model.ContainerNetwork;
+import com.github.dockerjava.api.model.HostConfig;
 import com.github.dockerjava.api.model.Image;
 import com.github.dockerjava.core.DefaultDockerClientConfig;
 import com.github.dockerjava.core.DockerClientBuilder;
 import com.github.dockerjava.core.DockerClientConfig;
-import com.github.dockerjava.core.command.ExecStartResultCallback;
 import com.github.dockerjava.api.async.ResultCallback;
 
 import weka.core.Attribute;
@@ -51,8 +54,41 @@ import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.Option;
 import weka.core.RevisionUtils;
+import weka.core.SelectedTag;
+import weka.core.Tag;
 import weka.core.Utils;
 import weka.datagenerators.ClassificationGenerator;
+import weka.datagenerators.classifiers.classification.pcap.DictionaryColumn;
+import weka.datagenerators.classifiers.classification.pcap.Flow;
+import weka.datagenerators.classifiers.classification.pcap.FlowTable;
+import weka.datagenerators.classifiers.classification.pcap.HttpStream;
+import weka.datagenerators.classifiers.classification.pcap.HttpTracker;
+import weka.datagenerators.classifiers.classification.pcap.InstanceSink;
+import weka.datagenerators.classifiers.classification.pcap.MappedPcapSource;
+import weka.datagenerators.classifiers.classification.pcap.PacketAggregator;
+import weka.datagenerators.classifiers.classification.pcap.PacketDecoder;
+import weka.datagenerators.classifiers.classification.pcap.PacketRecord;
+import weka.datagenerators.classifiers.classification.pcap.PacketSampler;
+import weka.datagenerators.classifiers.classification.pcap.PacketSource;
+import weka.datagenerators.classifiers.classification.pcap.PacketTable;
+import weka.datagenerators.classifiers.classification.pcap.ColumnCache;
+import weka.datagenerators.classifiers.classification.pcap.PcapFiles;
+import weka.datagenerators.classifiers.classification.pcap.PcapHandleSource;
+import weka.datagenerators.classifiers.classification.pcap.SampledPacketSource;
+import weka.datagenerators.classifiers.classification.pcap.StreamPcapSource;
+import weka.datagenerators.classifiers.classification.pcap.WindowAggregator;
+import weka.datagenerators.classifiers.classification.pcap.WindowStatistics;
+import weka.datagenerators.classifiers.classification.pcap.attack.Attack;
+import weka.datagenerators.classifiers.classification.pcap.attack.AttackScheduler;
+import weka.datagenerators.classifiers.classification.pcap.attack.AttackTimeline;
+import weka.datagenerators.classifiers.classification.pcap.attack.LiveTimeline;
+import weka.datagenerators.classifiers.classification.pcap.docker.Capture;
+import weka.datagenerators.classifiers.classification.pcap.docker.ContainerPool;
+import weka.datagenerators.classifiers.classification.pcap.docker.ExecWatcher;
+import weka.datagenerators.classifiers.classification.pcap.docker.FrameInputStream;
+import weka.datagenerators.classifiers.classification.pcap.attack.Attacks;
+import weka.datagenerators.classifiers.classification.pcap.traffic.BackgroundTraffic;
+import weka.datagenerators.classifiers.classification.pcap.traffic.RateProfile;
 
 /**
  * Generates a contexctual dataset of network traffic. The dataset is generated
@@ -63,7 +99,11 @@ import weka.datagenerators.ClassificationGenerator;
  * It is possible to run some attack on the docker container to generate some
  * specific network traffic.
  * 
- * The available attacks are: UDPDDOS.
+ * The available attacks are: UDP flood, TCP SYN flood, HTTP GET flood,
+ * Slowloris and TCP port scan. Several attacks can run at the same time.
+ * Benign background traffic (page visits, keep-alive sessions and DNS
+ * queries) runs for the whole capture, at a constant, ramp, diurnal or burst
+ * request rate.
  * 
  * The available docker images are:
  * - fersuy/contackgen-ubuntu2204:1.1.0
@@ -83,59 +123,268 @@ public class Pcap extends ClassificationGenerator {
     private static final String[] DATASET_ATTRIBUTES_NUMERICS = {
             "protocol", "version", "IHL", "length", "identification", "fragmentOffset", "TTL", "timer"
     };
+    private static final String[] DATASET_FLOW_ATTRIBUTES_STRINGS = {
+            "srcIp", "dstIp", "srcPort", "dstPort"
+    };
+    private static final String[] DATASET_FLOW_ATTRIBUTES_NUMERICS = {
+            "protocol", "duration", "fwdPackets", "bwdPackets", "fwdBytes", "bwdBytes", "iatMean", "iatStd",
+            "iatMin", "iatMax", "finCount", "synCount", "rstCount", "pshCount", "ackCount", "urgCount",
+            "bytesPerSecond", "packetsPerSecond"
+    };
+    private static final String[] DATASET_WINDOW_ATTRIBUTES_STRINGS = {
+            "dstIp"
+    };
+    private static final String[] DATASET_WINDOW_ATTRIBUTES_NUMERICS = {
+            "packets", "bytes", "packetsPerSecond", "bytesPerSecond", "distinctSrcIps", "srcIpEntropy",
+            "distinctDstPorts", "dstPortEntropy"
+    };
+    private static final String[] DATASET_HTTP_ATTRIBUTES_NUMERICS = {
+            "httpRequests", "httpUriLength", "httpHeaders", "httpStatus", "httpIncomplete", "httpClientRate"
+    };
     // private static final String[] DATASET_ATTRIBUTES_TIMESTAMP = { // Useless
     // while there is only one timestamp
     // "timeStamp"
     // };
-    // Dataset attributes
-    private static Map<String, Attribute> datasetAttributes = new HashMap<String, Attribute>();
-
-    // Pcap attributes
-    private static String[] srcIps;
-    private static String[] dstIps;
-    private static String[] srcPorts;
-    private static String[] dstPorts;
-    private static String[] types;
-    private static int[] versions;
-    private static int[] IHLs;
-    private static int[] lengths;
-    private static int[] identifications;
-    private static int[] fragmentOffsets;
-    private static int[] TTLs;
-    private static int[] protocols;
-    private static String[] headerChecksums;
-    private static int[] timer;
-    private static Timestamp[] timeStamps;
-
-    // Regex patterns
-    private static final Pattern DEST_ADDR_PATTERN = Pattern.compile("Destination address: /([\\d.]+)");
-    private static final Pattern SRC_ADDR_PATTERN = Pattern.compile("Source address: /([\\d.]+)");
-    private static final Pattern SRC_PORT_PATTERN = Pattern.compile("Source port: (\\d+)");
-    private static final Pattern DEST_PORT_PATTERN = Pattern.compile("Destination port: (\\d+)");
-    private static final Pattern TYPE_PATTERN = Pattern.compile("Type: (0x[\\da-fA-F]+)");
-    private static final Pattern VERSION_PATTERN = Pattern.compile("Version: (\\d+)");
-    private static final Pattern IHL_PATTERN = Pattern.compile("IHL: (\\d+)");
-    private static final Pattern LENGTH_PATTERN = Pattern.compile("Length: (\\d+)");
-    private static final Pattern IDENTIFICATION_PATTERN = Pattern.compile("Identification: (\\d+)");
-    private static final Pattern FRAGMENT_OFFSET_PATTERN = Pattern.compile("Fragment offset: (\\d+)");
-    private static final Pattern TTL_PATTERN = Pattern.compile("TTL: (\\d+)");
-    private static final Pattern PROTOCOL_PATTERN = Pattern.compile("Protocol: (\\d+)");
-    private static final Pattern HEADER_CHECKSUM_PATTERN = Pattern.compile("Header checksum: (0x[\\da-fA-F]+)");
+    // Dataset formats
+    public static final int FORMAT_PACKET = 0;
+    public static final int FORMAT_FLOW = 1;
+    public static final int FORMAT_WINDOW = 2;
+    public static final Tag[] TAGS_FORMAT = {
+            new Tag(FORMAT_PACKET, "packet", "One row per packet"),
+            new Tag(FORMAT_FLOW, "flow", "One row per bidirectional flow"),
+            new Tag(FORMAT_WINDOW, "window", "One row per destination and time window")
+    };
+
+    // Time window types
+    public static final int WINDOW_TUMBLING = 0;
+    public static final int WINDOW_SLIDING = 1;
+    public static final Tag[] TAGS_WINDOW = {
+            new Tag(WINDOW_TUMBLING, "tumbling", "Consecutive non-overlapping windows"),
+            new Tag(WINDOW_SLIDING, "sliding", "Window ending at each packet")
+    };
+
+    // Precisions of the timer attribute
+    public static final int PRECISION_MILLIS = 0;
+    public static final int PRECISION_MICROS = 1;
+    public static final int PRECISION_NANOS = 2;
+    public static final Tag[] TAGS_PRECISION = {
+            new Tag(PRECISION_MILLIS, "milli", "Milliseconds"),
+            new Tag(PRECISION_MICROS, "micro", "Microseconds"),
+            new Tag(PRECISION_NANOS, "nano", "Nanoseconds")
+    };
+
+    // Encodings of the address, port, ether type and checksum attributes
+    public static final int ENCODING_STRING = 0;
+    public static final int ENCODING_NUMERIC = 1;
+    public static final int ENCODING_NOMINAL = 2;
+    public static final Tag[] TAGS_ENCODING = {
+            new Tag(ENCODING_STRING, "string", "String attributes"),
+            new Tag(ENCODING_NUMERIC, "numeric", "Numbers (IPv4 as 32-bit integer), with subnet and port class"),
+            new Tag(ENCODING_NOMINAL, "nominal", "Nominal attributes of the most frequent values (batch mode)")
+    };
+
+    // Pcap readers
+    public static final int READER_MAPPED = 0;
+    public static final int READER_LIBPCAP = 1;
+    public static final Tag[] TAGS_READER = {
+            new Tag(READER_MAPPED, "mapped", "Memory-mapped pure Java reader, chunks decoded in parallel"),
+            new Tag(READER_LIBPCAP, "libpcap", "libpcap reader (pcap4j), packets decoded one at a time")
+    };
+
+    // Packet samplings
+    public static final int SAMPLING_NONE = 0;
+    public static final int SAMPLING_SYSTEMATIC = 1;
+    public static final int SAMPLING_RESERVOIR = 2;
+    public static final Tag[] TAGS_SAMPLING = {
+            new Tag(SAMPLING_NONE, "none", "All the packets are decoded"),
+            new Tag(SAMPLING_SYSTEMATIC, "systematic", "1 packet in N"),
+            new Tag(SAMPLING_RESERVOIR, "reservoir", "Uniform sample of K packets per capture file")
+    };
+
+    // Rate profiles of the background traffic
+    public static final int PROFILE_CONSTANT = RateProfile.CONSTANT;
+    public static final int PROFILE_RAMP = RateProfile.RAMP;
+    public static final int PROFILE_DIURNAL = RateProfile.DIURNAL;
+    public static final int PROFILE_BURST = RateProfile.BURST;
+    public static final Tag[] TAGS_PROFILE = {
+            new Tag(PROFILE_CONSTANT, "constant", "The peak rate all along"),
+            new Tag(PROFILE_RAMP, "ramp", "From 10% to 100% of the peak rate over the period"),
+            new Tag(PROFILE_DIURNAL, "diurnal", "Day/night cycle between 10% and 100% of the peak rate"),
+            new Tag(PROFILE_BURST, "burst", "25% of the peak rate, bursts at the peak rate")
+    };
+
+    // Sink formats
+    public static final int SINK_ARFF = InstanceSink.ARFF;
+    public static final int SINK_CSV = InstanceSink.CSV;
+    public static final int SINK_BINARY = InstanceSink.BINARY;
+    public static final Tag[] TAGS_SINK_FORMAT = {
+            new Tag(SINK_ARFF, "arff", "ARFF header and rows"),
+            new Tag(SINK_CSV, "csv", "Attribute names and rows, as the CSV saver"),
+            new Tag(SINK_BINARY, "binary", "Serialized header and binary rows")
+    };
 
     // Generator accepted attribute
     private static final String[] ACCEPTED_DOCKER_IMAGES = {
             "fersuy/contackgen-ubuntu2204:1.1.0"
     };
 
+    // Accepted images whose payload.sh has no capture filter and snap length
+    // options (-f and -s)
+    private static final String[] PAYLOAD_WITHOUT_CAPTURE_OPTIONS = {
+            "fersuy/contackgen-ubuntu2204:1.1.0"
+    };
+
     // Generator attributes
     protected String dockerImage;
     protected String pcapFullPath;
     protected String timestampFormat;
+    protected int timerPrecision;
     protected int duration;
     protected int maxPackets;
+    protected boolean streaming;
+    protected int format;
+    protected int flowIdleTimeout;
+    protected int flowActiveTimeout;
+    protected int maxFlows;
+    protected boolean http;
+    protected int windowType;
+    protected int windowSize;
+    protected int encoding;
+    protected int maxNominalValues;
+    protected String attacks;
+    protected int attackRate;
+    protected int attackThreads;
+    protected int attackConnections;
+    protected int attackPort;
+    protected int attackDelay;
+    protected int attackPhaseDuration;
+    protected int backgroundRate;
+    protected int backgroundProfile;
+    protected int backgroundPeriod;
+    protected String backgroundMix;
+    protected int backgroundConnections;
+    protected int backgroundThreads;
+    protected int containers;
+    protected int workers;
+    protected boolean containerPool;
+    protected String replay;
+    protected int pcapReader;
+    protected boolean live;
+    protected String captureFilter;
+    protected int snaplen;
+    protected int sampling;
+    protected int samplingInterval;
+    protected int samplingSize;
+    protected boolean columnCache;
+    protected String sink;
+    protected int sinkFormat;
+    protected boolean sinkCompress;
+
+    // State of the current generation, created by defineDataFormat
+    private transient CaptureSession session;
+
+    // Max time waited for the container to be ready (milliseconds)
+    private static final long DOCKER_READY_TIMEOUT = 60000L;
+
+    // Name of the container, and prefix of the names of the containers and
+    // networks of the farm
+    private static final String CONTAINER_NAME = "contackgen-ubuntu2204";
+    private static final String NETWORK_NAME = "contackgen-net";
+
+    // Docker client shared by all the captures, created on first use
+    private static DockerClient sharedDockerClient;
+
+    // Warm containers kept running between captures, and images known to exist
+    private static final ContainerPool CONTAINER_POOL = new ContainerPool();
+    private static final Set<String> localImages = new HashSet<String>();
+
+    /**
+     * State of one generation: the attributes of the dataset format, the
+     * capture workers and the streaming state. Each generator has its own
+     * session, replaced by defineDataFormat, so several generators can run
+     * concurrently in the same JVM without sharing anything but the Docker
+     * client and the container pool.
+     */
+    private static final class CaptureSession {
+
+        // Dataset attributes, by index
+        Attribute[] attributes;
+
+        // Captures of the containers (or replayed files), returned in input
+        // order whatever their completion order
+        ExecutorService workers;
+        List<Future<Capture>> results;
+        int returned;
+        Capture current;
+
+        // Streaming (single mode) state
+        PacketSource source;
+        PacketRecord record;
+        int streamed;
+        boolean finished;
+        PacketAggregator aggregator;
+        ArrayDeque<Object> rows;
+
+        /**
+         * Waits for the next capture, by input index: the captures completed
+         * out of order are kept by their futures until their turn. A failed
+         * capture is reported and skipped, unless all the captures failed.
+         * 
+         * @return the next capture, or null if all the captures were returned
+         * @throws Exception if all the captures failed
+         */
+        Capture next() throws Exception {
+            Exception failure = null;
+            while (results != null && returned < results.size()) {
+                Future<Capture> result = results.get(returned);
+                // Release the capture once returned
+                results.set(returned++, null);
+                try {
+                    return result.get();
+                } catch (ExecutionException e) {
+                    System.err.println("Capture failed: " + e.getCause());
+                    e.getCause().printStackTrace();
+                    if (failure == null) {
+                        failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                    }
+                }
+            }
+            if (failure != null && current == null) {
+                throw failure;
+            }
+            return null;
+        }
+
+        /**
+         * Closes the packet source of the streaming mode, if any.
+         */
+        void closeSource() {
+            if (source != null) {
+                try {
+                    source.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                source = null;
+            }
+            aggregator = null;
+            rows = null;
+        }
 
-    // TimeStamp
-    private static Timestamp startTime;
+        /**
+         * Closes the packet source and stops the capture workers, if any.
+         */
+        void close() {
+            closeSource();
+            if (workers != null) {
+                workers.shutdownNow();
+                workers = null;
+            }
+            results = null;
+            returned = 0;
+            current = null;
+        }
+    }
 
     /**
      * Initialize the generator with the default values.
@@ -148,6 +397,45 @@ public class Pcap extends ClassificationGenerator {
         setPcapFullPath(defaultPcapFullPath());
         setMaxPackets(defaultMaxPackets());
         setTimestampFormat(defaultTimestampFormat());
+        setTimerPrecision(defaultTimerPrecision());
+        setStreaming(defaultStreaming());
+        setFormat(defaultFormat());
+        setFlowIdleTimeout(defaultFlowIdleTimeout());
+        setFlowActiveTimeout(defaultFlowActiveTimeout());
+        setMaxFlows(defaultMaxFlows());
+        setHttp(defaultHttp());
+        setWindowType(defaultWindowType());
+        setWindowSize(defaultWindowSize());
+        setEncoding(defaultEncoding());
+        setMaxNominalValues(defaultMaxNominalValues());
+        setAttacks(defaultAttacks());
+        setAttackRate(defaultAttackRate());
+        setAttackThreads(defaultAttackThreads());
+        setAttackConnections(defaultAttackConnections());
+        setAttackPort(defaultAttackPort());
+        setAttackDelay(defaultAttackDelay());
+        setAttackPhaseDuration(defaultAttackPhaseDuration());
+        setBackgroundRate(defaultBackgroundRate());
+        setBackgroundProfile(defaultBackgroundProfile());
+        setBackgroundPeriod(defaultBackgroundPeriod());
+        setBackgroundMix(defaultBackgroundMix());
+        setBackgroundConnections(defaultBackgroundConnections());
+        setBackgroundThreads(defaultBackgroundThreads());
+        setContainers(defaultContainers());
+        setWorkers(defaultWorkers());
+        setContainerPool(defaultContainerPool());
+        setReplay(defaultReplay());
+        setPcapReader(defaultPcapReader());
+        setLive(defaultLive());
+        setCaptureFilter(defaultCaptureFilter());
+        setSnaplen(defaultSnaplen());
+        setSampling(defaultSampling());
+        setSamplingInterval(defaultSamplingInterval());
+        setSamplingSize(defaultSamplingSize());
+        setColumnCache(defaultColumnCache());
+        setSink(defaultSink());
+        setSinkFormat(defaultSinkFormat());
+        setSinkCompress(defaultSinkCompress());
     }
 
     /**
@@ -163,7 +451,10 @@ public class Pcap extends ClassificationGenerator {
                 + "The pcap file is then parsed to extract the features of the network traffic."
                 + "It is possible to run some attack on the docker container to generate some "
                 + "specific network traffic.\n"
-                + "The available attacks are: UDPDDOS.\n"
+                + "The available attacks are: udp (UDP flood), syn (TCP SYN flood), http (HTTP GET flood), "
+                + "slowloris (Slowloris) and portscan (TCP port scan). Several attacks can run at the same time.\n"
+                + "Benign background traffic (page visits, keep-alive sessions and DNS queries) runs for the whole "
+                + "capture, at a constant, ramp, diurnal or burst request rate.\n"
                 + "The available docker images are:\n"
                 + "- fersuy/contackgen-ubuntu2204:1.1.0\n";
     }
@@ -187,6 +478,102 @@ public class Pcap extends ClassificationGenerator {
                 + defaultMaxPackets() + ")", "maxPackets", 1, "-maxPackets <maxPackets>"));
         newVector.add(new Option("\tThe timestamp format. (default: "
                 + defaultTimestampFormat() + ")", "timestampFormat", 1, "-timestampFormat <timestampFormat>"));
+        newVector.add(new Option("\tThe precision of the time of the packets since the start of the capture"
+                + " (timer). (default: milli)", "timerPrecision", 1, "-timerPrecision <milli|micro|nano>"));
+        newVector.add(new Option("\tStream the packets one at a time (single mode) instead of building the"
+                + " whole dataset in memory.", "streaming", 0, "-streaming"));
+        newVector.add(new Option("\tThe dataset format, one row per packet, per bidirectional flow or per"
+                + " destination and time window. (default: packet)", "format", 1, "-format <packet|flow|window>"));
+        newVector.add(new Option("\tThe idle timeout of the flows in seconds. (default: "
+                + defaultFlowIdleTimeout() + ")", "flowIdleTimeout", 1, "-flowIdleTimeout <seconds>"));
+        newVector.add(new Option("\tThe active timeout of the flows in seconds. (default: "
+                + defaultFlowActiveTimeout() + ")", "flowActiveTimeout", 1, "-flowActiveTimeout <seconds>"));
+        newVector.add(new Option("\tThe max number of flows kept in memory. (default: "
+                + defaultMaxFlows() + ")", "maxFlows", 1, "-maxFlows <maxFlows>"));
+        newVector.add(new Option("\tReassemble the TCP streams of the flows and add their HTTP features (method,"
+                + " URI length, headers, status, incomplete requests, client request rate) to the flow format.",
+                "http", 0, "-http"));
+        newVector.add(new Option("\tThe time window type of the window format. (default: tumbling)",
+                "windowType", 1, "-windowType <tumbling|sliding>"));
+        newVector.add(new Option("\tThe time window size in milliseconds. (default: "
+                + defaultWindowSize() + ")", "windowSize", 1, "-windowSize <milliseconds>"));
+        newVector.add(new Option("\tThe encoding of the addresses, ports, ether type and checksum: strings,"
+                + " numbers (with the subnet and the port class) or nominals (batch mode only)."
+                + " (default: string)", "encoding", 1, "-encoding <string|numeric|nominal>"));
+        newVector.add(new Option("\tThe max number of values of the nominal attributes, the less frequent"
+                + " values are merged into 'other'. (default: " + defaultMaxNominalValues() + ")",
+                "maxNominalValues", 1, "-maxNominalValues <values>"));
+        newVector.add(new Option("\tThe comma separated list of attacks run during the capture, among "
+                + Utils.arrayToString(Attacks.NAMES) + ", or none. (default: " + defaultAttacks() + ")",
+                "attacks", 1, "-attacks <attack,...>"));
+        newVector.add(new Option("\tThe rate of each attack in packets, connections or requests per second,"
+                + " 0 for no limit. (default: " + defaultAttackRate() + ")", "attackRate", 1,
+                "-attackRate <perSecond>"));
+        newVector.add(new Option("\tThe number of threads of each attack. (default: "
+                + defaultAttackThreads() + ")", "attackThreads", 1, "-attackThreads <threads>"));
+        newVector.add(new Option("\tThe max number of concurrent connections of each TCP attack. (default: "
+                + defaultAttackConnections() + ")", "attackConnections", 1, "-attackConnections <connections>"));
+        newVector.add(new Option("\tThe port attacked by the syn, http and slowloris attacks. (default: "
+                + defaultAttackPort() + ")", "attackPort", 1, "-attackPort <port>"));
+        newVector.add(new Option("\tThe delay before the first attack in seconds. (default: "
+                + defaultAttackDelay() + ")", "attackDelay", 1, "-attackDelay <seconds>"));
+        newVector.add(new Option("\tThe duration of each attack in seconds, the attacks run one after the other;"
+                + " 0 runs all the attacks together. (default: " + defaultAttackPhaseDuration() + ")",
+                "attackPhaseDuration", 1, "-attackPhaseDuration <seconds>"));
+        newVector.add(new Option("\tThe peak rate of the benign background requests per second, 0 for no"
+                + " background traffic. (default: " + defaultBackgroundRate() + ")", "backgroundRate", 1,
+                "-backgroundRate <perSecond>"));
+        newVector.add(new Option("\tThe rate profile of the background traffic. (default: constant)",
+                "backgroundProfile", 1, "-backgroundProfile <constant|ramp|diurnal|burst>"));
+        newVector.add(new Option("\tThe period of the ramp, diurnal and burst profiles in seconds. (default: "
+                + defaultBackgroundPeriod() + ")", "backgroundPeriod", 1, "-backgroundPeriod <seconds>"));
+        newVector.add(new Option("\tThe weights of the page visit, keep-alive session and DNS requests of the"
+                + " background traffic. (default: " + defaultBackgroundMix() + ")", "backgroundMix", 1,
+                "-backgroundMix <browse:keepalive:dns>"));
+        newVector.add(new Option("\tThe max number of concurrent connections of the background traffic."
+                + " (default: " + defaultBackgroundConnections() + ")", "backgroundConnections", 1,
+                "-backgroundConnections <connections>"));
+        newVector.add(new Option("\tThe number of threads of the background traffic. (default: "
+                + defaultBackgroundThreads() + ")", "backgroundThreads", 1, "-backgroundThreads <threads>"));
+        newVector.add(new Option("\tThe number of containers captured, each one with its own network, attacks"
+                + " and pcap file. (default: " + defaultContainers() + ")", "containers", 1,
+                "-containers <containers>"));
+        newVector.add(new Option("\tThe max number of containers running at the same time. (default: "
+                + defaultWorkers() + ")", "workers", 1, "-workers <workers>"));
+        newVector.add(new Option("\tKeep the containers running between captures, reset by the next capture on"
+                + " the same container instead of being created and removed by each capture. The pooled containers"
+                + " are removed when the JVM exits.", "containerPool", 0, "-containerPool"));
+        newVector.add(new Option("\tReplay existing pcap/pcapng files instead of running the containers: a"
+                + " comma-separated list of files or directories, decoded in parallel by the workers."
+                + " (default: none)", "replay", 1, "-replay <paths>"));
+        newVector.add(new Option("\tThe pcap reader: memory-mapped pure Java reader decoding chunks in parallel,"
+                + " or libpcap. Both read the packets in file order: the flows and windows require timestamp"
+                + " order, so sort the files whose timestamps go backwards (e.g. merged captures) with"
+                + " reordercap first. (default: mapped)", "pcapReader", 1, "-pcapReader <mapped|libpcap>"));
+        newVector.add(new Option("\tStream the capture out of the container and decode it while the attacks run,"
+                + " instead of copying the pcap file at the end of the capture.", "live", 0, "-live"));
+        newVector.add(new Option("\tThe BPF capture filter of tshark in the container, or of the libpcap reader"
+                + " in replay mode. Not available with the payload of the image"
+                + " fersuy/contackgen-ubuntu2204:1.1.0, use -live. (default: none)", "captureFilter", 1, "-captureFilter <filter>"));
+        newVector.add(new Option("\tThe max number of bytes captured and decoded per frame, 0 for no limit."
+                + " A limit on the capture is not available with the payload of the image"
+                + " fersuy/contackgen-ubuntu2204:1.1.0, use -live. (default: " + defaultSnaplen() + ")", "snaplen", 1, "-snaplen <bytes>"));
+        newVector.add(new Option("\tThe sampling of the packets: none, 1 packet in N, or a uniform sample of K"
+                + " packets per capture file (mapped reader). The rate is recorded in the samplingRate"
+                + " attribute. (default: none)", "sampling", 1, "-sampling <none|systematic|reservoir>"));
+        newVector.add(new Option("\tThe interval N of the systematic sampling. (default: "
+                + defaultSamplingInterval() + ")", "samplingInterval", 1, "-samplingInterval <N>"));
+        newVector.add(new Option("\tThe size K of the reservoir sample. (default: " + defaultSamplingSize() + ")",
+                "samplingSize", 1, "-samplingSize <K>"));
+        newVector.add(new Option("\tCache the decoded packets of the pcap files in columnar files next to them,"
+                + " mapped by the later generations over the same captures (packet format).", "columnCache", 0,
+                "-columnCache"));
+        newVector.add(new Option("\tWrite the instances straight to this file from a writer thread while the"
+                + " captures are decoded, instead of building the dataset. (default: none)", "sink", 1,
+                "-sink <file>"));
+        newVector.add(new Option("\tThe format of the sink file. (default: arff)", "sinkFormat", 1,
+                "-sinkFormat <arff|csv|binary>"));
+        newVector.add(new Option("\tCompress the sink file with gzip.", "sinkCompress", 0, "-sinkCompress"));
 
         return newVector.elements();
     }
@@ -210,9 +597,9 @@ public class Pcap extends ClassificationGenerator {
         }
 
         // Set the duration
-        int duration = Integer.parseInt(Utils.getOption("duration", options));
-        if (duration != 0) {
-            setDuration(duration);
+        String duration = Utils.getOption("duration", options);
+        if (duration.length() != 0) {
+            setDuration(Integer.parseInt(duration));
         } else {
             setDuration(defaultDuration());
         }
@@ -226,9 +613,9 @@ public class Pcap extends ClassificationGenerator {
         }
 
         // Set the max number of packets
-        int maxPackets = Integer.parseInt(Utils.getOption("maxPackets", options));
-        if (maxPackets != 0) {
-            setMaxPackets(maxPackets);
+        String maxPackets = Utils.getOption("maxPackets", options);
+        if (maxPackets.length() != 0) {
+            setMaxPackets(Integer.parseInt(maxPackets));
         } else {
             setMaxPackets(defaultMaxPackets());
         }
@@ -240,6 +627,242 @@ public class Pcap extends ClassificationGenerator {
         } else {
             setTimestampFormat(defaultTimestampFormat());
         }
+
+        // Set the timer precision
+        String timerPrecision = Utils.getOption("timerPrecision", options);
+        if (timerPrecision.length() != 0) {
+            setTimerPrecision(new SelectedTag(timerPrecision, TAGS_PRECISION));
+        } else {
+            setTimerPrecision(defaultTimerPrecision());
+        }
+
+        // Set the streaming mode
+        setStreaming(Utils.getFlag("streaming", options));
+
+        // Set the dataset format
+        String format = Utils.getOption("format", options);
+        if (format.length() != 0) {
+            setFormat(new SelectedTag(format, TAGS_FORMAT));
+        } else {
+            setFormat(defaultFormat());
+        }
+
+        // Set the flow timeouts
+        String flowIdleTimeout = Utils.getOption("flowIdleTimeout", options);
+        if (flowIdleTimeout.length() != 0) {
+            setFlowIdleTimeout(Integer.parseInt(flowIdleTimeout));
+        } else {
+            setFlowIdleTimeout(defaultFlowIdleTimeout());
+        }
+        String flowActiveTimeout = Utils.getOption("flowActiveTimeout", options);
+        if (flowActiveTimeout.length() != 0) {
+            setFlowActiveTimeout(Integer.parseInt(flowActiveTimeout));
+        } else {
+            setFlowActiveTimeout(defaultFlowActiveTimeout());
+        }
+
+        // Set the max number of flows
+        String maxFlows = Utils.getOption("maxFlows", options);
+        if (maxFlows.length() != 0) {
+            setMaxFlows(Integer.parseInt(maxFlows));
+        } else {
+            setMaxFlows(defaultMaxFlows());
+        }
+
+        // Set the HTTP features
+        setHttp(Utils.getFlag("http", options));
+
+        // Set the time windows
+        String windowType = Utils.getOption("windowType", options);
+        if (windowType.length() != 0) {
+            setWindowType(new SelectedTag(windowType, TAGS_WINDOW));
+        } else {
+            setWindowType(defaultWindowType());
+        }
+        String windowSize = Utils.getOption("windowSize", options);
+        if (windowSize.length() != 0) {
+            setWindowSize(Integer.parseInt(windowSize));
+        } else {
+            setWindowSize(defaultWindowSize());
+        }
+
+        // Set the encoding options
+        String encoding = Utils.getOption("encoding", options);
+        if (encoding.length() != 0) {
+            setEncoding(new SelectedTag(encoding, TAGS_ENCODING));
+        } else {
+            setEncoding(defaultEncoding());
+        }
+        String maxNominalValues = Utils.getOption("maxNominalValues", options);
+        if (maxNominalValues.length() != 0) {
+            setMaxNominalValues(Integer.parseInt(maxNominalValues));
+        } else {
+            setMaxNominalValues(defaultMaxNominalValues());
+        }
+
+        // Set the attack options
+        String attacks = Utils.getOption("attacks", options);
+        if (attacks.length() != 0) {
+            setAttacks(attacks);
+        } else {
+            setAttacks(defaultAttacks());
+        }
+        String attackRate = Utils.getOption("attackRate", options);
+        if (attackRate.length() != 0) {
+            setAttackRate(Integer.parseInt(attackRate));
+        } else {
+            setAttackRate(defaultAttackRate());
+        }
+        String attackThreads = Utils.getOption("attackThreads", options);
+        if (attackThreads.length() != 0) {
+            setAttackThreads(Integer.parseInt(attackThreads));
+        } else {
+            setAttackThreads(defaultAttackThreads());
+        }
+        String attackConnections = Utils.getOption("attackConnections", options);
+        if (attackConnections.length() != 0) {
+            setAttackConnections(Integer.parseInt(attackConnections));
+        } else {
+            setAttackConnections(defaultAttackConnections());
+        }
+        String attackPort = Utils.getOption("attackPort", options);
+        if (attackPort.length() != 0) {
+            setAttackPort(Integer.parseInt(attackPort));
+        } else {
+            setAttackPort(defaultAttackPort());
+        }
+
+        // Set the attack schedule
+        String attackDelay = Utils.getOption("attackDelay", options);
+        if (attackDelay.length() != 0) {
+            setAttackDelay(Integer.parseInt(attackDelay));
+        } else {
+            setAttackDelay(defaultAttackDelay());
+        }
+        String attackPhaseDuration = Utils.getOption("attackPhaseDuration", options);
+        if (attackPhaseDuration.length() != 0) {
+            setAttackPhaseDuration(Integer.parseInt(attackPhaseDuration));
+        } else {
+            setAttackPhaseDuration(defaultAttackPhaseDuration());
+        }
+
+        // Set the background traffic
+        String backgroundRate = Utils.getOption("backgroundRate", options);
+        if (backgroundRate.length() != 0) {
+            setBackgroundRate(Integer.parseInt(backgroundRate));
+        } else {
+            setBackgroundRate(defaultBackgroundRate());
+        }
+        String backgroundProfile = Utils.getOption("backgroundProfile", options);
+        if (backgroundProfile.length() != 0) {
+            setBackgroundProfile(new SelectedTag(backgroundProfile, TAGS_PROFILE));
+        } else {
+            setBackgroundProfile(defaultBackgroundProfile());
+        }
+        String backgroundPeriod = Utils.getOption("backgroundPeriod", options);
+        if (backgroundPeriod.length() != 0) {
+            setBackgroundPeriod(Integer.parseInt(backgroundPeriod));
+        } else {
+            setBackgroundPeriod(defaultBackgroundPeriod());
+        }
+        String backgroundMix = Utils.getOption("backgroundMix", options);
+        if (backgroundMix.length() != 0) {
+            setBackgroundMix(backgroundMix);
+        } else {
+            setBackgroundMix(defaultBackgroundMix());
+        }
+        String backgroundConnections = Utils.getOption("backgroundConnections", options);
+        if (backgroundConnections.length() != 0) {
+            setBackgroundConnections(Integer.parseInt(backgroundConnections));
+        } else {
+            setBackgroundConnections(defaultBackgroundConnections());
+        }
+        String backgroundThreads = Utils.getOption("backgroundThreads", options);
+        if (backgroundThreads.length() != 0) {
+            setBackgroundThreads(Integer.parseInt(backgroundThreads));
+        } else {
+            setBackgroundThreads(defaultBackgroundThreads());
+        }
+
+        // Set the containers
+        String containers = Utils.getOption("containers", options);
+        if (containers.length() != 0) {
+            setContainers(Integer.parseInt(containers));
+        } else {
+            setContainers(defaultContainers());
+        }
+        String workers = Utils.getOption("workers", options);
+        if (workers.length() != 0) {
+            setWorkers(Integer.parseInt(workers));
+        } else {
+            setWorkers(defaultWorkers());
+        }
+
+        // Set the container pool
+        setContainerPool(Utils.getFlag("containerPool", options));
+
+        // Set the replayed files
+        String replay = Utils.getOption("replay", options);
+        if (replay.length() != 0) {
+            setReplay(replay);
+        } else {
+            setReplay(defaultReplay());
+        }
+
+        // Set the pcap reader
+        String pcapReader = Utils.getOption("pcapReader", options);
+        if (pcapReader.length() != 0) {
+            setPcapReader(new SelectedTag(pcapReader, TAGS_READER));
+        } else {
+            setPcapReader(defaultPcapReader());
+        }
+
+        // Set the live mode
+        setLive(Utils.getFlag("live", options));
+
+        // Set the capture filter
+        setCaptureFilter(Utils.getOption("captureFilter", options));
+
+        // Set the snap length
+        String snaplen = Utils.getOption("snaplen", options);
+        if (snaplen.length() != 0) {
+            setSnaplen(Integer.parseInt(snaplen));
+        } else {
+            setSnaplen(defaultSnaplen());
+        }
+
+        // Set the sampling
+        String sampling = Utils.getOption("sampling", options);
+        if (sampling.length() != 0) {
+            setSampling(new SelectedTag(sampling, TAGS_SAMPLING));
+        } else {
+            setSampling(defaultSampling());
+        }
+        String samplingInterval = Utils.getOption("samplingInterval", options);
+        if (samplingInterval.length() != 0) {
+            setSamplingInterval(Integer.parseInt(samplingInterval));
+        } else {
+            setSamplingInterval(defaultSamplingInterval());
+        }
+        String samplingSize = Utils.getOption("samplingSize", options);
+        if (samplingSize.length() != 0) {
+            setSamplingSize(Integer.parseInt(samplingSize));
+        } else {
+            setSamplingSize(defaultSamplingSize());
+        }
+
+        // Set the column cache
+        setColumnCache(Utils.getFlag("columnCache", options));
+
+        // Set the sink
+        setSink(Utils.getOption("sink", options));
+        String sinkFormat = Utils.getOption("sinkFormat", options);
+        if (sinkFormat.length() != 0) {
+            setSinkFormat(new SelectedTag(sinkFormat, TAGS_SINK_FORMAT));
+        } else {
+            setSinkFormat(defaultSinkFormat());
+        }
+        setSinkCompress(Utils.getFlag("sinkCompress", options));
     }
 
     /**
@@ -275,6 +898,128 @@ public class Pcap extends ClassificationGenerator {
         newVector.add("-timestampFormat");
         newVector.add(getTimestampFormat());
 
+        // Add the timer precision
+        newVector.add("-timerPrecision");
+        newVector.add(getTimerPrecision().getSelectedTag().getIDStr());
+
+        // Add the streaming mode
+        if (getStreaming()) {
+            newVector.add("-streaming");
+        }
+
+        // Add the dataset format
+        newVector.add("-format");
+        newVector.add(getFormat().getSelectedTag().getIDStr());
+
+        // Add the flow options
+        newVector.add("-flowIdleTimeout");
+        newVector.add("" + getFlowIdleTimeout());
+        newVector.add("-flowActiveTimeout");
+        newVector.add("" + getFlowActiveTimeout());
+        newVector.add("-maxFlows");
+        newVector.add("" + getMaxFlows());
+        if (getHttp()) {
+            newVector.add("-http");
+        }
+
+        // Add the window options
+        newVector.add("-windowType");
+        newVector.add(getWindowType().getSelectedTag().getIDStr());
+        newVector.add("-windowSize");
+        newVector.add("" + getWindowSize());
+
+        // Add the encoding options
+        newVector.add("-encoding");
+        newVector.add(getEncoding().getSelectedTag().getIDStr());
+        newVector.add("-maxNominalValues");
+        newVector.add("" + getMaxNominalValues());
+
+        // Add the attack options
+        newVector.add("-attacks");
+        newVector.add(getAttacks());
+        newVector.add("-attackRate");
+        newVector.add("" + getAttackRate());
+        newVector.add("-attackThreads");
+        newVector.add("" + getAttackThreads());
+        newVector.add("-attackConnections");
+        newVector.add("" + getAttackConnections());
+        newVector.add("-attackPort");
+        newVector.add("" + getAttackPort());
+        newVector.add("-attackDelay");
+        newVector.add("" + getAttackDelay());
+        newVector.add("-attackPhaseDuration");
+        newVector.add("" + getAttackPhaseDuration());
+
+        // Add the background traffic
+        newVector.add("-backgroundRate");
+        newVector.add("" + getBackgroundRate());
+        newVector.add("-backgroundProfile");
+        newVector.add(getBackgroundProfile().getSelectedTag().getIDStr());
+        newVector.add("-backgroundPeriod");
+        newVector.add("" + getBackgroundPeriod());
+        newVector.add("-backgroundMix");
+        newVector.add(getBackgroundMix());
+        newVector.add("-backgroundConnections");
+        newVector.add("" + getBackgroundConnections());
+        newVector.add("-backgroundThreads");
+        newVector.add("" + getBackgroundThreads());
+
+        // Add the containers
+        newVector.add("-containers");
+        newVector.add("" + getContainers());
+        newVector.add("-workers");
+        newVector.add("" + getWorkers());
+        if (getContainerPool()) {
+            newVector.add("-containerPool");
+        }
+
+        // Add the replayed files
+        if (getReplay().length() != 0) {
+            newVector.add("-replay");
+            newVector.add(getReplay());
+        }
+
+        // Add the pcap reader
+        newVector.add("-pcapReader");
+        newVector.add(getPcapReader().getSelectedTag().getIDStr());
+
+        // Add the live mode
+        if (getLive()) {
+            newVector.add("-live");
+        }
+
+        // Add the capture filter and the snap length
+        if (getCaptureFilter().length() != 0) {
+            newVector.add("-captureFilter");
+            newVector.add(getCaptureFilter());
+        }
+        newVector.add("-snaplen");
+        newVector.add("" + getSnaplen());
+
+        // Add the sampling
+        newVector.add("-sampling");
+        newVector.add(getSampling().getSelectedTag().getIDStr());
+        newVector.add("-samplingInterval");
+        newVector.add("" + getSamplingInterval());
+        newVector.add("-samplingSize");
+        newVector.add("" + getSamplingSize());
+
+        // Add the column cache
+        if (getColumnCache()) {
+            newVector.add("-columnCache");
+        }
+
+        // Add the sink
+        if (getSink().length() != 0) {
+            newVector.add("-sink");
+            newVector.add(getSink());
+        }
+        newVector.add("-sinkFormat");
+        newVector.add(getSinkFormat().getSelectedTag().getIDStr());
+        if (getSinkCompress()) {
+            newVector.add("-sinkCompress");
+        }
+
         return newVector.toArray(new String[0]);
     }
 
@@ -324,180 +1069,2223 @@ public class Pcap extends ClassificationGenerator {
     }
 
     /**
-     * Gets the Docker image.
+     * returns the default timer precision.
      * 
-     * @return the Docker image.
+     * @return the default timer precision.
      */
-    public String getDockerImage() {
-        return dockerImage;
+    protected SelectedTag defaultTimerPrecision() {
+        return new SelectedTag(PRECISION_MILLIS, TAGS_PRECISION);
     }
 
     /**
-     * Gets the duration.
+     * returns the default streaming mode.
      * 
-     * @return the duration.
+     * @return the default streaming mode.
      */
-    public int getDuration() {
-        return duration;
+    protected boolean defaultStreaming() {
+        return false;
     }
 
     /**
-     * Gets the pcap directory.
+     * returns the default dataset format.
      * 
-     * @return the pcap directory.
+     * @return the default dataset format.
      */
-    public String getPcapFullPath() {
-        return pcapFullPath;
+    protected SelectedTag defaultFormat() {
+        return new SelectedTag(FORMAT_PACKET, TAGS_FORMAT);
     }
 
     /**
-     * Gets the max number of packets.
+     * returns the default idle timeout of the flows.
      * 
-     * @return the max number of packets.
+     * @return the default idle timeout (seconds).
      */
-    public int getMaxPackets() {
-        return maxPackets;
+    protected int defaultFlowIdleTimeout() {
+        return 15;
     }
 
     /**
-     * Gets the timestamp format.
+     * returns the default active timeout of the flows.
      * 
-     * @return the timestamp format.
+     * @return the default active timeout (seconds).
      */
-    public String getTimestampFormat() {
-        return timestampFormat;
+    protected int defaultFlowActiveTimeout() {
+        return 120;
     }
 
     /**
-     * Sets the Docker image.
+     * returns the default max number of flows kept in memory.
      * 
-     * @param dockerImage the Docker image.
+     * @return the default max number of flows.
      */
-    public void setDockerImage(String dockerImage) {
-        if (Arrays.asList(ACCEPTED_DOCKER_IMAGES).contains(dockerImage)) {
-            this.dockerImage = dockerImage;
-        } else {
-            throw new IllegalArgumentException("The docker image " + dockerImage + " is not supported.");
-        }
+    protected int defaultMaxFlows() {
+        return 100000;
     }
 
     /**
-     * Sets the duration.
+     * returns the default HTTP features mode.
      * 
-     * @param duration the duration.
+     * @return the default HTTP features mode.
      */
-    public void setDuration(int duration) {
-        this.duration = duration;
+    protected boolean defaultHttp() {
+        return false;
     }
 
     /**
-     * Sets the pcap directory.
+     * returns the default time window type.
      * 
-     * @param pcapFullPath the pcap directory.
+     * @return the default time window type.
      */
-    public void setPcapFullPath(String pcapFullPath) {
-        // Check if the pcap directory is not empty
-        if (pcapFullPath.length() != 0) {
-            this.pcapFullPath = defaultPcapFullPath();
-        }
-
-        // Extract the pcap directory
-        String pcapDir = pcapFullPath.substring(0, pcapFullPath.lastIndexOf("/"));
-
-        // Convert the pcap directory to a Path object
-        Path path = Paths.get(pcapDir);
-
-        // Check if the pcap directory exists
-        if (!Files.exists(path) || !Files.isDirectory(path)) {
-            // Throw an exception if the pcap directory does not exist
-            throw new IllegalArgumentException("The pcap directory " + pcapDir + " does not exist.");
-        }
-
-        // Create absolute full path
-        this.pcapFullPath = path.toAbsolutePath().toString() + "/"
-                + pcapFullPath.substring(pcapFullPath.lastIndexOf("/") + 1);
+    protected SelectedTag defaultWindowType() {
+        return new SelectedTag(WINDOW_TUMBLING, TAGS_WINDOW);
     }
 
     /**
-     * Sets the max number of packets.
+     * returns the default time window size.
      * 
-     * @param maxPackets the max number of packets.
+     * @return the default time window size (milliseconds).
      */
-    public void setMaxPackets(int maxPackets) {
-        this.maxPackets = maxPackets;
+    protected int defaultWindowSize() {
+        return 1000;
     }
 
     /**
-     * Sets the timestamp format.
+     * returns the default encoding.
      * 
-     * @param timestampFormat the timestamp format.
+     * @return the default encoding.
      */
-    public void setTimestampFormat(String timestampFormat) {
-        // Ensure that the timestamp format is valid
-        try {
-            new SimpleDateFormat(timestampFormat);
-        } catch (IllegalArgumentException e) {
-            throw new IllegalArgumentException("The timestamp format " + timestampFormat + " is not valid.");
-        }
-
-        this.timestampFormat = timestampFormat;
+    protected SelectedTag defaultEncoding() {
+        return new SelectedTag(ENCODING_STRING, TAGS_ENCODING);
     }
 
     /**
-     * Initializes the format for the dataset produced. Must be called before the
-     * generateExample or generateExamples methods are used.
-     *
-     * Basicaly Re-initializes the random number generator with the given seed. But
-     * NOT IN OUR USECASE, we don't use random seed because or datagenration is
-     * contexctual and not unitary and reproduceable
+     * returns the default max number of values of the nominal attributes.
      * 
-     * @return the format for the dataset
-     * @throws Exception if the generating of the format failed
-     * @see #getSeed()
+     * @return the default max number of values.
      */
-    @Override
-    public Instances defineDataFormat() throws Exception {
-        // Set up the attributes
-        ArrayList<Attribute> atts = new ArrayList<Attribute>();
-
-        // Define the String attributes
-        for (String attribute : DATASET_ATTRIBUTES_STRINGS) {
-            Attribute m_att = new Attribute(attribute, (ArrayList<String>) null);
-            datasetAttributes.put(attribute, m_att);
-            atts.add(m_att);
-        }
+    protected int defaultMaxNominalValues() {
+        return 100;
+    }
 
-        // Define the Numeric attributes
-        for (String attribute : DATASET_ATTRIBUTES_NUMERICS) {
-            Attribute m_att = new Attribute(attribute);
-            datasetAttributes.put(attribute, m_att);
-            atts.add(m_att);
-        }
+    /**
+     * returns the default attacks.
+     * 
+     * @return the default attacks.
+     */
+    protected String defaultAttacks() {
+        return "udp";
+    }
 
-        // Define the timestamp attribute
-        Attribute m_att = new Attribute("timestamp", getTimestampFormat());
-        datasetAttributes.put("timestamp", m_att);
-        atts.add(m_att);
+    /**
+     * returns the default attack rate.
+     * 
+     * @return the default attack rate (packets per second).
+     */
+    protected int defaultAttackRate() {
+        return 1000;
+    }
 
-        m_DatasetFormat = new Instances(getRelationNameToUse(), atts, 0);
+    /**
+     * returns the default number of attack threads.
+     * 
+     * @return the default number of attack threads.
+     */
+    protected int defaultAttackThreads() {
+        return 1;
+    }
 
-        return m_DatasetFormat;
+    /**
+     * returns the default max number of concurrent connections of the TCP
+     * attacks.
+     * 
+     * @return the default max number of connections.
+     */
+    protected int defaultAttackConnections() {
+        return 1000;
     }
 
     /**
-     * Do nothing because the dataset is already isn't unatrily generated.
-     * (basicaly the generateExamples call the generateExample method
-     * several times to generate the dataset, in our case the generateExamples
-     * will genereted the dataset without unitary and reproduceable action)
+     * returns the default attacked port.
      * 
-     * @return null
-     * @throws Exception if the example could not be generated
+     * @return the default attacked port.
      */
-    @Override
+    protected int defaultAttackPort() {
+        return 80;
+    }
+
+    /**
+     * returns the default delay before the first attack.
+     * 
+     * @return the default delay (seconds).
+     */
+    protected int defaultAttackDelay() {
+        return 0;
+    }
+
+    /**
+     * returns the default duration of each attack.
+     * 
+     * @return the default duration (seconds).
+     */
+    protected int defaultAttackPhaseDuration() {
+        return 0;
+    }
+
+    /**
+     * returns the default peak rate of the background traffic.
+     * 
+     * @return the default peak rate (requests per second).
+     */
+    protected int defaultBackgroundRate() {
+        return 200;
+    }
+
+    /**
+     * returns the default rate profile of the background traffic.
+     * 
+     * @return the default rate profile.
+     */
+    protected SelectedTag defaultBackgroundProfile() {
+        return new SelectedTag(PROFILE_CONSTANT, TAGS_PROFILE);
+    }
+
+    /**
+     * returns the default period of the background rate profile.
+     * 
+     * @return the default period (seconds).
+     */
+    protected int defaultBackgroundPeriod() {
+        return 60;
+    }
+
+    /**
+     * returns the default request mix of the background traffic.
+     * 
+     * @return the default weights of the page visit, keep-alive session and DNS
+     *         requests.
+     */
+    protected String defaultBackgroundMix() {
+        return "4:4:2";
+    }
+
+    /**
+     * returns the default max number of background connections.
+     * 
+     * @return the default max number of connections.
+     */
+    protected int defaultBackgroundConnections() {
+        return 256;
+    }
+
+    /**
+     * returns the default number of background traffic threads.
+     * 
+     * @return the default number of threads.
+     */
+    protected int defaultBackgroundThreads() {
+        return 2;
+    }
+
+    /**
+     * returns the default number of containers.
+     * 
+     * @return the default number of containers.
+     */
+    protected int defaultContainers() {
+        return 1;
+    }
+
+    /**
+     * returns the default max number of containers running at the same time.
+     * 
+     * @return the default number of workers.
+     */
+    protected int defaultWorkers() {
+        return 4;
+    }
+
+    /**
+     * returns the default container pool mode.
+     * 
+     * @return the default container pool mode.
+     */
+    protected boolean defaultContainerPool() {
+        return false;
+    }
+
+    /**
+     * returns the default replayed files.
+     * 
+     * @return the default replayed files (none: run the containers).
+     */
+    protected String defaultReplay() {
+        return "";
+    }
+
+    /**
+     * returns the default pcap reader.
+     * 
+     * @return the default pcap reader.
+     */
+    protected SelectedTag defaultPcapReader() {
+        return new SelectedTag(READER_MAPPED, TAGS_READER);
+    }
+
+    /**
+     * returns the default live mode.
+     * 
+     * @return the default live mode.
+     */
+    protected boolean defaultLive() {
+        return false;
+    }
+
+    /**
+     * returns the default capture filter.
+     * 
+     * @return the default capture filter.
+     */
+    protected String defaultCaptureFilter() {
+        return "";
+    }
+
+    /**
+     * returns the default snap length.
+     * 
+     * @return the default snap length.
+     */
+    protected int defaultSnaplen() {
+        return 0;
+    }
+
+    /**
+     * returns the default sampling.
+     * 
+     * @return the default sampling.
+     */
+    protected SelectedTag defaultSampling() {
+        return new SelectedTag(SAMPLING_NONE, TAGS_SAMPLING);
+    }
+
+    /**
+     * returns the default sampling interval.
+     * 
+     * @return the default sampling interval.
+     */
+    protected int defaultSamplingInterval() {
+        return 10;
+    }
+
+    /**
+     * returns the default reservoir size.
+     * 
+     * @return the default reservoir size.
+     */
+    protected int defaultSamplingSize() {
+        return 100000;
+    }
+
+    /**
+     * returns the default column cache mode.
+     * 
+     * @return the default column cache mode.
+     */
+    protected boolean defaultColumnCache() {
+        return false;
+    }
+
+    /**
+     * returns the default sink file.
+     * 
+     * @return the default sink file.
+     */
+    protected String defaultSink() {
+        return "";
+    }
+
+    /**
+     * returns the default sink format.
+     * 
+     * @return the default sink format.
+     */
+    protected SelectedTag defaultSinkFormat() {
+        return new SelectedTag(SINK_ARFF, TAGS_SINK_FORMAT);
+    }
+
+    /**
+     * returns the default sink compression mode.
+     * 
+     * @return the default sink compression mode.
+     */
+    protected boolean defaultSinkCompress() {
+        return false;
+    }
+
+    /**
+     * Gets the Docker image.
+     * 
+     * @return the Docker image.
+     */
+    public String getDockerImage() {
+        return dockerImage;
+    }
+
+    /**
+     * Gets the duration.
+     * 
+     * @return the duration.
+     */
+    public int getDuration() {
+        return duration;
+    }
+
+    /**
+     * Gets the pcap directory.
+     * 
+     * @return the pcap directory.
+     */
+    public String getPcapFullPath() {
+        return pcapFullPath;
+    }
+
+    /**
+     * Gets the max number of packets.
+     * 
+     * @return the max number of packets.
+     */
+    public int getMaxPackets() {
+        return maxPackets;
+    }
+
+    /**
+     * Gets the timestamp format.
+     * 
+     * @return the timestamp format.
+     */
+    public String getTimestampFormat() {
+        return timestampFormat;
+    }
+
+    /**
+     * Gets the timer precision.
+     * 
+     * @return the timer precision.
+     */
+    public SelectedTag getTimerPrecision() {
+        return new SelectedTag(timerPrecision, TAGS_PRECISION);
+    }
+
+    /**
+     * Gets the streaming mode.
+     * 
+     * @return true if the packets are streamed one at a time.
+     */
+    public boolean getStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Gets the dataset format.
+     * 
+     * @return the dataset format.
+     */
+    public SelectedTag getFormat() {
+        return new SelectedTag(format, TAGS_FORMAT);
+    }
+
+    /**
+     * Gets the idle timeout of the flows.
+     * 
+     * @return the idle timeout (seconds).
+     */
+    public int getFlowIdleTimeout() {
+        return flowIdleTimeout;
+    }
+
+    /**
+     * Gets the active timeout of the flows.
+     * 
+     * @return the active timeout (seconds).
+     */
+    public int getFlowActiveTimeout() {
+        return flowActiveTimeout;
+    }
+
+    /**
+     * Gets the max number of flows kept in memory.
+     * 
+     * @return the max number of flows.
+     */
+    public int getMaxFlows() {
+        return maxFlows;
+    }
+
+    /**
+     * Gets the HTTP features mode.
+     * 
+     * @return true if the TCP streams are reassembled into HTTP features.
+     */
+    public boolean getHttp() {
+        return http;
+    }
+
+    /**
+     * Gets the time window type.
+     * 
+     * @return the time window type.
+     */
+    public SelectedTag getWindowType() {
+        return new SelectedTag(windowType, TAGS_WINDOW);
+    }
+
+    /**
+     * Gets the time window size.
+     * 
+     * @return the time window size (milliseconds).
+     */
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * Gets the encoding.
+     * 
+     * @return the encoding.
+     */
+    public SelectedTag getEncoding() {
+        return new SelectedTag(encoding, TAGS_ENCODING);
+    }
+
+    /**
+     * Gets the max number of values of the nominal attributes.
+     * 
+     * @return the max number of values.
+     */
+    public int getMaxNominalValues() {
+        return maxNominalValues;
+    }
+
+    /**
+     * Gets the attacks.
+     * 
+     * @return the comma separated list of attacks.
+     */
+    public String getAttacks() {
+        return attacks;
+    }
+
+    /**
+     * Gets the attack rate.
+     * 
+     * @return the attack rate (packets per second).
+     */
+    public int getAttackRate() {
+        return attackRate;
+    }
+
+    /**
+     * Gets the number of attack threads.
+     * 
+     * @return the number of attack threads.
+     */
+    public int getAttackThreads() {
+        return attackThreads;
+    }
+
+    /**
+     * Gets the max number of concurrent connections of the TCP attacks.
+     * 
+     * @return the max number of connections.
+     */
+    public int getAttackConnections() {
+        return attackConnections;
+    }
+
+    /**
+     * Gets the attacked port.
+     * 
+     * @return the attacked port.
+     */
+    public int getAttackPort() {
+        return attackPort;
+    }
+
+    /**
+     * Gets the delay before the first attack.
+     * 
+     * @return the delay (seconds).
+     */
+    public int getAttackDelay() {
+        return attackDelay;
+    }
+
+    /**
+     * Gets the duration of each attack.
+     * 
+     * @return the duration (seconds).
+     */
+    public int getAttackPhaseDuration() {
+        return attackPhaseDuration;
+    }
+
+    /**
+     * Gets the peak rate of the background traffic.
+     * 
+     * @return the peak rate (requests per second).
+     */
+    public int getBackgroundRate() {
+        return backgroundRate;
+    }
+
+    /**
+     * Gets the rate profile of the background traffic.
+     * 
+     * @return the rate profile.
+     */
+    public SelectedTag getBackgroundProfile() {
+        return new SelectedTag(backgroundProfile, TAGS_PROFILE);
+    }
+
+    /**
+     * Gets the period of the background rate profile.
+     * 
+     * @return the period (seconds).
+     */
+    public int getBackgroundPeriod() {
+        return backgroundPeriod;
+    }
+
+    /**
+     * Gets the request mix of the background traffic.
+     * 
+     * @return the weights of the page visit, keep-alive session and DNS
+     *         requests, separated by colons.
+     */
+    public String getBackgroundMix() {
+        return backgroundMix;
+    }
+
+    /**
+     * Gets the max number of concurrent connections of the background traffic.
+     * 
+     * @return the max number of connections.
+     */
+    public int getBackgroundConnections() {
+        return backgroundConnections;
+    }
+
+    /**
+     * Gets the number of threads of the background traffic.
+     * 
+     * @return the number of threads.
+     */
+    public int getBackgroundThreads() {
+        return backgroundThreads;
+    }
+
+    /**
+     * Gets the number of containers.
+     * 
+     * @return the number of containers.
+     */
+    public int getContainers() {
+        return containers;
+    }
+
+    /**
+     * Gets the max number of containers running at the same time.
+     * 
+     * @return the number of workers.
+     */
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Gets the container pool mode.
+     * 
+     * @return true if the containers are kept running between captures.
+     */
+    public boolean getContainerPool() {
+        return containerPool;
+    }
+
+    /**
+     * Gets the replayed files.
+     * 
+     * @return the comma-separated files or directories, empty to run the
+     *         containers.
+     */
+    public String getReplay() {
+        return replay;
+    }
+
+    /**
+     * Gets the pcap reader.
+     * 
+     * @return the pcap reader.
+     */
+    public SelectedTag getPcapReader() {
+        return new SelectedTag(pcapReader, TAGS_READER);
+    }
+
+    /**
+     * Gets the live mode.
+     * 
+     * @return true if the captures are decoded while they run.
+     */
+    public boolean getLive() {
+        return live;
+    }
+
+    /**
+     * Gets the capture filter.
+     * 
+     * @return the BPF capture filter, empty for no filter.
+     */
+    public String getCaptureFilter() {
+        return captureFilter;
+    }
+
+    /**
+     * Gets the snap length.
+     * 
+     * @return the max number of bytes per frame, 0 for no limit.
+     */
+    public int getSnaplen() {
+        return snaplen;
+    }
+
+    /**
+     * Gets the sampling of the packets.
+     * 
+     * @return the sampling.
+     */
+    public SelectedTag getSampling() {
+        return new SelectedTag(sampling, TAGS_SAMPLING);
+    }
+
+    /**
+     * Gets the interval of the systematic sampling.
+     * 
+     * @return the interval N (1 packet in N).
+     */
+    public int getSamplingInterval() {
+        return samplingInterval;
+    }
+
+    /**
+     * Gets the size of the reservoir sample.
+     * 
+     * @return the size K of the sample of each capture file.
+     */
+    public int getSamplingSize() {
+        return samplingSize;
+    }
+
+    /**
+     * Gets the column cache mode.
+     * 
+     * @return true if the decoded packets of the pcap files are cached.
+     */
+    public boolean getColumnCache() {
+        return columnCache;
+    }
+
+    /**
+     * Gets the sink file.
+     * 
+     * @return the sink file, empty to build the dataset.
+     */
+    public String getSink() {
+        return sink;
+    }
+
+    /**
+     * Gets the format of the sink file.
+     * 
+     * @return the sink format.
+     */
+    public SelectedTag getSinkFormat() {
+        return new SelectedTag(sinkFormat, TAGS_SINK_FORMAT);
+    }
+
+    /**
+     * Gets the sink compression mode.
+     * 
+     * @return true if the sink file is compressed with gzip.
+     */
+    public boolean getSinkCompress() {
+        return sinkCompress;
+    }
+
+    /**
+     * Sets the Docker image.
+     * 
+     * @param dockerImage the Docker image.
+     */
+    public void setDockerImage(String dockerImage) {
+        if (Arrays.asList(ACCEPTED_DOCKER_IMAGES).contains(dockerImage)) {
+            this.dockerImage = dockerImage;
+        } else {
+            throw new IllegalArgumentException("The docker image " + dockerImage + " is not supported.");
+        }
+    }
+
+    /**
+     * Sets the duration.
+     * 
+     * @param duration the duration.
+     */
+    public void setDuration(int duration) {
+        this.duration = duration;
+    }
+
+    /**
+     * Sets the pcap directory. The file is replaced atomically by each
+     * capture; generators running containers at the same time should still
+     * write distinct files.
+     * 
+     * @param pcapFullPath the pcap directory.
+     */
+    public void setPcapFullPath(String pcapFullPath) {
+        // Check if the pcap directory is not empty
+        if (pcapFullPath.length() != 0) {
+            this.pcapFullPath = defaultPcapFullPath();
+        }
+
+        // Extract the pcap directory
+        String pcapDir = pcapFullPath.substring(0, pcapFullPath.lastIndexOf("/"));
+
+        // Convert the pcap directory to a Path object
+        Path path = Paths.get(pcapDir);
+
+        // Check if the pcap directory exists
+        if (!Files.exists(path) || !Files.isDirectory(path)) {
+            // Throw an exception if the pcap directory does not exist
+            throw new IllegalArgumentException("The pcap directory " + pcapDir + " does not exist.");
+        }
+
+        // Create absolute full path
+        this.pcapFullPath = path.toAbsolutePath().toString() + "/"
+                + pcapFullPath.substring(pcapFullPath.lastIndexOf("/") + 1);
+    }
+
+    /**
+     * Sets the max number of packets.
+     * 
+     * @param maxPackets the max number of packets.
+     */
+    public void setMaxPackets(int maxPackets) {
+        this.maxPackets = maxPackets;
+    }
+
+    /**
+     * Sets the timestamp format.
+     * 
+     * @param timestampFormat the timestamp format.
+     */
+    public void setTimestampFormat(String timestampFormat) {
+        // Ensure that the timestamp format is valid
+        try {
+            new SimpleDateFormat(timestampFormat);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("The timestamp format " + timestampFormat + " is not valid.");
+        }
+
+        this.timestampFormat = timestampFormat;
+    }
+
+    /**
+     * Sets the precision of the timer attribute, the time of the packets since
+     * the start of the capture. The timestamp attribute is a date and keeps
+     * milliseconds, the timer keeps the inter-arrival times of the packets
+     * closer than a millisecond.
+     * 
+     * @param timerPrecision the timer precision.
+     */
+    public void setTimerPrecision(SelectedTag timerPrecision) {
+        if (timerPrecision.getTags() == TAGS_PRECISION) {
+            this.timerPrecision = timerPrecision.getSelectedTag().getID();
+        }
+    }
+
+    /**
+     * Sets the streaming mode. In streaming mode the packets are decoded lazily
+     * and each call to generateExample returns the next packet, so the capture
+     * is written with constant memory. As with the incremental loaders, only
+     * the value of the current instance is kept for the string attributes.
+     * 
+     * @param streaming true to stream the packets one at a time.
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Sets the dataset format: one row per packet, or one row per bidirectional
+     * flow (5-tuple keyed, with packet/byte counts, inter-arrival times, TCP
+     * flag counts, duration and rates).
+     * 
+     * @param format the dataset format.
+     */
+    public void setFormat(SelectedTag format) {
+        if (format.getTags() == TAGS_FORMAT) {
+            this.format = format.getSelectedTag().getID();
+        }
+    }
+
+    /**
+     * Sets the idle timeout of the flows. A flow without packet for this time
+     * is completed.
+     * 
+     * @param flowIdleTimeout the idle timeout (seconds).
+     */
+    public void setFlowIdleTimeout(int flowIdleTimeout) {
+        this.flowIdleTimeout = flowIdleTimeout;
+    }
+
+    /**
+     * Sets the active timeout of the flows. A flow lasting for this time is
+     * completed and a new flow starts.
+     * 
+     * @param flowActiveTimeout the active timeout (seconds).
+     */
+    public void setFlowActiveTimeout(int flowActiveTimeout) {
+        this.flowActiveTimeout = flowActiveTimeout;
+    }
+
+    /**
+     * Sets the max number of flows kept in memory. When the flow table is full,
+     * the least recently active flow is completed.
+     * 
+     * @param maxFlows the max number of flows.
+     */
+    public void setMaxFlows(int maxFlows) {
+        this.maxFlows = maxFlows;
+    }
+
+    /**
+     * Sets the HTTP features mode. The TCP segments of each flow are
+     * reassembled and parsed as HTTP/1.x messages, in buffers bounded by
+     * message, by connection (the flow timeouts and max number of flows) and
+     * by capture. Only the flow format has HTTP features.
+     * 
+     * @param http true to reassemble the TCP streams into HTTP features.
+     */
+    public void setHttp(boolean http) {
+        this.http = http;
+    }
+
+    /**
+     * Sets the time window type of the window format. Tumbling windows emit one
+     * row per destination when the window closes, sliding windows emit one row
+     * per packet with the statistics of its destination over the last window.
+     * 
+     * @param windowType the time window type.
+     */
+    public void setWindowType(SelectedTag windowType) {
+        if (windowType.getTags() == TAGS_WINDOW) {
+            this.windowType = windowType.getSelectedTag().getID();
+        }
+    }
+
+    /**
+     * Sets the time window size of the window format.
+     * 
+     * @param windowSize the time window size (milliseconds).
+     */
+    public void setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Sets the encoding of the addresses, ports, ether type and checksum. The
+     * numeric encoding stores the IPv4 addresses as 32-bit integers (IPv6
+     * addresses are missing) with their /24 subnet, and the ports as numbers
+     * with their class (0: well-known, 1: registered, 2: dynamic). The
+     * nominal encoding keeps the most frequent values of each attribute and
+     * merges the others into 'other'; it needs all the rows, so it is only
+     * available in batch mode.
+     * 
+     * @param encoding the encoding.
+     */
+    public void setEncoding(SelectedTag encoding) {
+        if (encoding.getTags() == TAGS_ENCODING) {
+            this.encoding = encoding.getSelectedTag().getID();
+        }
+    }
+
+    /**
+     * Sets the max number of values of the nominal attributes, 'other'
+     * included.
+     * 
+     * @param maxNominalValues the max number of values.
+     */
+    public void setMaxNominalValues(int maxNominalValues) {
+        this.maxNominalValues = maxNominalValues;
+    }
+
+    /**
+     * Sets the attacks run during the capture. The attacks run at the same
+     * time, each one with the attack rate, threads and connections.
+     * 
+     * @param attacks the comma separated list of attacks, or none.
+     */
+    public void setAttacks(String attacks) {
+        List<String> names = Attacks.parse(attacks);
+        this.attacks = names.isEmpty() ? "none" : String.join(",", names);
+    }
+
+    /**
+     * Sets the attack rate: packets per second for the udp attack, connection
+     * attempts per second for the syn and portscan attacks, requests per second
+     * for the http attack and new connections per second for the slowloris
+     * attack. The rate is split between the attack threads and paced by a token
+     * bucket.
+     * 
+     * @param attackRate the attack rate, 0 for no limit.
+     */
+    public void setAttackRate(int attackRate) {
+        this.attackRate = attackRate;
+    }
+
+    /**
+     * Sets the number of attack threads.
+     * 
+     * @param attackThreads the number of attack threads.
+     */
+    public void setAttackThreads(int attackThreads) {
+        this.attackThreads = attackThreads;
+    }
+
+    /**
+     * Sets the max number of concurrent connections of each TCP attack. The
+     * connections of an attack are driven by non-blocking selectors, one per
+     * attack thread.
+     * 
+     * @param attackConnections the max number of connections.
+     */
+    public void setAttackConnections(int attackConnections) {
+        this.attackConnections = attackConnections;
+    }
+
+    /**
+     * Sets the port attacked by the syn, http and slowloris attacks.
+     * 
+     * @param attackPort the attacked port.
+     */
+    public void setAttackPort(int attackPort) {
+        this.attackPort = attackPort;
+    }
+
+    /**
+     * Sets the delay before the first attack. The packets captured before are
+     * benign traffic.
+     * 
+     * @param attackDelay the delay (seconds).
+     */
+    public void setAttackDelay(int attackDelay) {
+        this.attackDelay = attackDelay;
+    }
+
+    /**
+     * Sets the duration of each attack. The attacks run one after the other, or
+     * all together until the end of the capture with a duration of 0.
+     * 
+     * @param attackPhaseDuration the duration (seconds).
+     */
+    public void setAttackPhaseDuration(int attackPhaseDuration) {
+        this.attackPhaseDuration = attackPhaseDuration;
+    }
+
+    /**
+     * Sets the peak rate of the benign background traffic, sent to the
+     * attacked port (HTTP) and to port 53 (DNS) for the whole capture. The
+     * background traffic uses local ports outside the ephemeral range, so its
+     * packets are never labelled as attack packets.
+     * 
+     * @param backgroundRate the peak rate (requests per second), 0 for no
+     *                       background traffic.
+     */
+    public void setBackgroundRate(int backgroundRate) {
+        this.backgroundRate = backgroundRate;
+    }
+
+    /**
+     * Sets the rate profile of the background traffic: the peak rate all along,
+     * a ramp up to the peak rate, a day/night cycle or periodic bursts.
+     * 
+     * @param backgroundProfile the rate profile.
+     */
+    public void setBackgroundProfile(SelectedTag backgroundProfile) {
+        if (backgroundProfile.getTags() == TAGS_PROFILE) {
+            this.backgroundProfile = backgroundProfile.getSelectedTag().getID();
+        }
+    }
+
+    /**
+     * Sets the period of the background rate profile: the duration of the ramp,
+     * of a day or between two bursts.
+     * 
+     * @param backgroundPeriod the period (seconds).
+     */
+    public void setBackgroundPeriod(int backgroundPeriod) {
+        this.backgroundPeriod = backgroundPeriod;
+    }
+
+    /**
+     * Sets the request mix of the background traffic: the relative weights of
+     * the page visits (a page then its assets on a new connection), of the
+     * keep-alive sessions (tens of polls per connection) and of the DNS
+     * queries.
+     * 
+     * @param backgroundMix the weights, separated by colons.
+     */
+    public void setBackgroundMix(String backgroundMix) {
+        BackgroundTraffic.parseMix(backgroundMix);
+        this.backgroundMix = backgroundMix;
+    }
+
+    /**
+     * Sets the max number of concurrent connections of the background traffic.
+     * One request is outstanding per connection, so the connections bound the
+     * rate to their number over the response time of the server.
+     * 
+     * @param backgroundConnections the max number of connections.
+     */
+    public void setBackgroundConnections(int backgroundConnections) {
+        this.backgroundConnections = backgroundConnections;
+    }
+
+    /**
+     * Sets the number of threads of the background traffic, each one driving
+     * its share of the connections with a non-blocking selector.
+     * 
+     * @param backgroundThreads the number of threads.
+     */
+    public void setBackgroundThreads(int backgroundThreads) {
+        this.backgroundThreads = backgroundThreads;
+    }
+
+    /**
+     * Sets the number of containers. The containers are captured concurrently,
+     * each one with its own name, network, attacks and pcap file (the index of
+     * the container is appended to the pcap file name), and their packets are
+     * merged into one dataset.
+     * 
+     * @param containers the number of containers.
+     */
+    public void setContainers(int containers) {
+        this.containers = containers;
+    }
+
+    /**
+     * Sets the max number of containers running at the same time.
+     * 
+     * @param workers the number of workers.
+     */
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    /**
+     * Sets the container pool mode. With the pool the containers are kept
+     * running after a capture and reset (capture stopped, pcap file deleted) by
+     * the next capture on the same container, instead of being created,
+     * started and removed for every capture. The containers still running are
+     * removed when the JVM exits.
+     * 
+     * @param containerPool true to keep the containers running between
+     *                      captures.
+     */
+    public void setContainerPool(boolean containerPool) {
+        this.containerPool = containerPool;
+    }
+
+    /**
+     * Sets the replayed files. When set, no container is run: the pcap and
+     * pcapng files (the directories are walked recursively) are decoded
+     * through the same feature pipeline, in parallel by the workers, and all
+     * the packets are labelled benign.
+     * 
+     * @param replay the comma-separated files or directories, empty to run the
+     *               containers.
+     */
+    public void setReplay(String replay) {
+        this.replay = replay;
+    }
+
+    /**
+     * Sets the pcap reader. The mapped reader memory-maps the pcap or pcapng
+     * file and decodes record-aligned chunks of it on the fork/join pool; the
+     * libpcap reader decodes the packets one at a time on the calling thread.
+     * Both read the packets in file order, which must be the timestamp order
+     * for the flows and windows.
+     * 
+     * @param pcapReader the pcap reader.
+     */
+    public void setPcapReader(SelectedTag pcapReader) {
+        if (pcapReader.getTags() == TAGS_READER) {
+            this.pcapReader = pcapReader.getSelectedTag().getID();
+        }
+    }
+
+    /**
+     * Sets the live mode. In live mode tshark writes the capture to its
+     * standard output, which is streamed out of the container and decoded
+     * while the capture runs: the packets are labelled with the attack phases
+     * recorded so far, and no pcap file is written or copied. Ignored when
+     * replaying pcap files.
+     * 
+     * @param live true to decode the captures while they run.
+     */
+    public void setLive(boolean live) {
+        this.live = live;
+    }
+
+    /**
+     * Sets the capture filter. The BPF filter is passed to tshark in the
+     * container, so the filtered packets are never written, copied or
+     * decoded. In replay mode it is compiled by the libpcap reader (the
+     * mapped reader has no BPF engine).
+     * 
+     * @param captureFilter the BPF capture filter, empty for no filter.
+     */
+    public void setCaptureFilter(String captureFilter) {
+        this.captureFilter = captureFilter;
+    }
+
+    /**
+     * Sets the snap length: tshark only captures the first bytes of each
+     * frame, and the readers only decode them.
+     * 
+     * @param snaplen the max number of bytes per frame, 0 for no limit.
+     */
+    public void setSnaplen(int snaplen) {
+        this.snaplen = snaplen;
+    }
+
+    /**
+     * Sets the sampling of the packets, deterministic for a given seed. The
+     * mapped reader skips the records that are not sampled before decoding
+     * them; the reservoir sampling is only available with the mapped reader
+     * on capture files. The fraction of the packets kept is recorded in the
+     * samplingRate attribute.
+     * 
+     * @param sampling the sampling.
+     */
+    public void setSampling(SelectedTag sampling) {
+        if (sampling.getTags() == TAGS_SAMPLING) {
+            this.sampling = sampling.getSelectedTag().getID();
+        }
+    }
+
+    /**
+     * Sets the interval of the systematic sampling.
+     * 
+     * @param samplingInterval the interval N (1 packet in N).
+     */
+    public void setSamplingInterval(int samplingInterval) {
+        this.samplingInterval = samplingInterval;
+    }
+
+    /**
+     * Sets the size of the reservoir sample.
+     * 
+     * @param samplingSize the size K of the sample of each capture file.
+     */
+    public void setSamplingSize(int samplingSize) {
+        this.samplingSize = samplingSize;
+    }
+
+    /**
+     * Sets the column cache mode. The decoded packets of a pcap file are
+     * written to a columnar file next to it, named after a fingerprint of the
+     * file content, of the decoder version and of the sampling, snap length
+     * and filter settings; the later generations over the same content map the
+     * decoded columns instead of parsing the packets, whatever their max
+     * number of packets, timestamp format, timer precision or encoding. Only
+     * the packet format is cached, the live captures are not.
+     * 
+     * @param columnCache true to cache the decoded packets.
+     */
+    public void setColumnCache(boolean columnCache) {
+        this.columnCache = columnCache;
+    }
+
+    /**
+     * Sets the sink file. The captures are then decoded as in streaming mode
+     * and the instances are written to the file by a writer thread fed through
+     * a bounded queue, so decoding and writing overlap and the memory used
+     * does not grow with the captures; the generated dataset is empty. The
+     * nominal encoding is not available.
+     * 
+     * @param sink the sink file, empty to build the dataset.
+     */
+    public void setSink(String sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Sets the format of the sink file.
+     * 
+     * @param sinkFormat the sink format.
+     */
+    public void setSinkFormat(SelectedTag sinkFormat) {
+        if (sinkFormat.getTags() == TAGS_SINK_FORMAT) {
+            this.sinkFormat = sinkFormat.getSelectedTag().getID();
+        }
+    }
+
+    /**
+     * Sets the sink compression mode.
+     * 
+     * @param sinkCompress true to compress the sink file with gzip.
+     */
+    public void setSinkCompress(boolean sinkCompress) {
+        this.sinkCompress = sinkCompress;
+    }
+
+    /**
+     * Opens a pcap file with the selected reader.
+     * 
+     * @param pcapFile the pcap file
+     * @param sampler  the sampler of the packets, or null to read all the
+     *                 packets
+     * @return the packet source
+     * @throws IOException if the pcap file could not be opened
+     */
+    private PacketSource openPacketSource(String pcapFile, PacketSampler sampler) throws IOException {
+        if (pcapReader == READER_LIBPCAP) {
+            PacketSource source = new PcapHandleSource(pcapFile, getCaptureFilter(), getSnaplen());
+            return sampler != null ? new SampledPacketSource(source, sampler) : source;
+        }
+        return new MappedPcapSource(pcapFile, ForkJoinPool.commonPool(), httpFeatures(), sampler, getSnaplen());
+    }
+
+    /**
+     * Opens the packets of a capture: the stream of a live capture, or the
+     * pcap file. The packets are sampled, and the sampling rate is recorded in
+     * the capture.
+     * 
+     * @param capture the capture
+     * @return the packet source
+     * @throws IOException if the pcap file could not be opened
+     */
+    private PacketSource openCaptureSource(Capture capture) throws IOException {
+        PacketSampler sampler = newSampler();
+        PacketSource source;
+        if (capture.getLiveSource() != null) {
+            source = capture.getLiveSource();
+            if (sampler != null) {
+                source = new SampledPacketSource(source, sampler);
+            }
+        } else {
+            source = openPacketSource(capture.getPcapFile(), sampler);
+        }
+        if (sampler != null) {
+            capture.setSamplingRate(sampler.getRate());
+        }
+        return source;
+    }
+
+    /**
+     * Creates the sampler of the packets of a capture, seeded with the seed of
+     * the generator.
+     * 
+     * @return the sampler, or null if the packets are not sampled
+     */
+    private PacketSampler newSampler() {
+        if (sampling == SAMPLING_SYSTEMATIC) {
+            return PacketSampler.systematic(getSamplingInterval(), getSeed());
+        }
+        if (sampling == SAMPLING_RESERVOIR) {
+            return PacketSampler.reservoir(getSamplingSize(), getSeed());
+        }
+        return null;
+    }
+
+    /**
+     * Gets the options of tshark for the capture filter and the snap length.
+     * 
+     * @return the options, each one preceded by a space
+     */
+    private String captureOptions() {
+        StringBuilder options = new StringBuilder();
+        if (getSnaplen() > 0) {
+            options.append(" -s ").append(getSnaplen());
+        }
+        if (getCaptureFilter().length() != 0) {
+            options.append(" -f '").append(getCaptureFilter().replace("'", "'\\''")).append("'");
+        }
+        return options.toString();
+    }
+
+    /**
+     * Creates the scheduler of the attacks run during the capture.
+     * 
+     * @return the attack scheduler.
+     */
+    protected AttackScheduler createAttackScheduler() {
+        return new AttackScheduler(createAttacks(), createBackgroundTraffic(), getAttackDelay() * 1000L,
+                getAttackPhaseDuration() * 1000L);
+    }
+
+    /**
+     * Creates the benign background traffic run during the capture.
+     * 
+     * @return the background traffic, or null if disabled.
+     */
+    protected BackgroundTraffic createBackgroundTraffic() {
+        if (getBackgroundRate() <= 0) {
+            return null;
+        }
+        BackgroundTraffic traffic = new BackgroundTraffic(new RateProfile(backgroundProfile, getBackgroundRate(),
+                getBackgroundPeriod() * 1000000000L), getBackgroundConnections(), getBackgroundThreads());
+        double[] mix = BackgroundTraffic.parseMix(getBackgroundMix());
+        traffic.setMix(mix[0], mix[1], mix[2]);
+        traffic.setHttpPort(getAttackPort());
+        traffic.setSeed(getSeed());
+        return traffic;
+    }
+
+    /**
+     * Gets the ground truth of the capture being decoded.
+     * 
+     * @return the attack phases of the capture (no phase before the first
+     *         capture).
+     */
+    public AttackTimeline getAttackTimeline() {
+        return session != null && session.current != null ? session.current.getTimeline() : new AttackTimeline();
+    }
+
+    /**
+     * Creates the attacks run during the capture.
+     * 
+     * @return the attacks.
+     */
+    protected List<Attack> createAttacks() {
+        List<Attack> result = new ArrayList<Attack>();
+        for (String name : Attacks.parse(getAttacks())) {
+            result.add(Attacks.create(name, getAttackRate(), getAttackThreads(), getAttackConnections(),
+                    getAttackPort()));
+        }
+        return result;
+    }
+
+    /**
+     * Initializes the format for the dataset produced. Must be called before the
+     * generateExample or generateExamples methods are used.
+     *
+     * Basicaly Re-initializes the random number generator with the given seed. But
+     * NOT IN OUR USECASE, we don't use random seed because or datagenration is
+     * contexctual and not unitary and reproduceable
+     * 
+     * @return the format for the dataset
+     * @throws Exception if the generating of the format failed
+     * @see #getSeed()
+     */
+    @Override
+    public Instances defineDataFormat() throws Exception {
+        // Set up the attributes
+        ArrayList<Attribute> atts = new ArrayList<Attribute>();
+        if (session != null) {
+            session.close();
+        }
+        session = new CaptureSession();
+        String[] stringAttributes = DATASET_ATTRIBUTES_STRINGS;
+        String[] numericAttributes = DATASET_ATTRIBUTES_NUMERICS;
+        if (format == FORMAT_FLOW) {
+            stringAttributes = DATASET_FLOW_ATTRIBUTES_STRINGS;
+            numericAttributes = DATASET_FLOW_ATTRIBUTES_NUMERICS;
+        } else if (format == FORMAT_WINDOW) {
+            stringAttributes = DATASET_WINDOW_ATTRIBUTES_STRINGS;
+            numericAttributes = DATASET_WINDOW_ATTRIBUTES_NUMERICS;
+        }
+
+        if (encoding == ENCODING_NOMINAL && getStreaming()) {
+            throw new Exception("The nominal encoding is only available in batch mode.");
+        }
+        if (encoding == ENCODING_NOMINAL && getSink().length() != 0) {
+            throw new Exception("The nominal encoding is not available with a sink file.");
+        }
+        boolean replayed = getReplay().length() != 0;
+        if (sampling == SAMPLING_RESERVOIR && (pcapReader == READER_LIBPCAP || (getLive() && !replayed))) {
+            throw new Exception("The reservoir sampling is only available with the mapped reader on pcap files.");
+        }
+        if (getCaptureFilter().length() != 0 && replayed && pcapReader != READER_LIBPCAP) {
+            throw new Exception("The capture filter of the replayed files needs the libpcap reader.");
+        }
+        if (captureOptions().length() != 0 && !replayed && !getLive()
+                && Arrays.asList(PAYLOAD_WITHOUT_CAPTURE_OPTIONS).contains(getDockerImage())) {
+            throw new Exception("The payload of the image " + getDockerImage()
+                    + " has no capture filter nor snap length, use -live.");
+        }
+
+        // Define the String attributes (converted to nominals at the end of
+        // the generation), or their numeric encoding
+        for (String attribute : stringAttributes) {
+            if (encoding != ENCODING_NUMERIC) {
+                atts.add(new Attribute(attribute, (ArrayList<String>) null));
+                continue;
+            }
+            atts.add(new Attribute(attribute));
+            String bucket = bucketAttribute(attribute);
+            if (bucket != null) {
+                atts.add(new Attribute(bucket));
+            }
+        }
+
+        // Define the Numeric attributes
+        for (String attribute : numericAttributes) {
+            atts.add(new Attribute(attribute));
+        }
+
+        // Define the HTTP attributes
+        if (httpFeatures()) {
+            atts.add(new Attribute("httpMethod", Arrays.asList(HttpStream.METHODS)));
+            for (String attribute : DATASET_HTTP_ATTRIBUTES_NUMERICS) {
+                atts.add(new Attribute(attribute));
+            }
+        }
+
+        // Define the sampling rate attribute
+        if (sampling != SAMPLING_NONE) {
+            atts.add(new Attribute("samplingRate"));
+        }
+
+        // Define the timestamp attribute
+        atts.add(new Attribute("timestamp", getTimestampFormat()));
+
+        // Define the class attribute (ground truth label)
+        atts.add(new Attribute("class", AttackTimeline.getLabels()));
+
+        // The rows are assembled in the order of the attributes
+        session.attributes = atts.toArray(new Attribute[atts.size()]);
+
+        m_DatasetFormat = new Instances(getRelationNameToUse(), atts, 0);
+        m_DatasetFormat.setClassIndex(m_DatasetFormat.numAttributes() - 1);
+
+        // At most maxPackets examples are streamed per container
+        setNumExamplesAct((int) Math.min((long) getMaxPackets() * numCaptures(), Integer.MAX_VALUE));
+
+        return m_DatasetFormat;
+    }
+
+    /**
+     * Generates the next packet of the capture (streaming mode).
+     * 
+     * The first call starts the captures, then the packets are decoded lazily
+     * from the pcap files, one per call, the captures being streamed one after
+     * the other in input order (sorted replayed files, or container index).
+     * 
+     * @return the next packet, or null at the end of the captures
+     * @throws Exception if the example could not be generated
+     */
+    @Override
     public Instance generateExample() throws Exception {
+        // Check if the dataset format is defined
+        if (m_DatasetFormat == null) {
+            throw new Exception("Dataset format not defined.");
+        }
+        if (session.finished) {
+            return null;
+        }
+
+        // Start the captures on the first call
+        if (session.results == null) {
+            startCaptures(false);
+        }
+
+        while (true) {
+            // Open the pcap file of the next completed capture
+            if (session.source == null && !openNextCapture()) {
+                session.close();
+                session.finished = true;
+                return null;
+            }
+
+            Instance instance = format == FORMAT_PACKET ? generatePacketExample() : generateAggregateExample();
+            if (instance != null) {
+                return instance;
+            }
+            session.closeSource();
+        }
+    }
+
+    /**
+     * Stops the current streaming generation: the capture being streamed is
+     * closed and the captures still running are interrupted, the next calls
+     * to generateExample return null. To be called by the generating thread.
+     */
+    public void stopGeneration() {
+        if (session != null) {
+            session.close();
+            session.finished = true;
+        }
+    }
+
+    /**
+     * Opens the pcap file of the next completed capture (streaming mode).
+     * 
+     * @return false if all the captures were streamed
+     * @throws Exception if the capture failed
+     */
+    private boolean openNextCapture() throws Exception {
+        session.current = session.next();
+        if (session.current == null) {
+            return false;
+        }
+        session.source = openCaptureSource(session.current);
+        session.record = new PacketRecord();
+        session.streamed = 0;
+        if (format != FORMAT_PACKET) {
+            session.rows = new ArrayDeque<Object>();
+            session.aggregator = newAggregator(session.rows);
+        }
+        return true;
+    }
+
+    /**
+     * Generates the next packet of the current capture (streaming mode).
+     * 
+     * @return the next packet, or null at the end of the capture or once
+     *         maxPackets packets were generated
+     * @throws Exception if the example could not be generated
+     */
+    private Instance generatePacketExample() throws Exception {
+        if (session.streamed >= getMaxPackets() || !session.source.next(session.record)) {
+            return null;
+        }
+        session.streamed++;
+        long timestamp = session.source.getTimestamp();
+        session.record.label = session.current.label(session.record, timestamp);
+
+        return makeInstance(session.record, timestamp);
+    }
+
+    /**
+     * Generates the next completed flow or window of the current capture
+     * (streaming mode). The packets are decoded until a row is completed, the
+     * remaining rows are flushed at the end of the capture.
+     * 
+     * @return the next flow or window, or null at the end of the capture
+     * @throws Exception if the example could not be generated
+     */
+    private Instance generateAggregateExample() throws Exception {
+        while (session.rows.isEmpty()) {
+            if (session.streamed >= getMaxPackets() || !session.source.next(session.record)) {
+                session.aggregator.flush();
+                if (session.rows.isEmpty()) {
+                    return null;
+                }
+                break;
+            }
+            session.streamed++;
+            long timestamp = session.source.getTimestamp();
+            session.record.label = session.current.label(session.record, timestamp);
+            session.aggregator.add(session.record, timestamp);
+        }
+
+        return makeAggregateInstance(session.rows.poll());
+    }
+
+    /**
+     * Gets the number of captures: the number of replayed files, or the number
+     * of containers.
+     * 
+     * @return the number of captures
+     * @throws IOException if a replayed path does not exist
+     */
+    private int numCaptures() throws IOException {
+        if (getReplay().length() != 0) {
+            return PcapFiles.list(getReplay()).size();
+        }
+        return Math.max(getContainers(), 1);
+    }
+
+    /**
+     * Starts the captures of the containers (or the replayed files) on the
+     * workers. The attacks of each container are created here, the captures
+     * run concurrently. In batch mode the workers also decode the pcap files;
+     * in live mode a capture is returned as soon as it starts, and decoded
+     * while it runs.
+     * 
+     * @param decode true to decode the pcap files on the workers
+     * @throws IOException if a replayed path does not exist
+     */
+    private void startCaptures(final boolean decode) throws IOException {
+        final List<String> replayFiles = getReplay().length() != 0 ? PcapFiles.list(getReplay()) : null;
+        final int numContainers = replayFiles != null ? replayFiles.size() : Math.max(getContainers(), 1);
+        session.workers = Executors.newFixedThreadPool(Math.max(Math.min(getWorkers(), numContainers), 1),
+                new ThreadFactory() {
+                    private int count;
+
+                    @Override
+                    public synchronized Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "Pcap-capture-" + (count++));
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        session.results = new ArrayList<Future<Capture>>(numContainers);
+        session.returned = 0;
+        if (replayFiles != null) {
+            for (final String pcapFile : replayFiles) {
+                session.results.add(session.workers.submit(new Callable<Capture>() {
+                    @Override
+                    public Capture call() throws Exception {
+                        Capture capture = replayCapture(pcapFile);
+                        if (decode) {
+                            decodeCapture(capture);
+                        }
+                        return capture;
+                    }
+                }));
+            }
+            return;
+        }
+        for (int i = 0; i < numContainers; i++) {
+            final String dockerImage = getDockerImage();
+            final int duration = getDuration();
+            final AttackScheduler scheduler = createAttackScheduler();
+            final boolean reuse = getContainerPool();
+            final String containerName = numContainers == 1 ? CONTAINER_NAME : CONTAINER_NAME + "-" + i;
+            final String networkName = numContainers == 1 ? null : NETWORK_NAME + "-" + i;
+            final String pcapFile = numContainers == 1 ? getPcapFullPath() : indexedPath(getPcapFullPath(), i);
+            final boolean live = getLive();
+            final String captureOptions = captureOptions();
+            session.results.add(session.workers.submit(new Callable<Capture>() {
+                @Override
+                public Capture call() throws Exception {
+                    Capture capture = live
+                            ? dockerLive(dockerImage, duration, containerName, networkName, reuse, scheduler,
+                                    captureOptions)
+                            : dockerMain(dockerImage, duration, pcapFile, containerName, networkName, reuse,
+                                    scheduler, captureOptions);
+                    if (decode) {
+                        decodeCapture(capture);
+                    }
+                    return capture;
+                }
+            }));
+        }
+    }
+
+    /**
+     * Opens a replayed pcap file. No attack ran: all the packets are benign,
+     * and the start time is the timestamp of the first packet.
+     * 
+     * @param pcapFile the pcap file
+     * @return the capture
+     * @throws IOException if the pcap file could not be read
+     */
+    private Capture replayCapture(String pcapFile) throws IOException {
+        PacketSource source = openPacketSource(pcapFile, null);
+        try {
+            long startTime = source.next(new PacketRecord()) ? source.getTimestamp() / 1000000L : 0L;
+            return new Capture(pcapFile, startTime, new AttackTimeline());
+        } finally {
+            source.close();
+        }
+    }
+
+    /**
+     * Decodes the pcap file of a capture to packets, or to flows or windows.
+     * 
+     * @param capture the capture
+     * @throws IOException if the pcap file could not be read
+     */
+    private void decodeCapture(Capture capture) throws IOException {
+        if (format != FORMAT_PACKET) {
+            capture.setRows(readAggregates(capture));
+        } else {
+            capture.setPackets(readPcap(capture));
+        }
+    }
+
+    /**
+     * Appends the index of a container to a pcap file name, before the
+     * extension.
+     * 
+     * @param path  the pcap file path
+     * @param index the index of the container
+     * @return the path of the pcap file of the container
+     */
+    private static String indexedPath(String path, int index) {
+        int slash = path.lastIndexOf('/');
+        int dot = path.lastIndexOf('.');
+        if (dot <= slash) {
+            return path + "-" + index;
+        }
+        return path.substring(0, dot) + "-" + index + path.substring(dot);
+    }
+
+    /**
+     * Creates the aggregator of the flow or window format. The completed flows
+     * or windows are appended to the given queue.
+     * 
+     * @param rows the queue of the completed rows.
+     * @return the aggregator.
+     */
+    private PacketAggregator newAggregator(final ArrayDeque<Object> rows) {
+        if (format == FORMAT_WINDOW) {
+            return new WindowAggregator(windowType == WINDOW_SLIDING, getWindowSize() * 1000000L,
+                    new WindowAggregator.WindowListener() {
+                        @Override
+                        public void windowCompleted(WindowStatistics statistics) {
+                            rows.add(statistics);
+                        }
+                    });
+        }
+        return newFlowTable(new FlowTable.FlowListener() {
+            @Override
+            public void flowCompleted(Flow flow) {
+                rows.add(flow);
+            }
+        });
+    }
+
+    /**
+     * Creates an instance from a completed flow or window.
+     * 
+     * @param row the completed flow or window.
+     * @return the instance.
+     */
+    private Instance makeAggregateInstance(Object row) {
+        if (row instanceof WindowStatistics) {
+            return makeWindowInstance((WindowStatistics) row);
+        }
+        return makeFlowInstance((Flow) row);
+    }
+
+    /**
+     * Creates a flow table with the flow options of the generator.
+     * 
+     * @param listener the listener of the completed flows.
+     * @return the flow table.
+     */
+    private FlowTable newFlowTable(FlowTable.FlowListener listener) {
+        return new FlowTable(getFlowIdleTimeout() * 1000000000L, getFlowActiveTimeout() * 1000000000L, getMaxFlows(),
+                httpFeatures() ? new HttpTracker(getMaxFlows()) : null, listener);
+    }
+
+    /**
+     * Checks if the rows have HTTP features.
+     * 
+     * @return true for the flow format with the HTTP features mode.
+     */
+    private boolean httpFeatures() {
+        return format == FORMAT_FLOW && getHttp();
+    }
+
+    /**
+     * Creates an instance from a completed flow. The durations and
+     * inter-arrival times are in milliseconds.
+     * 
+     * @param flow the completed flow.
+     * @return the instance.
+     */
+    private Instance makeFlowInstance(Flow flow) {
+        double[] values = new double[session.attributes.length];
+        int j = 0;
+
+        // String attributes
+        j = putAddress(values, j, flow.getSrcAddrHigh(), flow.getSrcAddrLow());
+        j = putAddress(values, j, flow.getDstAddrHigh(), flow.getDstAddrLow());
+        j = putPort(values, j, flow.getSrcPort());
+        j = putPort(values, j, flow.getDstPort());
+
+        // Numeric attributes
+        values[j++] = numericValue(flow.getProtocol());
+        values[j++] = flow.getDuration() / 1e6;
+        values[j++] = flow.getFwdPackets();
+        values[j++] = flow.getBwdPackets();
+        values[j++] = flow.getFwdBytes();
+        values[j++] = flow.getBwdBytes();
+        values[j++] = flow.getIatMean() / 1e6;
+        values[j++] = flow.getIatStd() / 1e6;
+        values[j++] = flow.getIatMin() / 1e6;
+        values[j++] = flow.getIatMax() / 1e6;
+        values[j++] = flow.getFinCount();
+        values[j++] = flow.getSynCount();
+        values[j++] = flow.getRstCount();
+        values[j++] = flow.getPshCount();
+        values[j++] = flow.getAckCount();
+        values[j++] = flow.getUrgCount();
+        values[j++] = flow.getBytesPerSecond();
+        values[j++] = flow.getPacketsPerSecond();
+
+        // HTTP attributes
+        if (httpFeatures()) {
+            int requests = flow.getHttpRequests();
+            values[j++] = numericValue(flow.getHttpMethod());
+            values[j++] = requests;
+            values[j++] = requests > 0 ? flow.getHttpUriLength() : Utils.missingValue();
+            values[j++] = requests > 0 ? flow.getHttpHeaders() : Utils.missingValue();
+            values[j++] = numericValue(flow.getHttpStatus());
+            values[j++] = flow.getHttpIncomplete();
+            values[j++] = flow.getHttpClientRate();
+        }
+        j = putSamplingRate(values, j);
+
+        // Timestamp attribute (start of the flow, epoch milliseconds)
+        values[j++] = flow.getFirstSeen() / 1000000L;
+
+        // Class attribute
+        values[j] = flow.getLabel();
+
+        return newInstance(values);
+    }
+
+    /**
+     * Creates an instance from the statistics of a destination over a time
+     * window. The timestamp is the start of the window.
+     * 
+     * @param statistics the window statistics.
+     * @return the instance.
+     */
+    private Instance makeWindowInstance(WindowStatistics statistics) {
+        double[] values = new double[session.attributes.length];
+        int j = 0;
+
+        // String attributes
+        j = putAddress(values, j, statistics.getDstAddrHigh(), statistics.getDstAddrLow());
+
+        // Numeric attributes
+        values[j++] = statistics.getPackets();
+        values[j++] = statistics.getBytes();
+        values[j++] = statistics.getPacketsPerSecond();
+        values[j++] = statistics.getBytesPerSecond();
+        values[j++] = statistics.getDistinctSrcIps();
+        values[j++] = statistics.getSrcIpEntropy();
+        values[j++] = statistics.getDistinctDstPorts();
+        values[j++] = statistics.getDstPortEntropy();
+        j = putSamplingRate(values, j);
+
+        // Timestamp attribute (start of the window, epoch milliseconds)
+        values[j++] = statistics.getWindowStart() / 1000000L;
+
+        // Class attribute
+        values[j] = statistics.getLabel();
+
+        return newInstance(values);
+    }
+
+    /**
+     * Creates an instance from a decoded packet. The string attributes only
+     * keep the value of this instance.
+     * 
+     * @param record    the decoded packet.
+     * @param timestamp the timestamp of the packet (nanoseconds since epoch).
+     * @return the instance.
+     */
+    private Instance makeInstance(PacketRecord record, long timestamp) {
+        double[] values = new double[session.attributes.length];
+        int j = 0;
+
+        // String attributes
+        j = putAddress(values, j, record.srcAddrHigh, record.srcAddrLow);
+        j = putAddress(values, j, record.dstAddrHigh, record.dstAddrLow);
+        j = putPort(values, j, record.srcPort);
+        j = putPort(values, j, record.dstPort);
+        j = putHex(values, j, record.etherType);
+        j = putHex(values, j, record.headerChecksum);
+
+        // Numeric attributes
+        values[j++] = numericValue(record.protocol);
+        values[j++] = numericValue(record.version);
+        values[j++] = numericValue(record.ihl);
+        values[j++] = numericValue(record.length);
+        values[j++] = numericValue(record.identification);
+        values[j++] = numericValue(record.fragmentOffset);
+        values[j++] = numericValue(record.ttl);
+        values[j++] = timerValue(timestamp);
+        j = putSamplingRate(values, j);
+
+        // Timestamp attribute (epoch milliseconds)
+        values[j++] = timestamp / 1000000L;
+
+        // Class attribute
+        values[j] = record.label;
+
+        return newInstance(values);
+    }
+
+    /**
+     * Creates an instance of the dataset format from its values.
+     * 
+     * @param values the values, in the order of the attributes.
+     * @return the instance.
+     */
+    private Instance newInstance(double[] values) {
+        Instance instance = new DenseInstance(1.0, values);
+        instance.setDataset(m_DatasetFormat);
+        return instance;
+    }
+
+    /**
+     * Gets the value of a numeric attribute.
+     * 
+     * @param value the value, or -1 for a missing value.
+     * @return the value, or the missing value.
+     */
+    private static double numericValue(double value) {
+        return value == PacketRecord.ABSENT ? Utils.missingValue() : value;
+    }
+
+    /**
+     * Gets the index of the value of a string attribute. In streaming mode (and
+     * with a sink file) the attribute only keeps the value of the current
+     * instance.
+     * 
+     * @param j     the index of the attribute.
+     * @param value the value, or null for a missing value.
+     * @return the index of the value, or the missing value.
+     */
+    private double stringValue(int j, String value) {
+        if (value == null) {
+            return Utils.missingValue();
+        }
+        Attribute attObj = session.attributes[j];
+        if (getStreaming() || getSink().length() != 0) {
+            attObj.setStringValue(value);
+            return 0;
+        }
+        return attObj.addStringValue(value);
+    }
+
+    /**
+     * Gets the time of a packet since the start of the current capture, in the
+     * timer precision.
+     * 
+     * @param timestamp the capture timestamp (nanoseconds since epoch).
+     * @return the time since the start of the capture.
+     */
+    private double timerValue(long timestamp) {
+        long unit = timerPrecision == PRECISION_NANOS ? 1L : timerPrecision == PRECISION_MICROS ? 1000L : 1000000L;
+        return timestamp / unit - session.current.getStartTime() * (1000000L / unit);
+    }
+
+    /**
+     * Puts the sampling rate of the current capture, if the packets are
+     * sampled.
+     * 
+     * @param values the values of the instance.
+     * @param j      the index of the attribute.
+     * @return the index of the next attribute.
+     */
+    private int putSamplingRate(double[] values, int j) {
+        if (sampling == SAMPLING_NONE) {
+            return j;
+        }
+        values[j] = session.current.getSamplingRate();
+        return j + 1;
+    }
+
+    /**
+     * Puts the value of an address attribute, and of its subnet in the numeric
+     * encoding.
+     * 
+     * @param values the values of the instance.
+     * @param j      the index of the attribute.
+     * @param high   the high 64 bits of the address.
+     * @param low    the low 64 bits of the address.
+     * @return the index of the next attribute.
+     */
+    private int putAddress(double[] values, int j, long high, long low) {
+        if (encoding != ENCODING_NUMERIC) {
+            values[j] = stringValue(j, PacketDecoder.formatAddress(high, low));
+            return j + 1;
+        }
+        values[j] = numericValue(addressValue(high, low, false));
+        values[j + 1] = numericValue(addressValue(high, low, true));
+        return j + 2;
+    }
+
+    /**
+     * Puts the value of a port attribute, and of its class in the numeric
+     * encoding.
+     * 
+     * @param values the values of the instance.
+     * @param j      the index of the attribute.
+     * @param port   the port, or -1 for a missing value.
+     * @return the index of the next attribute.
+     */
+    private int putPort(double[] values, int j, int port) {
+        if (encoding != ENCODING_NUMERIC) {
+            values[j] = stringValue(j, port == PacketRecord.ABSENT ? null : "" + port);
+            return j + 1;
+        }
+        values[j] = numericValue(port);
+        values[j + 1] = numericValue(portClass(port));
+        return j + 2;
+    }
+
+    /**
+     * Puts the value of a 16-bit field (ether type, checksum), formatted in
+     * hexadecimal in the string encodings.
+     * 
+     * @param values the values of the instance.
+     * @param j      the index of the attribute.
+     * @param value  the value, or -1 for a missing value.
+     * @return the index of the next attribute.
+     */
+    private int putHex(double[] values, int j, int value) {
+        if (encoding != ENCODING_NUMERIC) {
+            values[j] = stringValue(j, value == PacketRecord.ABSENT ? null : PacketDecoder.formatHexShort(value));
+        } else {
+            values[j] = numericValue(value);
+        }
+        return j + 1;
+    }
+
+    /**
+     * Gets the name of the bucket attribute of an encoded attribute in the
+     * numeric encoding: the subnet of an address, the class of a port.
+     * 
+     * @param attKey the name of the attribute.
+     * @return the name of the bucket attribute, or null if none.
+     */
+    private static String bucketAttribute(String attKey) {
+        if (attKey.endsWith("Ip")) {
+            return attKey.substring(0, attKey.length() - 2) + "Subnet";
+        } else if (attKey.endsWith("Port")) {
+            return attKey + "Class";
+        }
         return null;
     }
 
+    /**
+     * Encodes an address as a number.
+     * 
+     * @param high   the high 64 bits of the address.
+     * @param low    the low 64 bits of the address.
+     * @param subnet true to encode the /24 subnet of the address.
+     * @return the IPv4 address (or subnet) as a 32-bit integer, -1 for IPv6.
+     */
+    private static double addressValue(long high, long low, boolean subnet) {
+        long address = PacketDecoder.ipv4Address(high, low);
+        if (address < 0) {
+            return PacketRecord.ABSENT;
+        }
+        return subnet ? address & 0xffffff00L : address;
+    }
+
+    /**
+     * Gets the class of a port: 0 for the well-known ports, 1 for the
+     * registered ports, 2 for the dynamic ports.
+     * 
+     * @param port the port, or -1 for a missing port.
+     * @return the class, or -1 for a missing port.
+     */
+    private static double portClass(double port) {
+        if (port == PacketRecord.ABSENT) {
+            return PacketRecord.ABSENT;
+        }
+        return port < 1024 ? 0 : port < 49152 ? 1 : 2;
+    }
+
+    /**
+     * Gets the numeric encoding of a row of a dictionary column.
+     * 
+     * @param column the column.
+     * @param i      the row index.
+     * @param kind   'a' for an address, 's' for its subnet, 'p' for a port
+     *               class, any other for the raw value.
+     * @return the encoded value, or -1 for a missing value.
+     */
+    private static double encodedValue(DictionaryColumn column, int i, char kind) {
+        int code = column.getCode(i);
+        if (code == DictionaryColumn.MISSING) {
+            return PacketRecord.ABSENT;
+        }
+        long high = column.getKeyHigh(code);
+        long low = column.getKeyLow(code);
+        switch (kind) {
+        case 'a':
+            return addressValue(high, low, false);
+        case 's':
+            return addressValue(high, low, true);
+        case 'p':
+            return portClass(low);
+        default:
+            return low;
+        }
+    }
+
+    /**
+     * Converts the string attributes of a dataset to nominal attributes. Each
+     * attribute keeps its maxNominalValues - 1 most frequent values, the
+     * others are merged into 'other'.
+     * 
+     * @param data the dataset.
+     * @return the converted dataset.
+     */
+    private Instances toNominal(Instances data) {
+        int numAttributes = data.numAttributes();
+        int[][] maps = new int[numAttributes][];
+        ArrayList<Attribute> atts = new ArrayList<Attribute>(numAttributes);
+        for (int j = 0; j < numAttributes; j++) {
+            final Attribute attribute = data.attribute(j);
+            if (!attribute.isString()) {
+                atts.add((Attribute) attribute.copy());
+                continue;
+            }
+
+            // Count the values
+            final int[] counts = new int[attribute.numValues()];
+            for (int i = 0; i < data.numInstances(); i++) {
+                if (!data.instance(i).isMissing(j)) {
+                    counts[(int) data.instance(i).value(j)]++;
+                }
+            }
+            Integer[] order = new Integer[counts.length];
+            int distinct = 0;
+            for (int v = 0; v < counts.length; v++) {
+                if (counts[v] > 0) {
+                    order[distinct++] = v;
+                }
+            }
+            Arrays.sort(order, 0, distinct, new java.util.Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    // Ties in order of first appearance
+                    return counts[b] != counts[a] ? counts[b] - counts[a] : a - b;
+                }
+            });
+
+            // Keep the most frequent values
+            int kept = distinct <= getMaxNominalValues() ? distinct : Math.max(getMaxNominalValues() - 1, 0);
+            ArrayList<String> values = new ArrayList<String>(kept + 1);
+            maps[j] = new int[counts.length];
+            Arrays.fill(maps[j], kept);
+            for (int v = 0; v < kept; v++) {
+                maps[j][order[v]] = v;
+                values.add(attribute.value(order[v]));
+            }
+            if (kept < distinct) {
+                values.add("other");
+            }
+            atts.add(new Attribute(attribute.name(), values));
+        }
+
+        Instances result = new Instances(data.relationName(), atts, data.numInstances());
+        result.setClassIndex(data.classIndex());
+        for (int i = 0; i < data.numInstances(); i++) {
+            Instance instance = data.instance(i);
+            double[] values = instance.toDoubleArray();
+            for (int j = 0; j < numAttributes; j++) {
+                if (maps[j] != null && !Utils.isMissingValue(values[j])) {
+                    values[j] = maps[j][(int) values[j]];
+                }
+            }
+            result.add(new DenseInstance(instance.weight(), values));
+        }
+        return result;
+    }
+
     /**
      * Generates a dataset of network traffic.
      * 
@@ -516,126 +3304,188 @@ public class Pcap extends ClassificationGenerator {
             throw new Exception("Dataset format not defined.");
         }
 
-        // Start the docker container
-        dockerMain(getDockerImage(), getDuration(), getPcapFullPath());
+        // Write the instances to the sink file as they are decoded
+        if (getSink().length() != 0) {
+            writeSink();
+            return new Instances(m_DatasetFormat, 0);
+        }
+
+        // Start the docker containers (or replay the pcap files), wait for
+        // the decoded captures to size the dataset
+        List<Capture> captures = new ArrayList<Capture>();
+        int numRows = 0;
+        startCaptures(true);
+        try {
+            while ((session.current = session.next()) != null) {
+                captures.add(session.current);
+                if (format != FORMAT_PACKET) {
+                    numRows += session.current.getRows().size();
+                } else {
+                    numRows += Math.min(getMaxPackets(), session.current.getPackets().size());
+                }
+            }
+        } finally {
+            session.close();
+        }
 
-        // Controle maxPackets < len(srcIPs)
-        if (getMaxPackets() > srcIps.length) {
-            setMaxPackets(srcIps.length);
+        // Merge the captures in input order
+        Instances result = new Instances(m_DatasetFormat, numRows);
+        for (Capture capture : captures) {
+            session.current = capture;
+            if (format != FORMAT_PACKET) {
+                // Flows or windows
+                for (Object row : capture.getRows()) {
+                    result.add(makeAggregateInstance(row));
+                }
+            } else {
+                // Packets
+                addPackets(result, capture.getPackets());
+            }
+            capture.setRows(null);
+            capture.setPackets(null);
         }
 
-        Instances result = new Instances(m_DatasetFormat, 0);
-        for (int i = 0; i < getMaxPackets(); i++) {
-            // Equivalent to the generateExample method
+        // Convert the string attributes to the nominal encoding
+        if (encoding == ENCODING_NOMINAL) {
+            result = toNominal(result);
+            m_DatasetFormat = new Instances(result, 0);
+        }
 
-            // Create a new instance with the same format as the dataset
-            Instance instance = new DenseInstance(m_DatasetFormat.numAttributes());
-            instance.setDataset(getDatasetFormat());
+        return result;
+    }
 
-            // Set the attributes values
-            for (Map.Entry<String, Attribute> entry : datasetAttributes.entrySet()) {
-                String attKey = entry.getKey();
-                Attribute attObj = (Attribute) entry.getValue();
+    /**
+     * Appends the decoded packets to a dataset. The rows are assembled column
+     * by column from the packet table, in the order of the attributes; the
+     * string values are added to their attribute once per capture.
+     * 
+     * @param result  the dataset
+     * @param packets the decoded packets
+     */
+    private void addPackets(Instances result, PacketTable packets) {
+        // Controle maxPackets < number of packets
+        int numPackets = Math.min(getMaxPackets(), packets.size());
+        int numAttributes = session.attributes.length;
+
+        // The indices of the string values, by dictionary code
+        DictionaryColumn[] columns = { packets.getSrcIps(), packets.getDstIps(), packets.getSrcPorts(),
+                packets.getDstPorts(), packets.getTypes(), packets.getHeaderChecksums() };
+        int[][] indices = new int[columns.length][];
+        for (int k = 0; k < columns.length; k++) {
+            indices[k] = new int[columns[k].getDictionary().size()];
+            Arrays.fill(indices[k], -1);
+        }
 
-                // Check the type of the attribute
-                if (attObj.type() == Attribute.NUMERIC) {
-                    // Set the value of the numeric attribute
-                    double attsValue = setNumericAttributeValue(i, attKey);
-                    instance.setValue(attObj, attsValue);
-                    continue;
-                } else if (attObj.type() == Attribute.STRING) {
-                    // Set the value of the string attribute
-                    String attsValue = setStringAttributeValue(i, attKey);
-
-                    // Check string value already exist
-                    if (attObj.indexOfValue(attsValue) == -1) {
-                        // Add the string value
-                        int addRes = attObj.addStringValue(attsValue);
-                        if (addRes == -1) {
-                            throw new Exception("Error adding string value '" + attsValue + "' to attribute '" + attKey
-                                    + "' (wrong type).");
-                        }
+        for (int i = 0; i < numPackets; i++) {
+            double[] values = new double[numAttributes];
+            int j = 0;
+
+            // String attributes, or their numeric encoding
+            for (int k = 0; k < columns.length; k++) {
+                if (encoding == ENCODING_NUMERIC) {
+                    if (k < 2) {
+                        values[j++] = numericValue(encodedValue(columns[k], i, 'a'));
+                        values[j++] = numericValue(encodedValue(columns[k], i, 's'));
+                    } else if (k < 4) {
+                        values[j++] = numericValue(encodedValue(columns[k], i, 'v'));
+                        values[j++] = numericValue(encodedValue(columns[k], i, 'p'));
+                    } else {
+                        values[j++] = numericValue(encodedValue(columns[k], i, 'v'));
                     }
-                    instance.setValue(attObj, attsValue);
                     continue;
-                } else if (attObj.type() == Attribute.DATE) {
-                    Date dateValue = new Date(timeStamps[i].getTime());
-                    SimpleDateFormat sdf = new SimpleDateFormat(getTimestampFormat());
-                    String attsValue = sdf.format(dateValue);
-                    double dd = attObj.parseDate(attsValue);
-                    instance.setValue(attObj, dd);
+                }
+                int code = columns[k].getCode(i);
+                if (code == DictionaryColumn.MISSING) {
+                    values[j++] = Utils.missingValue();
                     continue;
-                } else {
-                    throw new Exception("Error setting attribute '" + attKey + "' (wrong type).");
                 }
+                if (indices[k][code] < 0) {
+                    indices[k][code] = session.attributes[j].addStringValue(columns[k].getDictionary().get(code));
+                }
+                values[j++] = indices[k][code];
             }
 
-            result.add(instance);
-        }
+            // Numeric attributes
+            values[j++] = numericValue(packets.getProtocols().get(i));
+            values[j++] = numericValue(packets.getVersions().get(i));
+            values[j++] = numericValue(packets.getIHLs().get(i));
+            values[j++] = numericValue(packets.getLengths().get(i));
+            values[j++] = numericValue(packets.getIdentifications().get(i));
+            values[j++] = numericValue(packets.getFragmentOffsets().get(i));
+            values[j++] = numericValue(packets.getTTLs().get(i));
+            values[j++] = timerValue(packets.getTimestamps().get(i));
+            j = putSamplingRate(values, j);
 
-        return result;
+            // Timestamp attribute (epoch milliseconds)
+            values[j++] = packets.getTimestamps().get(i) / 1000000L;
+
+            // Class attribute
+            values[j] = packets.getLabels().get(i);
+
+            result.add(new DenseInstance(1.0, values));
+        }
     }
 
     /**
-     * Sets the value of an attribute.
+     * Writes the instances to the sink file. The captures are decoded one
+     * instance at a time as in streaming mode, the rows are serialized by the
+     * writer thread of the sink.
      * 
-     * @param i      the index of the attribute.
-     * @param attKey the name of the attribute.
-     * @return the value of the attribute.
+     * @throws Exception if the instances could not be generated or written
      */
-    private int setNumericAttributeValue(int i, String attKey) {
-        // Switch on the attsString to set the attsvalue
-        int attsValue = -1;
-
-        // Set the value of the numeric attribute
-        if (attKey.equals("version")) {
-            attsValue = versions[i];
-        } else if (attKey.equals("IHL")) {
-            attsValue = IHLs[i];
-        } else if (attKey.equals("length")) {
-            attsValue = lengths[i];
-        } else if (attKey.equals("identification")) {
-            attsValue = identifications[i];
-        } else if (attKey.equals("fragmentOffset")) {
-            attsValue = fragmentOffsets[i];
-        } else if (attKey.equals("TTL")) {
-            attsValue = TTLs[i];
-        } else if (attKey.equals("protocol")) {
-            attsValue = protocols[i];
-        } else if (attKey.equals("timer")) {
-            attsValue = timer[i];
+    private void writeSink() throws Exception {
+        System.out.println("Write instances to: " + getSink());
+        FileOutputStream file = new FileOutputStream(getSink());
+        InstanceSink output;
+        try {
+            output = new InstanceSink(file, sinkFormat, getSinkCompress(), m_DatasetFormat,
+                    InstanceSink.DEFAULT_QUEUE_SIZE);
+        } catch (Exception e) {
+            file.close();
+            throw e;
         }
-
-        return attsValue;
+        try {
+            Instance instance;
+            while ((instance = generateExample()) != null) {
+                output.add(instance);
+            }
+        } finally {
+            output.close();
+        }
+        System.out.println("Wrote " + output.getCount() + " instances");
     }
 
     /**
-     * Sets the value of an attribute.
+     * Aggregates the packets of a pcap file into bidirectional flows or time
+     * windows. Only the active flows or the packets of the current windows are
+     * kept in memory while the file is read. Called by the workers.
      * 
-     * @param i      the index of the attribute.
-     * @param attKey the name of the attribute.
-     * @return the value of the attribute.
+     * @param capture the capture to decode
+     * @return the completed flows or windows
+     * @throws IOException if the pcap file could not be read
      */
-    private String setStringAttributeValue(int i, String attKey) {
-        // Switch on the attsString to set the attsvalue
-        String attsValue = "";
-
-        // Set the value of the string attribute
-        if (attKey.equals("srcIp")) {
-            attsValue = srcIps[i];
-        } else if (attKey.equals("dstIp")) {
-            attsValue = dstIps[i];
-        } else if (attKey.equals("srcPort")) {
-            attsValue = srcPorts[i];
-        } else if (attKey.equals("dstPort")) {
-            attsValue = dstPorts[i];
-        } else if (attKey.equals("type")) {
-            attsValue = types[i];
-        } else if (attKey.equals("headerChecksum")) {
-            attsValue = headerChecksums[i];
+    private List<Object> readAggregates(Capture capture) throws IOException {
+        String pcapFile = capture.getPcapFile();
+        System.out.println("Read " + getFormat().getSelectedTag().getIDStr() + "s from "
+                + (pcapFile != null ? "pcap file: " + pcapFile : "live capture"));
+        ArrayDeque<Object> rows = new ArrayDeque<Object>();
+        PacketAggregator aggregator = newAggregator(rows);
+
+        PacketSource source = openCaptureSource(capture);
+        try {
+            PacketRecord record = new PacketRecord();
+            int numPackets = 0;
+            while (numPackets < getMaxPackets() && source.next(record)) {
+                long timestamp = source.getTimestamp();
+                record.label = capture.label(record, timestamp);
+                aggregator.add(record, timestamp);
+                numPackets++;
+            }
+            aggregator.flush();
+        } finally {
+            source.close();
         }
-
-        return attsValue;
+        return new ArrayList<Object>(rows);
     }
 
     /**
@@ -658,15 +3508,19 @@ public class Pcap extends ClassificationGenerator {
      */
     @Override
     public String generateFinished() throws Exception {
-        return null;
+        return "";
     }
 
     /**
-     * I not understand what is this method for.
+     * Returns whether the packets are generated one at a time (streaming mode)
+     * or all at once. With a sink file the instances are written by
+     * generateExamples.
+     * 
+     * @return true if the streaming mode is enabled.
      */
     @Override
     public boolean getSingleModeFlag() throws Exception {
-        return false;
+        return getStreaming() && getSink().length() == 0;
     }
 
     /**
@@ -706,242 +3560,454 @@ public class Pcap extends ClassificationGenerator {
     /**
      * Parse network traffic from a pcap file.
      * 
-     * @param pcapFile the pcap file to parse
+     * The header fields are decoded straight from the raw bytes of the frames
+     * (see {@link PacketDecoder}) into a columnar packet table. The frames that
+     * are not IPv4 or IPv6 packets are skipped. At most maxPackets packets are
+     * decoded. Called by the workers.
+     * 
+     * @param capture the capture to decode
+     * @return the decoded packets
      */
-    private static void readPcap(String pcapFile) throws PcapNativeException, NotOpenException {
-        System.out.println("Read pcap file: " + pcapFile + "");
-        PcapHandle handle;
+    private PacketTable readPcap(final Capture capture) throws IOException {
+        String pcapFile = capture.getPcapFile();
+        ColumnCache cache = null;
+        if (pcapFile != null && getColumnCache()) {
+            cache = new ColumnCache(pcapFile, decodingSettings());
+            ColumnCache.Labeller labeller = null;
+            if (!capture.getTimeline().getPhases().isEmpty()) {
+                labeller = new ColumnCache.Labeller() {
+                    @Override
+                    public int label(PacketRecord record, long timestamp) {
+                        return capture.label(record, timestamp);
+                    }
+                };
+            }
+            PacketTable table = cache.read(getMaxPackets(), labeller);
+            if (table != null) {
+                System.out.println("Map decoded packets: " + cache.getFile());
+                if (sampling != SAMPLING_NONE) {
+                    capture.setSamplingRate(cache.getSamplingRate());
+                }
+                return table;
+            }
+        }
+
+        System.out.println("Read " + (pcapFile != null ? "pcap file: " + pcapFile : "live capture"));
+        PacketSource source = openCaptureSource(capture);
+        PacketTable table = new PacketTable();
+        boolean complete = false;
         try {
-            handle = Pcaps.openOffline(pcapFile, PcapHandle.TimestampPrecision.NANO);
-        } catch (PcapNativeException e) {
-            handle = Pcaps.openOffline(pcapFile);
+            PacketRecord record = new PacketRecord();
+            while (table.size() < getMaxPackets()) {
+                if (!source.next(record)) {
+                    complete = true;
+                    break;
+                }
+                long timestamp = source.getTimestamp();
+                record.label = capture.label(record, timestamp);
+                table.add(record, timestamp);
+            }
+            System.out.println("EOF");
+        } finally {
+            source.close();
         }
 
-        while (true) {
+        if (cache != null) {
             try {
-                // Read packet
-                Packet packet = handle.getNextPacketEx();
-                String packetString = packet.toString();
-                parsePacket(packetString);
-
-                // Set the packet timestamp
-                timeStamps = ArrayUtils.add(timeStamps, handle.getTimestamp());
-                // Update the timer
-                long timeDiffInMillis = handle.getTimestamp().getTime() - startTime.getTime();
-                timer = ArrayUtils.add(timer, (int) timeDiffInMillis);
-
-            } catch (TimeoutException e) {
-            } catch (EOFException e) {
-                System.out.println("EOF");
-                break;
+                cache.write(table, complete, capture.getSamplingRate());
+            } catch (IOException e) {
+                System.err.println("Could not cache the decoded packets in " + cache.getFile() + ": " + e);
             }
         }
-
-        handle.close();
+        return table;
     }
 
     /**
-     * Parse a packet from a pcap file.
+     * Gets the settings that change the packets decoded from a pcap file, part
+     * of the key of the column cache.
      * 
-     * @param packet the packet to parse
+     * @return the settings
      */
-    private static void parsePacket(String packet) {
-        // Parse the destination IP address
-        Matcher destAddrMatcher = DEST_ADDR_PATTERN.matcher(packet);
-        if (destAddrMatcher.find()) {
-            // DEBUG LOG
-            // System.out.println("Destination IP: " + destAddrMatcher.group(1));
-            dstIps = ArrayUtils.add(dstIps, destAddrMatcher.group(1));
-        }
-
-        // Parse the source IP address
-        Matcher srcAddrMatcher = SRC_ADDR_PATTERN.matcher(packet);
-        if (srcAddrMatcher.find()) {
-            // DEBUG LOG
-            System.out.println("Source IP: " + srcAddrMatcher.group(1));
-            srcIps = ArrayUtils.add(srcIps, srcAddrMatcher.group(1));
+    private String decodingSettings() {
+        StringBuilder settings = new StringBuilder();
+        settings.append("sampling=").append(getSampling().getSelectedTag().getIDStr());
+        if (sampling == SAMPLING_SYSTEMATIC) {
+            settings.append(",interval=").append(getSamplingInterval()).append(",seed=").append(getSeed());
+        } else if (sampling == SAMPLING_RESERVOIR) {
+            settings.append(",size=").append(getSamplingSize()).append(",seed=").append(getSeed());
         }
-
-        // Parse the type
-        Matcher typeMatcher = TYPE_PATTERN.matcher(packet);
-        if (typeMatcher.find()) {
-            // DEBUG LOG
-            // System.out.println("Type: " + typeMatcher.group(1));
-            types = ArrayUtils.add(types, typeMatcher.group(1));
+        settings.append(";snaplen=").append(getSnaplen());
+        if (pcapReader == READER_LIBPCAP && getCaptureFilter().length() != 0) {
+            settings.append(";filter=").append(getCaptureFilter());
         }
+        return settings.toString();
+    }
 
-        // Parse the source port
-        Matcher srcPortMatcher = SRC_PORT_PATTERN.matcher(packet);
-        if (srcPortMatcher.find()) {
-            // DEBUG LOG
-            // System.out.println("Source port: " + srcPortMatcher.group(1));
-            srcPorts = ArrayUtils.add(srcPorts, srcPortMatcher.group(1));
-        }
+    /**
+     * Run a docker container.
+     * Execute the payload.sh script in the container.
+     * Execute the attack in the container.
+     * Copy the pcap file from the container to the host.
+     * Stop the container.
+     * Remove the container.
+     * Parse the pcap file.
+     * And manage the multi-threading.
+     * 
+     * @param dockerImage   the docker image to run
+     * @param duration      the capture duration (seconds)
+     * @param pcapFullPath  the pcap file to write
+     * @param containerName the name of the container
+     * @param networkName   the bridge network created for the container, or
+     *                      null for the default network
+     * @param reuse         true to reuse a warm container of the pool and keep
+     *                      the container running after the capture
+     * @param scheduler     the scheduler of the attacks run during the capture
+     * @param captureOptions the tshark options of the capture filter and snap
+     *                      length
+     * @return the capture
+     */
+    private static Capture dockerMain(String dockerImage, int duration, String pcapFullPath,
+            String containerName, String networkName, boolean reuse, AttackScheduler scheduler,
+            String captureOptions) throws InterruptedException, IOException {
+        System.out.println("Run Docker " + containerName);
 
-        // Parse the destination port
-        Matcher destPortMatcher = DEST_PORT_PATTERN.matcher(packet);
-        if (destPortMatcher.find()) {
-            // DEBUG LOG
-            // System.out.println("Destination port: " + destPortMatcher.group(1));
-            dstPorts = ArrayUtils.add(dstPorts, destPortMatcher.group(1));
-        }
+        // Docker parameters
+        String containerFile = "/data/capture.pcap";
 
-        // Parse the version
-        Matcher versionMatcher = VERSION_PATTERN.matcher(packet);
-        if (versionMatcher.find()) {
-            // DEBUG LOG
-            // System.out.println("Version: " + versionMatcher.group(1));
-            versions = ArrayUtils.add(versions, Integer.parseInt(versionMatcher.group(1)));
-        }
+        // Get the Docker client
+        DockerClient dockerClient = getDockerClient();
 
-        // Parse the IHL
-        Matcher ihlMatcher = IHL_PATTERN.matcher(packet);
-        if (ihlMatcher.find()) {
-            // DEBUG LOG
-            // System.out.println("IHL: " + ihlMatcher.group(1));
-            IHLs = ArrayUtils.add(IHLs, Integer.parseInt(ihlMatcher.group(1)));
-        }
+        // Start the container, or reuse the warm one
+        ContainerPool.Entry container = dockerStart(dockerImage, containerName, networkName, reuse, containerFile,
+                dockerClient);
+        InetAddress target = container.getAddress();
+        long startTime = System.currentTimeMillis();
 
-        // Parse the length
-        Matcher lengthMatcher = LENGTH_PATTERN.matcher(packet);
-        if (lengthMatcher.find()) {
-            // DEBUG LOG
-            // System.out.println("Length: " + lengthMatcher.group(1));
-            lengths = ArrayUtils.add(lengths, Integer.parseInt(lengthMatcher.group(1)));
-        }
+        boolean captured = false;
+        try {
+            // Wait for nginx to accept connections
+            dockerAwaitPort(target, 80, DOCKER_READY_TIMEOUT);
+
+            // Start the capture and wait for tshark to capture
+            String command = "./payload.sh -d " + duration + captureOptions;
+            ExecWatcher payload = dockerExec(command, "Capturing on", null, containerName, dockerClient);
+            if (!payload.awaitReady(DOCKER_READY_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                throw new IOException("The capture did not start in the container " + containerName);
+            }
 
-        // Parse the identification
-        Matcher identificationMatcher = IDENTIFICATION_PATTERN.matcher(packet);
-        if (identificationMatcher.find()) {
-            // DEBUG LOG
-            // System.out.println("Identification: " + identificationMatcher.group(1));
-            identifications = ArrayUtils.add(identifications, Integer.parseInt(identificationMatcher.group(1)));
-        }
+            // Run the attacks during the capture
+            System.out.println("Start attacks");
+            AttackTimeline timeline = scheduler.run(target, duration * 1000L);
 
-        // Parse the fragment offset
-        Matcher fragmentOffsetMatcher = FRAGMENT_OFFSET_PATTERN.matcher(packet);
-        if (fragmentOffsetMatcher.find()) {
-            // DEBUG LOG
-            // System.out.println("Fragment offset: " + fragmentOffsetMatcher.group(1));
-            fragmentOffsets = ArrayUtils.add(fragmentOffsets, Integer.parseInt(fragmentOffsetMatcher.group(1)));
-        }
+            // Wait for the end of the capture (pcap file closed)
+            if (!payload.awaitCompletion(DOCKER_READY_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                throw new IOException("The capture did not end in the container " + containerName);
+            }
 
-        // Parse the TTL
-        Matcher ttlMatcher = TTL_PATTERN.matcher(packet);
-        if (ttlMatcher.find()) {
-            // DEBUG LOG
-            // System.out.println("TTL: " + ttlMatcher.group(1));
-            TTLs = ArrayUtils.add(TTLs, Integer.parseInt(ttlMatcher.group(1)));
-        }
+            dockerCp(pcapFullPath, containerName, containerFile, dockerClient);
+            captured = true;
 
-        // Parse the protocol
-        Matcher protocolMatcher = PROTOCOL_PATTERN.matcher(packet);
-        if (protocolMatcher.find()) {
             // DEBUG LOG
-            // System.out.println("Protocol: " + protocolMatcher.group(1));
-            protocols = ArrayUtils.add(protocols, Integer.parseInt(protocolMatcher.group(1)));
-        }
+            System.out.println("Stop attacks");
 
-        // Parse the header checksum
-        Matcher headerChecksumMatcher = HEADER_CHECKSUM_PATTERN.matcher(packet);
-        if (headerChecksumMatcher.find()) {
-            // DEBUG LOG
-            // System.out.println("Header checksum: " + headerChecksumMatcher.group(1));
-            headerChecksums = ArrayUtils.add(headerChecksums, headerChecksumMatcher.group(1));
+            return new Capture(pcapFullPath, startTime, timeline);
+        } finally {
+            dockerRelease(container, captured && reuse, dockerClient);
         }
     }
 
     /**
-     * Run a docker container.
-     * Execute the payload.sh script in the container.
-     * Execute the attack in the container.
-     * Copy the pcap file from the container to the host.
-     * Stop the container.
-     * Remove the container.
-     * Parse the pcap file.
-     * And manage the multi-threading.
+     * Run a docker container and stream its capture.
+     * tshark writes the pcap stream to its standard output, which is decoded
+     * by the reader of the returned capture while the attacks run on a
+     * separate thread. The container is released by that thread at the end
+     * of the capture.
      * 
-     * @param dockerImage the docker image to run
+     * @param dockerImage   the docker image to run
+     * @param duration      the capture duration (seconds)
+     * @param containerName the name of the container
+     * @param networkName   the bridge network created for the container, or
+     *                      null for the default network
+     * @param reuse         true to reuse a warm container of the pool and keep
+     *                      the container running after the capture
+     * @param scheduler     the scheduler of the attacks run during the capture
+     * @param captureOptions the tshark options of the capture filter and snap
+     *                      length
+     * @return the live capture, as soon as tshark captures
      */
-    private static void dockerMain(String dockerImage, int duration, String pcapFullPath)
+    private static Capture dockerLive(String dockerImage, final int duration, final String containerName,
+            String networkName, final boolean reuse, final AttackScheduler scheduler, String captureOptions)
             throws InterruptedException, IOException {
-        System.out.println("Run Docker");
-
-        // Docker parameters
-        String containerName = "contackgen-ubuntu2204";
-        String containerFile = "/data/capture.pcap";
+        System.out.println("Run Docker " + containerName + " (live)");
 
         // Get the Docker client
-        System.out.println("Get Docker client");
+        final DockerClient dockerClient = getDockerClient();
 
-        // Get Computer OS
-        String os = System.getProperty("os.name").toLowerCase();
-        System.out.println("OS: " + os);
+        // Start the container, or reuse the warm one
+        final ContainerPool.Entry container = dockerStart(dockerImage, containerName, networkName, reuse,
+                "/data/capture.pcap", dockerClient);
+        final InetAddress target = container.getAddress();
+        long startTime = System.currentTimeMillis();
+
+        FrameInputStream stdout = new FrameInputStream();
+        boolean started = false;
+        try {
+            // Wait for nginx to accept connections
+            dockerAwaitPort(target, 80, DOCKER_READY_TIMEOUT);
+
+            // Start the capture to the standard output and wait for tshark to
+            // capture
+            String command = "tshark -i eth0 -a duration:" + duration + captureOptions + " -F pcap -w -";
+            final ExecWatcher tshark = dockerExec(command, "Capturing on", stdout, containerName, dockerClient);
+            if (!tshark.awaitReady(DOCKER_READY_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                throw new IOException("The capture did not start in the container " + containerName);
+            }
 
-        DockerClient dockerClient = null;
-        if (os.equals("linux")) {
-            dockerClient = DockerClientBuilder.getInstance().build();
-        } else if (os.contains("windows")) {
+            // Run the attacks during the capture
+            Thread attacks = new Thread("Pcap-live-" + containerName) {
+                @Override
+                public void run() {
+                    boolean captured = false;
+                    try {
+                        System.out.println("Start attacks");
+                        scheduler.run(target, duration * 1000L);
+                        captured = tshark.awaitCompletion(DOCKER_READY_TIMEOUT, TimeUnit.MILLISECONDS);
+                        System.out.println("Stop attacks");
+                    } catch (IOException e) {
+                        System.err.println("Attacks failed in the container " + containerName + ": " + e);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        dockerRelease(container, captured && reuse, dockerClient);
+                    }
+                }
+            };
+            attacks.setDaemon(true);
+            attacks.start();
+            started = true;
 
-            DockerClientConfig config = DefaultDockerClientConfig.createDefaultConfigBuilder()
-                    .withDockerHost("tcp://localhost:2375")
-                    .build();
-            dockerClient = DockerClientBuilder.getInstance(config).build();
+            return new Capture(new StreamPcapSource(stdout), startTime, new LiveTimeline(scheduler));
+        } finally {
+            if (!started) {
+                stdout.close();
+                dockerRelease(container, false, dockerClient);
+            }
+        }
+    }
+
+    /**
+     * Start a container for a capture: reuse the warm container of the pool,
+     * if any and still running, or create and start a new one. The container
+     * name is locked until the container is released.
+     * 
+     * @param dockerImage   the docker image to run
+     * @param containerName the name of the container
+     * @param networkName   the bridge network created for the container, or
+     *                      null for the default network
+     * @param reuse         true to reuse a warm container of the pool
+     * @param containerFile the path of the pcap file in the container
+     * @param dockerClient  the Docker client
+     * @return the started container
+     */
+    private static ContainerPool.Entry dockerStart(String dockerImage, String containerName, String networkName,
+            boolean reuse, String containerFile, DockerClient dockerClient)
+            throws InterruptedException, IOException {
+        // Wait for the other captures on this container name, if any
+        CONTAINER_POOL.lock(containerName);
+        boolean started = false;
+        try {
+            ContainerPool.Entry container = dockerStartLocked(dockerImage, containerName, networkName, reuse,
+                    containerFile, dockerClient);
+            started = true;
+            return container;
+        } finally {
+            if (!started) {
+                CONTAINER_POOL.unlock(containerName);
+            }
+        }
+    }
+
+    /**
+     * Start a container once its name is locked.
+     * 
+     * @see #dockerStart(String, String, String, boolean, String, DockerClient)
+     */
+    private static ContainerPool.Entry dockerStartLocked(String dockerImage, String containerName,
+            String networkName, boolean reuse, String containerFile, DockerClient dockerClient)
+            throws InterruptedException, IOException {
+        // Reuse the warm container, if any
+        ContainerPool.Entry warm = reuse ? CONTAINER_POOL.acquire(containerName) : null;
+        if (warm != null && warm.getImage().equals(dockerImage) && Objects.equals(warm.getNetwork(), networkName)
+                && dockerReset(containerName, containerFile, dockerClient)) {
+            System.out.println("Reuse the container " + containerName);
+            return warm;
         }
 
         // Check if the container is already running
         if (dockerContainerExists(containerName, dockerClient)) {
             System.out.println("Container already exists");
-            dockerStop(containerName, dockerClient);
-            DockerRm(containerName, dockerClient);
+            dockerDiscard(containerName, null, dockerClient);
+        }
+
+        // Check if the image exists, the containers of the farm pull it once
+        synchronized (localImages) {
+            if (!localImages.contains(dockerImage)) {
+                if (!dockerImageExists(dockerImage, dockerClient)) {
+                    // Pull the image
+                    dockerPull(dockerImage, dockerClient);
+                }
+                localImages.add(dockerImage);
+            }
         }
 
-        // Check if the image exists
-        if (!dockerImageExists(dockerImage, dockerClient)) {
-            // Pull the image
-            dockerPull(dockerImage, dockerClient);
+        // Create the network of the container
+        if (networkName != null) {
+            dockerNetworkRm(networkName, dockerClient);
+            System.out.println("Create Docker network " + networkName);
+            dockerClient.createNetworkCmd().withName(networkName).withDriver("bridge").exec();
         }
 
         // Run the container
-        dockerRun(dockerImage, containerName, dockerClient);
-
-        // Sleep 2 seconds
-        Thread.sleep(2000);
-
-        // Create the command to execute
-        String command = "./payload.sh -d " + duration;
-        dockerExec(command, containerName, dockerClient);
-
-        // Sleep 2 seconds
-        Thread.sleep(2000);
+        dockerRun(dockerImage, containerName, networkName, dockerClient);
 
         // Get the IP address of the container
         String ipAddress = dockerInspectIP(containerName, dockerClient);
+        return new ContainerPool.Entry(containerName, dockerImage, networkName, InetAddress.getByName(ipAddress));
+    }
+
+    /**
+     * Release a container at the end of a capture: keep it running in the
+     * pool for the next capture, or remove it.
+     * 
+     * @param container    the container
+     * @param keep         true to keep the container in the pool
+     * @param dockerClient the Docker client
+     */
+    private static void dockerRelease(ContainerPool.Entry container, boolean keep, DockerClient dockerClient) {
+        try {
+            if (keep) {
+                // Keep the container running for the next capture
+                CONTAINER_POOL.release(container);
+            } else {
+                dockerDiscard(container.getName(), container.getNetwork(), dockerClient);
+            }
+        } finally {
+            CONTAINER_POOL.unlock(container.getName());
+        }
+    }
+
+    /**
+     * Gets the Docker client shared by all the captures. The client is created
+     * on first use, together with a shutdown hook that removes the containers
+     * of the pool.
+     * 
+     * @return the Docker client
+     */
+    private static synchronized DockerClient getDockerClient() {
+        if (sharedDockerClient != null) {
+            return sharedDockerClient;
+        }
 
-        // Start UDP DOS
-        System.out.println("Start UDP DOS");
-        UDPDos udp = new UDPDos(ipAddress);
-        udp.start();
+        // Get Computer OS
+        System.out.println("Get Docker client");
+        String os = System.getProperty("os.name").toLowerCase();
+        System.out.println("OS: " + os);
 
-        // Sleep 20 seconds
-        Thread.sleep(duration * 1000);
+        if (os.contains("windows")) {
+            DockerClientConfig config = DefaultDockerClientConfig.createDefaultConfigBuilder()
+                    .withDockerHost("tcp://localhost:2375")
+                    .build();
+            sharedDockerClient = DockerClientBuilder.getInstance(config).build();
+        } else {
+            sharedDockerClient = DockerClientBuilder.getInstance().build();
+        }
 
-        dockerCp(pcapFullPath, containerName, containerFile, dockerClient);
+        Runtime.getRuntime().addShutdownHook(new Thread("Pcap-container-pool") {
+            @Override
+            public void run() {
+                drainContainerPool();
+            }
+        });
+        return sharedDockerClient;
+    }
 
-        dockerStop(containerName, dockerClient);
+    /**
+     * Removes the warm containers of the pool, and their networks.
+     */
+    public static void drainContainerPool() {
+        DockerClient dockerClient;
+        synchronized (Pcap.class) {
+            dockerClient = sharedDockerClient;
+        }
+        if (dockerClient == null) {
+            return;
+        }
+        for (ContainerPool.Entry entry : CONTAINER_POOL.drain()) {
+            try {
+                dockerDiscard(entry.getName(), entry.getNetwork(), dockerClient);
+            } catch (RuntimeException e) {
+                System.err.println("Could not remove the container " + entry.getName() + ": " + e);
+            }
+        }
+    }
 
-        DockerRm(containerName, dockerClient);
+    /**
+     * Reset a warm container for a new capture: stop the previous capture, if
+     * any, and delete its pcap file.
+     * 
+     * @param containerName the name of the container
+     * @param containerFile the path of the pcap file in the container
+     * @param dockerClient  the Docker client
+     * @return false if the container is not running anymore
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private static boolean dockerReset(String containerName, String containerFile, DockerClient dockerClient)
+            throws InterruptedException {
+        try {
+            Boolean running = dockerClient.inspectContainerCmd(containerName).exec().getState().getRunning();
+            if (running == null || !running) {
+                return false;
+            }
+            ExecWatcher reset = dockerExec("pkill -x tshark; rm -f " + containerFile, null, null, containerName,
+                    dockerClient);
+            return reset.awaitCompletion(DOCKER_READY_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (NotFoundException e) {
+            return false;
+        }
+    }
 
-        // DEBUG LOG
-        System.out.println("Stop UDP DOS");
+    /**
+     * Remove a container, running or not, and its network.
+     * 
+     * @param containerName the name of the container
+     * @param networkName   the network of the container, or null for the
+     *                      default network
+     * @param dockerClient  the Docker client
+     */
+    private static void dockerDiscard(String containerName, String networkName, DockerClient dockerClient) {
+        System.out.println("Remove the container " + containerName);
+        try {
+            dockerClient.removeContainerCmd(containerName).withForce(true).exec();
+        } catch (NotFoundException e) {
+            // No container to remove
+        }
+        if (networkName != null) {
+            dockerNetworkRm(networkName, dockerClient);
+        }
+    }
 
-        // Parse the pcap file
+    /**
+     * Remove a docker network, if it exists.
+     * 
+     * @param networkName  the name of the network
+     * @param dockerClient the Docker client
+     */
+    private static void dockerNetworkRm(String networkName, DockerClient dockerClient) {
         try {
-            readPcap(pcapFullPath);
-        } catch (PcapNativeException e) {
-            e.printStackTrace();
-        } catch (NotOpenException e) {
-            e.printStackTrace();
+            dockerClient.removeNetworkCmd(networkName).exec();
+            System.out.println("Docker network " + networkName + " removed");
+        } catch (NotFoundException e) {
+            // No network to remove
         }
     }
 
@@ -998,30 +4064,6 @@ public class Pcap extends ClassificationGenerator {
         return false;
     }
 
-    /**
-     * Remove the given docker image.
-     * 
-     * @param containerName the name of the container
-     * @param dockerClient  the Docker client
-     */
-    private static void DockerRm(String containerName, DockerClient dockerClient) {
-        // Remove container
-        System.out.println("Remove the container " + containerName);
-        dockerClient.removeContainerCmd(containerName).exec();
-    }
-
-    /**
-     * Stop the given container.
-     * 
-     * @param containerName the name of the container
-     * @param dockerClient  the Docker client
-     */
-    private static void dockerStop(String containerName, DockerClient dockerClient) {
-        // Stop container
-        System.out.println("Stop the container " + containerName);
-        dockerClient.killContainerCmd(containerName).exec();
-    }
-
     /**
      * Copy file from container
      * 
@@ -1040,12 +4082,22 @@ public class Pcap extends ClassificationGenerator {
         //                 containerFile).exec())) {
         //     unTar(tarStream, new File(localPath));
         // } 
+        // The file is replaced atomically, a generator still reading the
+        // previous capture of this path keeps its own copy
+        File destFile = new File(localPath);
+        File tmpFile = new File(destFile.getAbsoluteFile().getParentFile(), "." + destFile.getName() + ".part");
         TarArchiveInputStream tarStream = null;
         try {
             tarStream = new TarArchiveInputStream(
                     dockerClient.copyArchiveFromContainerCmd(containerName,
                             containerFile).exec());
-            unTar(tarStream, new File(localPath));
+            unTar(tarStream, tmpFile);
+            try {
+                Files.move(tmpFile.toPath(), destFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpFile.toPath(), destFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
         } finally {
             if (tarStream != null) {
                 try {
@@ -1074,20 +4126,55 @@ public class Pcap extends ClassificationGenerator {
         return ipAddress;
     }
 
+    /**
+     * Wait for a port of the container to accept connections.
+     * 
+     * @param address the address of the container
+     * @param port    the port
+     * @param timeout the max time to wait (milliseconds)
+     * @throws IOException          if the port is not ready before the timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private static void dockerAwaitPort(InetAddress address, int port, long timeout)
+            throws IOException, InterruptedException {
+        System.out.println("Wait for port " + port + " of the container");
+        long deadline = System.currentTimeMillis() + timeout;
+        while (true) {
+            Socket socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(address, port), 1000);
+                return;
+            } catch (IOException e) {
+                if (System.currentTimeMillis() >= deadline) {
+                    throw new IOException("The port " + port + " of the container is not ready", e);
+                }
+            } finally {
+                socket.close();
+            }
+            // Refused: the server is starting
+            Thread.sleep(50);
+        }
+    }
+
     /**
      * Exec a command in the container.
      * 
      * @param command       the command to execute
+     * @param readyMarker   the output line that signals readiness, or null
+     * @param stdout        the stream receiving the standard output, or null
+     *                      to echo it
      * @param containerName the name of the container
      * @param dockerClient  the Docker client
+     * @return the watcher of the command output and completion
      */
-    private static void dockerExec(String command, String containerName, DockerClient dockerClient) {
+    private static ExecWatcher dockerExec(String command, String readyMarker, FrameInputStream stdout,
+            String containerName, DockerClient dockerClient) {
         // Execute the payload.sh in the container
         System.out.println("Execute " + command + " in the container");
-        dockerClient
+        return dockerClient
                 .execStartCmd(dockerClient.execCreateCmd(containerName).withAttachStdout(true)
-                .withCmd("bash", "-c", command).exec().getId())
-                .exec(new ExecStartResultCallback(System.out, System.err));
+                        .withAttachStderr(true).withCmd("bash", "-c", command).exec().getId())
+                .exec(new ExecWatcher(readyMarker, stdout));
         // try {
         //     dockerClient
         //             .execStartCmd(dockerClient.execCreateCmd(containerName).withAttachStdout(true)
@@ -1103,9 +4190,12 @@ public class Pcap extends ClassificationGenerator {
      * 
      * @param dockerImage   the docker image to run
      * @param containerName the name of the container
+     * @param networkName   the network of the container, or null for the
+     *                      default network
      * @param dockerClient  the Docker client
      */
-    private static void dockerRun(String dockerImage, String containerName, DockerClient dockerClient) {
+    private static void dockerRun(String dockerImage, String containerName, String networkName,
+            DockerClient dockerClient) {
         // Create container
         System.out.println("Create Docker container");
         // try (CreateContainerCmd createContainer = dockerClient
@@ -1118,6 +4208,9 @@ public class Pcap extends ClassificationGenerator {
             createContainer = dockerClient
                     .createContainerCmd(dockerImage).withName(containerName);
             createContainer.withTty(true);
+            if (networkName != null) {
+                createContainer.withHostConfig(HostConfig.newHostConfig().withNetworkMode(networkName));
+            }
             createContainer.exec();
         } finally {
             if (createContainer != null) {
@@ -1128,7 +4221,6 @@ public class Pcap extends ClassificationGenerator {
         // Start container
         System.out.println("Start Docker container");
         dockerClient.startContainerCmd(containerName).exec();
-        startTime = new Timestamp(System.currentTimeMillis());
     }
 
     /**
@@ -0,0 +1,411 @@
+package weka.datagenerators.classifiers.classification.pcap;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+
+/**
+ * Content-addressed cache of the decoded packet tables of the capture files.
+ *
+ * The decoded columns of a capture are written to a binary columnar file next
+ * to the capture, named after a fingerprint of the capture content, of the
+ * decoder version and of the decoding settings (sampling, snap length...). A
+ * later decoding of the same content with the same settings maps the file
+ * instead of parsing the packets: the numeric columns and the dictionary codes
+ * are read-only views of the mapped file, only the dictionary keys are read to
+ * the heap. An entry written by a decoding stopped at a max number of packets
+ * only serves the decodings of at most that number of packets.
+ *
+ * The fingerprint of the content is its size and its CRC32 and Adler-32
+ * checksums, computed on the mapped capture for a small fraction of the cost
+ * of a decoding. The entries are written to a temporary file then renamed, so
+ * concurrent generations never read a partial entry, and the entries of the
+ * previous contents of the capture are removed. The labels are not cached,
+ * they depend on the attack timeline of each capture.
+ */
+public class ColumnCache {
+
+    /** The extension of the cache files. */
+    public static final String EXTENSION = ".columns";
+
+    /**
+     * Labels the packets of a cached table.
+     */
+    public interface Labeller {
+
+        /**
+         * Labels a packet. Only the addresses, ports and protocol of the record
+         * are set.
+         *
+         * @param record    the packet.
+         * @param timestamp the capture timestamp (nanoseconds since epoch).
+         * @return the index of the class value.
+         */
+        int label(PacketRecord record, long timestamp);
+    }
+
+    // File header: magic, format, rows, complete flag, sampling rate and the
+    // sizes of the 6 dictionaries, then the columns aligned on 8 bytes
+    private static final int MAGIC = 0x4c4f4357;
+    private static final int FORMAT = 2;
+    private static final int DICTIONARIES = 6;
+    private static final int HEADER = 24 + 4 * DICTIONARIES;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int FINGERPRINT_BYTES = 16;
+
+    private final File captureFile;
+    private final File file;
+    private double samplingRate = 1.0;
+
+    /**
+     * Creates the cache of a capture file, reading the whole file to compute
+     * its fingerprint.
+     *
+     * @param pcapFile the capture file.
+     * @param settings the decoding settings that change the decoded packets.
+     * @throws IOException if the capture could not be read.
+     */
+    public ColumnCache(String pcapFile, String settings) throws IOException {
+        captureFile = new File(pcapFile).getAbsoluteFile();
+        file = new File(captureFile.getParentFile(),
+                captureFile.getName() + "." + fingerprint(captureFile, settings) + EXTENSION);
+    }
+
+    /**
+     * Gets the cache file of the capture content.
+     *
+     * @return the cache file, which may not exist.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the sampling rate of the decoding that wrote the entry read.
+     *
+     * @return the sampling rate.
+     */
+    public double getSamplingRate() {
+        return samplingRate;
+    }
+
+    /**
+     * Reads the cached table of the capture.
+     *
+     * @param maxPackets the max number of packets decoded.
+     * @param labeller   the labeller of the packets, or null if all the
+     *                   packets are benign.
+     * @return the table, labelled up to maxPackets packets, or null if no
+     *         entry of the capture serves the decoding.
+     * @throws IOException if the entry could not be read.
+     */
+    public PacketTable read(int maxPackets, Labeller labeller) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        MappedByteBuffer map;
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            channel.close();
+        }
+
+        ByteBuffer buffer = map.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.capacity() < HEADER || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT) {
+            return null;
+        }
+        int rows = buffer.getInt(8);
+        boolean complete = buffer.getInt(12) != 0;
+        int[] sizes = new int[DICTIONARIES];
+        for (int k = 0; k < DICTIONARIES; k++) {
+            sizes[k] = buffer.getInt(24 + 4 * k);
+        }
+        if (buffer.capacity() != size(rows, sizes) || (!complete && rows < maxPackets)) {
+            return null;
+        }
+
+        buffer.position(HEADER);
+        DictionaryColumn srcIps = readDictionary(buffer, rows, sizes[0], PacketTable.ADDRESS_FORMATTER);
+        DictionaryColumn dstIps = readDictionary(buffer, rows, sizes[1], PacketTable.ADDRESS_FORMATTER);
+        DictionaryColumn srcPorts = readDictionary(buffer, rows, sizes[2], PacketTable.DECIMAL_FORMATTER);
+        DictionaryColumn dstPorts = readDictionary(buffer, rows, sizes[3], PacketTable.DECIMAL_FORMATTER);
+        DictionaryColumn types = readDictionary(buffer, rows, sizes[4], PacketTable.HEX_FORMATTER);
+        DictionaryColumn headerChecksums = readDictionary(buffer, rows, sizes[5], PacketTable.HEX_FORMATTER);
+        ShortColumn versions = new ShortColumn(slice(buffer, 2L * rows).asShortBuffer());
+        ShortColumn IHLs = new ShortColumn(slice(buffer, 2L * rows).asShortBuffer());
+        ShortColumn TTLs = new ShortColumn(slice(buffer, 2L * rows).asShortBuffer());
+        ShortColumn protocols = new ShortColumn(slice(buffer, 2L * rows).asShortBuffer());
+        IntColumn lengths = new IntColumn(slice(buffer, 4L * rows).asIntBuffer());
+        IntColumn fragmentOffsets = new IntColumn(slice(buffer, 4L * rows).asIntBuffer());
+        LongColumn identifications = new LongColumn(slice(buffer, 8L * rows).asLongBuffer());
+        LongColumn timestamps = new LongColumn(slice(buffer, 8L * rows).asLongBuffer());
+
+        // Label the packets that are used
+        int labelled = Math.min(rows, maxPackets);
+        ShortColumn labels = new ShortColumn(labelled);
+        PacketRecord record = new PacketRecord();
+        for (int i = 0; i < labelled; i++) {
+            int label = 0;
+            if (labeller != null) {
+                int src = srcIps.getCode(i);
+                int dst = dstIps.getCode(i);
+                record.srcAddrHigh = srcIps.getKeyHigh(src);
+                record.srcAddrLow = srcIps.getKeyLow(src);
+                record.dstAddrHigh = dstIps.getKeyHigh(dst);
+                record.dstAddrLow = dstIps.getKeyLow(dst);
+                record.srcPort = port(srcPorts, i);
+                record.dstPort = port(dstPorts, i);
+                record.protocol = protocols.get(i);
+                label = labeller.label(record, timestamps.get(i));
+            }
+            labels.add((short) label);
+        }
+
+        samplingRate = buffer.getDouble(16);
+        return new PacketTable(srcIps, dstIps, srcPorts, dstPorts, types, headerChecksums, versions, IHLs, lengths,
+                identifications, fragmentOffsets, TTLs, protocols, labels, timestamps);
+    }
+
+    /**
+     * Writes the decoded table of the capture, replacing the entries of the
+     * previous contents of the capture. The labels are not written.
+     *
+     * @param table        the decoded packets.
+     * @param complete     true if all the packets of the capture were decoded,
+     *                     false if the decoding stopped at the max number of
+     *                     packets.
+     * @param samplingRate the sampling rate of the decoding.
+     * @throws IOException if the entry could not be written.
+     */
+    public void write(PacketTable table, boolean complete, double samplingRate) throws IOException {
+        int rows = table.size();
+        DictionaryColumn[] dictionaries = { table.getSrcIps(), table.getDstIps(), table.getSrcPorts(),
+                table.getDstPorts(), table.getTypes(), table.getHeaderChecksums() };
+        int[] sizes = new int[DICTIONARIES];
+        for (int k = 0; k < DICTIONARIES; k++) {
+            sizes[k] = dictionaries[k].getDictionary().size();
+        }
+        if (size(rows, sizes) > Integer.MAX_VALUE) {
+            throw new IOException("Too many packets to map: " + rows);
+        }
+
+        File temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        try {
+            FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            try {
+                Output out = new Output(channel);
+                out.putInt(MAGIC);
+                out.putInt(FORMAT);
+                out.putInt(rows);
+                out.putInt(complete ? 1 : 0);
+                out.putLong(Double.doubleToLongBits(samplingRate));
+                for (int size : sizes) {
+                    out.putInt(size);
+                }
+                for (DictionaryColumn column : dictionaries) {
+                    int size = column.getDictionary().size();
+                    for (int code = 0; code < size; code++) {
+                        out.putLong(column.getKeyHigh(code));
+                    }
+                    for (int code = 0; code < size; code++) {
+                        out.putLong(column.getKeyLow(code));
+                    }
+                    for (int i = 0; i < rows; i++) {
+                        out.putInt(column.getCode(i));
+                    }
+                    out.align();
+                }
+                for (ShortColumn column : new ShortColumn[] { table.getVersions(), table.getIHLs(), table.getTTLs(),
+                        table.getProtocols() }) {
+                    for (int i = 0; i < rows; i++) {
+                        out.putShort(column.get(i));
+                    }
+                    out.align();
+                }
+                for (IntColumn column : new IntColumn[] { table.getLengths(), table.getFragmentOffsets() }) {
+                    for (int i = 0; i < rows; i++) {
+                        out.putInt(column.get(i));
+                    }
+                    out.align();
+                }
+                for (LongColumn column : new LongColumn[] { table.getIdentifications(), table.getTimestamps() }) {
+                    for (int i = 0; i < rows; i++) {
+                        out.putLong(column.get(i));
+                    }
+                }
+                out.flush();
+            } finally {
+                channel.close();
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            temp.delete();
+        }
+        removeStale();
+    }
+
+    /**
+     * Removes the entries of the other contents of the capture.
+     */
+    private void removeStale() {
+        String prefix = captureFile.getName() + ".";
+        File[] siblings = file.getParentFile().listFiles();
+        if (siblings == null) {
+            return;
+        }
+        for (File sibling : siblings) {
+            String name = sibling.getName();
+            if (name.startsWith(prefix) && name.endsWith(EXTENSION)
+                    && name.length() == prefix.length() + 2 * FINGERPRINT_BYTES + EXTENSION.length()
+                    && !sibling.equals(file)) {
+                sibling.delete();
+            }
+        }
+    }
+
+    /**
+     * Computes the fingerprint of a capture content, of the decoder version
+     * and of the decoding settings.
+     */
+    private static String fingerprint(File captureFile, String settings) throws IOException {
+        CRC32 crc32 = new CRC32();
+        Adler32 adler32 = new Adler32();
+        long size;
+        FileChannel channel = FileChannel.open(captureFile.toPath(), StandardOpenOption.READ);
+        try {
+            size = channel.size();
+            for (long position = 0; position < size; position += Integer.MAX_VALUE) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(Integer.MAX_VALUE, size - position));
+                crc32.update(buffer.duplicate());
+                adler32.update(buffer);
+            }
+        } finally {
+            channel.close();
+        }
+
+        String key = PacketDecoder.VERSION + "|" + settings + "|" + size + "|" + crc32.getValue() + "|"
+                + adler32.getValue();
+        byte[] hash;
+        try {
+            hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        StringBuilder result = new StringBuilder(2 * FINGERPRINT_BYTES);
+        for (int i = 0; i < FINGERPRINT_BYTES; i++) {
+            result.append(Character.forDigit((hash[i] >> 4) & 0xf, 16));
+            result.append(Character.forDigit(hash[i] & 0xf, 16));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Gets the size of a cache file.
+     */
+    private static long size(int rows, int[] sizes) {
+        long size = HEADER;
+        for (int dictionary : sizes) {
+            size += 2 * align(8L * dictionary) + align(4L * rows);
+        }
+        return size + 4 * align(2L * rows) + 2 * align(4L * rows) + 2 * 8L * rows;
+    }
+
+    private static long align(long length) {
+        return (length + 7) & ~7L;
+    }
+
+    /**
+     * Reads a dictionary column: the keys to the heap, the codes mapped.
+     */
+    private static DictionaryColumn readDictionary(ByteBuffer buffer, int rows, int size,
+            DictionaryColumn.KeyFormatter formatter) {
+        long[] highs = new long[size];
+        long[] lows = new long[size];
+        slice(buffer, 8L * size).asLongBuffer().get(highs);
+        slice(buffer, 8L * size).asLongBuffer().get(lows);
+        return new DictionaryColumn(new IntColumn(slice(buffer, 4L * rows).asIntBuffer()), highs, lows, formatter);
+    }
+
+    /**
+     * Slices the next section of a buffer and skips it, with its padding.
+     */
+    private static ByteBuffer slice(ByteBuffer buffer, long length) {
+        ByteBuffer slice = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        slice.limit((int) length);
+        buffer.position(buffer.position() + (int) align(length));
+        return slice;
+    }
+
+    private static int port(DictionaryColumn ports, int index) {
+        int code = ports.getCode(index);
+        return code == DictionaryColumn.MISSING ? PacketRecord.ABSENT : (int) ports.getKeyLow(code);
+    }
+
+    /**
+     * Buffered little-endian output of a cache file.
+     */
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long position;
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putShort(short value) throws IOException {
+            ensure(2);
+            buffer.putShort(value);
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        /**
+         * Pads the output to a multiple of 8 bytes.
+         */
+        void align() throws IOException {
+            ensure(8);
+            while ((position + buffer.position()) % 8 != 0) {
+                buffer.put((byte) 0);
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            position += buffer.limit();
+            buffer.clear();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+}
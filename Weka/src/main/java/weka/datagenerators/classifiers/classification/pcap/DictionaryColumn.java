@@ -0,0 +1,230 @@
+package weka.datagenerators.classifiers.classification.pcap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dictionary-encoded column of string values.
+ *
+ * The raw values are keyed by (at most) 128 bits, e.g. an address, a port or a
+ * checksum. Each distinct key is formatted to a string once and stored in the
+ * dictionary with its key; the rows only hold the int code of their value.
+ * The key lookup is an open-addressing hash table, so no object is created
+ * when a known key is appended.
+ */
+public class DictionaryColumn {
+
+    /** Code of the missing values. */
+    public static final int MISSING = -1;
+
+    /**
+     * Formats the key of a value to a string.
+     */
+    public interface KeyFormatter {
+
+        /**
+         * Formats a key.
+         *
+         * @param high the high 64 bits of the key.
+         * @param low  the low 64 bits of the key.
+         * @return the string value.
+         */
+        String format(long high, long low);
+    }
+
+    private final KeyFormatter formatter;
+    private final IntColumn codes;
+    private final List<String> dictionary = new ArrayList<String>();
+    private final LongColumn dictionaryHigh = new LongColumn(64);
+    private final LongColumn dictionaryLow = new LongColumn(64);
+
+    // Hash table: keys and (code + 1) of each slot, 0 means empty
+    private long[] keysHigh;
+    private long[] keysLow;
+    private int[] slots;
+
+    /**
+     * Creates an empty column.
+     *
+     * @param capacity  the initial capacity.
+     * @param formatter the formatter of the keys.
+     */
+    public DictionaryColumn(int capacity, KeyFormatter formatter) {
+        this.formatter = formatter;
+        codes = new IntColumn(capacity);
+        keysHigh = new long[64];
+        keysLow = new long[64];
+        slots = new int[64];
+    }
+
+    /**
+     * Creates a column from the codes of its rows and the keys of its
+     * dictionary, e.g. read from a {@link ColumnCache} file.
+     *
+     * @param codes     the codes of the rows.
+     * @param highs     the high 64 bits of the keys, indexed by code.
+     * @param lows      the low 64 bits of the keys, indexed by code.
+     * @param formatter the formatter of the keys.
+     */
+    public DictionaryColumn(IntColumn codes, long[] highs, long[] lows, KeyFormatter formatter) {
+        this.formatter = formatter;
+        this.codes = codes;
+        keysHigh = new long[64];
+        keysLow = new long[64];
+        slots = new int[64];
+        for (int i = 0; i < highs.length; i++) {
+            encode(highs[i], lows[i]);
+        }
+    }
+
+    /**
+     * Appends a value.
+     *
+     * @param high the high 64 bits of the key.
+     * @param low  the low 64 bits of the key.
+     */
+    public void add(long high, long low) {
+        codes.add(encode(high, low));
+    }
+
+    /**
+     * Appends a missing value.
+     */
+    public void addMissing() {
+        codes.add(MISSING);
+    }
+
+    /**
+     * Gets the code of a key, adding it to the dictionary if needed.
+     *
+     * @param high the high 64 bits of the key.
+     * @param low  the low 64 bits of the key.
+     * @return the code of the key.
+     */
+    public int encode(long high, long low) {
+        int mask = slots.length - 1;
+        int slot = hash(high, low) & mask;
+        while (slots[slot] != 0) {
+            if (keysHigh[slot] == high && keysLow[slot] == low) {
+                return slots[slot] - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        // New key
+        int code = dictionary.size();
+        dictionary.add(formatter.format(high, low));
+        dictionaryHigh.add(high);
+        dictionaryLow.add(low);
+        keysHigh[slot] = high;
+        keysLow[slot] = low;
+        slots[slot] = code + 1;
+        if (dictionary.size() * 2 > slots.length) {
+            rehash();
+        }
+        return code;
+    }
+
+    /**
+     * Doubles the size of the hash table.
+     */
+    private void rehash() {
+        long[] oldHigh = keysHigh;
+        long[] oldLow = keysLow;
+        int[] oldSlots = slots;
+        keysHigh = new long[oldSlots.length * 2];
+        keysLow = new long[oldSlots.length * 2];
+        slots = new int[oldSlots.length * 2];
+        int mask = slots.length - 1;
+        for (int i = 0; i < oldSlots.length; i++) {
+            if (oldSlots[i] != 0) {
+                int slot = hash(oldHigh[i], oldLow[i]) & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keysHigh[slot] = oldHigh[i];
+                keysLow[slot] = oldLow[i];
+                slots[slot] = oldSlots[i];
+            }
+        }
+    }
+
+    /**
+     * Hashes a key.
+     */
+    private static int hash(long high, long low) {
+        long h = high * 0x9e3779b97f4a7c15L + low;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    /**
+     * Gets the code of a row.
+     *
+     * @param index the row index.
+     * @return the code, or {@link #MISSING}.
+     */
+    public int getCode(int index) {
+        return codes.get(index);
+    }
+
+    /**
+     * Gets the codes of the rows.
+     *
+     * @return the codes column.
+     */
+    public IntColumn getCodes() {
+        return codes;
+    }
+
+    /**
+     * Gets the string value of a row.
+     *
+     * @param index the row index.
+     * @return the value, or null if the value is missing.
+     */
+    public String get(int index) {
+        int code = codes.get(index);
+        return code == MISSING ? null : dictionary.get(code);
+    }
+
+    /**
+     * Gets the distinct values of the column.
+     *
+     * @return the dictionary, indexed by code.
+     */
+    public List<String> getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Gets the high 64 bits of the key of a code.
+     *
+     * @param code the code.
+     * @return the high 64 bits of the key.
+     */
+    public long getKeyHigh(int code) {
+        return dictionaryHigh.get(code);
+    }
+
+    /**
+     * Gets the low 64 bits of the key of a code.
+     *
+     * @param code the code.
+     * @return the low 64 bits of the key.
+     */
+    public long getKeyLow(int code) {
+        return dictionaryLow.get(code);
+    }
+
+    /**
+     * Gets the number of rows.
+     *
+     * @return the number of rows.
+     */
+    public int size() {
+        return codes.size();
+    }
+}
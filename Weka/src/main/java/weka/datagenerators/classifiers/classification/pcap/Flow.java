@@ -0,0 +1,402 @@
+package weka.datagenerators.classifiers.classification.pcap;
+
+/**
+ * Bidirectional flow record, i.e. the statistics of the packets sharing the
+ * same 5-tuple (addresses, ports and protocol) in both directions.
+ *
+ * The forward direction is the direction of the first packet of the flow. The
+ * inter-arrival time statistics are updated incrementally (Welford), so a flow
+ * takes constant memory whatever its number of packets.
+ */
+public class Flow {
+
+    // Key (forward direction)
+    long srcAddrHigh;
+    long srcAddrLow;
+    long dstAddrHigh;
+    long dstAddrLow;
+    int srcPort;
+    int dstPort;
+    int protocol;
+
+    // Timestamps (nanoseconds since epoch)
+    long firstSeen;
+    long lastSeen;
+
+    // Counters
+    long fwdPackets;
+    long bwdPackets;
+    long fwdBytes;
+    long bwdBytes;
+    int finCount;
+    int synCount;
+    int rstCount;
+    int pshCount;
+    int ackCount;
+    int urgCount;
+
+    // Inter-arrival times (nanoseconds)
+    private long iatCount;
+    private double iatMean;
+    private double iatM2;
+    private long iatMin;
+    private long iatMax;
+
+    // TCP termination
+    boolean fwdFin;
+    boolean bwdFin;
+
+    // Ground truth label (first attack label of the packets)
+    int label;
+
+    // HTTP streams (TCP reassembly), null if not tracked
+    private HttpStream fwdHttp;
+    private HttpStream bwdHttp;
+
+    /**
+     * Creates a flow from its first packet.
+     *
+     * @param record    the first packet.
+     * @param timestamp the timestamp of the packet (nanoseconds since epoch).
+     */
+    Flow(PacketRecord record, long timestamp) {
+        srcAddrHigh = record.srcAddrHigh;
+        srcAddrLow = record.srcAddrLow;
+        dstAddrHigh = record.dstAddrHigh;
+        dstAddrLow = record.dstAddrLow;
+        srcPort = record.srcPort;
+        dstPort = record.dstPort;
+        protocol = record.protocol;
+        firstSeen = timestamp;
+        lastSeen = timestamp;
+    }
+
+    /**
+     * Updates the flow with one of its packets.
+     *
+     * @param record    the packet.
+     * @param timestamp the timestamp of the packet (nanoseconds since epoch).
+     * @param forward   true if the packet goes in the forward direction.
+     */
+    void update(PacketRecord record, long timestamp, boolean forward) {
+        int bytes = Math.max(record.length, 0);
+        if (forward) {
+            fwdPackets++;
+            fwdBytes += bytes;
+        } else {
+            bwdPackets++;
+            bwdBytes += bytes;
+        }
+
+        // Inter-arrival time
+        if (fwdPackets + bwdPackets > 1) {
+            long iat = Math.max(timestamp - lastSeen, 0L);
+            iatCount++;
+            double delta = iat - iatMean;
+            iatMean += delta / iatCount;
+            iatM2 += delta * (iat - iatMean);
+            if (iatCount == 1 || iat < iatMin) {
+                iatMin = iat;
+            }
+            if (iat > iatMax) {
+                iatMax = iat;
+            }
+        }
+        lastSeen = Math.max(lastSeen, timestamp);
+        if (label == 0) {
+            label = record.label;
+        }
+
+        // TCP flags
+        int flags = record.tcpFlags;
+        if (flags != PacketRecord.ABSENT) {
+            if ((flags & PacketDecoder.TCP_FIN) != 0) {
+                finCount++;
+                if (forward) {
+                    fwdFin = true;
+                } else {
+                    bwdFin = true;
+                }
+            }
+            if ((flags & PacketDecoder.TCP_SYN) != 0) {
+                synCount++;
+            }
+            if ((flags & PacketDecoder.TCP_RST) != 0) {
+                rstCount++;
+            }
+            if ((flags & PacketDecoder.TCP_PSH) != 0) {
+                pshCount++;
+            }
+            if ((flags & PacketDecoder.TCP_ACK) != 0) {
+                ackCount++;
+            }
+            if ((flags & PacketDecoder.TCP_URG) != 0) {
+                urgCount++;
+            }
+        }
+    }
+
+    /**
+     * Reassembles a TCP segment of the flow into its HTTP stream.
+     *
+     * @param record    the segment.
+     * @param timestamp the timestamp of the segment (nanoseconds since epoch).
+     * @param forward   true if the segment goes in the forward direction.
+     * @param tracker   the state shared by the HTTP streams.
+     */
+    void updateHttp(PacketRecord record, long timestamp, boolean forward, HttpTracker tracker) {
+        if (fwdHttp == null) {
+            fwdHttp = new HttpStream();
+            bwdHttp = new HttpStream();
+        }
+        (forward ? fwdHttp : bwdHttp).add(record, timestamp, tracker);
+    }
+
+    /**
+     * Completes the HTTP streams of the flow, their buffers are released.
+     *
+     * @param tracker the state shared by the HTTP streams.
+     */
+    void closeHttp(HttpTracker tracker) {
+        if (fwdHttp != null) {
+            fwdHttp.close(tracker);
+            bwdHttp.close(tracker);
+        }
+    }
+
+    public long getSrcAddrHigh() {
+        return srcAddrHigh;
+    }
+
+    public long getSrcAddrLow() {
+        return srcAddrLow;
+    }
+
+    public long getDstAddrHigh() {
+        return dstAddrHigh;
+    }
+
+    public long getDstAddrLow() {
+        return dstAddrLow;
+    }
+
+    public int getSrcPort() {
+        return srcPort;
+    }
+
+    public int getDstPort() {
+        return dstPort;
+    }
+
+    public int getProtocol() {
+        return protocol;
+    }
+
+    /**
+     * Gets the timestamp of the first packet.
+     *
+     * @return the timestamp (nanoseconds since epoch).
+     */
+    public long getFirstSeen() {
+        return firstSeen;
+    }
+
+    /**
+     * Gets the timestamp of the last packet.
+     *
+     * @return the timestamp (nanoseconds since epoch).
+     */
+    public long getLastSeen() {
+        return lastSeen;
+    }
+
+    /**
+     * Gets the duration of the flow.
+     *
+     * @return the duration (nanoseconds).
+     */
+    public long getDuration() {
+        return lastSeen - firstSeen;
+    }
+
+    public long getFwdPackets() {
+        return fwdPackets;
+    }
+
+    public long getBwdPackets() {
+        return bwdPackets;
+    }
+
+    public long getFwdBytes() {
+        return fwdBytes;
+    }
+
+    public long getBwdBytes() {
+        return bwdBytes;
+    }
+
+    public int getFinCount() {
+        return finCount;
+    }
+
+    public int getSynCount() {
+        return synCount;
+    }
+
+    public int getRstCount() {
+        return rstCount;
+    }
+
+    public int getPshCount() {
+        return pshCount;
+    }
+
+    public int getAckCount() {
+        return ackCount;
+    }
+
+    public int getUrgCount() {
+        return urgCount;
+    }
+
+    /**
+     * Gets the ground truth label of the flow: the label of its first attack
+     * packet, or benign (0).
+     *
+     * @return the index of the class value.
+     */
+    public int getLabel() {
+        return label;
+    }
+
+    /**
+     * Gets the mean inter-arrival time.
+     *
+     * @return the mean (nanoseconds), 0 for single-packet flows.
+     */
+    public double getIatMean() {
+        return iatMean;
+    }
+
+    /**
+     * Gets the standard deviation of the inter-arrival times.
+     *
+     * @return the standard deviation (nanoseconds), 0 for flows with less than
+     *         three packets.
+     */
+    public double getIatStd() {
+        return iatCount > 1 ? Math.sqrt(iatM2 / (iatCount - 1)) : 0.0;
+    }
+
+    /**
+     * Gets the minimum inter-arrival time.
+     *
+     * @return the minimum (nanoseconds), 0 for single-packet flows.
+     */
+    public long getIatMin() {
+        return iatMin;
+    }
+
+    /**
+     * Gets the maximum inter-arrival time.
+     *
+     * @return the maximum (nanoseconds), 0 for single-packet flows.
+     */
+    public long getIatMax() {
+        return iatMax;
+    }
+
+    /**
+     * Gets the number of bytes per second over the flow duration.
+     *
+     * @return the byte rate, 0 for flows without duration.
+     */
+    public double getBytesPerSecond() {
+        long duration = getDuration();
+        return duration > 0 ? (fwdBytes + bwdBytes) * 1e9 / duration : 0.0;
+    }
+
+    /**
+     * Gets the number of packets per second over the flow duration.
+     *
+     * @return the packet rate, 0 for flows without duration.
+     */
+    public double getPacketsPerSecond() {
+        long duration = getDuration();
+        return duration > 0 ? (fwdPackets + bwdPackets) * 1e9 / duration : 0.0;
+    }
+
+    /**
+     * Gets the number of HTTP requests, in both directions.
+     *
+     * @return the number of requests, 0 if the streams are not tracked.
+     */
+    public int getHttpRequests() {
+        return fwdHttp == null ? 0 : fwdHttp.getRequests() + bwdHttp.getRequests();
+    }
+
+    /**
+     * Gets the method of the first HTTP request.
+     *
+     * @return the index of the method in {@link HttpStream#METHODS}, or -1 if
+     *         none.
+     */
+    public int getHttpMethod() {
+        if (fwdHttp == null) {
+            return PacketRecord.ABSENT;
+        }
+        return fwdHttp.getMethod() != PacketRecord.ABSENT ? fwdHttp.getMethod() : bwdHttp.getMethod();
+    }
+
+    /**
+     * Gets the mean length of the HTTP request URIs.
+     *
+     * @return the mean length (bytes), 0 if no request.
+     */
+    public double getHttpUriLength() {
+        int requests = getHttpRequests();
+        return requests > 0 ? (double) (fwdHttp.getUriLength() + bwdHttp.getUriLength()) / requests : 0.0;
+    }
+
+    /**
+     * Gets the mean number of header lines of the HTTP requests.
+     *
+     * @return the mean number of headers, 0 if no request.
+     */
+    public double getHttpHeaders() {
+        int requests = getHttpRequests();
+        return requests > 0 ? (double) (fwdHttp.getHeaders() + bwdHttp.getHeaders()) / requests : 0.0;
+    }
+
+    /**
+     * Gets the status of the last HTTP response.
+     *
+     * @return the status code, or -1 if none.
+     */
+    public int getHttpStatus() {
+        if (fwdHttp == null) {
+            return PacketRecord.ABSENT;
+        }
+        return bwdHttp.getResponses() > 0 ? bwdHttp.getStatus() : fwdHttp.getStatus();
+    }
+
+    /**
+     * Gets the number of incomplete HTTP message heads (e.g. the partial
+     * requests of a slowloris attack).
+     *
+     * @return the number of incomplete heads.
+     */
+    public int getHttpIncomplete() {
+        return fwdHttp == null ? 0 : fwdHttp.getIncomplete() + bwdHttp.getIncomplete();
+    }
+
+    /**
+     * Gets the request rate of the HTTP client of the flow, over all its flows,
+     * at its last request.
+     *
+     * @return the rate (requests per second), 0 if no request.
+     */
+    public double getHttpClientRate() {
+        return fwdHttp == null ? 0.0 : Math.max(fwdHttp.getClientRate(), bwdHttp.getClientRate());
+    }
+}
@@ -0,0 +1,278 @@
+package weka.datagenerators.classifiers.classification.pcap;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Aggregates packets into bidirectional flows in bounded memory.
+ *
+ * The flows are kept in a hash table keyed by the canonical 5-tuple (both
+ * directions share the same key) and ordered by last activity, so the idle
+ * flows are always at the head of the table. A flow is completed and handed to
+ * the listener when:
+ * <ul>
+ * <li>no packet was seen for the idle timeout,</li>
+ * <li>it lasted for the active timeout (a new flow starts with the same
+ * key),</li>
+ * <li>a TCP RST was seen, or a TCP FIN was seen in both directions,</li>
+ * <li>the table is full (the least recently active flow is evicted),</li>
+ * <li>the table is flushed at the end of the capture.</li>
+ * </ul>
+ * The packets must be added in timestamp order.
+ *
+ * Optionally the TCP segments are reassembled into the HTTP streams of their
+ * flow, the buffers of the streams being bounded by the same timeouts and
+ * number of flows, and by the budget of an {@link HttpTracker}.
+ */
+public class FlowTable implements PacketAggregator {
+
+    /**
+     * Receives the completed flows.
+     */
+    public interface FlowListener {
+
+        /**
+         * Called when a flow is completed.
+         *
+         * @param flow the completed flow.
+         */
+        void flowCompleted(Flow flow);
+    }
+
+    /**
+     * Canonical 5-tuple of a flow: the lowest endpoint is stored first.
+     */
+    private static final class FlowKey {
+        long addrHighA;
+        long addrLowA;
+        int portA;
+        long addrHighB;
+        long addrLowB;
+        int portB;
+        int protocol;
+        int hash;
+
+        /**
+         * Sets the key from a packet.
+         *
+         * @return true if the packet goes from endpoint A to endpoint B.
+         */
+        boolean set(PacketRecord record) {
+            boolean srcFirst = compare(record.srcAddrHigh, record.srcAddrLow, record.srcPort, record.dstAddrHigh,
+                    record.dstAddrLow, record.dstPort) <= 0;
+            if (srcFirst) {
+                addrHighA = record.srcAddrHigh;
+                addrLowA = record.srcAddrLow;
+                portA = record.srcPort;
+                addrHighB = record.dstAddrHigh;
+                addrLowB = record.dstAddrLow;
+                portB = record.dstPort;
+            } else {
+                addrHighA = record.dstAddrHigh;
+                addrLowA = record.dstAddrLow;
+                portA = record.dstPort;
+                addrHighB = record.srcAddrHigh;
+                addrLowB = record.srcAddrLow;
+                portB = record.srcPort;
+            }
+            protocol = record.protocol;
+
+            long h = addrHighA * 31 + addrLowA;
+            h = h * 31 + portA;
+            h = h * 31 + addrHighB;
+            h = h * 31 + addrLowB;
+            h = h * 31 + portB;
+            h = h * 31 + protocol;
+            hash = (int) (h ^ (h >>> 32));
+            return srcFirst;
+        }
+
+        FlowKey copy() {
+            FlowKey key = new FlowKey();
+            key.addrHighA = addrHighA;
+            key.addrLowA = addrLowA;
+            key.portA = portA;
+            key.addrHighB = addrHighB;
+            key.addrLowB = addrLowB;
+            key.portB = portB;
+            key.protocol = protocol;
+            key.hash = hash;
+            return key;
+        }
+
+        private static int compare(long highA, long lowA, int portA, long highB, long lowB, int portB) {
+            if (highA != highB) {
+                return Long.compareUnsigned(highA, highB);
+            }
+            if (lowA != lowB) {
+                return Long.compareUnsigned(lowA, lowB);
+            }
+            return Integer.compare(portA, portB);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof FlowKey)) {
+                return false;
+            }
+            FlowKey other = (FlowKey) obj;
+            return hash == other.hash && addrLowA == other.addrLowA && addrLowB == other.addrLowB
+                    && portA == other.portA && portB == other.portB && protocol == other.protocol
+                    && addrHighA == other.addrHighA && addrHighB == other.addrHighB;
+        }
+    }
+
+    private final long idleTimeout;
+    private final long activeTimeout;
+    private final int maxFlows;
+    private final HttpTracker http;
+    private final FlowListener listener;
+
+    // Flows ordered by last activity (access order)
+    private final LinkedHashMap<FlowKey, Flow> flows;
+    // Reused key for the lookups
+    private final FlowKey probe = new FlowKey();
+
+    /**
+     * Creates a flow table.
+     *
+     * @param idleTimeout   the idle timeout (nanoseconds).
+     * @param activeTimeout the active timeout (nanoseconds).
+     * @param maxFlows      the maximum number of flows kept in memory.
+     * @param listener      the listener of the completed flows.
+     */
+    public FlowTable(long idleTimeout, long activeTimeout, int maxFlows, FlowListener listener) {
+        this(idleTimeout, activeTimeout, maxFlows, null, listener);
+    }
+
+    /**
+     * Creates a flow table reassembling the HTTP streams of the flows.
+     *
+     * @param idleTimeout   the idle timeout (nanoseconds).
+     * @param activeTimeout the active timeout (nanoseconds).
+     * @param maxFlows      the maximum number of flows kept in memory.
+     * @param http          the state shared by the HTTP streams, or null to not
+     *                      reassemble the TCP segments.
+     * @param listener      the listener of the completed flows.
+     */
+    public FlowTable(long idleTimeout, long activeTimeout, int maxFlows, HttpTracker http, FlowListener listener) {
+        this.idleTimeout = idleTimeout;
+        this.activeTimeout = activeTimeout;
+        this.maxFlows = Math.max(maxFlows, 1);
+        this.http = http;
+        this.listener = listener;
+        this.flows = new LinkedHashMap<FlowKey, Flow>(1024, 0.75f, true);
+    }
+
+    /**
+     * Adds a packet to its flow.
+     *
+     * @param record    the packet.
+     * @param timestamp the timestamp of the packet (nanoseconds since epoch).
+     */
+    @Override
+    public void add(PacketRecord record, long timestamp) {
+        expireIdleFlows(timestamp);
+
+        boolean srcFirst = probe.set(record);
+        Flow flow = flows.get(probe);
+
+        // Active timeout: the flow is completed and a new one starts
+        if (flow != null && timestamp - flow.firstSeen >= activeTimeout) {
+            flows.remove(probe);
+            complete(flow);
+            flow = null;
+        }
+
+        if (flow == null) {
+            if (flows.size() >= maxFlows) {
+                evictEldest();
+            }
+            flow = new Flow(record, timestamp);
+            flows.put(probe.copy(), flow);
+        }
+
+        // The forward direction is the one of the first packet
+        boolean forward = srcFirst == (FlowKey.compare(flow.srcAddrHigh, flow.srcAddrLow, flow.srcPort,
+                flow.dstAddrHigh, flow.dstAddrLow, flow.dstPort) <= 0);
+        flow.update(record, timestamp, forward);
+        if (http != null && record.protocol == PacketDecoder.PROTOCOL_TCP) {
+            flow.updateHttp(record, timestamp, forward, http);
+        }
+
+        // TCP termination
+        if (flow.rstCount > 0 || (flow.fwdFin && flow.bwdFin)) {
+            flows.remove(probe);
+            complete(flow);
+        }
+    }
+
+    /**
+     * Hands a completed flow to the listener.
+     *
+     * @param flow the completed flow.
+     */
+    private void complete(Flow flow) {
+        if (http != null) {
+            flow.closeHttp(http);
+        }
+        listener.flowCompleted(flow);
+    }
+
+    /**
+     * Completes the flows that are idle at the given time.
+     *
+     * @param now the current time (nanoseconds since epoch).
+     */
+    public void expireIdleFlows(long now) {
+        Iterator<Flow> it = flows.values().iterator();
+        while (it.hasNext()) {
+            Flow flow = it.next();
+            if (now - flow.lastSeen < idleTimeout) {
+                break;
+            }
+            it.remove();
+            complete(flow);
+        }
+    }
+
+    /**
+     * Completes the least recently active flow.
+     */
+    private void evictEldest() {
+        Iterator<Map.Entry<FlowKey, Flow>> it = flows.entrySet().iterator();
+        if (it.hasNext()) {
+            Flow flow = it.next().getValue();
+            it.remove();
+            complete(flow);
+        }
+    }
+
+    /**
+     * Completes all the flows (end of the capture).
+     */
+    @Override
+    public void flush() {
+        Iterator<Flow> it = flows.values().iterator();
+        while (it.hasNext()) {
+            Flow flow = it.next();
+            it.remove();
+            complete(flow);
+        }
+    }
+
+    /**
+     * Gets the number of flows in memory.
+     *
+     * @return the number of active flows.
+     */
+    public int size() {
+        return flows.size();
+    }
+}
@@ -0,0 +1,135 @@
+package weka.datagenerators.classifiers.classification.pcap;
+
+import java.util.HashMap;
+
+/**
+ * Counts the occurrences of 128 bits keys (addresses, ports) and maintains the
+ * number of distinct keys and their entropy incrementally.
+ *
+ * The entropy is derived from the running sum of c * log2(c) over the counts
+ * c: H = log2(N) - (sum c * log2(c)) / N. Incrementing or decrementing a key
+ * updates the sum in O(1), so the entropy of a window never requires a rescan.
+ */
+public class FrequencyCounter {
+
+    /**
+     * Key of a counter (reused for the lookups).
+     */
+    private static final class Key {
+        long high;
+        long low;
+
+        Key set(long high, long low) {
+            this.high = high;
+            this.low = low;
+            return this;
+        }
+
+        @Override
+        public int hashCode() {
+            long h = high * 0x9e3779b97f4a7c15L + low;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return high == other.high && low == other.low;
+        }
+    }
+
+    private static final double LOG2 = Math.log(2.0);
+
+    private final HashMap<Key, int[]> counts = new HashMap<Key, int[]>();
+    private final Key probe = new Key();
+    private long total;
+    private double sumCLogC;
+
+    /**
+     * Increments the count of a key.
+     *
+     * @param high the high 64 bits of the key.
+     * @param low  the low 64 bits of the key.
+     */
+    public void increment(long high, long low) {
+        int[] count = counts.get(probe.set(high, low));
+        if (count == null) {
+            count = new int[1];
+            counts.put(new Key().set(high, low), count);
+        }
+        sumCLogC += cLogC(count[0] + 1) - cLogC(count[0]);
+        count[0]++;
+        total++;
+    }
+
+    /**
+     * Decrements the count of a key, the key is removed when its count drops
+     * to zero.
+     *
+     * @param high the high 64 bits of the key.
+     * @param low  the low 64 bits of the key.
+     */
+    public void decrement(long high, long low) {
+        int[] count = counts.get(probe.set(high, low));
+        if (count == null) {
+            return;
+        }
+        sumCLogC += cLogC(count[0] - 1) - cLogC(count[0]);
+        count[0]--;
+        total--;
+        if (count[0] == 0) {
+            counts.remove(probe);
+        }
+        if (total == 0) {
+            // Drop the rounding errors accumulated by the running sum
+            sumCLogC = 0.0;
+        }
+    }
+
+    /**
+     * Gets the number of distinct keys.
+     *
+     * @return the number of keys with a positive count.
+     */
+    public int distinct() {
+        return counts.size();
+    }
+
+    /**
+     * Gets the total count.
+     *
+     * @return the sum of the counts.
+     */
+    public long total() {
+        return total;
+    }
+
+    /**
+     * Gets the Shannon entropy of the keys.
+     *
+     * @return the entropy (bits), 0 if the counter is empty.
+     */
+    public double entropy() {
+        if (total <= 0) {
+            return 0.0;
+        }
+        double entropy = Math.log(total) / LOG2 - sumCLogC / total;
+        return entropy > 0.0 ? entropy : 0.0;
+    }
+
+    /**
+     * Resets the counter.
+     */
+    public void clear() {
+        counts.clear();
+        total = 0;
+        sumCLogC = 0.0;
+    }
+
+    private static double cLogC(int c) {
+        return c > 1 ? c * Math.log(c) / LOG2 : 0.0;
+    }
+}
@@ -0,0 +1,472 @@
+package weka.datagenerators.classifiers.classification.pcap;
+
+/**
+ * One direction of a TCP connection, reassembled and parsed as HTTP/1.x
+ * requests or responses.
+ *
+ * The segments are reassembled in sequence order: a retransmitted segment is
+ * trimmed, a gap (lost or reordered segment) drops the buffered bytes and the
+ * stream waits for a segment starting a new message. Only the message heads
+ * are buffered, up to {@link #MAX_HEAD} bytes, and for at most
+ * {@link #HEAD_TIMEOUT}; the bodies of known length are skipped as they
+ * arrive. A head that does not fit, times out or is still partial when the
+ * connection ends is counted as incomplete. A direction whose first bytes are
+ * not HTTP is ignored, so the other connections cost no buffer.
+ */
+public class HttpStream {
+
+    /** The request methods, in the order of the values of the method attribute. */
+    public static final String[] METHODS = { "GET", "HEAD", "POST", "PUT", "DELETE", "CONNECT", "OPTIONS",
+            "TRACE", "PATCH" };
+
+    /** The max size of a message head (bytes). */
+    public static final int MAX_HEAD = 8192;
+
+    /** The max time to receive a message head (nanoseconds). */
+    public static final long HEAD_TIMEOUT = 60000000000L;
+
+    private static final int INITIAL_BUFFER = 512;
+    private static final long SEQ_MASK = 0xffffffffL;
+    private static final byte[] RESPONSE = { 'H', 'T', 'T', 'P', '/' };
+    private static final byte[][] METHOD_TOKENS = new byte[METHODS.length][];
+
+    static {
+        for (int i = 0; i < METHODS.length; i++) {
+            METHOD_TOKENS[i] = (METHODS[i] + " ").getBytes();
+        }
+    }
+
+    // Reassembly
+    private long nextSeq = PacketRecord.ABSENT;
+    private boolean http;
+    private boolean ignored;
+    private boolean synced;
+    private byte[] buffer;
+    private int length;
+    private int scanned;
+    private long headStart;
+    private long skip;
+
+    // Statistics of the parsed messages
+    private int requests;
+    private int method = PacketRecord.ABSENT;
+    private long uriLength;
+    private long headers;
+    private int responses;
+    private int status = PacketRecord.ABSENT;
+    private int incomplete;
+    private double clientRate;
+
+    /**
+     * Adds a segment of this direction.
+     *
+     * @param record    the segment.
+     * @param timestamp the timestamp of the segment (nanoseconds since epoch).
+     * @param tracker   the state shared by the streams.
+     */
+    void add(PacketRecord record, long timestamp, HttpTracker tracker) {
+        if (ignored || record.tcpSeq == PacketRecord.ABSENT) {
+            return;
+        }
+        long seq = record.tcpSeq;
+        if (record.tcpFlags != PacketRecord.ABSENT && (record.tcpFlags & PacketDecoder.TCP_SYN) != 0) {
+            // New connection, the SYN takes one sequence number
+            desync(tracker);
+            nextSeq = (seq + 1) & SEQ_MASK;
+            seq = nextSeq;
+        }
+        int offset = record.payloadOffset;
+        int count = record.payloadLength;
+        if (count <= 0 || record.frame == null) {
+            return;
+        }
+
+        // A partial head received for too long
+        if (synced && length > 0 && timestamp - headStart > HEAD_TIMEOUT) {
+            incomplete++;
+            desync(tracker);
+        }
+
+        if (nextSeq != PacketRecord.ABSENT) {
+            int delta = (int) (seq - nextSeq);
+            if (delta < 0) {
+                // Retransmitted bytes
+                if (-delta >= count) {
+                    return;
+                }
+                offset -= delta;
+                count += delta;
+            } else if (delta > 0) {
+                // Missing bytes
+                desync(tracker);
+            }
+        }
+        nextSeq = (seq + record.payloadLength) & SEQ_MASK;
+
+        // Resynchronize on a segment starting a message
+        if (!synced) {
+            if (!isMessageStart(record.frame, offset, count)) {
+                ignored = !http;
+                return;
+            }
+            http = true;
+            synced = true;
+        }
+        deliver(record, offset, count, timestamp, tracker);
+    }
+
+    /**
+     * Parses the in-order bytes of a segment.
+     */
+    private void deliver(PacketRecord record, int offset, int count, long timestamp, HttpTracker tracker) {
+        byte[] data = record.frame;
+        while (count > 0 && synced) {
+            // Body
+            if (skip > 0) {
+                int n = (int) Math.min(skip, count);
+                skip -= n;
+                offset += n;
+                count -= n;
+                continue;
+            }
+
+            // Head
+            int n = Math.min(count, MAX_HEAD - length);
+            if (!ensureCapacity(length + n, tracker)) {
+                incomplete++;
+                desync(tracker);
+                return;
+            }
+            if (length == 0) {
+                headStart = timestamp;
+            }
+            System.arraycopy(data, offset, buffer, length, n);
+            length += n;
+            offset += n;
+            count -= n;
+
+            // Parse the complete heads
+            int end;
+            while (synced && skip == 0 && length > 0 && (end = headEnd()) > 0) {
+                parseHead(end, record, timestamp, tracker);
+                consume(end);
+                int body = (int) Math.min(skip, length);
+                skip -= body;
+                consume(body);
+                headStart = timestamp;
+            }
+            if (!synced) {
+                desync(tracker);
+                return;
+            }
+            if (length == MAX_HEAD) {
+                incomplete++;
+                desync(tracker);
+                return;
+            }
+            if (length == 0) {
+                releaseBuffer(tracker);
+            }
+        }
+    }
+
+    /**
+     * Completes the stream (end of the connection).
+     *
+     * @param tracker the state shared by the streams.
+     */
+    void close(HttpTracker tracker) {
+        if (synced && length > 0) {
+            incomplete++;
+        }
+        desync(tracker);
+    }
+
+    /**
+     * Drops the buffered bytes, the stream waits for the start of a message.
+     */
+    private void desync(HttpTracker tracker) {
+        synced = false;
+        length = 0;
+        scanned = 0;
+        skip = 0;
+        releaseBuffer(tracker);
+    }
+
+    private void releaseBuffer(HttpTracker tracker) {
+        if (buffer != null) {
+            tracker.release(buffer.length);
+            buffer = null;
+        }
+    }
+
+    /**
+     * Grows the buffer within the budget of the tracker.
+     *
+     * @return false if the budget is exhausted.
+     */
+    private boolean ensureCapacity(int capacity, HttpTracker tracker) {
+        int current = buffer == null ? 0 : buffer.length;
+        if (capacity <= current) {
+            return true;
+        }
+        int size = Math.min(Math.max(Math.max(capacity, current * 2), INITIAL_BUFFER), MAX_HEAD);
+        if (!tracker.reserve(size - current)) {
+            return false;
+        }
+        byte[] grown = new byte[size];
+        if (buffer != null) {
+            System.arraycopy(buffer, 0, grown, 0, length);
+        }
+        buffer = grown;
+        return true;
+    }
+
+    /**
+     * Removes bytes from the head of the buffer.
+     */
+    private void consume(int count) {
+        if (count > 0) {
+            System.arraycopy(buffer, count, buffer, 0, length - count);
+            length -= count;
+            scanned = 0;
+        }
+    }
+
+    /**
+     * Finds the end of the message head in the buffer (empty line).
+     *
+     * @return the offset after the empty line, or -1 if the head is partial.
+     */
+    private int headEnd() {
+        for (int i = Math.max(scanned, 1); i < length; i++) {
+            if (buffer[i] == '\n') {
+                if (buffer[i - 1] == '\n') {
+                    return i + 1;
+                }
+                if (i >= 3 && buffer[i - 1] == '\r' && buffer[i - 2] == '\n' && buffer[i - 3] == '\r') {
+                    return i + 1;
+                }
+            }
+        }
+        scanned = Math.max(length - 3, 0);
+        return -1;
+    }
+
+    /**
+     * Parses a message head: the request or status line and the header
+     * lines.
+     */
+    private void parseHead(int end, PacketRecord record, long timestamp, HttpTracker tracker) {
+        int lineEnd = lineEnd(0, end);
+        long contentLength = 0;
+        boolean hasLength = false;
+        boolean chunked = false;
+        int headerCount = 0;
+        for (int pos = skipLine(lineEnd, end); pos < end; pos = skipLine(lineEnd, end)) {
+            lineEnd = lineEnd(pos, end);
+            if (lineEnd == pos) {
+                break;
+            }
+            headerCount++;
+            if (startsWithIgnoreCase(pos, lineEnd, "content-length:")) {
+                contentLength = parseNumber(pos + 15, lineEnd);
+                hasLength = true;
+            } else if (startsWithIgnoreCase(pos, lineEnd, "transfer-encoding:")) {
+                chunked = contains(pos + 18, lineEnd, "chunked");
+            }
+        }
+
+        if (startsWith(buffer, 0, end, RESPONSE)) {
+            int code = (int) parseNumber(indexOf(0, end, ' ') + 1, Math.min(indexOf(0, end, ' ') + 4, end));
+            responses++;
+            status = code;
+            if (code < 200 || code == 204 || code == 304) {
+                contentLength = 0;
+            } else if (!chunked && !hasLength) {
+                // The body ends with the connection
+                synced = false;
+                return;
+            }
+        } else {
+            int index = methodIndex(buffer, 0, end);
+            if (index < 0) {
+                synced = false;
+                return;
+            }
+            int uriStart = METHODS[index].length() + 1;
+            int uriEnd = indexOf(uriStart, lineEnd(0, end), ' ');
+            requests++;
+            if (method == PacketRecord.ABSENT) {
+                method = index;
+            }
+            uriLength += (uriEnd < 0 ? lineEnd(0, end) : uriEnd) - uriStart;
+            headers += headerCount;
+            clientRate = tracker.request(record.srcAddrHigh, record.srcAddrLow, timestamp);
+        }
+
+        if (chunked) {
+            // The chunks are not followed, wait for the next message
+            synced = false;
+        } else {
+            skip = contentLength;
+        }
+    }
+
+    // Helpers over the buffer
+
+    private int lineEnd(int pos, int end) {
+        int i = indexOf(pos, end, '\n');
+        if (i < 0) {
+            return end;
+        }
+        return i > pos && buffer[i - 1] == '\r' ? i - 1 : i;
+    }
+
+    private int skipLine(int lineEnd, int end) {
+        int i = indexOf(lineEnd, end, '\n');
+        return i < 0 ? end : i + 1;
+    }
+
+    private int indexOf(int pos, int end, char c) {
+        for (int i = pos; i < end; i++) {
+            if (buffer[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean startsWithIgnoreCase(int pos, int end, String prefix) {
+        if (end - pos < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (Character.toLowerCase((char) buffer[pos + i]) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean contains(int pos, int end, String token) {
+        for (int i = pos; i + token.length() <= end; i++) {
+            if (startsWithIgnoreCase(i, end, token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long parseNumber(int pos, int end) {
+        long value = 0;
+        boolean digits = false;
+        for (int i = pos; i < end && i >= 0; i++) {
+            byte b = buffer[i];
+            if (b >= '0' && b <= '9') {
+                value = Math.min(value * 10 + (b - '0'), Long.MAX_VALUE / 10);
+                digits = true;
+            } else if (digits || (b != ' ' && b != '\t')) {
+                break;
+            }
+        }
+        return value;
+    }
+
+    private static boolean startsWith(byte[] data, int offset, int count, byte[] prefix) {
+        if (count < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int methodIndex(byte[] data, int offset, int count) {
+        for (int i = 0; i < METHOD_TOKENS.length; i++) {
+            if (startsWith(data, offset, count, METHOD_TOKENS[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isMessageStart(byte[] data, int offset, int count) {
+        return startsWith(data, offset, count, RESPONSE) || methodIndex(data, offset, count) >= 0;
+    }
+
+    /**
+     * Gets the number of requests.
+     *
+     * @return the number of complete request heads.
+     */
+    public int getRequests() {
+        return requests;
+    }
+
+    /**
+     * Gets the method of the first request.
+     *
+     * @return the index of the method in {@link #METHODS}, or -1 if none.
+     */
+    public int getMethod() {
+        return method;
+    }
+
+    /**
+     * Gets the total length of the request URIs.
+     *
+     * @return the total length (bytes).
+     */
+    public long getUriLength() {
+        return uriLength;
+    }
+
+    /**
+     * Gets the total number of request header lines.
+     *
+     * @return the number of header lines.
+     */
+    public long getHeaders() {
+        return headers;
+    }
+
+    /**
+     * Gets the number of responses.
+     *
+     * @return the number of complete response heads.
+     */
+    public int getResponses() {
+        return responses;
+    }
+
+    /**
+     * Gets the status of the last response.
+     *
+     * @return the status code, or -1 if none.
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Gets the number of incomplete message heads.
+     *
+     * @return the number of heads dropped or partial at the end.
+     */
+    public int getIncomplete() {
+        return incomplete;
+    }
+
+    /**
+     * Gets the request rate of the client at its last request.
+     *
+     * @return the rate (requests per second), 0 if no request.
+     */
+    public double getClientRate() {
+        return clientRate;
+    }
+}
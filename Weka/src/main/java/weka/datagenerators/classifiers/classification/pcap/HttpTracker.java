@@ -0,0 +1,162 @@
+package weka.datagenerators.classifiers.classification.pcap;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * State shared by the HTTP streams of a capture: the budget of the bytes
+ * buffered by the reassembly and the request rate of the clients.
+ *
+ * The buffered bytes of all the streams are bounded, so a flood of
+ * connections sending partial requests cannot grow the heap beyond the
+ * budget: a stream that cannot buffer a message head drops it. The clients
+ * are kept in a table of bounded size, the least recently active client being
+ * evicted.
+ */
+public class HttpTracker {
+
+    /** The default max number of bytes buffered by all the streams. */
+    public static final long DEFAULT_MAX_BUFFERED = 64L << 20;
+
+    /** The time constant of the request rates (nanoseconds). */
+    public static final long RATE_TIME_CONSTANT = 1000000000L;
+
+    /**
+     * Address of a client.
+     */
+    private static final class ClientKey {
+        long addrHigh;
+        long addrLow;
+
+        ClientKey(long addrHigh, long addrLow) {
+            this.addrHigh = addrHigh;
+            this.addrLow = addrLow;
+        }
+
+        @Override
+        public int hashCode() {
+            long h = addrHigh * 31 + addrLow;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ClientKey)) {
+                return false;
+            }
+            ClientKey other = (ClientKey) obj;
+            return addrLow == other.addrLow && addrHigh == other.addrHigh;
+        }
+    }
+
+    /**
+     * Decayed request count of a client.
+     */
+    private static final class Client {
+        double rate;
+        long last;
+    }
+
+    private final long maxBuffered;
+    private final int maxClients;
+    private long buffered;
+
+    // Clients ordered by last request (access order)
+    private final LinkedHashMap<ClientKey, Client> clients;
+    // Reused key for the lookups
+    private final ClientKey probe = new ClientKey(0L, 0L);
+
+    /**
+     * Creates a tracker with the default budget.
+     *
+     * @param maxClients the max number of clients kept in memory.
+     */
+    public HttpTracker(int maxClients) {
+        this(DEFAULT_MAX_BUFFERED, maxClients);
+    }
+
+    /**
+     * Creates a tracker.
+     *
+     * @param maxBuffered the max number of bytes buffered by all the streams.
+     * @param maxClients  the max number of clients kept in memory.
+     */
+    public HttpTracker(long maxBuffered, int maxClients) {
+        this.maxBuffered = maxBuffered;
+        this.maxClients = Math.max(maxClients, 1);
+        this.clients = new LinkedHashMap<ClientKey, Client>(1024, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ClientKey, Client> eldest) {
+                return size() > HttpTracker.this.maxClients;
+            }
+        };
+    }
+
+    /**
+     * Reserves buffer bytes.
+     *
+     * @param bytes the number of bytes.
+     * @return false if the budget is exhausted.
+     */
+    boolean reserve(int bytes) {
+        if (buffered + bytes > maxBuffered) {
+            return false;
+        }
+        buffered += bytes;
+        return true;
+    }
+
+    /**
+     * Releases buffer bytes.
+     *
+     * @param bytes the number of bytes.
+     */
+    void release(int bytes) {
+        buffered -= bytes;
+    }
+
+    /**
+     * Counts a request of a client.
+     *
+     * @param addrHigh  the high 64 bits of the client address.
+     * @param addrLow   the low 64 bits of the client address.
+     * @param timestamp the timestamp of the request (nanoseconds since epoch).
+     * @return the request rate of the client (requests per second).
+     */
+    double request(long addrHigh, long addrLow, long timestamp) {
+        probe.addrHigh = addrHigh;
+        probe.addrLow = addrLow;
+        Client client = clients.get(probe);
+        if (client == null) {
+            client = new Client();
+            client.last = timestamp;
+            clients.put(new ClientKey(addrHigh, addrLow), client);
+        }
+
+        // Exponentially decayed count over the time constant
+        long elapsed = Math.max(timestamp - client.last, 0L);
+        client.rate = client.rate * Math.exp(-(double) elapsed / RATE_TIME_CONSTANT) + 1.0;
+        client.last = Math.max(client.last, timestamp);
+        return client.rate * 1e9 / RATE_TIME_CONSTANT;
+    }
+
+    /**
+     * Gets the number of bytes buffered by the streams.
+     *
+     * @return the number of bytes.
+     */
+    public long getBuffered() {
+        return buffered;
+    }
+
+    /**
+     * Gets the number of clients in memory.
+     *
+     * @return the number of clients.
+     */
+    public int getClients() {
+        return clients.size();
+    }
+}
@@ -0,0 +1,374 @@
+package weka.datagenerators.classifiers.classification.pcap;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPOutputStream;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+/**
+ * Writes instances to a stream from a dedicated writer thread, without
+ * building a dataset.
+ *
+ * The instances are copied with their string values on the calling thread,
+ * then handed to the writer thread in batches through a bounded queue: the
+ * serialization (and compression) overlaps the generation, and the caller
+ * blocks when the writer falls behind, so the memory used does not depend on
+ * the number of instances.
+ *
+ * <ul>
+ * <li>ARFF: the header of the dataset then one row per line.</li>
+ * <li>CSV: the quoted attribute names then one row per line, as the CSV
+ * saver.</li>
+ * <li>Binary: the serialized header of the dataset, then for each instance a
+ * true boolean followed by the values (a double, or a UTF string for the
+ * string attributes, preceded by a missing flag), and a false boolean at the
+ * end. See {@link #readBinary(InputStream)}.</li>
+ * </ul>
+ */
+public class InstanceSink {
+
+    /** ARFF format. */
+    public static final int ARFF = 0;
+    /** CSV format. */
+    public static final int CSV = 1;
+    /** Binary format. */
+    public static final int BINARY = 2;
+
+    /** The default number of batches in the queue. */
+    public static final int DEFAULT_QUEUE_SIZE = 64;
+
+    // Instances per batch, and the end of the instances
+    private static final int BATCH_SIZE = 256;
+    private static final Row[] END = new Row[0];
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * An instance copied for the writer thread.
+     */
+    private static final class Row {
+        final double[] values;
+        final String[] strings;
+
+        Row(double[] values, String[] strings) {
+            this.values = values;
+            this.strings = strings;
+        }
+    }
+
+    private final int format;
+    private final Instances header;
+    private final int[] stringAttributes;
+    private final BlockingQueue<Row[]> queue;
+    private final Thread thread;
+    private final OutputStream stream;
+    private Row[] batch = new Row[BATCH_SIZE];
+    private int batched;
+    private long count;
+    private volatile Throwable failure;
+    private boolean closed;
+
+    /**
+     * Creates a sink and starts its writer thread.
+     *
+     * @param out       the output stream, closed by the sink (also when the sink
+     *                  could not be created).
+     * @param format    the format (ARFF, CSV or BINARY).
+     * @param compress  true to compress the output with gzip.
+     * @param dataset   the format of the dataset.
+     * @param queueSize the max number of batches waiting for the writer.
+     * @throws IOException if the output could not be opened.
+     */
+    public InstanceSink(OutputStream out, int format, boolean compress, Instances dataset, int queueSize)
+            throws IOException {
+        // The output is closed if the sink could not be created
+        boolean opened = false;
+        try {
+            if (format < ARFF || format > BINARY) {
+                throw new IllegalArgumentException("Invalid sink format: " + format);
+            }
+            this.format = format;
+            // The writer formats the string values with its own attributes
+            header = dataset.stringFreeStructure();
+            int numStrings = 0;
+            for (int j = 0; j < header.numAttributes(); j++) {
+                if (header.attribute(j).isString()) {
+                    numStrings++;
+                }
+            }
+            stringAttributes = new int[numStrings];
+            for (int j = 0, k = 0; j < header.numAttributes(); j++) {
+                if (header.attribute(j).isString()) {
+                    stringAttributes[k++] = j;
+                }
+            }
+
+            stream = compress ? new GZIPOutputStream(out, BUFFER_SIZE) : new BufferedOutputStream(out, BUFFER_SIZE);
+            opened = true;
+        } finally {
+            if (!opened) {
+                out.close();
+            }
+        }
+        queue = new ArrayBlockingQueue<Row[]>(Math.max(queueSize, 1));
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, "Pcap-sink");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Adds an instance of the dataset. The instance can be changed once added,
+     * and its string attributes can hold other values.
+     *
+     * @param instance the instance.
+     * @throws IOException if the writer failed, or was interrupted.
+     */
+    public void add(Instance instance) throws IOException {
+        checkFailure();
+        String[] strings = null;
+        if (stringAttributes.length != 0) {
+            strings = new String[stringAttributes.length];
+            for (int k = 0; k < stringAttributes.length; k++) {
+                int j = stringAttributes[k];
+                strings[k] = instance.isMissing(j) ? null : instance.stringValue(j);
+            }
+        }
+        batch[batched++] = new Row(instance.toDoubleArray(), strings);
+        count++;
+        if (batched == BATCH_SIZE) {
+            put(batch);
+            batch = new Row[BATCH_SIZE];
+            batched = 0;
+        }
+    }
+
+    /**
+     * Gets the number of instances added.
+     *
+     * @return the number of instances.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Writes the remaining instances, waits for the writer thread and closes
+     * the output.
+     *
+     * @throws IOException if the writer failed, or was interrupted.
+     */
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (batched > 0) {
+                Row[] last = new Row[batched];
+                System.arraycopy(batch, 0, last, 0, batched);
+                put(last);
+            }
+            put(END);
+            thread.join();
+        } catch (InterruptedException e) {
+            thread.interrupt();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing the instances");
+        } finally {
+            batch = null;
+        }
+        checkFailure();
+    }
+
+    /**
+     * Hands a batch to the writer thread, waiting for room in the queue.
+     *
+     * @param rows the batch.
+     * @throws IOException if the writer failed, or was interrupted.
+     */
+    private void put(Row[] rows) throws IOException {
+        try {
+            queue.put(rows);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing the instances");
+        }
+    }
+
+    /**
+     * Throws the failure of the writer thread, if any.
+     *
+     * @throws IOException the failure.
+     */
+    private void checkFailure() throws IOException {
+        Throwable cause = failure;
+        if (cause instanceof IOException) {
+            throw (IOException) cause;
+        }
+        if (cause != null) {
+            throw new IOException("Could not write the instances", cause);
+        }
+    }
+
+    /**
+     * Writes the batches of the queue until the end (writer thread). After a
+     * failure the batches are dropped, so the caller never blocks.
+     */
+    private void write() {
+        try {
+            try {
+                if (format == BINARY) {
+                    writeBinary();
+                } else {
+                    writeText();
+                }
+            } finally {
+                stream.close();
+            }
+        } catch (Throwable e) {
+            if (failure == null) {
+                failure = e;
+            }
+            drain();
+        }
+    }
+
+    /**
+     * Drops the batches of the queue until the end.
+     */
+    private void drain() {
+        try {
+            while (queue.take() != END) {
+                // Drop
+            }
+        } catch (InterruptedException e) {
+            // The caller gave up
+        }
+    }
+
+    /**
+     * Writes the rows in the ARFF or CSV format.
+     *
+     * @throws Exception if the rows could not be written.
+     */
+    private void writeText() throws Exception {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_SIZE);
+        if (format == ARFF) {
+            // The header ends with the @data line
+            writer.write(header.toString());
+        } else {
+            for (int j = 0; j < header.numAttributes(); j++) {
+                writer.write(j > 0 ? "," : "");
+                writer.write(Utils.quote(header.attribute(j).name()));
+            }
+            writer.write('\n');
+        }
+
+        Row[] rows;
+        while ((rows = queue.take()) != END) {
+            for (Row row : rows) {
+                // The string attributes hold the value of the current row
+                if (row.strings != null) {
+                    for (int k = 0; k < stringAttributes.length; k++) {
+                        if (row.strings[k] != null) {
+                            header.attribute(stringAttributes[k]).setStringValue(row.strings[k]);
+                            row.values[stringAttributes[k]] = 0;
+                        }
+                    }
+                }
+                Instance instance = new DenseInstance(1.0, row.values);
+                instance.setDataset(header);
+                writer.write(instance.toString());
+                writer.write('\n');
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * Writes the rows in the binary format.
+     *
+     * @throws Exception if the rows could not be written.
+     */
+    private void writeBinary() throws Exception {
+        ObjectOutputStream out = new ObjectOutputStream(stream);
+        out.writeObject(new Instances(header, 0));
+        Row[] rows;
+        while ((rows = queue.take()) != END) {
+            for (Row row : rows) {
+                out.writeBoolean(true);
+                for (int j = 0, k = 0; j < row.values.length; j++) {
+                    if (k < stringAttributes.length && stringAttributes[k] == j) {
+                        String value = row.strings[k++];
+                        out.writeBoolean(value == null);
+                        if (value != null) {
+                            out.writeUTF(value);
+                        }
+                    } else {
+                        out.writeDouble(row.values[j]);
+                    }
+                }
+            }
+        }
+        out.writeBoolean(false);
+        out.flush();
+    }
+
+    /**
+     * Reads the instances written in the binary format.
+     *
+     * @param in the input stream, uncompressed.
+     * @return the instances.
+     * @throws IOException if the instances could not be read.
+     */
+    public static Instances readBinary(InputStream in) throws IOException {
+        ObjectInputStream input = new ObjectInputStream(in);
+        Instances result;
+        try {
+            result = (Instances) input.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Invalid header", e);
+        }
+        int numAttributes = result.numAttributes();
+        try {
+            while (input.readBoolean()) {
+                double[] values = new double[numAttributes];
+                for (int j = 0; j < numAttributes; j++) {
+                    Attribute attribute = result.attribute(j);
+                    if (!attribute.isString()) {
+                        values[j] = input.readDouble();
+                    } else if (input.readBoolean()) {
+                        values[j] = Utils.missingValue();
+                    } else {
+                        values[j] = attribute.addStringValue(input.readUTF());
+                    }
+                }
+                result.add(new DenseInstance(1.0, values));
+            }
+        } catch (EOFException e) {
+            throw new IOException("Truncated instances after " + result.numInstances() + " rows", e);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,71 @@
+package weka.datagenerators.classifiers.classification.pcap;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Growable column of primitive int values.
+ *
+ * The backing array grows by half of its size when full, so appending N values
+ * costs O(N) copies in total. A column can also be a read-only view of a
+ * buffer, e.g. the columns of a {@link ColumnCache} file.
+ */
+public class IntColumn {
+
+    private int[] values;
+    private IntBuffer mapped;
+    private int size;
+
+    /**
+     * Creates an empty column.
+     *
+     * @param capacity the initial capacity.
+     */
+    public IntColumn(int capacity) {
+        values = new int[Math.max(capacity, 8)];
+    }
+
+    /**
+     * Creates a read-only column over the remaining values of a buffer.
+     *
+     * @param buffer the values.
+     */
+    public IntColumn(IntBuffer buffer) {
+        mapped = buffer.slice();
+        size = mapped.remaining();
+    }
+
+    /**
+     * Appends a value.
+     *
+     * @param value the value to append.
+     */
+    public void add(int value) {
+        if (mapped != null) {
+            throw new IllegalStateException("Read-only column");
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size + (size >> 1));
+        }
+        values[size++] = value;
+    }
+
+    /**
+     * Gets a value.
+     *
+     * @param index the row index.
+     * @return the value.
+     */
+    public int get(int index) {
+        return mapped != null ? mapped.get(index) : values[index];
+    }
+
+    /**
+     * Gets the number of values.
+     *
+     * @return the number of values.
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,588 @@
+package weka.datagenerators.classifiers.classification.pcap;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Packet source reading a pcap or pcapng file in pure Java.
+ *
+ * The file is memory-mapped (in overlapping segments of 1 GB, so files of any
+ * size can be mapped) and split into record-aligned chunks of about
+ * {@link #CHUNK_SIZE} bytes by walking the record (or block) headers. The
+ * chunks are decoded on a fork/join pool into {@link PacketChunk} column
+ * buffers, a few chunks ahead of the reader, and concatenated in file order,
+ * which is the capture order of the packets. The frames are copied from the
+ * mapping into a buffer reused by the whole chunk, so nothing is allocated per
+ * packet.
+ *
+ * A {@link PacketSampler} and a snap length cut the work at the source: the
+ * records that are not sampled are skipped before their frames are copied or
+ * decoded, and the frames are truncated to the snap length. For a reservoir
+ * sample, the record headers of the whole file are walked when it is opened,
+ * to count the records.
+ *
+ * The packets are read in file order. A capture written by a single capture
+ * process is in timestamp order, but the timestamps of a file whose records
+ * were merged or edited may go backwards: such files must be sorted (e.g. with
+ * reordercap) before the packets are aggregated into flows or windows.
+ *
+ * The pcap files may be little or big endian, with microsecond or nanosecond
+ * timestamps. The pcapng files may hold several sections and interfaces, with
+ * any timestamp resolution; the simple packet blocks (no timestamp) are
+ * skipped. A truncated record at the end of the file is ignored.
+ */
+public class MappedPcapSource implements PacketSource {
+
+    /** The target size of the decoded chunks (bytes). */
+    public static final int CHUNK_SIZE = 4 << 20;
+
+    private static final long SEGMENT_SIZE = 1L << 30;
+    private static final long SEGMENT_OVERLAP = 64L << 20;
+
+    // pcap magic numbers
+    private static final int PCAP_MICROS = 0xa1b2c3d4;
+    private static final int PCAP_NANOS = 0xa1b23c4d;
+    private static final int PCAP_HEADER = 24;
+    private static final int PCAP_RECORD_HEADER = 16;
+
+    // pcapng block types and byte order magic
+    private static final int PCAPNG_SECTION = 0x0a0d0d0a;
+    private static final int PCAPNG_INTERFACE = 1;
+    private static final int PCAPNG_PACKET = 2;
+    private static final int PCAPNG_ENHANCED_PACKET = 6;
+    private static final int PCAPNG_BYTE_ORDER = 0x1a2b3c4d;
+    private static final int PCAPNG_OPTION_TSRESOL = 9;
+    private static final int PCAPNG_DEFAULT_TSRESOL = 6;
+
+    private static final long[] POWERS_OF_TEN = { 1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L,
+            100000000L, 1000000000L, 10000000000L, 100000000000L, 1000000000000L, 10000000000000L,
+            100000000000000L, 1000000000000000L, 10000000000000000L, 100000000000000000L,
+            1000000000000000000L };
+
+    /**
+     * The interfaces of a pcapng section. Immutable: a new instance is created
+     * for each interface block, so the chunks share the state they start with.
+     */
+    private static final class Interfaces {
+
+        static final Interfaces EMPTY = new Interfaces(new int[0], new int[0]);
+
+        final int[] linkTypes;
+        final int[] tsresols;
+
+        Interfaces(int[] linkTypes, int[] tsresols) {
+            this.linkTypes = linkTypes;
+            this.tsresols = tsresols;
+        }
+
+        Interfaces add(int linkType, int tsresol) {
+            int n = linkTypes.length;
+            int[] types = Arrays.copyOf(linkTypes, n + 1);
+            int[] resols = Arrays.copyOf(tsresols, n + 1);
+            types[n] = linkType;
+            resols[n] = tsresol;
+            return new Interfaces(types, resols);
+        }
+    }
+
+    /**
+     * A record-aligned chunk of the file and the decoding state at its start.
+     */
+    private static final class Chunk {
+
+        final long start;
+        final long end;
+        final long firstIndex;
+        final boolean bigEndian;
+        final Interfaces interfaces;
+
+        Chunk(long start, long end, long firstIndex, boolean bigEndian, Interfaces interfaces) {
+            this.start = start;
+            this.end = end;
+            this.firstIndex = firstIndex;
+            this.bigEndian = bigEndian;
+            this.interfaces = interfaces;
+        }
+    }
+
+    private final String pcapFile;
+    private final int chunkSize;
+    private final long segmentSize;
+    private final long segmentOverlap;
+    // The max size of a record, a chunk always fits in the segment overlap
+    private final long maxRecord;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long fileSize;
+    private final MappedByteBuffer[] segments;
+    private final ForkJoinPool pool;
+    private final int lookahead;
+    private final boolean pcapng;
+    private final boolean payloads;
+    private final PacketSampler sampler;
+    private final int snaplen;
+
+    // pcap files: link type and timestamp unit of the whole file
+    private int linkType;
+    private boolean nanos;
+
+    // Scanner state: end of the complete records, next chunk, index of the
+    // next packet record and decoding state
+    private long limit;
+    private long scanOffset;
+    private long scanIndex;
+    private boolean scanBigEndian;
+    private Interfaces scanInterfaces = Interfaces.EMPTY;
+
+    // Reader state
+    private final ArrayDeque<ForkJoinTask<PacketChunk>> pending = new ArrayDeque<ForkJoinTask<PacketChunk>>();
+    // Chunks of the whole file (reservoir sample), or null to scan them lazily
+    private ArrayDeque<Chunk> scanned;
+    private PacketChunk chunk;
+    private int row;
+    private long timestamp;
+
+    /**
+     * Opens a capture file, decoded on the common fork/join pool.
+     *
+     * @param pcapFile the pcap or pcapng file to read.
+     * @throws IOException if the file could not be opened or is not a capture.
+     */
+    public MappedPcapSource(String pcapFile) throws IOException {
+        this(pcapFile, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Opens a capture file.
+     *
+     * @param pcapFile the pcap or pcapng file to read.
+     * @param pool     the pool decoding the chunks.
+     * @throws IOException if the file could not be opened or is not a capture.
+     */
+    public MappedPcapSource(String pcapFile, ForkJoinPool pool) throws IOException {
+        this(pcapFile, pool, false);
+    }
+
+    /**
+     * Opens a capture file.
+     *
+     * @param pcapFile the pcap or pcapng file to read.
+     * @param pool     the pool decoding the chunks.
+     * @param payloads true to keep the payloads of the TCP segments (TCP
+     *                 reassembly), false to only decode the headers.
+     * @throws IOException if the file could not be opened or is not a capture.
+     */
+    public MappedPcapSource(String pcapFile, ForkJoinPool pool, boolean payloads) throws IOException {
+        this(pcapFile, pool, payloads, null, 0);
+    }
+
+    /**
+     * Opens a capture file, keeping a sample of the packets.
+     *
+     * @param pcapFile the pcap or pcapng file to read.
+     * @param pool     the pool decoding the chunks.
+     * @param payloads true to keep the payloads of the TCP segments (TCP
+     *                 reassembly), false to only decode the headers.
+     * @param sampler  the sampler of the packet records, or null to keep all
+     *                 the packets.
+     * @param snaplen  the max number of bytes decoded per frame, 0 for no
+     *                 limit.
+     * @throws IOException if the file could not be opened or is not a capture.
+     */
+    public MappedPcapSource(String pcapFile, ForkJoinPool pool, boolean payloads, PacketSampler sampler,
+            int snaplen) throws IOException {
+        this(pcapFile, pool, payloads, sampler, snaplen, CHUNK_SIZE, SEGMENT_SIZE, SEGMENT_OVERLAP);
+    }
+
+    /**
+     * Opens a capture file with the given chunk and segment sizes (tests).
+     *
+     * @param pcapFile       the pcap or pcapng file to read.
+     * @param pool           the pool decoding the chunks.
+     * @param payloads       true to keep the payloads of the TCP segments.
+     * @param sampler        the sampler of the packet records, or null.
+     * @param snaplen        the max number of bytes decoded per frame, 0 for no
+     *                       limit.
+     * @param chunkSize      the target size of the chunks (bytes).
+     * @param segmentSize    the size of the mapped segments (bytes).
+     * @param segmentOverlap the overlap of the mapped segments (bytes), more
+     *                       than the chunk size plus the max record size.
+     * @throws IOException if the file could not be opened or is not a capture.
+     */
+    MappedPcapSource(String pcapFile, ForkJoinPool pool, boolean payloads, PacketSampler sampler, int snaplen,
+            int chunkSize, long segmentSize, long segmentOverlap) throws IOException {
+        this.pcapFile = pcapFile;
+        this.chunkSize = chunkSize;
+        this.segmentSize = segmentSize;
+        this.segmentOverlap = segmentOverlap;
+        this.maxRecord = segmentOverlap - chunkSize;
+        this.payloads = payloads;
+        this.sampler = sampler;
+        this.snaplen = snaplen;
+        this.pool = pool;
+        this.lookahead = Math.max(2 * pool.getParallelism(), 2);
+        file = new RandomAccessFile(pcapFile, "r");
+        try {
+            channel = file.getChannel();
+            fileSize = channel.size();
+            limit = fileSize;
+            segments = new MappedByteBuffer[(int) Math.max((fileSize + segmentSize - 1) / segmentSize, 1)];
+            if (limit < 4) {
+                throw new IOException("Not a pcap or pcapng file: " + pcapFile);
+            }
+
+            // Global header
+            int magic = readInt(0, false);
+            if (magic == PCAPNG_SECTION) {
+                pcapng = true;
+                scanOffset = 0;
+            } else {
+                pcapng = false;
+                if (magic == PCAP_MICROS || magic == PCAP_NANOS) {
+                    scanBigEndian = false;
+                } else if (Integer.reverseBytes(magic) == PCAP_MICROS || Integer.reverseBytes(magic) == PCAP_NANOS) {
+                    scanBigEndian = true;
+                    magic = Integer.reverseBytes(magic);
+                } else {
+                    throw new IOException("Not a pcap or pcapng file: " + pcapFile);
+                }
+                if (limit < PCAP_HEADER) {
+                    throw new IOException("Truncated pcap header: " + pcapFile);
+                }
+                nanos = magic == PCAP_NANOS;
+                linkType = readInt(20, scanBigEndian) & 0x0fffffff;
+                scanOffset = PCAP_HEADER;
+            }
+
+            // Count the records of the whole file to select the reservoir
+            if (sampler != null && sampler.isReservoir()) {
+                scanned = new ArrayDeque<Chunk>();
+                Chunk next;
+                while ((next = nextChunk()) != null) {
+                    scanned.add(next);
+                }
+                sampler.select(scanIndex);
+            }
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean next(PacketRecord record) throws IOException {
+        while (chunk == null || row >= chunk.size()) {
+            chunk = null;
+            fill();
+            ForkJoinTask<PacketChunk> task = pending.poll();
+            if (task == null) {
+                return false;
+            }
+            try {
+                chunk = task.join();
+            } catch (RuntimeException e) {
+                throw new IOException("Error while decoding the pcap file " + pcapFile, e);
+            }
+            row = 0;
+        }
+        chunk.read(row, record);
+        timestamp = chunk.getTimestamp(row);
+        row++;
+        return true;
+    }
+
+    @Override
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (ForkJoinTask<PacketChunk> task : pending) {
+            task.cancel(false);
+        }
+        pending.clear();
+        chunk = null;
+        file.close();
+    }
+
+    /**
+     * Submits the next chunks, up to the lookahead.
+     */
+    private void fill() throws IOException {
+        while (pending.size() < lookahead) {
+            final Chunk next = scanned != null ? scanned.poll() : nextChunk();
+            if (next == null) {
+                return;
+            }
+            pending.add(pool.submit(new RecursiveTask<PacketChunk>() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected PacketChunk compute() {
+                    return decode(next);
+                }
+            }));
+        }
+    }
+
+    /**
+     * Walks the record headers up to the next chunk boundary.
+     *
+     * @return the next chunk, or null at the end of the file.
+     */
+    private Chunk nextChunk() throws IOException {
+        if (scanOffset >= limit) {
+            return null;
+        }
+        long start = scanOffset;
+        long firstIndex = scanIndex;
+        boolean bigEndian = scanBigEndian;
+        Interfaces interfaces = scanInterfaces;
+        long offset = start;
+        while (offset < limit && offset - start < chunkSize) {
+            long length = pcapng ? scanBlock(offset) : scanRecord(offset);
+            if (length < 0 || offset + length > limit) {
+                // Truncated record: end of the capture
+                limit = offset;
+                break;
+            }
+            offset += length;
+        }
+        scanOffset = offset;
+        return offset > start ? new Chunk(start, offset, firstIndex, bigEndian, interfaces) : null;
+    }
+
+    /**
+     * Gets the length of a pcap record.
+     *
+     * @return the length, -1 if the record is truncated.
+     */
+    private long scanRecord(long offset) throws IOException {
+        if (offset + PCAP_RECORD_HEADER > limit) {
+            return -1;
+        }
+        long length = PCAP_RECORD_HEADER + (readInt(offset + 8, scanBigEndian) & 0xffffffffL);
+        if (length > maxRecord) {
+            throw new IOException("Invalid record length " + length + " at offset " + offset + " in " + pcapFile);
+        }
+        if (offset + length <= limit) {
+            scanIndex++;
+        }
+        return length;
+    }
+
+    /**
+     * Gets the length of a pcapng block, and updates the section state.
+     *
+     * @return the length, -1 if the block is truncated.
+     */
+    private long scanBlock(long offset) throws IOException {
+        if (offset + 12 > limit) {
+            return -1;
+        }
+        int type = readInt(offset, scanBigEndian);
+        if (type == PCAPNG_SECTION) {
+            scanBigEndian = readInt(offset + 8, false) != PCAPNG_BYTE_ORDER;
+            scanInterfaces = Interfaces.EMPTY;
+        }
+        long length = readInt(offset + 4, scanBigEndian) & 0xffffffffL;
+        if (length < 12 || length > maxRecord || (length & 3) != 0) {
+            throw new IOException("Invalid block length " + length + " at offset " + offset + " in " + pcapFile);
+        }
+        if (offset + length > limit) {
+            return -1;
+        }
+        if (type == PCAPNG_INTERFACE) {
+            scanInterfaces = addInterface(scanInterfaces, segment(offset), (int) (offset % segmentSize), length,
+                    scanBigEndian);
+        } else if (type == PCAPNG_ENHANCED_PACKET || type == PCAPNG_PACKET) {
+            scanIndex++;
+        }
+        return length;
+    }
+
+    /**
+     * Decodes a chunk, on a thread of the pool.
+     */
+    private PacketChunk decode(Chunk spec) {
+        ByteBuffer buffer = segment(spec.start).duplicate();
+        int base = (int) (spec.start % segmentSize);
+        int end = base + (int) (spec.end - spec.start);
+        int capacity = (int) ((spec.end - spec.start) / 128);
+        if (sampler != null) {
+            capacity = (int) (capacity * sampler.getRate()) + 16;
+        }
+        PacketChunk result = new PacketChunk(capacity, payloads);
+        PacketRecord record = new PacketRecord();
+        byte[] frame = new byte[2048];
+        boolean bigEndian = spec.bigEndian;
+        Interfaces interfaces = spec.interfaces;
+        long index = spec.firstIndex;
+
+        int pos = base;
+        while (pos < end) {
+            int dataOffset;
+            int capturedLength;
+            int frameLinkType;
+            long frameTimestamp;
+            int length;
+            if (!pcapng) {
+                length = PCAP_RECORD_HEADER + readInt(buffer, pos + 8, bigEndian);
+                if (sampler != null && !sampler.sample(index++)) {
+                    pos += length;
+                    continue;
+                }
+                long seconds = readInt(buffer, pos, bigEndian) & 0xffffffffL;
+                long fraction = readInt(buffer, pos + 4, bigEndian) & 0xffffffffL;
+                frameTimestamp = seconds * 1000000000L + (nanos ? fraction : fraction * 1000L);
+                dataOffset = pos + PCAP_RECORD_HEADER;
+                capturedLength = length - PCAP_RECORD_HEADER;
+                frameLinkType = linkType;
+            } else {
+                int type = readInt(buffer, pos, bigEndian);
+                if (type == PCAPNG_SECTION) {
+                    bigEndian = readInt(buffer, pos + 8, false) != PCAPNG_BYTE_ORDER;
+                    interfaces = Interfaces.EMPTY;
+                }
+                length = readInt(buffer, pos + 4, bigEndian);
+                if (type == PCAPNG_INTERFACE) {
+                    interfaces = addInterface(interfaces, buffer, pos, length, bigEndian);
+                    pos += length;
+                    continue;
+                }
+                if (type != PCAPNG_ENHANCED_PACKET && type != PCAPNG_PACKET) {
+                    pos += length;
+                    continue;
+                }
+                if (sampler != null && !sampler.sample(index++)) {
+                    pos += length;
+                    continue;
+                }
+                int id = type == PCAPNG_PACKET ? readShort(buffer, pos + 8, bigEndian) : readInt(buffer, pos + 8,
+                        bigEndian);
+                if (id < 0 || id >= interfaces.linkTypes.length) {
+                    pos += length;
+                    continue;
+                }
+                long ticks = (readInt(buffer, pos + 12, bigEndian) & 0xffffffffL) << 32
+                        | (readInt(buffer, pos + 16, bigEndian) & 0xffffffffL);
+                frameTimestamp = toNanos(ticks, interfaces.tsresols[id]);
+                dataOffset = pos + 28;
+                capturedLength = Math.min(readInt(buffer, pos + 20, bigEndian), length - 32);
+                frameLinkType = interfaces.linkTypes[id];
+            }
+            pos += length;
+            if (capturedLength <= 0) {
+                continue;
+            }
+            if (snaplen > 0 && capturedLength > snaplen) {
+                capturedLength = snaplen;
+            }
+
+            // Copy the frame to the reused buffer and decode it
+            if (capturedLength > frame.length) {
+                frame = new byte[Math.max(capturedLength, frame.length * 2)];
+            }
+            buffer.position(dataOffset);
+            buffer.get(frame, 0, capturedLength);
+            if (PacketDecoder.decode(frame, 0, capturedLength, frameLinkType, record)) {
+                result.add(record, frameTimestamp);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads an interface description block.
+     */
+    private static Interfaces addInterface(Interfaces interfaces, ByteBuffer buffer, int pos, long length,
+            boolean bigEndian) {
+        int type = readShort(buffer, pos + 8, bigEndian);
+        int tsresol = PCAPNG_DEFAULT_TSRESOL;
+        int option = pos + 16;
+        int end = (int) (pos + length - 4);
+        while (option + 4 <= end) {
+            int code = readShort(buffer, option, bigEndian);
+            int optionLength = readShort(buffer, option + 2, bigEndian);
+            if (code == 0) {
+                break;
+            }
+            if (code == PCAPNG_OPTION_TSRESOL && optionLength >= 1) {
+                tsresol = buffer.get(option + 4) & 0xff;
+            }
+            option += 4 + ((optionLength + 3) & ~3);
+        }
+        return interfaces.add(type, tsresol);
+    }
+
+    /**
+     * Converts a pcapng timestamp to nanoseconds.
+     *
+     * @param ticks   the timestamp, in units of the resolution.
+     * @param tsresol the resolution: 10^-n seconds, or 2^-n seconds when the
+     *                most significant bit is set.
+     * @return the timestamp (nanoseconds since epoch).
+     */
+    static long toNanos(long ticks, int tsresol) {
+        int exponent = tsresol & 0x7f;
+        if ((tsresol & 0x80) == 0) {
+            if (exponent <= 9) {
+                return ticks * POWERS_OF_TEN[9 - exponent];
+            }
+            return ticks / POWERS_OF_TEN[Math.min(exponent - 9, POWERS_OF_TEN.length - 1)];
+        }
+        if (exponent >= 63) {
+            return 0L;
+        }
+        long seconds = ticks >>> exponent;
+        long fraction = ticks & ((1L << exponent) - 1);
+        return seconds * 1000000000L + (long) (fraction * 1e9 / (1L << exponent));
+    }
+
+    /**
+     * Gets the mapped segment holding an offset, maps it on first use.
+     */
+    private synchronized MappedByteBuffer segment(long offset) {
+        int index = (int) (offset / segmentSize);
+        if (segments[index] == null) {
+            long start = index * segmentSize;
+            long size = Math.min(segmentSize + segmentOverlap, fileSize - start);
+            try {
+                segments[index] = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not map the pcap file " + pcapFile, e);
+            }
+        }
+        return segments[index];
+    }
+
+    private int readInt(long offset, boolean bigEndian) {
+        return readInt(segment(offset), (int) (offset % segmentSize), bigEndian);
+    }
+
+    private static int readInt(ByteBuffer buffer, int pos, boolean bigEndian) {
+        int b0 = buffer.get(pos) & 0xff;
+        int b1 = buffer.get(pos + 1) & 0xff;
+        int b2 = buffer.get(pos + 2) & 0xff;
+        int b3 = buffer.get(pos + 3) & 0xff;
+        if (bigEndian) {
+            return b0 << 24 | b1 << 16 | b2 << 8 | b3;
+        }
+        return b3 << 24 | b2 << 16 | b1 << 8 | b0;
+    }
+
+    private static int readShort(ByteBuffer buffer, int pos, boolean bigEndian) {
+        int b0 = buffer.get(pos) & 0xff;
+        int b1 = buffer.get(pos + 1) & 0xff;
+        return bigEndian ? b0 << 8 | b1 : b1 << 8 | b0;
+    }
+}
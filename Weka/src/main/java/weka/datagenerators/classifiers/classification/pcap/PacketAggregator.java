@@ -0,0 +1,23 @@
+package weka.datagenerators.classifiers.classification.pcap;
+
+/**
+ * Aggregates decoded packets into rows of a higher level (flows, windows).
+ *
+ * The packets are added in timestamp order; the aggregated rows are handed to
+ * a listener as soon as they are complete.
+ */
+public interface PacketAggregator {
+
+    /**
+     * Adds a packet.
+     *
+     * @param record    the packet.
+     * @param timestamp the timestamp of the packet (nanoseconds since epoch).
+     */
+    void add(PacketRecord record, long timestamp);
+
+    /**
+     * Completes all the pending rows (end of the capture).
+     */
+    void flush();
+}
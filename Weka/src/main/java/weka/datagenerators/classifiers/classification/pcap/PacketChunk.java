@@ -0,0 +1,173 @@
+package weka.datagenerators.classifiers.classification.pcap;
+
+import java.util.Arrays;
+
+/**
+ * Column buffers of the packets decoded from one chunk of a capture file.
+ *
+ * Each header field of {@link PacketRecord} is stored in its own primitive
+ * column, so a chunk can be decoded on any thread and read back into a reused
+ * record without allocating per packet. The payloads are only kept on demand:
+ * the payloads of the TCP segments are then copied to a buffer of the chunk,
+ * the frame buffer of the records read back.
+ */
+public class PacketChunk {
+
+    private final IntColumn etherTypes;
+    private final IntColumn versions;
+    private final IntColumn ihls;
+    private final IntColumn lengths;
+    private final LongColumn identifications;
+    private final IntColumn fragmentOffsets;
+    private final IntColumn ttls;
+    private final IntColumn protocols;
+    private final IntColumn headerChecksums;
+    private final LongColumn srcAddrsHigh;
+    private final LongColumn srcAddrsLow;
+    private final LongColumn dstAddrsHigh;
+    private final LongColumn dstAddrsLow;
+    private final IntColumn srcPorts;
+    private final IntColumn dstPorts;
+    private final IntColumn tcpFlags;
+    private final LongColumn tcpSeqs;
+    private final IntColumn icmpTypes;
+    private final IntColumn icmpCodes;
+    private final IntColumn payloadLengths;
+    private final LongColumn timestamps;
+    private final IntColumn payloadOffsets;
+    private byte[] payloads;
+    private int payloadSize;
+
+    /**
+     * Creates an empty chunk, the payloads are not kept.
+     *
+     * @param capacity the initial capacity.
+     */
+    public PacketChunk(int capacity) {
+        this(capacity, false);
+    }
+
+    /**
+     * Creates an empty chunk.
+     *
+     * @param capacity the initial capacity.
+     * @param payloads true to keep the payloads of the TCP segments.
+     */
+    public PacketChunk(int capacity, boolean payloads) {
+        etherTypes = new IntColumn(capacity);
+        versions = new IntColumn(capacity);
+        ihls = new IntColumn(capacity);
+        lengths = new IntColumn(capacity);
+        identifications = new LongColumn(capacity);
+        fragmentOffsets = new IntColumn(capacity);
+        ttls = new IntColumn(capacity);
+        protocols = new IntColumn(capacity);
+        headerChecksums = new IntColumn(capacity);
+        srcAddrsHigh = new LongColumn(capacity);
+        srcAddrsLow = new LongColumn(capacity);
+        dstAddrsHigh = new LongColumn(capacity);
+        dstAddrsLow = new LongColumn(capacity);
+        srcPorts = new IntColumn(capacity);
+        dstPorts = new IntColumn(capacity);
+        tcpFlags = new IntColumn(capacity);
+        tcpSeqs = new LongColumn(capacity);
+        icmpTypes = new IntColumn(capacity);
+        icmpCodes = new IntColumn(capacity);
+        payloadLengths = new IntColumn(capacity);
+        timestamps = new LongColumn(capacity);
+        payloadOffsets = payloads ? new IntColumn(capacity) : null;
+        this.payloads = payloads ? new byte[Math.max(capacity, 8) * 64] : null;
+    }
+
+    /**
+     * Appends a decoded packet.
+     *
+     * @param record         the decoded packet.
+     * @param timestampNanos the capture timestamp (nanoseconds since epoch).
+     */
+    public void add(PacketRecord record, long timestampNanos) {
+        etherTypes.add(record.etherType);
+        versions.add(record.version);
+        ihls.add(record.ihl);
+        lengths.add(record.length);
+        identifications.add(record.identification);
+        fragmentOffsets.add(record.fragmentOffset);
+        ttls.add(record.ttl);
+        protocols.add(record.protocol);
+        headerChecksums.add(record.headerChecksum);
+        srcAddrsHigh.add(record.srcAddrHigh);
+        srcAddrsLow.add(record.srcAddrLow);
+        dstAddrsHigh.add(record.dstAddrHigh);
+        dstAddrsLow.add(record.dstAddrLow);
+        srcPorts.add(record.srcPort);
+        dstPorts.add(record.dstPort);
+        tcpFlags.add(record.tcpFlags);
+        tcpSeqs.add(record.tcpSeq);
+        icmpTypes.add(record.icmpType);
+        icmpCodes.add(record.icmpCode);
+        payloadLengths.add(record.payloadLength);
+        timestamps.add(timestampNanos);
+        if (payloads != null) {
+            int length = record.protocol == PacketDecoder.PROTOCOL_TCP ? record.payloadLength : 0;
+            if (payloadSize + length > payloads.length) {
+                payloads = Arrays.copyOf(payloads, Math.max(payloadSize + length, payloads.length + (payloads.length >> 1)));
+            }
+            System.arraycopy(record.frame, record.payloadOffset, payloads, payloadSize, length);
+            payloadOffsets.add(payloadSize);
+            payloadSize += length;
+        }
+    }
+
+    /**
+     * Reads a packet back.
+     *
+     * @param index  the row index.
+     * @param record the record to fill.
+     */
+    public void read(int index, PacketRecord record) {
+        record.clear();
+        record.etherType = etherTypes.get(index);
+        record.version = versions.get(index);
+        record.ihl = ihls.get(index);
+        record.length = lengths.get(index);
+        record.identification = identifications.get(index);
+        record.fragmentOffset = fragmentOffsets.get(index);
+        record.ttl = ttls.get(index);
+        record.protocol = protocols.get(index);
+        record.headerChecksum = headerChecksums.get(index);
+        record.srcAddrHigh = srcAddrsHigh.get(index);
+        record.srcAddrLow = srcAddrsLow.get(index);
+        record.dstAddrHigh = dstAddrsHigh.get(index);
+        record.dstAddrLow = dstAddrsLow.get(index);
+        record.srcPort = srcPorts.get(index);
+        record.dstPort = dstPorts.get(index);
+        record.tcpFlags = tcpFlags.get(index);
+        record.tcpSeq = tcpSeqs.get(index);
+        record.icmpType = icmpTypes.get(index);
+        record.icmpCode = icmpCodes.get(index);
+        record.payloadLength = payloadLengths.get(index);
+        if (payloads != null && record.protocol == PacketDecoder.PROTOCOL_TCP) {
+            record.frame = payloads;
+            record.payloadOffset = payloadOffsets.get(index);
+        }
+    }
+
+    /**
+     * Gets the timestamp of a packet.
+     *
+     * @param index the row index.
+     * @return the timestamp (nanoseconds since epoch).
+     */
+    public long getTimestamp(int index) {
+        return timestamps.get(index);
+    }
+
+    /**
+     * Gets the number of packets.
+     *
+     * @return the number of packets.
+     */
+    public int size() {
+        return timestamps.size();
+    }
+}
@@ -0,0 +1,399 @@
+package weka.datagenerators.classifiers.classification.pcap;
+
+/**
+ * Decodes the IPv4/IPv6/TCP/UDP/ICMP header fields of a captured frame
+ * directly from its raw bytes.
+ *
+ * The decoder only does offset arithmetic over the frame buffer and writes the
+ * fields into a reused {@link PacketRecord}, so no object (and no String) is
+ * created per packet. Truncated frames (snap length) are decoded as far as
+ * their captured bytes allow.
+ */
+public class PacketDecoder {
+
+    /**
+     * The version of the decoder, to be increased when the decoded fields of
+     * a frame change: the {@link ColumnCache} entries of the other versions
+     * are not used.
+     */
+    public static final int VERSION = 2;
+
+    // Link types (http://www.tcpdump.org/linktypes.html)
+    public static final int LINKTYPE_NULL = 0;
+    public static final int LINKTYPE_ETHERNET = 1;
+    public static final int LINKTYPE_RAW = 101;
+    public static final int LINKTYPE_LOOP = 108;
+    public static final int LINKTYPE_LINUX_SLL = 113;
+    public static final int LINKTYPE_IPV4 = 228;
+    public static final int LINKTYPE_IPV6 = 229;
+    public static final int LINKTYPE_LINUX_SLL2 = 276;
+
+    // Ether types
+    public static final int ETHERTYPE_IPV4 = 0x0800;
+    public static final int ETHERTYPE_IPV6 = 0x86dd;
+    private static final int ETHERTYPE_VLAN = 0x8100;
+    private static final int ETHERTYPE_QINQ = 0x88a8;
+
+    // IP protocols
+    public static final int PROTOCOL_ICMP = 1;
+    public static final int PROTOCOL_TCP = 6;
+    public static final int PROTOCOL_UDP = 17;
+    public static final int PROTOCOL_ICMPV6 = 58;
+
+    // IPv6 extension headers
+    private static final int IPV6_HOP_BY_HOP = 0;
+    private static final int IPV6_ROUTING = 43;
+    private static final int IPV6_FRAGMENT = 44;
+    private static final int IPV6_AUTH = 51;
+    private static final int IPV6_DEST_OPTS = 60;
+
+    // TCP flags
+    public static final int TCP_FIN = 0x01;
+    public static final int TCP_SYN = 0x02;
+    public static final int TCP_RST = 0x04;
+    public static final int TCP_PSH = 0x08;
+    public static final int TCP_ACK = 0x10;
+    public static final int TCP_URG = 0x20;
+
+    /** The IPv4-mapped IPv6 prefix (::ffff:0:0/96) in the low 64 bits. */
+    private static final long IPV4_MAPPED_PREFIX = 0x0000ffff00000000L;
+
+    private PacketDecoder() {
+    }
+
+    /**
+     * Decodes a captured frame.
+     *
+     * @param frame    the buffer holding the frame.
+     * @param offset   the offset of the frame in the buffer.
+     * @param length   the captured length of the frame.
+     * @param linkType the link type of the capture.
+     * @param record   the record to fill.
+     * @return true if the frame is an IPv4 or IPv6 packet, false otherwise (the
+     *         record must then be ignored).
+     */
+    public static boolean decode(byte[] frame, int offset, int length, int linkType, PacketRecord record) {
+        record.clear();
+        record.frame = frame;
+        int end = offset + Math.min(length, frame.length - offset);
+        int etherType;
+        int pos;
+
+        // Link layer
+        switch (linkType) {
+            case LINKTYPE_ETHERNET:
+                if (end - offset < 14) {
+                    return false;
+                }
+                etherType = readUnsignedShort(frame, offset + 12);
+                pos = offset + 14;
+                // Skip the VLAN tags
+                while ((etherType == ETHERTYPE_VLAN || etherType == ETHERTYPE_QINQ) && pos + 4 <= end) {
+                    etherType = readUnsignedShort(frame, pos + 2);
+                    pos += 4;
+                }
+                break;
+            case LINKTYPE_LINUX_SLL:
+                if (end - offset < 16) {
+                    return false;
+                }
+                etherType = readUnsignedShort(frame, offset + 14);
+                pos = offset + 16;
+                break;
+            case LINKTYPE_LINUX_SLL2:
+                if (end - offset < 20) {
+                    return false;
+                }
+                etherType = readUnsignedShort(frame, offset);
+                pos = offset + 20;
+                break;
+            case LINKTYPE_NULL:
+            case LINKTYPE_LOOP:
+                // 4 bytes address family, only the IP version matters
+                pos = offset + 4;
+                etherType = ipEtherType(frame, pos, end);
+                break;
+            case LINKTYPE_RAW:
+            case LINKTYPE_IPV4:
+            case LINKTYPE_IPV6:
+                pos = offset;
+                etherType = ipEtherType(frame, pos, end);
+                break;
+            default:
+                return false;
+        }
+        record.etherType = etherType;
+
+        // Network layer
+        int protocol;
+        if (etherType == ETHERTYPE_IPV4) {
+            pos = decodeIpV4(frame, pos, end, record);
+        } else if (etherType == ETHERTYPE_IPV6) {
+            pos = decodeIpV6(frame, pos, end, record);
+        } else {
+            return false;
+        }
+        if (pos < 0) {
+            return false;
+        }
+        protocol = record.protocol;
+
+        // Fragments (other than the first one) have no transport header
+        if (record.fragmentOffset > 0) {
+            record.payloadOffset = pos;
+            record.payloadLength = end - pos;
+            return true;
+        }
+
+        // Transport layer
+        switch (protocol) {
+            case PROTOCOL_TCP:
+                decodeTcp(frame, pos, end, record);
+                break;
+            case PROTOCOL_UDP:
+                decodeUdp(frame, pos, end, record);
+                break;
+            case PROTOCOL_ICMP:
+            case PROTOCOL_ICMPV6:
+                decodeIcmp(frame, pos, end, record);
+                break;
+            default:
+                record.payloadOffset = pos;
+                record.payloadLength = end - pos;
+                break;
+        }
+
+        return true;
+    }
+
+    /**
+     * Guesses the ether type of a frame starting with an IP header.
+     *
+     * @param frame the frame buffer.
+     * @param pos   the offset of the IP header.
+     * @param end   the end of the captured bytes.
+     * @return the ether type, or -1 if it is not an IP packet.
+     */
+    private static int ipEtherType(byte[] frame, int pos, int end) {
+        if (pos >= end) {
+            return PacketRecord.ABSENT;
+        }
+        int version = (frame[pos] >> 4) & 0x0f;
+        if (version == 4) {
+            return ETHERTYPE_IPV4;
+        } else if (version == 6) {
+            return ETHERTYPE_IPV6;
+        }
+        return PacketRecord.ABSENT;
+    }
+
+    /**
+     * Decodes an IPv4 header.
+     *
+     * @return the offset of the transport header, or -1 if the header is
+     *         truncated.
+     */
+    private static int decodeIpV4(byte[] frame, int pos, int end, PacketRecord record) {
+        if (end - pos < 20) {
+            return -1;
+        }
+        int ihl = frame[pos] & 0x0f;
+        record.version = 4;
+        record.ihl = ihl;
+        record.length = readUnsignedShort(frame, pos + 2);
+        record.identification = readUnsignedShort(frame, pos + 4);
+        record.fragmentOffset = readUnsignedShort(frame, pos + 6) & 0x1fff;
+        record.ttl = frame[pos + 8] & 0xff;
+        record.protocol = frame[pos + 9] & 0xff;
+        record.headerChecksum = readUnsignedShort(frame, pos + 10);
+        record.srcAddrHigh = 0L;
+        record.srcAddrLow = IPV4_MAPPED_PREFIX | (readInt(frame, pos + 12) & 0xffffffffL);
+        record.dstAddrHigh = 0L;
+        record.dstAddrLow = IPV4_MAPPED_PREFIX | (readInt(frame, pos + 16) & 0xffffffffL);
+        return Math.min(pos + Math.max(ihl, 5) * 4, end);
+    }
+
+    /**
+     * Decodes an IPv6 header and skips its extension headers.
+     *
+     * @return the offset of the transport header, or -1 if the header is
+     *         truncated.
+     */
+    private static int decodeIpV6(byte[] frame, int pos, int end, PacketRecord record) {
+        if (end - pos < 40) {
+            return -1;
+        }
+        record.version = 6;
+        record.length = readUnsignedShort(frame, pos + 4) + 40;
+        record.ttl = frame[pos + 7] & 0xff;
+        record.srcAddrHigh = readLong(frame, pos + 8);
+        record.srcAddrLow = readLong(frame, pos + 16);
+        record.dstAddrHigh = readLong(frame, pos + 24);
+        record.dstAddrLow = readLong(frame, pos + 32);
+
+        int nextHeader = frame[pos + 6] & 0xff;
+        pos += 40;
+        while (pos + 8 <= end) {
+            if (nextHeader == IPV6_HOP_BY_HOP || nextHeader == IPV6_ROUTING || nextHeader == IPV6_DEST_OPTS) {
+                int headerLength = ((frame[pos + 1] & 0xff) + 1) * 8;
+                nextHeader = frame[pos] & 0xff;
+                pos += headerLength;
+            } else if (nextHeader == IPV6_FRAGMENT) {
+                record.fragmentOffset = readUnsignedShort(frame, pos + 2) >> 3;
+                record.identification = readInt(frame, pos + 4) & 0xffffffffL;
+                nextHeader = frame[pos] & 0xff;
+                pos += 8;
+            } else if (nextHeader == IPV6_AUTH) {
+                int headerLength = ((frame[pos + 1] & 0xff) + 2) * 4;
+                nextHeader = frame[pos] & 0xff;
+                pos += headerLength;
+            } else {
+                break;
+            }
+        }
+        record.protocol = nextHeader;
+        return Math.min(pos, end);
+    }
+
+    /**
+     * Decodes a TCP header.
+     */
+    private static void decodeTcp(byte[] frame, int pos, int end, PacketRecord record) {
+        if (end - pos < 4) {
+            return;
+        }
+        record.srcPort = readUnsignedShort(frame, pos);
+        record.dstPort = readUnsignedShort(frame, pos + 2);
+        if (end - pos < 14) {
+            return;
+        }
+        record.tcpSeq = readInt(frame, pos + 4) & 0xffffffffL;
+        int dataOffset = ((frame[pos + 12] >> 4) & 0x0f) * 4;
+        record.tcpFlags = frame[pos + 13] & 0xff;
+        record.payloadOffset = Math.min(pos + Math.max(dataOffset, 20), end);
+        record.payloadLength = end - record.payloadOffset;
+    }
+
+    /**
+     * Decodes an UDP header.
+     */
+    private static void decodeUdp(byte[] frame, int pos, int end, PacketRecord record) {
+        if (end - pos < 4) {
+            return;
+        }
+        record.srcPort = readUnsignedShort(frame, pos);
+        record.dstPort = readUnsignedShort(frame, pos + 2);
+        record.payloadOffset = Math.min(pos + 8, end);
+        record.payloadLength = end - record.payloadOffset;
+    }
+
+    /**
+     * Decodes an ICMP or ICMPv6 header.
+     */
+    private static void decodeIcmp(byte[] frame, int pos, int end, PacketRecord record) {
+        if (end - pos < 2) {
+            return;
+        }
+        record.icmpType = frame[pos] & 0xff;
+        record.icmpCode = frame[pos + 1] & 0xff;
+        record.payloadOffset = Math.min(pos + 8, end);
+        record.payloadLength = end - record.payloadOffset;
+    }
+
+    /**
+     * Gets the IPv4 address of an address stored as two longs.
+     *
+     * @param high the high 64 bits of the address.
+     * @param low  the low 64 bits of the address.
+     * @return the IPv4 address as an unsigned 32-bit integer for IPv4-mapped
+     *         addresses, -1 for IPv6 addresses.
+     */
+    public static long ipv4Address(long high, long low) {
+        if (high == 0L && (low & 0xffffffff00000000L) == IPV4_MAPPED_PREFIX) {
+            return low & 0xffffffffL;
+        }
+        return -1L;
+    }
+
+    /**
+     * Formats an address stored as two longs.
+     *
+     * @param high the high 64 bits of the address.
+     * @param low  the low 64 bits of the address.
+     * @return the dotted IPv4 address for IPv4-mapped addresses, the IPv6
+     *         address otherwise.
+     */
+    public static String formatAddress(long high, long low) {
+        if (high == 0L && (low & 0xffffffff00000000L) == IPV4_MAPPED_PREFIX) {
+            return ((low >>> 24) & 0xff) + "." + ((low >>> 16) & 0xff) + "." + ((low >>> 8) & 0xff) + "."
+                    + (low & 0xff);
+        }
+
+        // Find the longest run of zero groups (RFC 5952)
+        int[] groups = new int[8];
+        for (int i = 0; i < 4; i++) {
+            groups[i] = (int) ((high >>> (48 - 16 * i)) & 0xffff);
+            groups[i + 4] = (int) ((low >>> (48 - 16 * i)) & 0xffff);
+        }
+        int bestStart = -1;
+        int bestLength = 1;
+        for (int i = 0; i < 8; i++) {
+            int j = i;
+            while (j < 8 && groups[j] == 0) {
+                j++;
+            }
+            if (j - i > bestLength) {
+                bestStart = i;
+                bestLength = j - i;
+            }
+            i = j;
+        }
+
+        StringBuilder sb = new StringBuilder(39);
+        for (int i = 0; i < 8; i++) {
+            if (i == bestStart) {
+                sb.append("::");
+                i += bestLength - 1;
+                continue;
+            }
+            if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ':') {
+                sb.append(':');
+            }
+            sb.append(Integer.toHexString(groups[i]));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Formats a 16 bits value as an hexadecimal string (e.g. 0x0800).
+     *
+     * @param value the value to format.
+     * @return the hexadecimal string.
+     */
+    public static String formatHexShort(int value) {
+        String hex = Integer.toHexString(value & 0xffff);
+        return "0x0000".substring(0, 6 - hex.length()) + hex;
+    }
+
+    /**
+     * Reads a big-endian unsigned 16 bits value.
+     */
+    static int readUnsignedShort(byte[] buffer, int pos) {
+        return ((buffer[pos] & 0xff) << 8) | (buffer[pos + 1] & 0xff);
+    }
+
+    /**
+     * Reads a big-endian 32 bits value.
+     */
+    static int readInt(byte[] buffer, int pos) {
+        return ((buffer[pos] & 0xff) << 24) | ((buffer[pos + 1] & 0xff) << 16) | ((buffer[pos + 2] & 0xff) << 8)
+                | (buffer[pos + 3] & 0xff);
+    }
+
+    /**
+     * Reads a big-endian 64 bits value.
+     */
+    static long readLong(byte[] buffer, int pos) {
+        return ((long) readInt(buffer, pos) << 32) | (readInt(buffer, pos + 4) & 0xffffffffL);
+    }
+}
@@ -0,0 +1,93 @@
+package weka.datagenerators.classifiers.classification.pcap;
+
+/**
+ * Mutable holder of the header fields decoded from one captured frame.
+ *
+ * A single instance is reused for every packet of a capture, so the decoder
+ * does not allocate anything per packet. The fields that are not present in
+ * the decoded packet (e.g. the ports of an ICMP packet) are set to
+ * {@link #ABSENT}.
+ *
+ * The addresses are stored as two longs (high and low 64 bits of an IPv6
+ * address). IPv4 addresses are stored as IPv4-mapped IPv6 addresses
+ * (::ffff:a.b.c.d).
+ */
+public class PacketRecord {
+
+    /** Value of the fields that are absent from the decoded packet. */
+    public static final int ABSENT = -1;
+
+    // Link layer
+    public int etherType;
+
+    // Network layer
+    public int version;
+    public int ihl;
+    public int length;
+    // Unsigned: 16 bits for IPv4, 32 bits for IPv6 (fragment header)
+    public long identification;
+    public int fragmentOffset;
+    public int ttl;
+    public int protocol;
+    public int headerChecksum;
+    public long srcAddrHigh;
+    public long srcAddrLow;
+    public long dstAddrHigh;
+    public long dstAddrLow;
+
+    // Transport layer
+    public int srcPort;
+    public int dstPort;
+    public int tcpFlags;
+    public long tcpSeq;
+    public int icmpType;
+    public int icmpCode;
+
+    // Application payload (offset in the frame buffer, valid until the next
+    // packet is decoded)
+    public byte[] frame;
+    public int payloadOffset;
+    public int payloadLength;
+
+    // Ground truth label (index of the class value, 0 for benign traffic)
+    public int label;
+
+    /**
+     * Resets all the fields to {@link #ABSENT}, the packet is labelled as
+     * benign.
+     */
+    public void clear() {
+        etherType = ABSENT;
+        version = ABSENT;
+        ihl = ABSENT;
+        length = ABSENT;
+        identification = ABSENT;
+        fragmentOffset = ABSENT;
+        ttl = ABSENT;
+        protocol = ABSENT;
+        headerChecksum = ABSENT;
+        srcAddrHigh = 0L;
+        srcAddrLow = 0L;
+        dstAddrHigh = 0L;
+        dstAddrLow = 0L;
+        srcPort = ABSENT;
+        dstPort = ABSENT;
+        tcpFlags = ABSENT;
+        tcpSeq = ABSENT;
+        icmpType = ABSENT;
+        icmpCode = ABSENT;
+        frame = null;
+        payloadOffset = 0;
+        payloadLength = 0;
+        label = 0;
+    }
+
+    /**
+     * Checks if the addresses of the record are IPv4 addresses.
+     *
+     * @return true if the packet is an IPv4 packet.
+     */
+    public boolean isIpV4() {
+        return version == 4;
+    }
+}
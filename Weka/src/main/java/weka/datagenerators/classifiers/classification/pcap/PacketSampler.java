@@ -0,0 +1,135 @@
+package weka.datagenerators.classifiers.classification.pcap;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Deterministic sampling of the packets of a capture, by index of the packet
+ * records.
+ *
+ * <ul>
+ * <li>Systematic: 1 packet in N, from an offset in [0, N) drawn from the
+ * seed.</li>
+ * <li>Reservoir: a uniform sample of K packets, selected with the seed among
+ * all the records of the capture (Li's algorithm L, the indices only). The
+ * number of records must be known before sampling, see
+ * {@link #select(long)}.</li>
+ * </ul>
+ * The sample of an index does not depend on the order of the queries, so the
+ * chunks of a capture can be sampled in parallel, and a source skips the
+ * records that are not sampled before copying or decoding their frames.
+ */
+public class PacketSampler {
+
+    private final int interval;
+    private final int size;
+    private final long offset;
+    private final long seed;
+
+    // Reservoir: the sorted indices of the sample, and the number of records
+    private long[] selected;
+    private long count;
+
+    private PacketSampler(int interval, int size, long seed) {
+        this.interval = interval;
+        this.size = size;
+        this.seed = seed;
+        this.offset = interval > 1 ? new Random(seed).nextInt(interval) : 0;
+    }
+
+    /**
+     * Creates a systematic sampler.
+     *
+     * @param interval the interval N: 1 packet in N is sampled.
+     * @param seed     the seed of the offset.
+     * @return the sampler.
+     */
+    public static PacketSampler systematic(int interval, long seed) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Invalid sampling interval: " + interval);
+        }
+        return new PacketSampler(interval, 0, seed);
+    }
+
+    /**
+     * Creates a reservoir sampler.
+     *
+     * @param size the size K of the sample.
+     * @param seed the seed of the sample.
+     * @return the sampler.
+     */
+    public static PacketSampler reservoir(int size, long seed) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Invalid reservoir size: " + size);
+        }
+        return new PacketSampler(0, size, seed);
+    }
+
+    /**
+     * Checks if the sampler needs the number of records before sampling.
+     *
+     * @return true for a reservoir sampler.
+     */
+    public boolean isReservoir() {
+        return size > 0;
+    }
+
+    /**
+     * Selects the sample of a reservoir sampler among the records of a
+     * capture.
+     *
+     * @param count the number of packet records of the capture.
+     */
+    public void select(long count) {
+        this.count = count;
+        int k = (int) Math.min(size, count);
+        long[] reservoir = new long[k];
+        for (int i = 0; i < k; i++) {
+            reservoir[i] = i;
+        }
+
+        // Algorithm L: skip over the records that do not enter the reservoir
+        Random random = new Random(seed);
+        double w = Math.exp(Math.log(1.0 - random.nextDouble()) / k);
+        long i = k - 1;
+        while (k > 0) {
+            i += (long) Math.floor(Math.log(1.0 - random.nextDouble()) / Math.log(1 - w)) + 1;
+            if (i >= count) {
+                break;
+            }
+            reservoir[random.nextInt(k)] = i;
+            w *= Math.exp(Math.log(1.0 - random.nextDouble()) / k);
+        }
+
+        Arrays.sort(reservoir);
+        selected = reservoir;
+    }
+
+    /**
+     * Checks if a packet record is sampled.
+     *
+     * @param index the index of the record in the capture.
+     * @return true if the packet is kept.
+     */
+    public boolean sample(long index) {
+        if (!isReservoir()) {
+            return index % interval == offset;
+        }
+        if (selected == null) {
+            throw new IllegalStateException("The reservoir sample is not selected");
+        }
+        return Arrays.binarySearch(selected, index) >= 0;
+    }
+
+    /**
+     * Gets the sampling rate: the fraction of the packets that are kept.
+     *
+     * @return the sampling rate, 1/N or K over the number of records.
+     */
+    public double getRate() {
+        if (!isReservoir()) {
+            return 1.0 / interval;
+        }
+        return count > 0 ? (double) selected.length / count : 1.0;
+    }
+}
@@ -0,0 +1,30 @@
+package weka.datagenerators.classifiers.classification.pcap;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A source of decoded packets, read one at a time.
+ *
+ * The packets are decoded lazily, so a source can go through captures of any
+ * size with constant memory. The frames that are not IPv4 or IPv6 packets are
+ * skipped by the source.
+ */
+public interface PacketSource extends Closeable {
+
+    /**
+     * Decodes the next packet.
+     *
+     * @param record the record to fill.
+     * @return true if a packet was decoded, false at the end of the capture.
+     * @throws IOException if the capture could not be read.
+     */
+    boolean next(PacketRecord record) throws IOException;
+
+    /**
+     * Gets the timestamp of the last decoded packet.
+     *
+     * @return the timestamp (nanoseconds since epoch).
+     */
+    long getTimestamp();
+}
@@ -0,0 +1,226 @@
+package weka.datagenerators.classifiers.classification.pcap;
+
+/**
+ * Columnar table of decoded packets.
+ *
+ * Each header field is stored in its own primitive column (amortized growth),
+ * the string fields (addresses, ports, ether type and checksum) are stored in
+ * dictionary-encoded columns. The absent fields are stored as
+ * {@link PacketRecord#ABSENT} (numerics) or as missing codes (strings).
+ */
+public class PacketTable {
+
+    /** The default initial capacity of the columns. */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    static final DictionaryColumn.KeyFormatter ADDRESS_FORMATTER = new DictionaryColumn.KeyFormatter() {
+        @Override
+        public String format(long high, long low) {
+            return PacketDecoder.formatAddress(high, low);
+        }
+    };
+
+    static final DictionaryColumn.KeyFormatter DECIMAL_FORMATTER = new DictionaryColumn.KeyFormatter() {
+        @Override
+        public String format(long high, long low) {
+            return Long.toString(low);
+        }
+    };
+
+    static final DictionaryColumn.KeyFormatter HEX_FORMATTER = new DictionaryColumn.KeyFormatter() {
+        @Override
+        public String format(long high, long low) {
+            return PacketDecoder.formatHexShort((int) low);
+        }
+    };
+
+    // String columns
+    private final DictionaryColumn srcIps;
+    private final DictionaryColumn dstIps;
+    private final DictionaryColumn srcPorts;
+    private final DictionaryColumn dstPorts;
+    private final DictionaryColumn types;
+    private final DictionaryColumn headerChecksums;
+
+    // Numeric columns
+    private final ShortColumn versions;
+    private final ShortColumn IHLs;
+    private final IntColumn lengths;
+    private final LongColumn identifications;
+    private final IntColumn fragmentOffsets;
+    private final ShortColumn TTLs;
+    private final ShortColumn protocols;
+    private final ShortColumn labels;
+
+    // Timestamps (nanoseconds since epoch)
+    private final LongColumn timestamps;
+
+    /**
+     * Creates an empty table with the default capacity.
+     */
+    public PacketTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty table.
+     *
+     * @param capacity the initial capacity.
+     */
+    public PacketTable(int capacity) {
+        srcIps = new DictionaryColumn(capacity, ADDRESS_FORMATTER);
+        dstIps = new DictionaryColumn(capacity, ADDRESS_FORMATTER);
+        srcPorts = new DictionaryColumn(capacity, DECIMAL_FORMATTER);
+        dstPorts = new DictionaryColumn(capacity, DECIMAL_FORMATTER);
+        types = new DictionaryColumn(capacity, HEX_FORMATTER);
+        headerChecksums = new DictionaryColumn(capacity, HEX_FORMATTER);
+        versions = new ShortColumn(capacity);
+        IHLs = new ShortColumn(capacity);
+        lengths = new IntColumn(capacity);
+        identifications = new LongColumn(capacity);
+        fragmentOffsets = new IntColumn(capacity);
+        TTLs = new ShortColumn(capacity);
+        protocols = new ShortColumn(capacity);
+        labels = new ShortColumn(capacity);
+        timestamps = new LongColumn(capacity);
+    }
+
+    /**
+     * Creates a table from its columns, e.g. read from a {@link ColumnCache}
+     * file.
+     */
+    PacketTable(DictionaryColumn srcIps, DictionaryColumn dstIps, DictionaryColumn srcPorts,
+            DictionaryColumn dstPorts, DictionaryColumn types, DictionaryColumn headerChecksums, ShortColumn versions,
+            ShortColumn IHLs, IntColumn lengths, LongColumn identifications, IntColumn fragmentOffsets,
+            ShortColumn TTLs, ShortColumn protocols, ShortColumn labels, LongColumn timestamps) {
+        this.srcIps = srcIps;
+        this.dstIps = dstIps;
+        this.srcPorts = srcPorts;
+        this.dstPorts = dstPorts;
+        this.types = types;
+        this.headerChecksums = headerChecksums;
+        this.versions = versions;
+        this.IHLs = IHLs;
+        this.lengths = lengths;
+        this.identifications = identifications;
+        this.fragmentOffsets = fragmentOffsets;
+        this.TTLs = TTLs;
+        this.protocols = protocols;
+        this.labels = labels;
+        this.timestamps = timestamps;
+    }
+
+    /**
+     * Appends a decoded packet.
+     *
+     * @param record         the decoded packet.
+     * @param timestampNanos the capture timestamp (nanoseconds since epoch).
+     */
+    public void add(PacketRecord record, long timestampNanos) {
+        srcIps.add(record.srcAddrHigh, record.srcAddrLow);
+        dstIps.add(record.dstAddrHigh, record.dstAddrLow);
+        addOptional(srcPorts, record.srcPort);
+        addOptional(dstPorts, record.dstPort);
+        addOptional(types, record.etherType);
+        addOptional(headerChecksums, record.headerChecksum);
+        versions.add((short) record.version);
+        IHLs.add((short) record.ihl);
+        lengths.add(record.length);
+        identifications.add(record.identification);
+        fragmentOffsets.add(record.fragmentOffset);
+        TTLs.add((short) record.ttl);
+        protocols.add((short) record.protocol);
+        labels.add((short) record.label);
+        timestamps.add(timestampNanos);
+    }
+
+    /**
+     * Appends a value that may be absent to a dictionary column.
+     */
+    private static void addOptional(DictionaryColumn column, int value) {
+        if (value == PacketRecord.ABSENT) {
+            column.addMissing();
+        } else {
+            column.add(0L, value);
+        }
+    }
+
+    /**
+     * Gets the number of packets.
+     *
+     * @return the number of packets.
+     */
+    public int size() {
+        return timestamps.size();
+    }
+
+    public DictionaryColumn getSrcIps() {
+        return srcIps;
+    }
+
+    public DictionaryColumn getDstIps() {
+        return dstIps;
+    }
+
+    public DictionaryColumn getSrcPorts() {
+        return srcPorts;
+    }
+
+    public DictionaryColumn getDstPorts() {
+        return dstPorts;
+    }
+
+    public DictionaryColumn getTypes() {
+        return types;
+    }
+
+    public DictionaryColumn getHeaderChecksums() {
+        return headerChecksums;
+    }
+
+    public ShortColumn getVersions() {
+        return versions;
+    }
+
+    public ShortColumn getIHLs() {
+        return IHLs;
+    }
+
+    public IntColumn getLengths() {
+        return lengths;
+    }
+
+    public LongColumn getIdentifications() {
+        return identifications;
+    }
+
+    public IntColumn getFragmentOffsets() {
+        return fragmentOffsets;
+    }
+
+    public ShortColumn getTTLs() {
+        return TTLs;
+    }
+
+    public ShortColumn getProtocols() {
+        return protocols;
+    }
+
+    /**
+     * Gets the ground truth labels column (index of the class value).
+     *
+     * @return the labels column.
+     */
+    public ShortColumn getLabels() {
+        return labels;
+    }
+
+    /**
+     * Gets the timestamps column (nanoseconds since epoch).
+     *
+     * @return the timestamps column.
+     */
+    public LongColumn getTimestamps() {
+        return timestamps;
+    }
+}
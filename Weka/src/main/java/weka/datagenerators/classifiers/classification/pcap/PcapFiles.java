@@ -0,0 +1,80 @@
+package weka.datagenerators.classifiers.classification.pcap;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Lists the capture files to replay.
+ *
+ * The paths are files or directories; the directories are walked recursively
+ * and only their pcap and pcapng files (.pcap, .pcapng, .cap) are kept. The
+ * files of a directory are sorted by name.
+ */
+public class PcapFiles {
+
+    /** The extensions of the capture files found in the directories. */
+    public static final String[] EXTENSIONS = { ".pcap", ".pcapng", ".cap" };
+
+    private PcapFiles() {
+    }
+
+    /**
+     * Lists the capture files of a comma-separated list of paths.
+     *
+     * @param paths the files or directories, separated by commas.
+     * @return the capture files.
+     * @throws IOException if a path does not exist.
+     */
+    public static List<String> list(String paths) throws IOException {
+        List<String> files = new ArrayList<String>();
+        for (String path : paths.split(",")) {
+            path = path.trim();
+            if (path.length() == 0) {
+                continue;
+            }
+            File file = new File(path);
+            if (file.isDirectory()) {
+                walk(file, files);
+            } else if (file.isFile()) {
+                files.add(file.getPath());
+            } else {
+                throw new IOException("No such pcap file or directory: " + path);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Checks if a file name has the extension of a capture file.
+     *
+     * @param name the file name.
+     * @return true for a pcap or pcapng file.
+     */
+    public static boolean isCapture(String name) {
+        String lower = name.toLowerCase();
+        for (String extension : EXTENSIONS) {
+            if (lower.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void walk(File directory, List<String> files) {
+        File[] children = directory.listFiles();
+        if (children == null) {
+            return;
+        }
+        Arrays.sort(children);
+        for (File child : children) {
+            if (child.isDirectory()) {
+                walk(child, files);
+            } else if (isCapture(child.getName())) {
+                files.add(child.getPath());
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package weka.datagenerators.classifiers.classification.pcap;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.concurrent.TimeoutException;
+
+import org.pcap4j.core.BpfProgram;
+import org.pcap4j.core.NotOpenException;
+import org.pcap4j.core.PcapHandle;
+import org.pcap4j.core.PcapNativeException;
+import org.pcap4j.core.Pcaps;
+
+/**
+ * Packet source reading a pcap file through libpcap (pcap4j).
+ *
+ * Only the raw frames are read from the handle, the header fields are decoded
+ * by {@link PacketDecoder}. A BPF filter can be compiled by libpcap and
+ * applied to the frames before they are read.
+ */
+public class PcapHandleSource implements PacketSource {
+
+    private final PcapHandle handle;
+    private final int linkType;
+    private final int snaplen;
+    private long timestamp;
+
+    /**
+     * Opens a pcap file.
+     *
+     * @param pcapFile the pcap file to read.
+     * @throws IOException if the file could not be opened.
+     */
+    public PcapHandleSource(String pcapFile) throws IOException {
+        this(pcapFile, null, 0);
+    }
+
+    /**
+     * Opens a pcap file, keeping the packets that match a filter.
+     *
+     * @param pcapFile the pcap file to read.
+     * @param filter   the BPF filter, or null to keep all the packets.
+     * @param snaplen  the max number of bytes decoded per frame, 0 for no
+     *                 limit.
+     * @throws IOException if the file could not be opened or the filter is
+     *                     invalid.
+     */
+    public PcapHandleSource(String pcapFile, String filter, int snaplen) throws IOException {
+        this.snaplen = snaplen;
+        PcapHandle handle;
+        try {
+            try {
+                handle = Pcaps.openOffline(pcapFile, PcapHandle.TimestampPrecision.NANO);
+            } catch (PcapNativeException e) {
+                handle = Pcaps.openOffline(pcapFile);
+            }
+        } catch (PcapNativeException e) {
+            throw new IOException("Error while opening the pcap file " + pcapFile, e);
+        }
+        this.handle = handle;
+        this.linkType = handle.getDlt().value();
+        if (filter != null && filter.length() != 0) {
+            try {
+                handle.setFilter(filter, BpfProgram.BpfCompileMode.OPTIMIZE);
+            } catch (PcapNativeException e) {
+                handle.close();
+                throw new IOException("Invalid capture filter: " + filter, e);
+            } catch (NotOpenException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    @Override
+    public boolean next(PacketRecord record) throws IOException {
+        while (true) {
+            try {
+                // Read and decode the raw frame
+                byte[] frame = handle.getNextRawPacketEx();
+                int length = snaplen > 0 ? Math.min(frame.length, snaplen) : frame.length;
+                if (!PacketDecoder.decode(frame, 0, length, linkType, record)) {
+                    continue;
+                }
+                Timestamp ts = handle.getTimestamp();
+                timestamp = Math.floorDiv(ts.getTime(), 1000L) * 1000000000L + ts.getNanos();
+                return true;
+            } catch (TimeoutException e) {
+            } catch (EOFException e) {
+                return false;
+            } catch (PcapNativeException e) {
+                throw new IOException(e);
+            } catch (NotOpenException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    @Override
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public void close() {
+        handle.close();
+    }
+}
@@ -0,0 +1,52 @@
+package weka.datagenerators.classifiers.classification.pcap;
+
+import java.io.IOException;
+
+/**
+ * Packet source keeping the sampled packets of another source, for the
+ * sources that cannot skip the records before decoding them (libpcap, live
+ * streams). Only the systematic sampling is supported: the reservoir sampling
+ * needs the number of records before the first packet.
+ *
+ * The packets are indexed in the order of the decoded packets of the source.
+ */
+public class SampledPacketSource implements PacketSource {
+
+    private final PacketSource source;
+    private final PacketSampler sampler;
+    private long index;
+
+    /**
+     * Creates a sampled source.
+     *
+     * @param source  the source of the packets.
+     * @param sampler the systematic sampler.
+     */
+    public SampledPacketSource(PacketSource source, PacketSampler sampler) {
+        if (sampler.isReservoir()) {
+            throw new IllegalArgumentException("The reservoir sampling needs the whole capture file");
+        }
+        this.source = source;
+        this.sampler = sampler;
+    }
+
+    @Override
+    public boolean next(PacketRecord record) throws IOException {
+        while (source.next(record)) {
+            if (sampler.sample(index++)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long getTimestamp() {
+        return source.getTimestamp();
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+}
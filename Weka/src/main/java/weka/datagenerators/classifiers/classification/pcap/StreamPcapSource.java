@@ -0,0 +1,141 @@
+package weka.datagenerators.classifiers.classification.pcap;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Packet source reading a pcap stream, e.g. the standard output of tshark
+ * (-F pcap -w -).
+ *
+ * The records are decoded as soon as they are read, so the packets of a
+ * running capture are available without waiting for the end of the capture.
+ * The frames are read into a buffer reused by the whole stream. The stream
+ * may be little or big endian, with microsecond or nanosecond timestamps. A
+ * truncated record at the end of the stream is ignored.
+ */
+public class StreamPcapSource implements PacketSource {
+
+    // pcap magic numbers
+    private static final int PCAP_MICROS = 0xa1b2c3d4;
+    private static final int PCAP_NANOS = 0xa1b23c4d;
+    private static final int PCAP_HEADER = 24;
+    private static final int PCAP_RECORD_HEADER = 16;
+
+    /** The max size of a record, larger records are rejected as corrupted. */
+    private static final int MAX_RECORD = 1 << 20;
+
+    private final InputStream in;
+    private final byte[] header = new byte[PCAP_HEADER];
+    private byte[] frame = new byte[65536];
+    private boolean opened;
+    private boolean bigEndian;
+    private boolean nanos;
+    private int linkType;
+    private long timestamp;
+
+    /**
+     * Creates a source, the stream header is read with the first packet.
+     *
+     * @param in the pcap stream.
+     */
+    public StreamPcapSource(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads the stream header.
+     *
+     * @return false if the stream is empty.
+     */
+    private boolean open() throws IOException {
+        if (!readFully(header, PCAP_HEADER)) {
+            return false;
+        }
+        int magic = readInt(header, 0, false);
+        if (magic == PCAP_MICROS || magic == PCAP_NANOS) {
+            bigEndian = false;
+        } else {
+            magic = readInt(header, 0, true);
+            if (magic != PCAP_MICROS && magic != PCAP_NANOS) {
+                throw new IOException("Not a pcap stream (magic number " + Integer.toHexString(magic) + ")");
+            }
+            bigEndian = true;
+        }
+        nanos = magic == PCAP_NANOS;
+        linkType = readInt(header, 20, bigEndian) & 0x0fffffff;
+        return true;
+    }
+
+    @Override
+    public boolean next(PacketRecord record) throws IOException {
+        if (!opened) {
+            opened = true;
+            if (!open()) {
+                return false;
+            }
+        }
+        while (readFully(header, PCAP_RECORD_HEADER)) {
+            long seconds = readInt(header, 0, bigEndian) & 0xffffffffL;
+            long fraction = readInt(header, 4, bigEndian) & 0xffffffffL;
+            int caplen = readInt(header, 8, bigEndian);
+            if (caplen < 0 || caplen > MAX_RECORD) {
+                throw new IOException("Invalid record length " + caplen);
+            }
+            if (caplen > frame.length) {
+                frame = new byte[caplen];
+            }
+            if (!readFully(frame, caplen)) {
+                return false;
+            }
+            if (PacketDecoder.decode(frame, 0, caplen, linkType, record)) {
+                timestamp = seconds * 1000000000L + (nanos ? fraction : fraction * 1000L);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads exactly length bytes.
+     *
+     * @return false at the end of the stream, even in the middle of the bytes.
+     */
+    private boolean readFully(byte[] buffer, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            int count;
+            try {
+                count = in.read(buffer, offset, length - offset);
+            } catch (EOFException e) {
+                return false;
+            }
+            if (count < 0) {
+                return false;
+            }
+            offset += count;
+        }
+        return true;
+    }
+
+    private static int readInt(byte[] buffer, int pos, boolean bigEndian) {
+        int b0 = buffer[pos] & 0xff;
+        int b1 = buffer[pos + 1] & 0xff;
+        int b2 = buffer[pos + 2] & 0xff;
+        int b3 = buffer[pos + 3] & 0xff;
+        if (bigEndian) {
+            return (b0 << 24) | (b1 << 16) | (b2 << 8) | b3;
+        }
+        return (b3 << 24) | (b2 << 16) | (b1 << 8) | b0;
+    }
+
+    @Override
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,400 @@
+package weka.datagenerators.classifiers.classification.pcap;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.SplittableRandom;
+
+import weka.core.Utils;
+
+/**
+ * Writes deterministic synthetic pcap files, to measure the decoding and the
+ * feature pipeline without running a container.
+ *
+ * The packets are Ethernet/IPv4 frames of a pool of concurrent connections
+ * between client and server hosts. Each connection is TCP, UDP or ICMP
+ * according to the packet mix and lasts for 64 packets on average, after
+ * which a new connection takes its slot; a TCP connection starts with a SYN
+ * and ends with a FIN. The payload sizes are uniform between a min and a max
+ * size, and the packets arrive at a random (exponential) interval around the
+ * packet rate. The same seed and settings always give the same file. The packets are written one at a time
+ * from a reused buffer, so files of tens of millions of packets can be
+ * written in constant memory.
+ */
+public class SyntheticPcapWriter {
+
+    // pcap header
+    private static final int PCAP_MICROS = 0xa1b2c3d4;
+    private static final int SNAPLEN = 65535;
+    private static final int HEADERS = 14 + 20 + 20;
+
+    /** The probability that a packet closes its connection. */
+    private static final double CLOSE_PROBABILITY = 1.0 / 64;
+
+    private static final int[] TCP_PORTS = { 80, 443, 22 };
+    private static final int[] UDP_PORTS = { 53, 123 };
+
+    /**
+     * Endpoints and state of a connection.
+     */
+    private static final class Connection {
+        int client;
+        int server;
+        int clientPort;
+        int serverPort;
+        int protocol;
+        long clientSeq;
+        long serverSeq;
+        boolean opened;
+    }
+
+    private long seed = 1;
+    private double tcpWeight = 0.8;
+    private double udpWeight = 0.15;
+    private double icmpWeight = 0.05;
+    private int minPayload = 0;
+    private int maxPayload = 1400;
+    private int hosts = 256;
+    private int connections = 1024;
+    private double packetsPerSecond = 10000;
+    private long startTime = 1700000000000000L;
+
+    /**
+     * Sets the seed of the packets.
+     *
+     * @param seed the seed.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the packet mix, as relative weights of the protocols.
+     *
+     * @param tcp  the weight of the TCP connections.
+     * @param udp  the weight of the UDP connections.
+     * @param icmp the weight of the ICMP connections.
+     */
+    public void setMix(double tcp, double udp, double icmp) {
+        if (tcp < 0 || udp < 0 || icmp < 0 || tcp + udp + icmp <= 0) {
+            throw new IllegalArgumentException("Invalid packet mix: " + tcp + ":" + udp + ":" + icmp);
+        }
+        this.tcpWeight = tcp;
+        this.udpWeight = udp;
+        this.icmpWeight = icmp;
+    }
+
+    /**
+     * Sets the range of the payload sizes.
+     *
+     * @param min the min payload size (bytes).
+     * @param max the max payload size (bytes).
+     */
+    public void setPayloadSize(int min, int max) {
+        if (min < 0 || max < min || max > SNAPLEN - HEADERS) {
+            throw new IllegalArgumentException("Invalid payload sizes: " + min + ":" + max);
+        }
+        this.minPayload = min;
+        this.maxPayload = max;
+    }
+
+    /**
+     * Sets the number of client hosts (there is one server per 16 clients).
+     *
+     * @param hosts the number of hosts.
+     */
+    public void setHosts(int hosts) {
+        this.hosts = Math.max(hosts, 1);
+    }
+
+    /**
+     * Sets the number of concurrent connections.
+     *
+     * @param connections the number of connections.
+     */
+    public void setConnections(int connections) {
+        this.connections = Math.max(connections, 1);
+    }
+
+    /**
+     * Sets the mean packet rate.
+     *
+     * @param packetsPerSecond the packets per second.
+     */
+    public void setPacketsPerSecond(double packetsPerSecond) {
+        this.packetsPerSecond = packetsPerSecond;
+    }
+
+    /**
+     * Sets the timestamp of the start of the capture.
+     *
+     * @param startTime the start time (microseconds since epoch).
+     */
+    public void setStartTime(long startTime) {
+        this.startTime = startTime;
+    }
+
+    /**
+     * Writes a pcap file.
+     *
+     * @param file  the file to write.
+     * @param count the number of packets.
+     * @return the size of the file (bytes).
+     * @throws IOException if the file could not be written.
+     */
+    public long write(String file, long count) throws IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 20);
+        try {
+            return write(out, count);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes a pcap stream.
+     *
+     * @param out   the stream to write.
+     * @param count the number of packets.
+     * @return the number of bytes written.
+     * @throws IOException if the stream could not be written.
+     */
+    public long write(OutputStream out, long count) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        Connection[] pool = new Connection[connections];
+        for (int i = 0; i < pool.length; i++) {
+            pool[i] = new Connection();
+            open(pool[i], random);
+        }
+
+        byte[] buffer = new byte[16 + HEADERS + maxPayload];
+        putIntLE(buffer, 0, PCAP_MICROS);
+        putShortLE(buffer, 4, 2);
+        putShortLE(buffer, 6, 4);
+        putIntLE(buffer, 8, 0);
+        putIntLE(buffer, 12, 0);
+        putIntLE(buffer, 16, SNAPLEN);
+        putIntLE(buffer, 20, PacketDecoder.LINKTYPE_ETHERNET);
+        out.write(buffer, 0, 24);
+        long bytes = 24;
+
+        double micros = startTime;
+        double meanInterval = 1000000.0 / packetsPerSecond;
+        for (long i = 0; i < count; i++) {
+            Connection connection = pool[random.nextInt(pool.length)];
+            boolean fromClient = !connection.opened || random.nextInt(5) < 3;
+            int payload = minPayload + random.nextInt(maxPayload - minPayload + 1);
+            micros += -Math.log(1.0 - random.nextDouble()) * meanInterval;
+
+            int length = frame(buffer, 16, connection, fromClient, payload, (int) i, random);
+            long timestamp = (long) micros;
+            putIntLE(buffer, 0, (int) (timestamp / 1000000L));
+            putIntLE(buffer, 4, (int) (timestamp % 1000000L));
+            putIntLE(buffer, 8, length);
+            putIntLE(buffer, 12, length);
+            out.write(buffer, 0, 16 + length);
+            bytes += 16 + length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Starts a new connection.
+     */
+    private void open(Connection connection, SplittableRandom random) {
+        double protocol = random.nextDouble() * (tcpWeight + udpWeight + icmpWeight);
+        connection.client = random.nextInt(hosts);
+        connection.server = random.nextInt(Math.max(hosts / 16, 1));
+        connection.clientPort = 32768 + random.nextInt(28232);
+        if (protocol < tcpWeight) {
+            connection.protocol = PacketDecoder.PROTOCOL_TCP;
+            connection.serverPort = TCP_PORTS[random.nextInt(TCP_PORTS.length)];
+        } else if (protocol < tcpWeight + udpWeight) {
+            connection.protocol = PacketDecoder.PROTOCOL_UDP;
+            connection.serverPort = UDP_PORTS[random.nextInt(UDP_PORTS.length)];
+        } else {
+            connection.protocol = PacketDecoder.PROTOCOL_ICMP;
+            connection.serverPort = 0;
+        }
+        connection.clientSeq = random.nextInt() & 0xffffffffL;
+        connection.serverSeq = random.nextInt() & 0xffffffffL;
+        connection.opened = false;
+    }
+
+    /**
+     * Writes the frame of the next packet of a connection.
+     *
+     * @return the length of the frame.
+     */
+    private int frame(byte[] buffer, int pos, Connection connection, boolean fromClient, int payload, int id,
+            SplittableRandom random) {
+        boolean close = connection.opened && random.nextDouble() < CLOSE_PROBABILITY;
+        int flags = 0;
+        if (connection.protocol == PacketDecoder.PROTOCOL_TCP) {
+            if (!connection.opened) {
+                flags = PacketDecoder.TCP_SYN;
+                payload = 0;
+            } else if (close) {
+                flags = PacketDecoder.TCP_FIN | PacketDecoder.TCP_ACK;
+            } else {
+                flags = payload > 0 ? PacketDecoder.TCP_PSH | PacketDecoder.TCP_ACK : PacketDecoder.TCP_ACK;
+            }
+        }
+        int transport = connection.protocol == PacketDecoder.PROTOCOL_TCP ? 20 : 8;
+        int ipLength = 20 + transport + payload;
+        int src = fromClient ? 0x0a000001 + connection.client : 0x0a010001 + connection.server;
+        int dst = fromClient ? 0x0a010001 + connection.server : 0x0a000001 + connection.client;
+
+        // Ethernet
+        for (int i = 0; i < 12; i++) {
+            buffer[pos + i] = 0;
+        }
+        putShort(buffer, pos + 12, PacketDecoder.ETHERTYPE_IPV4);
+        int ip = pos + 14;
+
+        // IPv4
+        buffer[ip] = 0x45;
+        buffer[ip + 1] = 0;
+        putShort(buffer, ip + 2, ipLength);
+        putShort(buffer, ip + 4, id);
+        putShort(buffer, ip + 6, 0x4000);
+        buffer[ip + 8] = 64;
+        buffer[ip + 9] = (byte) connection.protocol;
+        putShort(buffer, ip + 10, 0);
+        putInt(buffer, ip + 12, src);
+        putInt(buffer, ip + 16, dst);
+        putShort(buffer, ip + 10, checksum(buffer, ip, 20));
+        int l4 = ip + 20;
+
+        // TCP, UDP or ICMP echo
+        if (connection.protocol == PacketDecoder.PROTOCOL_ICMP) {
+            buffer[l4] = (byte) (fromClient ? 8 : 0);
+            buffer[l4 + 1] = 0;
+            putShort(buffer, l4 + 2, 0);
+            putShort(buffer, l4 + 4, connection.clientPort);
+            putShort(buffer, l4 + 6, id);
+        } else {
+            putShort(buffer, l4, fromClient ? connection.clientPort : connection.serverPort);
+            putShort(buffer, l4 + 2, fromClient ? connection.serverPort : connection.clientPort);
+            if (connection.protocol == PacketDecoder.PROTOCOL_TCP) {
+                long seq = fromClient ? connection.clientSeq : connection.serverSeq;
+                putInt(buffer, l4 + 4, (int) seq);
+                putInt(buffer, l4 + 8, (int) (fromClient ? connection.serverSeq : connection.clientSeq));
+                buffer[l4 + 12] = 0x50;
+                buffer[l4 + 13] = (byte) flags;
+                putShort(buffer, l4 + 14, 65535);
+                putInt(buffer, l4 + 16, 0);
+                long next = (seq + payload + ((flags & PacketDecoder.TCP_SYN) != 0 ? 1 : 0)) & 0xffffffffL;
+                if (fromClient) {
+                    connection.clientSeq = next;
+                } else {
+                    connection.serverSeq = next;
+                }
+            } else {
+                putShort(buffer, l4 + 4, 8 + payload);
+                putShort(buffer, l4 + 6, 0);
+            }
+        }
+        int data = l4 + transport;
+        for (int i = 0; i < payload; i++) {
+            buffer[data + i] = (byte) i;
+        }
+
+        connection.opened = true;
+        if (close) {
+            open(connection, random);
+        }
+        return 14 + ipLength;
+    }
+
+    private static int checksum(byte[] buffer, int pos, int length) {
+        int sum = 0;
+        for (int i = 0; i < length; i += 2) {
+            sum += ((buffer[pos + i] & 0xff) << 8) | (buffer[pos + i + 1] & 0xff);
+        }
+        while ((sum >>> 16) != 0) {
+            sum = (sum & 0xffff) + (sum >>> 16);
+        }
+        return ~sum & 0xffff;
+    }
+
+    private static void putShort(byte[] buffer, int pos, int value) {
+        buffer[pos] = (byte) (value >>> 8);
+        buffer[pos + 1] = (byte) value;
+    }
+
+    private static void putInt(byte[] buffer, int pos, int value) {
+        buffer[pos] = (byte) (value >>> 24);
+        buffer[pos + 1] = (byte) (value >>> 16);
+        buffer[pos + 2] = (byte) (value >>> 8);
+        buffer[pos + 3] = (byte) value;
+    }
+
+    private static void putShortLE(byte[] buffer, int pos, int value) {
+        buffer[pos] = (byte) value;
+        buffer[pos + 1] = (byte) (value >>> 8);
+    }
+
+    private static void putIntLE(byte[] buffer, int pos, int value) {
+        buffer[pos] = (byte) value;
+        buffer[pos + 1] = (byte) (value >>> 8);
+        buffer[pos + 2] = (byte) (value >>> 16);
+        buffer[pos + 3] = (byte) (value >>> 24);
+    }
+
+    /**
+     * Writes a synthetic pcap file. Options:
+     * <pre>
+     * -o &lt;file&gt;            the file to write (required)
+     * -n &lt;count&gt;           the number of packets (default 1000000)
+     * -seed &lt;seed&gt;         the seed of the packets (default 1)
+     * -mix &lt;tcp:udp:icmp&gt;  the weights of the protocols (default 0.8:0.15:0.05)
+     * -payload &lt;min:max&gt;  the payload sizes (default 0:1400)
+     * -hosts &lt;hosts&gt;       the number of client hosts (default 256)
+     * -connections &lt;n&gt;    the number of concurrent connections (default 1024)
+     * -rate &lt;pps&gt;         the mean packet rate (default 10000)
+     * </pre>
+     *
+     * @param args the options.
+     * @throws Exception if the options are invalid or the file could not be
+     *                   written.
+     */
+    public static void main(String[] args) throws Exception {
+        String file = Utils.getOption('o', args);
+        if (file.length() == 0) {
+            throw new IllegalArgumentException("No output file (-o <file>)");
+        }
+        SyntheticPcapWriter writer = new SyntheticPcapWriter();
+        String count = Utils.getOption('n', args);
+        String option = Utils.getOption("seed", args);
+        if (option.length() != 0) {
+            writer.setSeed(Long.parseLong(option));
+        }
+        option = Utils.getOption("mix", args);
+        if (option.length() != 0) {
+            String[] weights = option.split(":");
+            writer.setMix(Double.parseDouble(weights[0]), Double.parseDouble(weights[1]),
+                    Double.parseDouble(weights[2]));
+        }
+        option = Utils.getOption("payload", args);
+        if (option.length() != 0) {
+            String[] sizes = option.split(":");
+            writer.setPayloadSize(Integer.parseInt(sizes[0]), Integer.parseInt(sizes[1]));
+        }
+        option = Utils.getOption("hosts", args);
+        if (option.length() != 0) {
+            writer.setHosts(Integer.parseInt(option));
+        }
+        option = Utils.getOption("connections", args);
+        if (option.length() != 0) {
+            writer.setConnections(Integer.parseInt(option));
+        }
+        option = Utils.getOption("rate", args);
+        if (option.length() != 0) {
+            writer.setPacketsPerSecond(Double.parseDouble(option));
+        }
+        long bytes = writer.write(file, count.length() != 0 ? Long.parseLong(count) : 1000000L);
+        System.out.println(file + ": " + bytes + " bytes");
+    }
+}
@@ -0,0 +1,286 @@
+package weka.datagenerators.classifiers.classification.pcap;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * Computes per-destination statistics over time windows: packet and byte
+ * rates, distinct source addresses, source address and destination port
+ * entropies.
+ *
+ * Two kinds of windows are supported:
+ * <ul>
+ * <li>tumbling: consecutive non-overlapping windows, one row per destination
+ * and window is emitted when the window closes,</li>
+ * <li>sliding: the window ends at each packet, one row per packet is emitted
+ * with the statistics of its destination over the last window size.</li>
+ * </ul>
+ * The statistics are maintained incrementally: each packet is added once and
+ * (sliding windows) removed once when it leaves the window, so the cost per
+ * packet is O(1) amortized. The packets must be added in timestamp order.
+ */
+public class WindowAggregator implements PacketAggregator {
+
+    /**
+     * Receives the window statistics.
+     */
+    public interface WindowListener {
+
+        /**
+         * Called for each emitted row.
+         *
+         * @param statistics the statistics of a destination.
+         */
+        void windowCompleted(WindowStatistics statistics);
+    }
+
+    /**
+     * State of one destination in the current window.
+     */
+    private static final class Destination {
+        final long high;
+        final long low;
+        long packets;
+        long bytes;
+        final FrequencyCounter srcIps = new FrequencyCounter();
+        final FrequencyCounter dstPorts = new FrequencyCounter();
+        int[] labels = new int[8];
+
+        Destination(long high, long low) {
+            this.high = high;
+            this.low = low;
+        }
+
+        void addLabel(int label, int delta) {
+            if (label >= labels.length) {
+                labels = Arrays.copyOf(labels, label + 1);
+            }
+            labels[label] += delta;
+        }
+
+        int label() {
+            int best = 0;
+            for (int i = 1; i < labels.length; i++) {
+                if (labels[i] > 0 && (best == 0 || labels[i] > labels[best])) {
+                    best = i;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Key of a destination (reused for the lookups).
+     */
+    private static final class Key {
+        long high;
+        long low;
+
+        Key set(long high, long low) {
+            this.high = high;
+            this.low = low;
+            return this;
+        }
+
+        @Override
+        public int hashCode() {
+            long h = high * 0x9e3779b97f4a7c15L + low;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return high == other.high && low == other.low;
+        }
+    }
+
+    private final boolean sliding;
+    private final long windowSize;
+    private final WindowListener listener;
+
+    private final HashMap<Key, Destination> destinations = new HashMap<Key, Destination>();
+    private final Key probe = new Key();
+
+    // Tumbling windows: start of the current window
+    private long windowStart = Long.MIN_VALUE;
+
+    // Sliding windows: ring buffer of the packets in the window
+    private long[] timestamps = new long[1024];
+    private Destination[] packetDestinations = new Destination[1024];
+    private long[] srcHighs = new long[1024];
+    private long[] srcLows = new long[1024];
+    private int[] dstPorts = new int[1024];
+    private int[] lengths = new int[1024];
+    private int[] labels = new int[1024];
+    private int head;
+    private int size;
+
+    /**
+     * Creates a window aggregator.
+     *
+     * @param sliding    true for sliding windows, false for tumbling windows.
+     * @param windowSize the window size (nanoseconds).
+     * @param listener   the listener of the statistics.
+     */
+    public WindowAggregator(boolean sliding, long windowSize, WindowListener listener) {
+        this.sliding = sliding;
+        this.windowSize = Math.max(windowSize, 1L);
+        this.listener = listener;
+    }
+
+    @Override
+    public void add(PacketRecord record, long timestamp) {
+        if (sliding) {
+            evict(timestamp);
+        } else if (windowStart == Long.MIN_VALUE) {
+            windowStart = timestamp;
+        } else if (timestamp - windowStart >= windowSize) {
+            // Close the current window (and skip the empty ones)
+            emitAll();
+            windowStart += (timestamp - windowStart) / windowSize * windowSize;
+        }
+
+        // Update the destination state
+        Destination destination = destinations.get(probe.set(record.dstAddrHigh, record.dstAddrLow));
+        if (destination == null) {
+            destination = new Destination(record.dstAddrHigh, record.dstAddrLow);
+            destinations.put(new Key().set(record.dstAddrHigh, record.dstAddrLow), destination);
+        }
+        int length = Math.max(record.length, 0);
+        destination.packets++;
+        destination.bytes += length;
+        destination.addLabel(record.label, 1);
+        destination.srcIps.increment(record.srcAddrHigh, record.srcAddrLow);
+        if (record.dstPort != PacketRecord.ABSENT) {
+            destination.dstPorts.increment(0L, record.dstPort);
+        }
+
+        if (sliding) {
+            push(timestamp, destination, record, length);
+            listener.windowCompleted(snapshot(destination, timestamp - windowSize));
+        }
+    }
+
+    /**
+     * Removes the packets that left the sliding window.
+     *
+     * @param now the timestamp of the new packet.
+     */
+    private void evict(long now) {
+        while (size > 0 && now - timestamps[head] >= windowSize) {
+            Destination destination = packetDestinations[head];
+            destination.packets--;
+            destination.bytes -= lengths[head];
+            destination.addLabel(labels[head], -1);
+            destination.srcIps.decrement(srcHighs[head], srcLows[head]);
+            if (dstPorts[head] != PacketRecord.ABSENT) {
+                destination.dstPorts.decrement(0L, dstPorts[head]);
+            }
+            if (destination.packets == 0) {
+                destinations.remove(probe.set(destination.high, destination.low));
+            }
+            packetDestinations[head] = null;
+            head = (head + 1) % timestamps.length;
+            size--;
+        }
+    }
+
+    /**
+     * Appends a packet to the sliding window.
+     */
+    private void push(long timestamp, Destination destination, PacketRecord record, int length) {
+        if (size == timestamps.length) {
+            grow();
+        }
+        int tail = (head + size) % timestamps.length;
+        timestamps[tail] = timestamp;
+        packetDestinations[tail] = destination;
+        srcHighs[tail] = record.srcAddrHigh;
+        srcLows[tail] = record.srcAddrLow;
+        dstPorts[tail] = record.dstPort;
+        lengths[tail] = length;
+        labels[tail] = record.label;
+        size++;
+    }
+
+    /**
+     * Doubles the capacity of the ring buffer.
+     */
+    private void grow() {
+        int capacity = timestamps.length * 2;
+        timestamps = unroll(timestamps, capacity);
+        srcHighs = unroll(srcHighs, capacity);
+        srcLows = unroll(srcLows, capacity);
+        int[] newPorts = new int[capacity];
+        int[] newLengths = new int[capacity];
+        int[] newLabels = new int[capacity];
+        Destination[] newDestinations = new Destination[capacity];
+        for (int i = 0; i < size; i++) {
+            int j = (head + i) % dstPorts.length;
+            newPorts[i] = dstPorts[j];
+            newLengths[i] = lengths[j];
+            newLabels[i] = labels[j];
+            newDestinations[i] = packetDestinations[j];
+        }
+        dstPorts = newPorts;
+        lengths = newLengths;
+        labels = newLabels;
+        packetDestinations = newDestinations;
+        head = 0;
+    }
+
+    private long[] unroll(long[] values, int capacity) {
+        long[] result = Arrays.copyOf(values, capacity);
+        for (int i = 0; i < size; i++) {
+            result[i] = values[(head + i) % values.length];
+        }
+        return result;
+    }
+
+    /**
+     * Emits the statistics of all the destinations of the tumbling window and
+     * starts a new window.
+     */
+    private void emitAll() {
+        Iterator<Destination> it = destinations.values().iterator();
+        while (it.hasNext()) {
+            listener.windowCompleted(snapshot(it.next(), windowStart));
+        }
+        destinations.clear();
+    }
+
+    /**
+     * Creates the statistics of a destination.
+     */
+    private WindowStatistics snapshot(Destination destination, long start) {
+        WindowStatistics statistics = new WindowStatistics();
+        statistics.dstAddrHigh = destination.high;
+        statistics.dstAddrLow = destination.low;
+        statistics.windowStart = start;
+        statistics.windowSize = windowSize;
+        statistics.packets = destination.packets;
+        statistics.bytes = destination.bytes;
+        statistics.distinctSrcIps = destination.srcIps.distinct();
+        statistics.srcIpEntropy = destination.srcIps.entropy();
+        statistics.distinctDstPorts = destination.dstPorts.distinct();
+        statistics.dstPortEntropy = destination.dstPorts.entropy();
+        statistics.label = destination.label();
+        return statistics;
+    }
+
+    /**
+     * Emits the last tumbling window. Nothing is pending with sliding windows.
+     */
+    @Override
+    public void flush() {
+        if (!sliding && windowStart != Long.MIN_VALUE) {
+            emitAll();
+            windowStart = Long.MIN_VALUE;
+        }
+    }
+}
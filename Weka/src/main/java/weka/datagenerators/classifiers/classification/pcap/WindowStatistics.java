@@ -0,0 +1,98 @@
+package weka.datagenerators.classifiers.classification.pcap;
+
+/**
+ * Statistics of the packets sent to one destination during a time window.
+ */
+public class WindowStatistics {
+
+    long dstAddrHigh;
+    long dstAddrLow;
+    long windowStart;
+    long windowSize;
+    long packets;
+    long bytes;
+    int distinctSrcIps;
+    double srcIpEntropy;
+    int distinctDstPorts;
+    double dstPortEntropy;
+    int label;
+
+    public long getDstAddrHigh() {
+        return dstAddrHigh;
+    }
+
+    public long getDstAddrLow() {
+        return dstAddrLow;
+    }
+
+    /**
+     * Gets the start of the window.
+     *
+     * @return the start of the window (nanoseconds since epoch).
+     */
+    public long getWindowStart() {
+        return windowStart;
+    }
+
+    public long getPackets() {
+        return packets;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Gets the number of packets per second over the window.
+     *
+     * @return the packet rate.
+     */
+    public double getPacketsPerSecond() {
+        return packets * 1e9 / windowSize;
+    }
+
+    /**
+     * Gets the number of bytes per second over the window.
+     *
+     * @return the byte rate.
+     */
+    public double getBytesPerSecond() {
+        return bytes * 1e9 / windowSize;
+    }
+
+    public int getDistinctSrcIps() {
+        return distinctSrcIps;
+    }
+
+    /**
+     * Gets the entropy of the source addresses.
+     *
+     * @return the entropy (bits).
+     */
+    public double getSrcIpEntropy() {
+        return srcIpEntropy;
+    }
+
+    public int getDistinctDstPorts() {
+        return distinctDstPorts;
+    }
+
+    /**
+     * Gets the entropy of the destination ports.
+     *
+     * @return the entropy (bits).
+     */
+    public double getDstPortEntropy() {
+        return dstPortEntropy;
+    }
+
+    /**
+     * Gets the ground truth label of the window: the most frequent attack label
+     * of its packets, or benign (0).
+     *
+     * @return the index of the class value.
+     */
+    public int getLabel() {
+        return label;
+    }
+}
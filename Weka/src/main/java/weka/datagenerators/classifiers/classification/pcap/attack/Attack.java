@@ -0,0 +1,74 @@
+package weka.datagenerators.classifiers.classification.pcap.attack;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.BitSet;
+
+/**
+ * Attack run against the simulated host during the capture.
+ *
+ * An attack runs in its own threads between start and stop. The number of
+ * packets (datagrams, connection attempts or header lines) and bytes
+ * sent is available while the attack runs.
+ */
+public interface Attack {
+
+    /**
+     * Gets the name of the attack.
+     *
+     * @return the name of the attack.
+     */
+    String getName();
+
+    /**
+     * Gets the transport protocol of the attack packets.
+     *
+     * @return the IP protocol number (TCP or UDP).
+     */
+    int getProtocol();
+
+    /**
+     * Gets the local ports used by the attack so far. Together with the
+     * protocol and the attacker address, they tell the attack packets apart
+     * from the other traffic of the attacker host.
+     *
+     * @return a copy of the set of local ports.
+     */
+    BitSet getLocalPorts();
+
+    /**
+     * Starts the attack.
+     *
+     * @param target the attacked host.
+     * @throws IOException if the attack could not be started.
+     */
+    void start(InetAddress target) throws IOException;
+
+    /**
+     * Stops the attack and waits for its threads.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    void stop() throws InterruptedException;
+
+    /**
+     * Checks if the attack is running.
+     *
+     * @return true between start and stop.
+     */
+    boolean isRunning();
+
+    /**
+     * Gets the number of packets sent so far.
+     *
+     * @return the number of packets.
+     */
+    long getSentPackets();
+
+    /**
+     * Gets the number of payload bytes sent so far.
+     *
+     * @return the number of bytes.
+     */
+    long getSentBytes();
+}
@@ -0,0 +1,145 @@
+package weka.datagenerators.classifiers.classification.pcap.attack;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.BitSet;
+
+import weka.datagenerators.classifiers.classification.pcap.PacketRecord;
+
+/**
+ * One attack phase of a capture: the attack, when it ran and the endpoints of
+ * its packets.
+ *
+ * A packet belongs to the phase when it was captured during the phase, has the
+ * protocol of the attack, and goes from one of the local ports of the attack
+ * on the attacker host to the target (or back).
+ */
+public class AttackPhase {
+
+    private final String name;
+    private final int label;
+    private final long start;
+    private final long stop;
+    private final long attackerHigh;
+    private final long attackerLow;
+    private final long targetHigh;
+    private final long targetLow;
+    private final int protocol;
+    private final BitSet localPorts;
+
+    /**
+     * Creates an attack phase.
+     *
+     * @param name       the attack name.
+     * @param start      the start of the phase (nanoseconds since epoch).
+     * @param stop       the end of the phase (nanoseconds since epoch).
+     * @param attacker   the source address of the attack.
+     * @param target     the attacked address.
+     * @param protocol   the IP protocol of the attack.
+     * @param localPorts the local ports used by the attack.
+     */
+    public AttackPhase(String name, long start, long stop, InetAddress attacker, InetAddress target, int protocol,
+            BitSet localPorts) {
+        this.name = name;
+        this.label = AttackTimeline.labelOf(name);
+        this.start = start;
+        this.stop = stop;
+        this.attackerHigh = high(attacker);
+        this.attackerLow = low(attacker);
+        this.targetHigh = high(target);
+        this.targetLow = low(target);
+        this.protocol = protocol;
+        this.localPorts = localPorts;
+    }
+
+    /**
+     * Checks if a packet belongs to the phase. The time interval is checked by
+     * the timeline.
+     *
+     * @param record the packet.
+     * @return true if the packet is an attack packet (or an answer to one).
+     */
+    boolean matches(PacketRecord record) {
+        if (record.protocol != protocol) {
+            return false;
+        }
+        if (record.srcAddrLow == attackerLow && record.srcAddrHigh == attackerHigh && record.dstAddrLow == targetLow
+                && record.dstAddrHigh == targetHigh) {
+            return record.srcPort >= 0 && localPorts.get(record.srcPort);
+        }
+        if (record.srcAddrLow == targetLow && record.srcAddrHigh == targetHigh && record.dstAddrLow == attackerLow
+                && record.dstAddrHigh == attackerHigh) {
+            return record.dstPort >= 0 && localPorts.get(record.dstPort);
+        }
+        return false;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the label of the attack packets.
+     *
+     * @return the index of the class value.
+     */
+    public int getLabel() {
+        return label;
+    }
+
+    /**
+     * Gets the start of the phase.
+     *
+     * @return the start (nanoseconds since epoch).
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * Gets the end of the phase.
+     *
+     * @return the end (nanoseconds since epoch).
+     */
+    public long getStop() {
+        return stop;
+    }
+
+    @Override
+    public String toString() {
+        return name + " [" + start + ", " + stop + "] " + localPorts.cardinality() + " local ports";
+    }
+
+    /**
+     * Gets the high 64 bits of an address, IPv4 addresses are mapped to IPv6.
+     */
+    private static long high(InetAddress address) {
+        if (address instanceof Inet4Address) {
+            return 0L;
+        }
+        return toLong(address.getAddress(), 0);
+    }
+
+    /**
+     * Gets the low 64 bits of an address, IPv4 addresses are mapped to IPv6.
+     */
+    private static long low(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        if (address instanceof Inet4Address) {
+            return 0x0000ffff00000000L | (toInt(bytes) & 0xffffffffL);
+        }
+        return toLong(bytes, 8);
+    }
+
+    private static int toInt(byte[] bytes) {
+        return (bytes[0] & 0xff) << 24 | (bytes[1] & 0xff) << 16 | (bytes[2] & 0xff) << 8 | (bytes[3] & 0xff);
+    }
+
+    private static long toLong(byte[] bytes, int offset) {
+        long value = 0L;
+        for (int i = 0; i < 8; i++) {
+            value = value << 8 | (bytes[offset + i] & 0xff);
+        }
+        return value;
+    }
+}
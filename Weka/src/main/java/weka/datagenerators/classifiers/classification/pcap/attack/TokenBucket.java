@@ -0,0 +1,92 @@
+package weka.datagenerators.classifiers.classification.pcap.attack;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Token bucket pacer: the tokens are refilled at a constant rate up to a burst
+ * capacity, and each send consumes one token. Short pauses of the sender are
+ * caught up by the burst, so the long-term rate stays on target even with the
+ * coarse granularity of the park calls.
+ *
+ * A token bucket is not thread-safe, each sender thread owns its bucket.
+ */
+public class TokenBucket {
+
+    private double tokensPerNano;
+    private double capacity;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * Creates a token bucket, initially empty.
+     *
+     * @param tokensPerSecond the refill rate.
+     * @param burst           the capacity of the bucket.
+     */
+    public TokenBucket(double tokensPerSecond, double burst) {
+        this.tokensPerNano = tokensPerSecond / 1e9;
+        this.capacity = Math.max(burst, 1.0);
+        this.lastRefill = nanoTime();
+    }
+
+    /**
+     * Takes one token, waiting for it if the bucket is empty.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public void acquire() throws InterruptedException {
+        refill();
+        while (tokens < 1.0) {
+            LockSupport.parkNanos((long) Math.ceil((1.0 - tokens) / tokensPerNano));
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            refill();
+        }
+        tokens -= 1.0;
+    }
+
+    /**
+     * Takes one token if available, without waiting.
+     *
+     * @return true if a token was taken.
+     */
+    public boolean tryAcquire() {
+        refill();
+        if (tokens < 1.0) {
+            return false;
+        }
+        tokens -= 1.0;
+        return true;
+    }
+
+    /**
+     * Changes the refill rate and the capacity. The tokens refilled so far are
+     * kept, at most the new capacity.
+     *
+     * @param tokensPerSecond the refill rate.
+     * @param burst           the capacity of the bucket.
+     */
+    public void setRate(double tokensPerSecond, double burst) {
+        refill();
+        this.tokensPerNano = tokensPerSecond / 1e9;
+        this.capacity = Math.max(burst, 1.0);
+        this.tokens = Math.min(tokens, capacity);
+    }
+
+    /**
+     * Gets the current time of the bucket, System.nanoTime() by default. Also
+     * called by the constructor.
+     *
+     * @return the time (nanoseconds).
+     */
+    protected long nanoTime() {
+        return System.nanoTime();
+    }
+
+    private void refill() {
+        long now = nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+}
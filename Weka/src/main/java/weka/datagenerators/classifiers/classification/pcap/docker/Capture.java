@@ -0,0 +1,152 @@
+package weka.datagenerators.classifiers.classification.pcap.docker;
+
+import java.util.List;
+
+import weka.datagenerators.classifiers.classification.pcap.PacketRecord;
+import weka.datagenerators.classifiers.classification.pcap.PacketSource;
+import weka.datagenerators.classifiers.classification.pcap.PacketTable;
+import weka.datagenerators.classifiers.classification.pcap.attack.AttackTimeline;
+import weka.datagenerators.classifiers.classification.pcap.attack.LiveTimeline;
+
+/**
+ * Result of the capture of one container (or of one replayed pcap file): the
+ * pcap file, the start time of the capture and the attack phases run during
+ * the capture. In batch mode the pcap file is also decoded by the worker that
+ * ran the capture, to the packets or to the flows and windows.
+ *
+ * A live capture has no pcap file: the packets are read from the source
+ * streamed out of the container while the capture runs, and are labelled with
+ * the attack phases recorded so far.
+ */
+public class Capture {
+
+    private final String pcapFile;
+    private final long startTime;
+    private final AttackTimeline timeline;
+    private final PacketSource liveSource;
+    private final LiveTimeline liveTimeline;
+    private PacketTable packets;
+    private List<Object> rows;
+    private double samplingRate = 1.0;
+
+    /**
+     * Creates a capture.
+     *
+     * @param pcapFile  the pcap file copied from the container.
+     * @param startTime the start time of the container (milliseconds since
+     *                  epoch).
+     * @param timeline  the attack phases.
+     */
+    public Capture(String pcapFile, long startTime, AttackTimeline timeline) {
+        this.pcapFile = pcapFile;
+        this.startTime = startTime;
+        this.timeline = timeline;
+        this.liveSource = null;
+        this.liveTimeline = null;
+    }
+
+    /**
+     * Creates a live capture.
+     *
+     * @param liveSource   the packets streamed out of the container.
+     * @param startTime    the start time of the container (milliseconds since
+     *                     epoch).
+     * @param liveTimeline the attack phases, recorded while the capture runs.
+     */
+    public Capture(PacketSource liveSource, long startTime, LiveTimeline liveTimeline) {
+        this.pcapFile = null;
+        this.startTime = startTime;
+        this.timeline = null;
+        this.liveSource = liveSource;
+        this.liveTimeline = liveTimeline;
+    }
+
+    /**
+     * Gets the pcap file.
+     *
+     * @return the pcap file, or null for a live capture.
+     */
+    public String getPcapFile() {
+        return pcapFile;
+    }
+
+    /**
+     * Gets the start time of the container.
+     *
+     * @return the start time (milliseconds since epoch).
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Gets the attack phases.
+     *
+     * @return the attack phases, recorded so far for a live capture.
+     */
+    public AttackTimeline getTimeline() {
+        return liveTimeline != null ? liveTimeline.getSnapshot() : timeline;
+    }
+
+    /**
+     * Gets the source of a live capture.
+     *
+     * @return the source, or null if the capture is not live.
+     */
+    public PacketSource getLiveSource() {
+        return liveSource;
+    }
+
+    /**
+     * Labels a packet of the capture.
+     *
+     * @param record    the packet.
+     * @param timestamp the capture timestamp (nanoseconds since epoch).
+     * @return the index of the class value, 0 for benign traffic.
+     */
+    public int label(PacketRecord record, long timestamp) {
+        if (liveTimeline != null) {
+            return liveTimeline.label(record, timestamp);
+        }
+        return timeline.label(record, timestamp);
+    }
+
+    /**
+     * Gets the decoded packets.
+     *
+     * @return the packets, or null if the capture was not decoded to packets.
+     */
+    public PacketTable getPackets() {
+        return packets;
+    }
+
+    public void setPackets(PacketTable packets) {
+        this.packets = packets;
+    }
+
+    /**
+     * Gets the decoded flows or windows.
+     *
+     * @return the rows, or null if the capture was not decoded to rows.
+     */
+    public List<Object> getRows() {
+        return rows;
+    }
+
+    public void setRows(List<Object> rows) {
+        this.rows = rows;
+    }
+
+    /**
+     * Gets the fraction of the packets of the capture that are decoded.
+     *
+     * @return the sampling rate, 1 if the packets are not sampled.
+     */
+    public double getSamplingRate() {
+        return samplingRate;
+    }
+
+    public void setSamplingRate(double samplingRate) {
+        this.samplingRate = samplingRate;
+    }
+}
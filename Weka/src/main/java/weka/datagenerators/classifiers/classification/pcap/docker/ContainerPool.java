@@ -0,0 +1,125 @@
+package weka.datagenerators.classifiers.classification.pcap.docker;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Pool of warm victim containers, kept running between captures.
+ *
+ * A container is leased by name for one capture and released once its pcap
+ * file was copied; the next capture on the same name resets it (stops the
+ * capture and deletes the pcap file) instead of creating, starting and
+ * removing a new container. The pool does not run any Docker command, the
+ * containers still idle when the pool is drained are removed by the caller.
+ *
+ * The names are also locked for the duration of a capture, so the captures of
+ * several generators running in the same JVM take turns on a container name
+ * instead of removing each other's container.
+ */
+public class ContainerPool {
+
+    /**
+     * A warm container: its name, image, network and address.
+     */
+    public static class Entry {
+
+        private final String name;
+        private final String image;
+        private final String network;
+        private final InetAddress address;
+
+        /**
+         * Creates a pool entry.
+         *
+         * @param name    the name of the container.
+         * @param image   the image of the container.
+         * @param network the network of the container, null for the default
+         *                network.
+         * @param address the address of the container.
+         */
+        public Entry(String name, String image, String network, InetAddress address) {
+            this.name = name;
+            this.image = image;
+            this.network = network;
+            this.address = address;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getImage() {
+            return image;
+        }
+
+        public String getNetwork() {
+            return network;
+        }
+
+        public InetAddress getAddress() {
+            return address;
+        }
+    }
+
+    private final Map<String, Entry> idle = new LinkedHashMap<String, Entry>();
+    private final Set<String> locked = new HashSet<String>();
+
+    /**
+     * Locks a container name for one capture, waits while another capture
+     * holds it.
+     *
+     * @param name the name of the container.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public synchronized void lock(String name) throws InterruptedException {
+        while (!locked.add(name)) {
+            wait();
+        }
+    }
+
+    /**
+     * Unlocks a container name at the end of a capture.
+     *
+     * @param name the name of the container.
+     */
+    public synchronized void unlock(String name) {
+        if (locked.remove(name)) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Leases the idle container of a given name.
+     *
+     * @param name the name of the container.
+     * @return the container, or null if no container of this name is idle.
+     */
+    public synchronized Entry acquire(String name) {
+        return idle.remove(name);
+    }
+
+    /**
+     * Returns a container to the pool, ready to be reset and reused.
+     *
+     * @param entry the container.
+     */
+    public synchronized void release(Entry entry) {
+        idle.put(entry.getName(), entry);
+    }
+
+    /**
+     * Removes all the idle containers from the pool.
+     *
+     * @return the containers, to be removed.
+     */
+    public synchronized List<Entry> drain() {
+        List<Entry> entries = new ArrayList<Entry>(idle.values());
+        idle.clear();
+        return entries;
+    }
+}
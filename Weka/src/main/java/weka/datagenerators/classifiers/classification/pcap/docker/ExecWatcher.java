@@ -0,0 +1,114 @@
+package weka.datagenerators.classifiers.classification.pcap.docker;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.model.Frame;
+import com.github.dockerjava.api.model.StreamType;
+
+/**
+ * Watches the output of a command executed in a container.
+ *
+ * The output is echoed line by line to the standard output and error streams,
+ * and the watcher is ready as soon as a line contains the ready marker (e.g.
+ * "Capturing on" for tshark). The completion of the command is available
+ * through awaitCompletion. The standard output may instead be forwarded raw to
+ * a {@link FrameInputStream}, for commands writing binary data (e.g. a pcap
+ * stream).
+ */
+public class ExecWatcher extends ResultCallback.Adapter<Frame> {
+
+    private final String readyMarker;
+    private final FrameInputStream sink;
+    private final CountDownLatch ready = new CountDownLatch(1);
+    private final StringBuilder stdout = new StringBuilder();
+    private final StringBuilder stderr = new StringBuilder();
+    private volatile boolean marked;
+
+    /**
+     * Creates a watcher.
+     *
+     * @param readyMarker the text of the line that signals readiness, null to
+     *                    be ready at the end of the command only.
+     */
+    public ExecWatcher(String readyMarker) {
+        this(readyMarker, null);
+    }
+
+    /**
+     * Creates a watcher forwarding the standard output to a stream.
+     *
+     * @param readyMarker the text of the line that signals readiness (searched
+     *                    in the standard error only), null to be ready at the
+     *                    end of the command only.
+     * @param sink        the stream receiving the standard output.
+     */
+    public ExecWatcher(String readyMarker, FrameInputStream sink) {
+        this.readyMarker = readyMarker;
+        this.sink = sink;
+    }
+
+    @Override
+    public void onNext(Frame frame) {
+        boolean error = frame.getStreamType() == StreamType.STDERR;
+        if (sink != null && frame.getStreamType() == StreamType.STDOUT) {
+            sink.push(frame.getPayload());
+            return;
+        }
+        StringBuilder buffer = error ? stderr : stdout;
+        synchronized (buffer) {
+            buffer.append(new String(frame.getPayload(), StandardCharsets.UTF_8));
+            int end;
+            while ((end = buffer.indexOf("\n")) >= 0) {
+                line(buffer.substring(0, end), error);
+                buffer.delete(0, end + 1);
+            }
+        }
+    }
+
+    private void line(String line, boolean error) {
+        if (error) {
+            System.err.println(line);
+        } else {
+            System.out.println(line);
+        }
+        if (readyMarker != null && line.contains(readyMarker)) {
+            marked = true;
+            ready.countDown();
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        super.onError(throwable);
+        ready.countDown();
+        if (sink != null) {
+            sink.finish();
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        super.onComplete();
+        ready.countDown();
+        if (sink != null) {
+            sink.finish();
+        }
+    }
+
+    /**
+     * Waits for the ready marker.
+     *
+     * @param timeout the max time to wait.
+     * @param unit    the unit of the timeout.
+     * @return true if the marker was seen, false on timeout or if the command
+     *         ended without it.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+        ready.await(timeout, unit);
+        return marked;
+    }
+}
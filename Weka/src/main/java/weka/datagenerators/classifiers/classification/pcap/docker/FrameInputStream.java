@@ -0,0 +1,110 @@
+package weka.datagenerators.classifiers.classification.pcap.docker;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Input stream over the payloads of the output frames of a command executed
+ * in a container.
+ *
+ * The frames are pushed by the Docker callback thread into a bounded queue:
+ * the callback blocks while the reader is behind, so the output is never
+ * buffered in memory beyond the queue. Closing the stream drops the frames
+ * still pushed, so a reader may stop at any time.
+ */
+public class FrameInputStream extends InputStream {
+
+    /** The max number of frames waiting to be read. */
+    public static final int CAPACITY = 256;
+
+    private static final byte[] END = new byte[0];
+
+    private final BlockingQueue<byte[]> frames = new ArrayBlockingQueue<byte[]>(CAPACITY);
+    private volatile boolean closed;
+    private byte[] frame;
+    private int position;
+    private boolean ended;
+
+    /**
+     * Pushes a frame, waits while the queue is full.
+     *
+     * @param payload the payload of the frame.
+     */
+    void push(byte[] payload) {
+        if (payload.length > 0) {
+            offer(payload);
+        }
+    }
+
+    /**
+     * Pushes the end of the stream.
+     */
+    void finish() {
+        offer(END);
+    }
+
+    private void offer(byte[] payload) {
+        try {
+            while (!closed && !frames.offer(payload, 100, TimeUnit.MILLISECONDS)) {
+                // Wait for the reader
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Takes the next frame, or returns false at the end of the stream.
+     */
+    private boolean nextFrame() throws IOException {
+        while (frame == null || position == frame.length) {
+            if (ended || closed) {
+                return false;
+            }
+            try {
+                frame = frames.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading the container output", e);
+            }
+            position = 0;
+            if (frame == END) {
+                ended = true;
+                frame = null;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!nextFrame()) {
+            return -1;
+        }
+        return frame[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!nextFrame()) {
+            return -1;
+        }
+        int count = Math.min(length, frame.length - position);
+        System.arraycopy(frame, position, buffer, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        frames.clear();
+    }
+}
@@ -0,0 +1,922 @@
+package weka.datagenerators.classifiers.classification.pcap.traffic;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.NetworkChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import weka.datagenerators.classifiers.classification.pcap.attack.TokenBucket;
+
+/**
+ * Benign background traffic sent to the simulated host during the capture, so
+ * the captures mix normal requests with the attack packets.
+ *
+ * Three kinds of requests are mixed by relative weights:
+ * <ul>
+ * <li>Browsing: page visits, each one a new connection loading a page then a
+ * few of its assets, the last request closing the connection.</li>
+ * <li>Keep-alive sessions: long-lived connections polling the server with tens
+ * of requests, the last one closing the connection.</li>
+ * <li>DNS: UDP queries in the DNS wire format.</li>
+ * </ul>
+ * An HTTP request is sent on an idle connection of its kind, or on a new
+ * connection while below the max number of connections, with one request
+ * outstanding per connection. Each thread drives its share of the connections
+ * with one non-blocking selector and paces its share of the rate profile with
+ * a token bucket, so tens of thousands of requests per second only take a few
+ * threads. When all the connections are busy the requests are delayed: the
+ * rate is then bounded by the response time of the server.
+ *
+ * The sockets are bound to local ports below the Linux ephemeral port range
+ * (from {@link #MIN_LOCAL_PORT} to {@link #MAX_LOCAL_PORT}), so the background
+ * traffic never shares a local port with an attack and its packets are
+ * labelled benign.
+ */
+public class BackgroundTraffic {
+
+    /** The first local port of the background traffic. */
+    public static final int MIN_LOCAL_PORT = 16384;
+    /** The last local port of the background traffic. */
+    public static final int MAX_LOCAL_PORT = 32767;
+
+    /** Page visits. */
+    public static final int BROWSE = 0;
+    /** Long-lived polling connections. */
+    public static final int KEEP_ALIVE = 1;
+    /** DNS queries. */
+    public static final int DNS = 2;
+
+    // Timeouts of the connections (nanoseconds)
+    private static final long CONNECT_TIMEOUT = 3000000000L;
+    private static final long RESPONSE_TIMEOUT = 10000000000L;
+    // Period of the timeout checks and of the rate updates (nanoseconds)
+    private static final long TICK = 100000000L;
+    private static final long RATE_UPDATE = 10000000L;
+    // Max number of requests sent per loop iteration
+    private static final int MAX_SEND_BATCH = 256;
+    // Local ports tried before giving up a connection
+    private static final int BIND_ATTEMPTS = 16;
+    // Assets loaded per page visit, requests per keep-alive session (below the
+    // 100 requests per connection of nginx)
+    private static final int MAX_ASSETS = 8;
+    private static final int MIN_POLLS = 20;
+    private static final int MAX_POLLS = 90;
+
+    // Response parsing
+    private static final int INCOMPLETE = 0;
+    private static final int COMPLETE = 1;
+    private static final int UNDELIMITED = 2;
+    private static final byte[] CONTENT_LENGTH = "content-length:".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * State of an HTTP connection, attached to its selection key.
+     */
+    private static final class Session {
+        final int kind;
+        final SocketChannel channel;
+        final long openedAt;
+        SelectionKey key;
+        boolean connected;
+        boolean closed;
+        boolean busy;
+        long sentAt;
+        int requests;
+        int remainingRequests;
+        ByteBuffer pending;
+
+        // Response being read: start of the current header line, lower case
+        final byte[] line = new byte[32];
+        int lineLength;
+        boolean inBody;
+        long contentLength = -1;
+        long remaining;
+
+        Session(int kind, SocketChannel channel, long openedAt, int requests) {
+            this.kind = kind;
+            this.channel = channel;
+            this.openedAt = openedAt;
+            this.remainingRequests = requests;
+        }
+
+        /**
+         * Reads response data. The data after the end of the response is
+         * discarded (one request outstanding).
+         *
+         * @return INCOMPLETE, COMPLETE, or UNDELIMITED when the headers have no
+         *         content length.
+         */
+        int read(ByteBuffer data) {
+            while (data.hasRemaining()) {
+                if (inBody) {
+                    int n = (int) Math.min(remaining, data.remaining());
+                    data.position(data.position() + n);
+                    remaining -= n;
+                    if (remaining == 0) {
+                        return reset(COMPLETE);
+                    }
+                    continue;
+                }
+                byte b = data.get();
+                if (b != '\n') {
+                    if (lineLength < line.length) {
+                        line[lineLength] = (byte) Character.toLowerCase(b);
+                    }
+                    lineLength++;
+                    continue;
+                }
+                if (lineLength == 0 || (lineLength == 1 && line[0] == '\r')) {
+                    // End of the headers
+                    if (contentLength < 0) {
+                        return reset(UNDELIMITED);
+                    }
+                    inBody = true;
+                    remaining = contentLength;
+                    if (remaining == 0) {
+                        return reset(COMPLETE);
+                    }
+                } else if (startsWith(line, Math.min(lineLength, line.length), CONTENT_LENGTH)) {
+                    contentLength = parseLength(line, Math.min(lineLength, line.length), CONTENT_LENGTH.length);
+                }
+                lineLength = 0;
+            }
+            return INCOMPLETE;
+        }
+
+        private int reset(int result) {
+            lineLength = 0;
+            inBody = false;
+            contentLength = -1;
+            remaining = 0;
+            return result;
+        }
+    }
+
+    private final RateProfile profile;
+    private final int maxConnections;
+    private final int threads;
+    private double[] weights = { 4, 4, 2 };
+    private int httpPort = 80;
+    private int dnsPort = 53;
+    private long seed = 1;
+    private String[] pages = { "/", "/index.nginx-debian.html", "/about", "/products", "/products?page=2",
+            "/search?q=network+traffic", "/contact", "/blog/2023/05/capture" };
+    private String[] assets = { "/favicon.ico", "/css/site.css", "/js/app.js", "/js/vendor.js", "/img/logo.png",
+            "/img/banner.jpg", "/fonts/roboto.woff2" };
+    private String[] polls = { "/api/status", "/api/messages?since=0", "/api/user", "/api/notifications",
+            "/health" };
+    private String[] domains = { "www.example.com", "mail.example.com", "api.example.org", "cdn.example.net",
+            "updates.example.org", "time.example.com" };
+
+    // Requests of the target: [path][keep-alive, close]
+    private byte[][][] pageRequests;
+    private byte[][][] assetRequests;
+    private byte[][][] pollRequests;
+    // DNS queries of the domains (A and AAAA), without their id
+    private byte[][] queries;
+
+    private final LongAdder[] sentRequests = { new LongAdder(), new LongAdder(), new LongAdder() };
+    private final LongAdder responses = new LongAdder();
+    private final LongAdder sentBytes = new LongAdder();
+    private final List<Thread> loops = new ArrayList<Thread>();
+    private volatile boolean running;
+    private InetAddress target;
+
+    /**
+     * Creates the background traffic.
+     *
+     * @param profile        the request rate over time.
+     * @param maxConnections the max number of concurrent HTTP connections.
+     * @param threads        the number of selector threads.
+     */
+    public BackgroundTraffic(RateProfile profile, int maxConnections, int threads) {
+        this.profile = profile;
+        this.maxConnections = Math.max(maxConnections, 1);
+        this.threads = Math.max(Math.min(threads, this.maxConnections), 1);
+    }
+
+    /**
+     * Sets the request mix, as relative weights of the kinds of requests.
+     *
+     * @param browse    the weight of the page visit requests.
+     * @param keepAlive the weight of the keep-alive session requests.
+     * @param dns       the weight of the DNS queries.
+     */
+    public void setMix(double browse, double keepAlive, double dns) {
+        if (browse < 0 || keepAlive < 0 || dns < 0 || browse + keepAlive + dns <= 0) {
+            throw new IllegalArgumentException("Invalid request mix: " + browse + ":" + keepAlive + ":" + dns);
+        }
+        this.weights = new double[] { browse, keepAlive, dns };
+    }
+
+    /**
+     * Parses a request mix.
+     *
+     * @param mix the weights of the browsing, keep-alive and DNS requests,
+     *            separated by colons.
+     * @return the weights.
+     * @throws IllegalArgumentException if the mix is invalid.
+     */
+    public static double[] parseMix(String mix) {
+        String[] values = mix.split(":");
+        if (values.length != 3) {
+            throw new IllegalArgumentException("Invalid request mix: " + mix);
+        }
+        double[] result = new double[3];
+        for (int i = 0; i < 3; i++) {
+            result[i] = Double.parseDouble(values[i].trim());
+        }
+        if (result[0] < 0 || result[1] < 0 || result[2] < 0 || result[0] + result[1] + result[2] <= 0) {
+            throw new IllegalArgumentException("Invalid request mix: " + mix);
+        }
+        return result;
+    }
+
+    /**
+     * Sets the port of the HTTP server.
+     *
+     * @param httpPort the HTTP port.
+     */
+    public void setHttpPort(int httpPort) {
+        this.httpPort = httpPort;
+    }
+
+    /**
+     * Sets the port the DNS queries are sent to. Nothing needs to answer: the
+     * ICMP port unreachable errors are part of the benign traffic.
+     *
+     * @param dnsPort the DNS port.
+     */
+    public void setDnsPort(int dnsPort) {
+        this.dnsPort = dnsPort;
+    }
+
+    /**
+     * Sets the seed of the request mix and of the paths.
+     *
+     * @param seed the seed.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the pages of the visits, the first request of each visit.
+     *
+     * @param pages the paths of the pages.
+     */
+    public void setPages(String... pages) {
+        this.pages = checkPaths(pages);
+    }
+
+    /**
+     * Sets the assets loaded after the page of a visit.
+     *
+     * @param assets the paths of the assets.
+     */
+    public void setAssets(String... assets) {
+        this.assets = checkPaths(assets);
+    }
+
+    /**
+     * Sets the paths polled by the keep-alive sessions.
+     *
+     * @param polls the polled paths.
+     */
+    public void setPolls(String... polls) {
+        this.polls = checkPaths(polls);
+    }
+
+    /**
+     * Sets the domain names of the DNS queries.
+     *
+     * @param domains the domain names.
+     */
+    public void setDomains(String... domains) {
+        if (domains.length == 0) {
+            throw new IllegalArgumentException("No domain name");
+        }
+        for (String domain : domains) {
+            for (String label : domain.split("\\.")) {
+                if (label.length() == 0 || label.length() > 63) {
+                    throw new IllegalArgumentException("Invalid domain name: " + domain);
+                }
+            }
+        }
+        this.domains = domains.clone();
+    }
+
+    private static String[] checkPaths(String[] paths) {
+        if (paths.length == 0) {
+            throw new IllegalArgumentException("No path");
+        }
+        for (String path : paths) {
+            if (!path.startsWith("/") || path.indexOf(' ') >= 0 || path.indexOf('\n') >= 0) {
+                throw new IllegalArgumentException("Invalid path: " + path);
+            }
+        }
+        return paths.clone();
+    }
+
+    /**
+     * Starts the selector threads.
+     *
+     * @param target the simulated host.
+     * @throws IOException if a selector could not be opened.
+     */
+    public synchronized void start(InetAddress target) throws IOException {
+        if (running) {
+            return;
+        }
+        this.target = target;
+        buildRequests(target);
+        System.out.println("Background traffic started on " + target.getHostAddress() + " (peak "
+                + (long) profile.getPeakRate() + " requests/s, " + maxConnections + " connections, " + threads
+                + " threads)");
+
+        // Open all the selectors before starting the threads
+        Selector[] selectors = new Selector[threads];
+        try {
+            for (int i = 0; i < threads; i++) {
+                selectors[i] = Selector.open();
+            }
+        } catch (IOException e) {
+            for (Selector selector : selectors) {
+                if (selector != null) {
+                    selector.close();
+                }
+            }
+            throw e;
+        }
+
+        running = true;
+        int portsPerLoop = (MAX_LOCAL_PORT - MIN_LOCAL_PORT + 1) / threads;
+        for (int i = 0; i < threads; i++) {
+            int loopConnections = maxConnections / threads + (i < maxConnections % threads ? 1 : 0);
+            int firstPort = MIN_LOCAL_PORT + i * portsPerLoop;
+            Loop loop = new Loop(selectors[i], 1.0 / threads, loopConnections, firstPort,
+                    firstPort + portsPerLoop - 1, new SplittableRandom(seed + i));
+            Thread thread = new Thread(loop, "BackgroundTraffic-" + i);
+            thread.setDaemon(true);
+            loops.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops the selector threads and waits for them. The open connections are
+     * closed.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public synchronized void stop() throws InterruptedException {
+        running = false;
+        for (Thread loop : loops) {
+            loop.interrupt();
+        }
+        for (Thread loop : loops) {
+            loop.join();
+        }
+        loops.clear();
+        System.out.println("Background traffic finished: " + getSentRequests() + " requests ("
+                + getSentRequests(BROWSE) + " browse, " + getSentRequests(KEEP_ALIVE) + " keep-alive, "
+                + getSentRequests(DNS) + " dns), " + getResponses() + " responses, " + getSentBytes() + " bytes");
+    }
+
+    /**
+     * Checks if the traffic is running.
+     *
+     * @return true between start and stop.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Gets the number of requests sent so far.
+     *
+     * @return the number of HTTP requests and DNS queries.
+     */
+    public long getSentRequests() {
+        long sum = 0;
+        for (LongAdder requests : sentRequests) {
+            sum += requests.sum();
+        }
+        return sum;
+    }
+
+    /**
+     * Gets the number of requests of one kind sent so far.
+     *
+     * @param kind the kind of requests (BROWSE, KEEP_ALIVE or DNS).
+     * @return the number of requests.
+     */
+    public long getSentRequests(int kind) {
+        return sentRequests[kind].sum();
+    }
+
+    /**
+     * Gets the number of complete HTTP responses and DNS answers received so
+     * far.
+     *
+     * @return the number of responses.
+     */
+    public long getResponses() {
+        return responses.sum();
+    }
+
+    /**
+     * Gets the number of bytes sent so far.
+     *
+     * @return the number of bytes of the requests.
+     */
+    public long getSentBytes() {
+        return sentBytes.sum();
+    }
+
+    /**
+     * Builds the requests and queries once, the loops only copy them.
+     */
+    private void buildRequests(InetAddress target) {
+        String host = target.getHostAddress() + (httpPort != 80 ? ":" + httpPort : "");
+        String referer = "http://" + host + pages[0];
+        pageRequests = new byte[pages.length][][];
+        for (int i = 0; i < pages.length; i++) {
+            pageRequests[i] = request(pages[i], host, "Mozilla/5.0 (X11; Linux x86_64; rv:109.0) Firefox/115.0",
+                    "text/html,application/xhtml+xml;q=0.9,*/*;q=0.8", null);
+        }
+        assetRequests = new byte[assets.length][][];
+        for (int i = 0; i < assets.length; i++) {
+            assetRequests[i] = request(assets[i], host, "Mozilla/5.0 (X11; Linux x86_64; rv:109.0) Firefox/115.0",
+                    "*/*", referer);
+        }
+        pollRequests = new byte[polls.length][][];
+        for (int i = 0; i < polls.length; i++) {
+            pollRequests[i] = request(polls[i], host, "okhttp/4.11.0", "application/json", null);
+        }
+
+        queries = new byte[domains.length * 2][];
+        for (int i = 0; i < domains.length; i++) {
+            queries[2 * i] = query(domains[i], 1);
+            queries[2 * i + 1] = query(domains[i], 28);
+        }
+    }
+
+    /**
+     * Builds a GET request, keeping the connection alive or closing it.
+     */
+    private static byte[][] request(String path, String host, String userAgent, String accept, String referer) {
+        byte[][] result = new byte[2][];
+        for (int close = 0; close < 2; close++) {
+            result[close] = ("GET " + path + " HTTP/1.1\r\n"
+                    + "Host: " + host + "\r\n"
+                    + "User-Agent: " + userAgent + "\r\n"
+                    + "Accept: " + accept + "\r\n"
+                    + "Accept-Encoding: gzip, deflate\r\n"
+                    + (referer != null ? "Referer: " + referer + "\r\n" : "")
+                    + "Connection: " + (close == 1 ? "close" : "keep-alive") + "\r\n"
+                    + "\r\n").getBytes(StandardCharsets.US_ASCII);
+        }
+        return result;
+    }
+
+    /**
+     * Builds a DNS query (recursion desired, one question of class IN).
+     */
+    private static byte[] query(String domain, int type) {
+        byte[] name = domain.getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = ByteBuffer.allocate(12 + name.length + 2 + 4);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) 0x0100);
+        buffer.putShort((short) 1);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) 0);
+        for (String label : domain.split("\\.")) {
+            buffer.put((byte) label.length());
+            buffer.put(label.getBytes(StandardCharsets.US_ASCII));
+        }
+        buffer.put((byte) 0);
+        buffer.putShort((short) type);
+        buffer.putShort((short) 1);
+        return buffer.array();
+    }
+
+    private static boolean startsWith(byte[] line, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (line[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses the decimal value of a header line.
+     *
+     * @return the value, or -1 if the value is not a number.
+     */
+    private static long parseLength(byte[] line, int length, int offset) {
+        long value = -1;
+        for (int i = offset; i < length; i++) {
+            byte b = line[i];
+            if (b >= '0' && b <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (b - '0');
+            } else if (value >= 0 || (b != ' ' && b != '\t')) {
+                break;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Selector loop of one thread.
+     */
+    private final class Loop implements Runnable {
+        private final Selector selector;
+        private final double share;
+        private final int maxConnections;
+        private final int firstPort;
+        private final int lastPort;
+        private final SplittableRandom random;
+        private final TokenBucket pacer;
+        private final ArrayDeque<Session> idleBrowse = new ArrayDeque<Session>();
+        private final ArrayDeque<Session> idleKeepAlive = new ArrayDeque<Session>();
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(65536);
+        private final ByteBuffer queryBuffer = ByteBuffer.allocateDirect(512);
+        private final double totalWeight;
+        private DatagramChannel dns;
+        private int connections;
+        private int nextPort;
+        private int nextKind = -1;
+
+        Loop(Selector selector, double share, int maxConnections, int firstPort, int lastPort,
+                SplittableRandom random) {
+            this.selector = selector;
+            this.share = share;
+            this.maxConnections = maxConnections;
+            this.firstPort = firstPort;
+            this.lastPort = lastPort;
+            this.nextPort = firstPort;
+            this.random = random;
+            this.totalWeight = weights[BROWSE] + weights[KEEP_ALIVE] + weights[DNS];
+            double rate = profile.rate(0) * share;
+            // Allow a burst of 10 ms of requests
+            this.pacer = new TokenBucket(rate, rate / 100.0);
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            long lastRate = start;
+            long lastTick = start;
+            try {
+                if (weights[DNS] > 0) {
+                    openDns();
+                }
+                while (running) {
+                    sendRequests();
+                    selector.select(1);
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        handle(key);
+                    }
+                    long now = System.nanoTime();
+                    if (now - lastRate >= RATE_UPDATE) {
+                        lastRate = now;
+                        double rate = profile.rate(now - start) * share;
+                        pacer.setRate(rate, rate / 100.0);
+                    }
+                    if (now - lastTick >= TICK) {
+                        lastTick = now;
+                        tick(now);
+                    }
+                }
+            } catch (IOException e) {
+                if (running) {
+                    e.printStackTrace();
+                }
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    if (key.attachment() != null) {
+                        close((Session) key.attachment());
+                    }
+                }
+                try {
+                    if (dns != null) {
+                        dns.close();
+                    }
+                    selector.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        private void openDns() throws IOException {
+            DatagramChannel channel = DatagramChannel.open();
+            try {
+                if (!bind(channel)) {
+                    throw new IOException("No free local port for the DNS queries in [" + firstPort + ", "
+                            + lastPort + "]");
+                }
+                channel.connect(new InetSocketAddress(target, dnsPort));
+                channel.configureBlocking(false);
+                channel.register(selector, SelectionKey.OP_READ);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            dns = channel;
+        }
+
+        /**
+         * Sends the requests allowed by the rate, while connections are
+         * available. The kind of the next request is drawn once, so the mix is
+         * kept when the requests are delayed.
+         */
+        private void sendRequests() throws IOException {
+            for (int sent = 0; running && sent < MAX_SEND_BATCH; sent++) {
+                if (nextKind < 0) {
+                    nextKind = nextKind();
+                }
+                ArrayDeque<Session> idle = nextKind == DNS ? null : idle(nextKind);
+                if (idle != null && idle.isEmpty() && connections >= maxConnections) {
+                    return;
+                }
+                if (!pacer.tryAcquire()) {
+                    return;
+                }
+                if (nextKind == DNS) {
+                    sendQuery();
+                } else if (!idle.isEmpty()) {
+                    send(idle.pollFirst());
+                } else {
+                    open(nextKind);
+                }
+                nextKind = -1;
+            }
+        }
+
+        private int nextKind() {
+            double value = random.nextDouble() * totalWeight;
+            if (value < weights[BROWSE]) {
+                return BROWSE;
+            }
+            if (value < weights[BROWSE] + weights[KEEP_ALIVE] || weights[DNS] == 0) {
+                return weights[KEEP_ALIVE] > 0 ? KEEP_ALIVE : BROWSE;
+            }
+            return DNS;
+        }
+
+        /**
+         * Gets the idle connections of a kind, dropping the connections closed
+         * by the server while idle from the head of the queue.
+         */
+        private ArrayDeque<Session> idle(int kind) {
+            ArrayDeque<Session> queue = kind == BROWSE ? idleBrowse : idleKeepAlive;
+            while (!queue.isEmpty() && queue.peekFirst().closed) {
+                queue.pollFirst();
+            }
+            return queue;
+        }
+
+        private void sendQuery() throws IOException {
+            byte[] query = queries[random.nextInt(queries.length)];
+            queryBuffer.clear();
+            queryBuffer.put(query);
+            queryBuffer.putShort(0, (short) random.nextInt(65536));
+            queryBuffer.flip();
+            try {
+                int written = dns.write(queryBuffer);
+                if (written > 0) {
+                    sentRequests[DNS].increment();
+                    sentBytes.add(written);
+                }
+            } catch (PortUnreachableException e) {
+                // ICMP error of a previous query
+            }
+        }
+
+        /**
+         * Opens a connection, its first request is sent once connected.
+         */
+        private void open(int kind) {
+            SocketChannel channel = null;
+            try {
+                channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+                if (!bind(channel)) {
+                    channel.close();
+                    return;
+                }
+                int requests = kind == BROWSE ? 1 + random.nextInt(MAX_ASSETS + 1)
+                        : MIN_POLLS + random.nextInt(MAX_POLLS - MIN_POLLS + 1);
+                Session session = new Session(kind, channel, System.nanoTime(), requests);
+                session.busy = true;
+                boolean connected = channel.connect(new InetSocketAddress(target, httpPort));
+                session.key = channel.register(selector, connected ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT,
+                        session);
+                connections++;
+                if (connected) {
+                    session.connected = true;
+                    send(session);
+                }
+            } catch (IOException e) {
+                // Out of file descriptors or refused: retry later
+                if (channel != null) {
+                    try {
+                        channel.close();
+                    } catch (IOException e1) {
+                        // Ignored
+                    }
+                }
+            }
+        }
+
+        /**
+         * Binds a channel to the next free local port of the loop.
+         *
+         * @return false if no port was free.
+         */
+        private boolean bind(NetworkChannel channel) {
+            for (int i = 0; i < BIND_ATTEMPTS; i++) {
+                int port = nextPort;
+                nextPort = port == lastPort ? firstPort : port + 1;
+                try {
+                    channel.bind(new InetSocketAddress(port));
+                    return true;
+                } catch (IOException e) {
+                    // In use, try the next one
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Sends the next request of a connection, closing the connection if it
+         * was closed or reset by the server.
+         */
+        private void send(Session session) {
+            try {
+                sendRequest(session);
+            } catch (IOException e) {
+                close(session);
+            }
+        }
+
+        /**
+         * Sends the next request of a connection: the page then the assets of
+         * a visit, or a polled path. The last request closes the connection.
+         */
+        private void sendRequest(Session session) throws IOException {
+            byte[][] request;
+            if (session.kind == BROWSE) {
+                request = session.requests == 0 ? pageRequests[random.nextInt(pageRequests.length)]
+                        : assetRequests[random.nextInt(assetRequests.length)];
+            } else {
+                request = pollRequests[random.nextInt(pollRequests.length)];
+            }
+            session.remainingRequests--;
+            session.requests++;
+            session.busy = true;
+            session.sentAt = System.nanoTime();
+            sentRequests[session.kind].increment();
+            write(session, ByteBuffer.wrap(request[session.remainingRequests == 0 ? 1 : 0]));
+        }
+
+        private void write(Session session, ByteBuffer data) throws IOException {
+            sentBytes.add(session.channel.write(data));
+            if (data.hasRemaining()) {
+                session.pending = data;
+                session.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+
+        private void handle(SelectionKey key) {
+            if (key.attachment() == null) {
+                readAnswers();
+                return;
+            }
+            Session session = (Session) key.attachment();
+            try {
+                if (!key.isValid()) {
+                    return;
+                }
+                if (key.isConnectable()) {
+                    if (session.channel.finishConnect()) {
+                        key.interestOps(SelectionKey.OP_READ);
+                        session.connected = true;
+                        sendRequest(session);
+                    }
+                    return;
+                }
+                if (key.isWritable() && session.pending != null) {
+                    sentBytes.add(session.channel.write(session.pending));
+                    if (!session.pending.hasRemaining()) {
+                        session.pending = null;
+                        key.interestOps(SelectionKey.OP_READ);
+                    }
+                }
+                if (key.isValid() && key.isReadable()) {
+                    readBuffer.clear();
+                    int read = session.channel.read(readBuffer);
+                    if (read < 0) {
+                        close(session);
+                    } else if (read > 0 && session.busy) {
+                        readBuffer.flip();
+                        received(session, session.read(readBuffer));
+                    }
+                }
+            } catch (IOException e) {
+                // Refused or reset by the server
+                close(session);
+            }
+        }
+
+        private void received(Session session, int result) {
+            if (result == INCOMPLETE) {
+                return;
+            }
+            responses.increment();
+            session.busy = false;
+            if (result == UNDELIMITED) {
+                close(session);
+            } else if (session.remainingRequests > 0) {
+                (session.kind == BROWSE ? idleBrowse : idleKeepAlive).addLast(session);
+            }
+            // Otherwise the server closes the connection after the last
+            // response
+        }
+
+        private void readAnswers() {
+            try {
+                readBuffer.clear();
+                while (dns.read(readBuffer) > 0) {
+                    responses.increment();
+                    readBuffer.clear();
+                }
+            } catch (PortUnreachableException e) {
+                // No DNS server on the target
+            } catch (IOException e) {
+                if (running) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        private void close(Session session) {
+            if (session.closed) {
+                return;
+            }
+            session.closed = true;
+            connections--;
+            try {
+                session.channel.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+
+        /**
+         * Drops the connection attempts and the requests that timed out, and
+         * the connections not closed by the server after their last response.
+         */
+        private void tick(long now) {
+            // Copy the keys, the connections may be closed during the tick
+            for (SelectionKey key : selector.keys().toArray(new SelectionKey[0])) {
+                Session session = (Session) key.attachment();
+                if (session == null) {
+                    continue;
+                }
+                if (!session.connected) {
+                    if (now - session.openedAt >= CONNECT_TIMEOUT) {
+                        close(session);
+                    }
+                } else if ((session.busy || session.remainingRequests == 0)
+                        && now - session.sentAt >= RESPONSE_TIMEOUT) {
+                    close(session);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package weka.datagenerators.classifiers.classification.pcap.traffic;
+
+/**
+ * Request rate of the background traffic over the capture, as a fraction of a
+ * peak rate.
+ *
+ * <ul>
+ * <li>Constant: the peak rate all along.</li>
+ * <li>Ramp: from 10% to 100% of the peak rate over the period, then the peak
+ * rate.</li>
+ * <li>Diurnal: a day compressed into the period, from 10% of the peak rate
+ * (night) at the start of each period to the peak rate (midday) in its
+ * middle.</li>
+ * <li>Burst: 25% of the peak rate, with a burst at the peak rate for a tenth
+ * of each period, from the middle of the period (flash crowd).</li>
+ * </ul>
+ */
+public class RateProfile {
+
+    /** Constant rate. */
+    public static final int CONSTANT = 0;
+    /** Linear ramp up to the peak rate. */
+    public static final int RAMP = 1;
+    /** Sinusoidal day/night cycle. */
+    public static final int DIURNAL = 2;
+    /** Low rate with periodic bursts. */
+    public static final int BURST = 3;
+
+    // Rate at the start of the ramp and at night
+    private static final double MIN_FRACTION = 0.1;
+    // Rate between the bursts
+    private static final double BASE_FRACTION = 0.25;
+    // Burst position and length, as fractions of the period
+    private static final double BURST_START = 0.5;
+    private static final double BURST_LENGTH = 0.1;
+
+    private final int type;
+    private final double peakRate;
+    private final long period;
+
+    /**
+     * Creates a rate profile.
+     *
+     * @param type     the type of profile (CONSTANT, RAMP, DIURNAL or BURST).
+     * @param peakRate the peak rate (requests per second).
+     * @param period   the period of the profile (nanoseconds).
+     */
+    public RateProfile(int type, double peakRate, long period) {
+        if (type < CONSTANT || type > BURST) {
+            throw new IllegalArgumentException("Invalid rate profile: " + type);
+        }
+        this.type = type;
+        this.peakRate = Math.max(peakRate, 0.0);
+        this.period = Math.max(period, 1L);
+    }
+
+    /**
+     * Gets the rate at a time of the capture.
+     *
+     * @param elapsed the time since the start of the traffic (nanoseconds).
+     * @return the rate (requests per second).
+     */
+    public double rate(long elapsed) {
+        double phase = (double) (Math.max(elapsed, 0L) % period) / period;
+        switch (type) {
+            case RAMP:
+                return elapsed >= period ? peakRate : peakRate * (MIN_FRACTION + (1.0 - MIN_FRACTION) * phase);
+            case DIURNAL:
+                return peakRate * (MIN_FRACTION + (1.0 - MIN_FRACTION) * (1.0 - Math.cos(2 * Math.PI * phase)) / 2);
+            case BURST:
+                return phase >= BURST_START && phase < BURST_START + BURST_LENGTH ? peakRate
+                        : peakRate * BASE_FRACTION;
+            default:
+                return peakRate;
+        }
+    }
+
+    /**
+     * Gets the peak rate.
+     *
+     * @return the peak rate (requests per second).
+     */
+    public double getPeakRate() {
+        return peakRate;
+    }
+}
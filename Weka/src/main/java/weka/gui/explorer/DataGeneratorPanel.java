@@ -31,6 +31,7 @@ import java.io.StringWriter;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 
+import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.OptionHandler;
 import weka.core.Utils;
@@ -139,6 +140,29 @@ public class DataGeneratorPanel
   }
 
 
+  /**
+   * returns a copy of the example whose string values are added to the
+   * string attributes of the given dataset
+   *
+   * @param example	the generated example
+   * @param data	the dataset to add the example to
+   * @return		the example to add
+   */
+  protected Instance copyStringValues(Instance example, Instances data) {
+    if (!data.checkForStringAttributes()) {
+      return example;
+    }
+    double[] values = example.toDoubleArray();
+    for (int i = 0; i < data.numAttributes(); i++) {
+      if (data.attribute(i).isString() && !example.isMissing(i)) {
+        values[i] = data.attribute(i).addStringValue(example.stringValue(i));
+      }
+    }
+    Instance result = example.copy(values);
+    result.setDataset(data);
+    return result;
+  }
+
   /**
    * generates the instances, returns TRUE if successful
    *
@@ -186,9 +210,15 @@ public class DataGeneratorPanel
         m_Output.append("String output of data generator has not been stored");
       }
       if (generator.getSingleModeFlag()) {
-        m_Instances = generator.getDatasetFormat();
+        // the string attributes of the format may only hold the value of the
+        // last example, they are copied into the own attributes of the data
+        m_Instances = generator.getDatasetFormat().stringFreeStructure();
         for (int i = 0; i < generator.getNumExamplesAct(); i++) {
-          m_Instances.add(generator.generateExample());
+          Instance example = generator.generateExample();
+          if (example == null) {
+            break;
+          }
+          m_Instances.add(copyStringValues(example, m_Instances));
         }
       } else {
         m_Instances = generator.generateExamples();
@@ -168,6 +168,10 @@ public class DataGenerator extends WekaAlgorithmWrapper {
 
             // over all examples to be produced
             Instance inst = generator.generateExample();
+            if (inst == null) {
+              getStepManager().throughputUpdateEnd();
+              break;
+            }
             m_incrementalData.setPayloadElement(StepManager.CON_INSTANCE, inst);
             getStepManager().throughputUpdateEnd();
 
@@ -0,0 +1,368 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    PcapStream.java
+ *
+ */
+
+package weka.knowledgeflow.steps;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.OptionMetadata;
+import weka.core.SelectedTag;
+import weka.core.SerializedObject;
+import weka.core.WekaException;
+import weka.datagenerators.classifiers.classification.Pcap;
+import weka.gui.beans.StreamThroughput;
+import weka.gui.knowledgeflow.KFGUIConsts;
+import weka.knowledgeflow.Data;
+import weka.knowledgeflow.StepManager;
+import weka.knowledgeflow.StepManagerImpl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Start step that streams the packets, flows or windows of Pcap captures as
+ * instance events while the captures run. The container captures are
+ * decoded live, on a separate thread, and the instances are handed to the
+ * downstream steps (e.g. an updateable classifier and an
+ * IncrementalClassifierEvaluator) through a bounded queue. When the
+ * downstream steps are slower than the capture, the decoding either waits
+ * for them (no instance is lost) or drops the instances that do not fit in
+ * the queue (the detection keeps up with the capture).
+ * <p>
+ * The generator runs in streaming mode with the numeric encoding of the
+ * addresses, ports, types and checksums, and the timestamp is output as a
+ * numeric attribute (milliseconds since epoch): the queued instances do not
+ * share string values, and the updateable classifiers can use all the
+ * attributes.
+ *
+ * @version $Revision: $
+ */
+@KFStep(name = "PcapStream", category = "DataGenerators",
+  toolTipText = "Streams the instances of live Pcap container captures",
+  iconPath = KFGUIConsts.BASE_ICON_PATH + "DefaultDataSource.gif")
+public class PcapStream extends BaseStep {
+
+  private static final long serialVersionUID = 4412384107532926051L;
+
+  /** end of the instances in the queue */
+  protected static final Instance END = new DenseInstance(0);
+
+  /** max time waited for an instance before checking for a stop (ms) */
+  protected static final long POLL_INTERVAL = 100L;
+
+  /** the generator */
+  protected Pcap m_generator = new Pcap();
+
+  /** max number of instances decoded ahead of the downstream steps */
+  protected int m_queueSize = 1000;
+
+  /** true to drop the instances when the queue is full */
+  protected boolean m_dropWhenFull;
+
+  /** reusable data object for streaming */
+  protected transient Data m_incrementalData;
+
+  /** overall flow throughput when streaming */
+  protected transient StreamThroughput m_flowThroughput;
+
+  /**
+   * Set the Pcap generator
+   *
+   * @param generator the generator
+   */
+  @OptionMetadata(displayName = "Pcap generator",
+    description = "The Pcap generator (streaming mode, numeric encoding and "
+      + "live captures are enforced)", displayOrder = 1)
+  public void setGenerator(Pcap generator) {
+    m_generator = generator;
+  }
+
+  /**
+   * Get the Pcap generator
+   *
+   * @return the generator
+   */
+  public Pcap getGenerator() {
+    return m_generator;
+  }
+
+  /**
+   * Set the size of the queue
+   *
+   * @param queueSize the max number of instances decoded ahead of the
+   *          downstream steps
+   */
+  @OptionMetadata(displayName = "Queue size",
+    description = "The max number of instances decoded ahead of the "
+      + "downstream steps", displayOrder = 2)
+  public void setQueueSize(int queueSize) {
+    m_queueSize = queueSize;
+  }
+
+  /**
+   * Get the size of the queue
+   *
+   * @return the max number of instances decoded ahead of the downstream steps
+   */
+  public int getQueueSize() {
+    return m_queueSize;
+  }
+
+  /**
+   * Set whether to drop the instances when the queue is full
+   *
+   * @param dropWhenFull true to drop the instances, false to make the
+   *          decoding wait for the downstream steps
+   */
+  @OptionMetadata(displayName = "Drop instances when the queue is full",
+    description = "Drop the instances that do not fit in the queue instead "
+      + "of making the decoding wait for the downstream steps",
+    displayOrder = 3)
+  public void setDropWhenFull(boolean dropWhenFull) {
+    m_dropWhenFull = dropWhenFull;
+  }
+
+  /**
+   * Get whether to drop the instances when the queue is full
+   *
+   * @return true if the instances are dropped
+   */
+  public boolean getDropWhenFull() {
+    return m_dropWhenFull;
+  }
+
+  /**
+   * Initialize the step
+   *
+   * @throws WekaException if no generator is set
+   */
+  @Override
+  public void stepInit() throws WekaException {
+    if (m_generator == null) {
+      throw new WekaException("No Pcap generator set");
+    }
+    m_incrementalData = new Data(StepManager.CON_INSTANCE);
+    m_flowThroughput = null;
+  }
+
+  /**
+   * Get acceptable incoming connection types. None in this case since this step
+   * is a start point
+   *
+   * @return null (no acceptable incoming connections)
+   */
+  @Override
+  public List<String> getIncomingConnectionTypes() {
+    return null;
+  }
+
+  /**
+   * Get a list of outgoing connection types
+   *
+   * @return a list of outgoing connection types
+   */
+  @Override
+  public List<String> getOutgoingConnectionTypes() {
+    return Arrays.asList(StepManager.CON_INSTANCE);
+  }
+
+  /**
+   * Start the captures and stream the decoded instances
+   *
+   * @throws WekaException if a problem occurs
+   */
+  @Override
+  public void start() throws WekaException {
+    if (getStepManager().numOutgoingConnections() == 0) {
+      return;
+    }
+    final Pcap generator = newGenerator();
+    String stm =
+      getName() + "$" + hashCode() + 99 + "| overall flow throughput -|";
+    m_flowThroughput =
+      new StreamThroughput(stm, "Starting flow...",
+        ((StepManagerImpl) getStepManager()).getLog());
+    final Instances format;
+    try {
+      getStepManager().logBasic("Capturing...");
+      format = outputFormat(generator.defineDataFormat());
+    } catch (Exception ex) {
+      throw new WekaException(ex);
+    }
+
+    // Decode the captures on their own thread, at most m_queueSize instances
+    // ahead of the downstream steps
+    final BlockingQueue<Instance> queue =
+      new ArrayBlockingQueue<Instance>(Math.max(m_queueSize, 1));
+    final boolean drop = m_dropWhenFull;
+    final AtomicLong dropped = new AtomicLong();
+    final AtomicReference<Exception> failure =
+      new AtomicReference<Exception>();
+    Thread decoder = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Instance instance;
+          while ((instance = generator.generateExample()) != null) {
+            instance.setDataset(format);
+            if (!drop) {
+              queue.put(instance);
+            } else if (!queue.offer(instance)) {
+              dropped.incrementAndGet();
+            }
+          }
+        } catch (InterruptedException ex) {
+          // Stop requested, make the end marker give up too
+          Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+          failure.set(ex);
+        } finally {
+          generator.stopGeneration();
+          try {
+            queue.put(END);
+          } catch (InterruptedException ex) {
+            // Stop requested
+          }
+        }
+      }
+    }, getName() + "-decoder");
+    decoder.setDaemon(true);
+    decoder.start();
+
+    boolean ended = false;
+    try {
+      while (true) {
+        if (isStopRequested()) {
+          ((StepManagerImpl) getStepManager()).getLog().statusMessage(
+            stm + "remove");
+          getStepManager().interrupted();
+          return;
+        }
+        Instance inst = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+        if (inst == null) {
+          continue;
+        }
+        if (inst == END) {
+          ended = true;
+          break;
+        }
+        m_flowThroughput.updateStart();
+        getStepManager().throughputUpdateStart();
+        m_incrementalData.setPayloadElement(StepManager.CON_INSTANCE, inst);
+        getStepManager().throughputUpdateEnd();
+
+        getStepManager().outputData(m_incrementalData);
+        m_flowThroughput.updateEnd(((StepManagerImpl) getStepManager())
+          .getLog());
+      }
+    } catch (InterruptedException ex) {
+      throw new WekaException(ex);
+    } finally {
+      // Stop the captures if the flow stopped or a downstream step failed
+      if (!ended) {
+        decoder.interrupt();
+      }
+    }
+
+    if (failure.get() != null) {
+      throw new WekaException(failure.get());
+    }
+    if (dropped.get() > 0) {
+      getStepManager().logBasic(
+        "Dropped " + dropped.get() + " instances (queue full)");
+    }
+    m_flowThroughput.finished(((StepManagerImpl) getStepManager()).getLog());
+
+    // signal end of input
+    m_incrementalData.clearPayload();
+    getStepManager().throughputFinished(m_incrementalData);
+  }
+
+  /**
+   * If possible, get the output structure for the named connection type as a
+   * header-only set of instances.
+   *
+   * @param connectionName the name of the connection type to get the output
+   *          structure for
+   * @return the output structure as a header-only Instances object
+   * @throws WekaException if a problem occurs
+   */
+  @Override
+  public Instances outputStructureForConnectionType(String connectionName)
+    throws WekaException {
+    if (getStepManager().isStepBusy()) {
+      return null;
+    }
+
+    try {
+      return outputFormat(newGenerator().defineDataFormat());
+    } catch (Exception ex) {
+      throw new WekaException(ex);
+    }
+  }
+
+  /**
+   * Get the format of the output instances: the format of the generator, with
+   * numeric attributes in place of the date attributes
+   *
+   * @param format the format of the generator
+   * @return the format of the output instances
+   */
+  protected Instances outputFormat(Instances format) {
+    ArrayList<Attribute> atts = new ArrayList<Attribute>();
+    for (int i = 0; i < format.numAttributes(); i++) {
+      Attribute att = format.attribute(i);
+      atts.add(att.isDate() ? new Attribute(att.name()) : (Attribute) att
+        .copy());
+    }
+    Instances result = new Instances(format.relationName(), atts, 0);
+    result.setClassIndex(format.classIndex());
+    return result;
+  }
+
+  /**
+   * Get a copy of the generator, set up for the live streaming of the
+   * captures
+   *
+   * @return the generator
+   * @throws WekaException if the generator could not be copied
+   */
+  protected Pcap newGenerator() throws WekaException {
+    try {
+      Pcap result = (Pcap) new SerializedObject(m_generator).getObject();
+      result.setStreaming(true);
+      result.setLive(true);
+      result.setSink("");
+      result.setEncoding(new SelectedTag(Pcap.ENCODING_NUMERIC,
+        Pcap.TAGS_ENCODING));
+      return result;
+    } catch (Exception ex) {
+      throw new WekaException(ex);
+    }
+  }
+}
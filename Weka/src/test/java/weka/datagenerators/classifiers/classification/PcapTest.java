@@ -0,0 +1,872 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * PcapTest.java
+ */
+
+package weka.datagenerators.classifiers.classification;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SelectedTag;
+import weka.datagenerators.classifiers.classification.pcap.ColumnCache;
+import weka.datagenerators.classifiers.classification.pcap.InstanceSink;
+import weka.datagenerators.classifiers.classification.pcap.SyntheticPcapWriter;
+import weka.datagenerators.classifiers.classification.pcap.traffic.BackgroundTraffic;
+import weka.datagenerators.classifiers.classification.pcap.traffic.RateProfile;
+import weka.gui.explorer.DataGeneratorPanel;
+
+/**
+ * Tests Pcap on replayed fixture captures (no container is run). Run from the
+ * command line with:<p/>
+ * java weka.datagenerators.classifiers.classification.PcapTest
+ */
+public class PcapTest extends TestCase {
+
+  /** the number of generations run at the same time */
+  protected static final int THREADS = 8;
+
+  /** the directory of the fixture captures */
+  protected File m_Directory;
+
+  public PcapTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Writes the fixture captures.
+   *
+   * @throws Exception if a capture could not be written
+   */
+  @Override
+  protected void setUp() throws Exception {
+    m_Directory = File.createTempFile("weka_pcap", "");
+    m_Directory.delete();
+    m_Directory.mkdirs();
+    writePcap(new File(m_Directory, "a.pcap"), 1, 400);
+    writePcap(new File(m_Directory, "b.pcap"), 2, 250);
+  }
+
+  /**
+   * Removes the fixture captures.
+   */
+  @Override
+  protected void tearDown() {
+    File[] files = m_Directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    m_Directory.delete();
+    m_Directory = null;
+  }
+
+  /**
+   * Writes a pcap file of random TCP and UDP packets between a few hosts.
+   *
+   * @param file the file to write
+   * @param seed the seed of the packets
+   * @param count the number of packets
+   * @throws IOException if the file could not be written
+   */
+  protected static void writePcap(File file, long seed, int count)
+    throws IOException {
+    Random random = new Random(seed);
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      ByteBuffer header = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(0xa1b2c3d4).putShort((short) 2).putShort((short) 4)
+        .putInt(0).putInt(0).putInt(65535).putInt(1);
+      out.write(header.array());
+
+      long micros = 1700000000000000L + seed * 1000000L;
+      for (int i = 0; i < count; i++) {
+        boolean tcp = random.nextInt(4) != 0;
+        int payload = random.nextInt(200);
+        int ipLength = 20 + (tcp ? 20 : 8) + payload;
+        ByteBuffer frame = ByteBuffer.allocate(14 + ipLength);
+
+        // Ethernet
+        frame.put(new byte[12]).putShort((short) 0x0800);
+        // IPv4
+        frame.put((byte) 0x45).put((byte) 0).putShort((short) ipLength)
+          .putShort((short) i).putShort((short) 0).put((byte) 64)
+          .put((byte) (tcp ? 6 : 17)).putShort((short) random.nextInt(65536))
+          .putInt(0x0a000001 + random.nextInt(4))
+          .putInt(0x0a000010 + random.nextInt(2));
+        // TCP or UDP
+        int srcPort = 40000 + random.nextInt(16);
+        int dstPort = tcp ? 80 : 53;
+        if (tcp) {
+          frame.putShort((short) srcPort).putShort((short) dstPort)
+            .putInt(i).putInt(0).put((byte) 0x50)
+            .put((byte) (1 << random.nextInt(6))).putShort((short) 1024)
+            .putInt(0);
+        } else {
+          frame.putShort((short) srcPort).putShort((short) dstPort)
+            .putShort((short) (8 + payload)).putShort((short) 0);
+        }
+
+        micros += random.nextInt(500000);
+        ByteBuffer record = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        record.putInt((int) (micros / 1000000L)).putInt((int) (micros % 1000000L))
+          .putInt(frame.capacity()).putInt(frame.capacity());
+        out.write(record.array());
+        out.write(frame.array());
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Writes a pcap file of two HTTP connections: two requests (the first one
+   * split in two segments and retransmitted) with their responses, and a
+   * partial request that is never completed.
+   *
+   * @param file the file to write
+   * @throws IOException if the file could not be written
+   */
+  protected static void writeHttpPcap(File file) throws IOException {
+    String get = "GET /index.html HTTP/1.1\r\nHost: a\r\nAccept: */*\r\n\r\n";
+    String ok = "HTTP/1.1 200 OK\r\nContent-Length: 5\r\n\r\nhello";
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      ByteBuffer header = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(0xa1b2c3d4).putShort((short) 2).putShort((short) 4)
+        .putInt(0).putInt(0).putInt(65535).putInt(1);
+      out.write(header.array());
+
+      long micros = 1700000000000000L;
+      // Connection 1: handshake, split and retransmitted request, response
+      writeTcp(out, micros += 1000, true, 40000, 1000, 0x02, "");
+      writeTcp(out, micros += 1000, false, 40000, 5000, 0x12, "");
+      writeTcp(out, micros += 1000, true, 40000, 1001, 0x10, "");
+      writeTcp(out, micros += 1000, true, 40000, 1001, 0x18, get.substring(0, 10));
+      writeTcp(out, micros += 1000, true, 40000, 1001, 0x18, get.substring(0, 10));
+      writeTcp(out, micros += 1000, true, 40000, 1011, 0x18, get.substring(10));
+      writeTcp(out, micros += 1000, false, 40000, 5001, 0x18, ok);
+      // Second request and response in the same connection
+      int seq = 1001 + get.length();
+      writeTcp(out, micros += 1000, true, 40000, seq, 0x18, get);
+      writeTcp(out, micros += 1000, false, 40000, 5001 + ok.length(), 0x18, ok);
+      // Connection 2: partial request
+      writeTcp(out, micros += 1000, true, 40001, 2000, 0x02, "");
+      writeTcp(out, micros += 1000, false, 40001, 6000, 0x12, "");
+      writeTcp(out, micros += 1000, true, 40001, 2001, 0x18,
+        "GET / HTTP/1.1\r\nHost: a\r\n");
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Writes a TCP packet between 10.0.0.1 and 10.0.0.16:80.
+   *
+   * @param out the pcap file
+   * @param micros the timestamp (microseconds)
+   * @param fromClient true if the packet goes to the server
+   * @param clientPort the port of the client
+   * @param seq the sequence number
+   * @param flags the TCP flags
+   * @param payload the payload
+   * @throws IOException if the packet could not be written
+   */
+  protected static void writeTcp(FileOutputStream out, long micros,
+    boolean fromClient, int clientPort, int seq, int flags, String payload)
+    throws IOException {
+    byte[] data = payload.getBytes("US-ASCII");
+    int ipLength = 20 + 20 + data.length;
+    ByteBuffer frame = ByteBuffer.allocate(14 + ipLength);
+    frame.put(new byte[12]).putShort((short) 0x0800);
+    frame.put((byte) 0x45).put((byte) 0).putShort((short) ipLength)
+      .putShort((short) 0).putShort((short) 0).put((byte) 64).put((byte) 6)
+      .putShort((short) 0).putInt(fromClient ? 0x0a000001 : 0x0a000010)
+      .putInt(fromClient ? 0x0a000010 : 0x0a000001);
+    frame.putShort((short) (fromClient ? clientPort : 80))
+      .putShort((short) (fromClient ? 80 : clientPort)).putInt(seq).putInt(0)
+      .put((byte) 0x50).put((byte) flags).putShort((short) 1024).putInt(0)
+      .put(data);
+
+    ByteBuffer record = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+    record.putInt((int) (micros / 1000000L)).putInt((int) (micros % 1000000L))
+      .putInt(frame.capacity()).putInt(frame.capacity());
+    out.write(record.array());
+    out.write(frame.array());
+  }
+
+  /**
+   * Creates a generator replaying the fixture captures.
+   *
+   * @param format the dataset format
+   * @param streaming true to generate the instances one at a time
+   * @return the generator
+   */
+  protected Pcap getGenerator(int format, boolean streaming) {
+    return getGenerator(format, streaming, Pcap.ENCODING_STRING);
+  }
+
+  /**
+   * Creates a generator replaying the fixture captures.
+   *
+   * @param format the dataset format
+   * @param streaming true to generate the instances one at a time
+   * @param encoding the encoding of the addresses, ports, type and checksum
+   * @return the generator
+   */
+  protected Pcap getGenerator(int format, boolean streaming, int encoding) {
+    Pcap result = new Pcap();
+    result.setReplay(m_Directory.getAbsolutePath());
+    result.setFormat(new SelectedTag(format, Pcap.TAGS_FORMAT));
+    result.setStreaming(streaming);
+    result.setWorkers(2);
+    result.setEncoding(new SelectedTag(encoding, Pcap.TAGS_ENCODING));
+    return result;
+  }
+
+  /**
+   * Runs a generation, returns the generated instances as strings.
+   *
+   * @param format the dataset format
+   * @param streaming true to generate the instances one at a time
+   * @return the instances
+   * @throws Exception if the generation failed
+   */
+  protected List<String> generate(int format, boolean streaming)
+    throws Exception {
+    return generate(format, streaming, Pcap.ENCODING_STRING);
+  }
+
+  /**
+   * Runs a generation, returns the generated instances as strings.
+   *
+   * @param format the dataset format
+   * @param streaming true to generate the instances one at a time
+   * @param encoding the encoding of the addresses, ports, type and checksum
+   * @return the instances
+   * @throws Exception if the generation failed
+   */
+  protected List<String> generate(int format, boolean streaming, int encoding)
+    throws Exception {
+    Pcap generator = getGenerator(format, streaming, encoding);
+    generator.defineDataFormat();
+    List<String> result = new ArrayList<String>();
+    if (streaming) {
+      Instance instance;
+      while ((instance = generator.generateExample()) != null) {
+        result.add(instance.toString());
+      }
+    } else {
+      result.addAll(toStrings(generator.generateExamples()));
+    }
+    return result;
+  }
+
+  /**
+   * tests whether the fixture captures are decoded in each format
+   */
+  public void testReplay() throws Exception {
+    assertEquals("packets", 650, generate(Pcap.FORMAT_PACKET, false).size());
+    assertFalse("flows", generate(Pcap.FORMAT_FLOW, false).isEmpty());
+    assertFalse("windows", generate(Pcap.FORMAT_WINDOW, false).isEmpty());
+    assertEquals("streamed packets", generate(Pcap.FORMAT_PACKET, false),
+      generate(Pcap.FORMAT_PACKET, true));
+  }
+
+  /**
+   * tests that the explorer panel keeps the string values of each streamed
+   * example, and not those of the last one
+   */
+  public void testPanelSingleMode() throws Exception {
+    Pcap generator = getGenerator(Pcap.FORMAT_PACKET, true);
+    DataGeneratorPanel panel = new DataGeneratorPanel();
+    panel.setGenerator(generator);
+    assertTrue("generation", panel.execute(false));
+    Instances data = panel.getInstances();
+    assertEquals("packets", 650, data.numInstances());
+    assertEquals("rows", generate(Pcap.FORMAT_PACKET, false), toStrings(data));
+    Set<String> ports = new HashSet<String>();
+    for (int i = 0; i < data.numInstances(); i++) {
+      ports.add(data.instance(i).stringValue(data.attribute("srcPort")));
+    }
+    assertTrue("distinct ports", ports.size() >= 2);
+  }
+
+  /**
+   * tests that the captures are merged in input order, whatever the order in
+   * which the workers complete them
+   */
+  public void testInputOrder() throws Exception {
+    List<String> expected = new ArrayList<String>();
+    for (String name : new String[] { "a.pcap", "b.pcap" }) {
+      Pcap generator = getGenerator(Pcap.FORMAT_PACKET, false);
+      generator.setReplay(new File(m_Directory, name).getAbsolutePath());
+      generator.defineDataFormat();
+      expected.addAll(toStrings(generator.generateExamples()));
+    }
+    for (int run = 0; run < 3; run++) {
+      assertEquals("run " + run, expected,
+        generate(Pcap.FORMAT_PACKET, false));
+      assertEquals("streamed run " + run, expected,
+        generate(Pcap.FORMAT_PACKET, true));
+    }
+  }
+
+  /**
+   * tests the numeric and nominal encodings of the addresses and ports
+   */
+  public void testEncodings() throws Exception {
+    assertEquals("streamed numeric packets",
+      generate(Pcap.FORMAT_PACKET, false, Pcap.ENCODING_NUMERIC),
+      generate(Pcap.FORMAT_PACKET, true, Pcap.ENCODING_NUMERIC));
+    assertEquals("streamed numeric flows",
+      generate(Pcap.FORMAT_FLOW, false, Pcap.ENCODING_NUMERIC),
+      generate(Pcap.FORMAT_FLOW, true, Pcap.ENCODING_NUMERIC));
+
+    Pcap generator = getGenerator(Pcap.FORMAT_PACKET, false,
+      Pcap.ENCODING_NUMERIC);
+    generator.defineDataFormat();
+    Instances data = generator.generateExamples();
+    assertTrue("srcIp", data.attribute("srcIp").isNumeric());
+    assertTrue("srcSubnet", data.attribute("srcSubnet").isNumeric());
+    assertTrue("dstPortClass", data.attribute("dstPortClass").isNumeric());
+    for (int i = 0; i < data.numInstances(); i++) {
+      Instance instance = data.instance(i);
+      assertEquals("subnet", 0x0a000000,
+        (long) instance.value(data.attribute("srcSubnet")));
+      assertEquals("port class", 0,
+        (int) instance.value(data.attribute("dstPortClass")));
+    }
+
+    generator = getGenerator(Pcap.FORMAT_PACKET, false, Pcap.ENCODING_NOMINAL);
+    generator.setMaxNominalValues(3);
+    generator.defineDataFormat();
+    data = generator.generateExamples();
+    assertEquals("packets", 650, data.numInstances());
+    assertTrue("srcIp", data.attribute("srcIp").isNominal());
+    assertEquals("srcIp values", 3, data.attribute("srcIp").numValues());
+    assertEquals("other", "other", data.attribute("srcIp").value(2));
+    assertEquals("dstIp values", 2, data.attribute("dstIp").numValues());
+  }
+
+  /**
+   * tests the timestamps and the precisions of the timer
+   */
+  public void testTimerPrecision() throws Exception {
+    Pcap generator = getGenerator(Pcap.FORMAT_PACKET, false);
+    generator.defineDataFormat();
+    Instances millis = generator.generateExamples();
+    generator = getGenerator(Pcap.FORMAT_PACKET, false);
+    generator.setTimerPrecision(new SelectedTag(Pcap.PRECISION_MICROS,
+      Pcap.TAGS_PRECISION));
+    generator.defineDataFormat();
+    Instances micros = generator.generateExamples();
+    assertEquals("packets", millis.numInstances(), micros.numInstances());
+
+    int timer = millis.attribute("timer").index();
+    int timestamp = millis.attribute("timestamp").index();
+    boolean subMillis = false;
+    Set<Double> starts = new HashSet<Double>();
+    for (int i = 0; i < millis.numInstances(); i++) {
+      double value = micros.instance(i).value(timer);
+      assertEquals("timer", millis.instance(i).value(timer),
+        Math.floor(value / 1000), 0);
+      subMillis |= value % 1000 != 0;
+      starts.add(millis.instance(i).value(timestamp)
+        - millis.instance(i).value(timer));
+    }
+    assertTrue("sub-millisecond timers", subMillis);
+    // One start time (in milliseconds) per capture
+    assertEquals("starts", 2, starts.size());
+  }
+
+  /**
+   * tests the HTTP features of the flows
+   */
+  public void testHttp() throws Exception {
+    assertNull("no HTTP features",
+      getGenerator(Pcap.FORMAT_FLOW, false).defineDataFormat()
+        .attribute("httpMethod"));
+
+    File file = new File(m_Directory, "http.pcap");
+    writeHttpPcap(file);
+    Pcap generator = getGenerator(Pcap.FORMAT_FLOW, false);
+    generator.setReplay(file.getAbsolutePath());
+    generator.setHttp(true);
+    generator.defineDataFormat();
+    Instances flows = generator.generateExamples();
+    assertEquals("flows", 2, flows.numInstances());
+
+    generator = getGenerator(Pcap.FORMAT_FLOW, true);
+    generator.setReplay(file.getAbsolutePath());
+    generator.setHttp(true);
+    generator.defineDataFormat();
+    List<String> streamed = new ArrayList<String>();
+    Instance instance;
+    while ((instance = generator.generateExample()) != null) {
+      streamed.add(instance.toString());
+    }
+    assertEquals("streamed flows", toStrings(flows), streamed);
+
+    Instance complete = flows.instance(0);
+    Instance partial = flows.instance(1);
+    if (complete.value(flows.attribute("httpRequests")) == 0) {
+      complete = flows.instance(1);
+      partial = flows.instance(0);
+    }
+    assertEquals("method", "GET",
+      complete.stringValue(flows.attribute("httpMethod")));
+    assertEquals("requests", 2.0,
+      complete.value(flows.attribute("httpRequests")), 0);
+    assertEquals("URI length", 11.0,
+      complete.value(flows.attribute("httpUriLength")), 0);
+    assertEquals("headers", 2.0,
+      complete.value(flows.attribute("httpHeaders")), 0);
+    assertEquals("status", 200.0,
+      complete.value(flows.attribute("httpStatus")), 0);
+    assertEquals("incomplete", 0.0,
+      complete.value(flows.attribute("httpIncomplete")), 0);
+    assertTrue("client rate",
+      complete.value(flows.attribute("httpClientRate")) > 1.0);
+
+    assertEquals("partial requests", 0.0,
+      partial.value(flows.attribute("httpRequests")), 0);
+    assertTrue("partial method",
+      partial.isMissing(flows.attribute("httpMethod")));
+    assertEquals("partial incomplete", 1.0,
+      partial.value(flows.attribute("httpIncomplete")), 0);
+  }
+
+  /**
+   * tests whether the synthetic captures are deterministic and decoded
+   */
+  public void testSyntheticCapture() throws Exception {
+    SyntheticPcapWriter writer = new SyntheticPcapWriter();
+    writer.setMix(0, 1, 0);
+    writer.setPayloadSize(10, 100);
+    File first = new File(m_Directory, "synthetic1.pcap");
+    File second = new File(m_Directory, "synthetic2.pcap");
+    long bytes = writer.write(first.getAbsolutePath(), 2000);
+    assertEquals("bytes", first.length(), bytes);
+    writer.write(second.getAbsolutePath(), 2000);
+    assertTrue("same seed", Arrays.equals(Files.readAllBytes(first.toPath()),
+      Files.readAllBytes(second.toPath())));
+
+    Pcap generator = getGenerator(Pcap.FORMAT_PACKET, false);
+    generator.setReplay(first.getAbsolutePath());
+    generator.setMaxPackets(2000);
+    generator.defineDataFormat();
+    Instances data = generator.generateExamples();
+    assertEquals("packets", 2000, data.numInstances());
+    int protocol = data.attribute("protocol").index();
+    int length = data.attribute("length").index();
+    for (int i = 0; i < data.numInstances(); i++) {
+      assertEquals("UDP", 17.0, data.instance(i).value(protocol), 0);
+      double payload = data.instance(i).value(length) - 28;
+      assertTrue("payload size", payload >= 10 && payload <= 100);
+    }
+  }
+
+  /**
+   * tests the systematic and reservoir samplings of the packets
+   */
+  public void testSampling() throws Exception {
+    Pcap generator = getGenerator(Pcap.FORMAT_PACKET, false);
+    generator.setSampling(new SelectedTag(Pcap.SAMPLING_SYSTEMATIC,
+      Pcap.TAGS_SAMPLING));
+    generator.setSamplingInterval(4);
+    generator.defineDataFormat();
+    Instances data = generator.generateExamples();
+    // 1 packet in 4 of each capture (400 and 250 packets)
+    assertTrue("systematic", data.numInstances() >= 162
+      && data.numInstances() <= 163);
+    int rate = data.attribute("samplingRate").index();
+    for (int i = 0; i < data.numInstances(); i++) {
+      assertEquals("systematic rate", 0.25, data.instance(i).value(rate), 0);
+    }
+
+    List<String> expected = toStrings(data);
+    generator.setStreaming(true);
+    generator.defineDataFormat();
+    List<String> streamed = new ArrayList<String>();
+    Instance instance;
+    while ((instance = generator.generateExample()) != null) {
+      streamed.add(instance.toString());
+    }
+    assertEquals("streamed systematic", expected, streamed);
+
+    List<String> first = null;
+    for (int run = 0; run < 2; run++) {
+      generator = getGenerator(Pcap.FORMAT_PACKET, false);
+      generator.setSampling(new SelectedTag(Pcap.SAMPLING_RESERVOIR,
+        Pcap.TAGS_SAMPLING));
+      generator.setSamplingSize(50);
+      generator.defineDataFormat();
+      data = generator.generateExamples();
+      assertEquals("reservoir", 100, data.numInstances());
+      Set<Double> rates = new HashSet<Double>();
+      List<String> rows = new ArrayList<String>();
+      for (int i = 0; i < data.numInstances(); i++) {
+        rates.add(data.instance(i).value(rate));
+        rows.add(data.instance(i).toString());
+      }
+      assertEquals("reservoir rates", new HashSet<Double>(Arrays.asList(
+        50.0 / 400, 50.0 / 250)), rates);
+      if (first == null) {
+        first = rows;
+      } else {
+        assertEquals("same seed", first, rows);
+      }
+    }
+
+    generator.setSampling(new SelectedTag(Pcap.SAMPLING_RESERVOIR,
+      Pcap.TAGS_SAMPLING));
+    generator.setPcapReader(new SelectedTag(Pcap.READER_LIBPCAP,
+      Pcap.TAGS_READER));
+    try {
+      generator.defineDataFormat();
+      fail("reservoir sampling with the libpcap reader");
+    } catch (Exception e) {
+      // expected
+    }
+  }
+
+  /**
+   * tests that the capture filter and the snap length are refused with the
+   * payload of the published image, which does not know them
+   */
+  public void testCaptureOptions() throws Exception {
+    Pcap generator = new Pcap();
+    generator.setSnaplen(96);
+    try {
+      generator.defineDataFormat();
+      fail("snap length with the payload of " + generator.getDockerImage());
+    } catch (Exception e) {
+      // expected
+    }
+
+    generator.setSnaplen(0);
+    generator.setCaptureFilter("tcp");
+    try {
+      generator.defineDataFormat();
+      fail("capture filter with the payload of " + generator.getDockerImage());
+    } catch (Exception e) {
+      // expected
+    }
+  }
+
+  /**
+   * tests that the cached packet columns give the same instances as a
+   * decoding of the captures
+   */
+  public void testColumnCache() throws Exception {
+    List<String> expected = generate(Pcap.FORMAT_PACKET, false);
+    for (int run = 0; run < 2; run++) {
+      Pcap generator = getGenerator(Pcap.FORMAT_PACKET, false);
+      generator.setColumnCache(true);
+      generator.defineDataFormat();
+      assertEquals("run " + run, expected,
+        toStrings(generator.generateExamples()));
+      assertEquals("cache entries", 2, countCacheEntries());
+    }
+
+    // A complete entry serves a smaller max number of packets
+    Pcap generator = getGenerator(Pcap.FORMAT_PACKET, false);
+    generator.setColumnCache(true);
+    generator.setMaxPackets(100);
+    generator.defineDataFormat();
+    assertEquals("max packets", 200, generator.generateExamples().numInstances());
+
+    // Other settings, other entries replacing the previous ones
+    generator = getGenerator(Pcap.FORMAT_PACKET, false);
+    generator.setColumnCache(true);
+    generator.setSampling(new SelectedTag(Pcap.SAMPLING_SYSTEMATIC,
+      Pcap.TAGS_SAMPLING));
+    generator.setSamplingInterval(4);
+    generator.defineDataFormat();
+    Instances data = generator.generateExamples();
+    assertTrue("sampled", data.numInstances() >= 162
+      && data.numInstances() <= 163);
+    assertEquals("sampled cache entries", 2, countCacheEntries());
+  }
+
+  /**
+   * tests that the instances written to a sink file are the streamed
+   * instances, in each sink format
+   */
+  public void testSink() throws Exception {
+    List<String> expected = generate(Pcap.FORMAT_PACKET, true);
+
+    File arff = new File(m_Directory, "sink.arff");
+    Pcap generator = getGenerator(Pcap.FORMAT_PACKET, false);
+    generator.setSink(arff.getAbsolutePath());
+    generator.defineDataFormat();
+    assertEquals("dataset", 0, generator.generateExamples().numInstances());
+    BufferedReader reader = new BufferedReader(new FileReader(arff));
+    Instances data;
+    try {
+      data = new Instances(reader);
+    } finally {
+      reader.close();
+    }
+    assertEquals("arff", expected, toStrings(data));
+
+    File csv = new File(m_Directory, "sink.csv");
+    generator = getGenerator(Pcap.FORMAT_PACKET, false);
+    generator.setSink(csv.getAbsolutePath());
+    generator.setSinkFormat(new SelectedTag(Pcap.SINK_CSV,
+      Pcap.TAGS_SINK_FORMAT));
+    generator.defineDataFormat();
+    generator.generateExamples();
+    List<String> lines = Files.readAllLines(csv.toPath(),
+      StandardCharsets.UTF_8);
+    assertTrue("csv header", lines.get(0).startsWith("srcIp,"));
+    assertEquals("csv", expected, lines.subList(1, lines.size()));
+
+    File binary = new File(m_Directory, "sink.bin.gz");
+    generator = getGenerator(Pcap.FORMAT_PACKET, false);
+    generator.setSink(binary.getAbsolutePath());
+    generator.setSinkFormat(new SelectedTag(Pcap.SINK_BINARY,
+      Pcap.TAGS_SINK_FORMAT));
+    generator.setSinkCompress(true);
+    generator.defineDataFormat();
+    generator.generateExamples();
+    InputStream in = new GZIPInputStream(new FileInputStream(binary));
+    try {
+      data = InstanceSink.readBinary(in);
+    } finally {
+      in.close();
+    }
+    assertEquals("binary", expected, toStrings(data));
+  }
+
+  /**
+   * tests that the output of a sink is closed when the sink could not be
+   * created
+   */
+  public void testSinkFailure() throws Exception {
+    ArrayList<Attribute> atts = new ArrayList<Attribute>();
+    atts.add(new Attribute("length"));
+    Instances header = new Instances("sink", atts, 0);
+    final boolean[] closed = new boolean[1];
+    OutputStream broken = new OutputStream() {
+      @Override
+      public void write(int b) throws IOException {
+        throw new IOException("broken");
+      }
+
+      @Override
+      public void close() {
+        closed[0] = true;
+      }
+    };
+
+    // The gzip header cannot be written
+    try {
+      new InstanceSink(broken, InstanceSink.BINARY, true, header,
+        InstanceSink.DEFAULT_QUEUE_SIZE);
+      fail("broken output");
+    } catch (IOException e) {
+      assertTrue("closed after an I/O error", closed[0]);
+    }
+
+    closed[0] = false;
+    try {
+      new InstanceSink(broken, -1, false, header,
+        InstanceSink.DEFAULT_QUEUE_SIZE);
+      fail("invalid format");
+    } catch (IllegalArgumentException e) {
+      assertTrue("closed after an invalid format", closed[0]);
+    }
+  }
+
+  /**
+   * Gets the instances of a dataset as strings, in order.
+   *
+   * @param data the dataset
+   * @return the instances
+   */
+  protected List<String> toStrings(Instances data) {
+    List<String> result = new ArrayList<String>();
+    for (int i = 0; i < data.numInstances(); i++) {
+      result.add(data.instance(i).toString());
+    }
+    return result;
+  }
+
+  /**
+   * Counts the column cache entries of the fixture captures.
+   *
+   * @return the number of entries
+   */
+  protected int countCacheEntries() {
+    int result = 0;
+    for (File file : m_Directory.listFiles()) {
+      if (file.getName().endsWith(ColumnCache.EXTENSION)) {
+        result++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * tests the rate profiles, and the background traffic against a local HTTP
+   * server and DNS port
+   */
+  public void testBackgroundTraffic() throws Exception {
+    long period = 10000000000L;
+    RateProfile ramp = new RateProfile(RateProfile.RAMP, 1000, period);
+    assertEquals("ramp start", 100, ramp.rate(0), 1e-9);
+    assertEquals("ramp end", 1000, ramp.rate(2 * period), 1e-9);
+    RateProfile diurnal = new RateProfile(RateProfile.DIURNAL, 1000, period);
+    assertEquals("night", 100, diurnal.rate(period), 1e-9);
+    assertEquals("midday", 1000, diurnal.rate(period / 2), 1e-9);
+    RateProfile burst = new RateProfile(RateProfile.BURST, 1000, period);
+    assertEquals("base rate", 250, burst.rate(0), 1e-9);
+    assertEquals("burst rate", 1000, burst.rate(period / 2 + 1), 1e-9);
+
+    InetAddress loopback = InetAddress.getLoopbackAddress();
+    final Set<Integer> ports = Collections.synchronizedSet(new HashSet<Integer>());
+    HttpServer server = HttpServer.create(new InetSocketAddress(loopback, 0), 64);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        ports.add(exchange.getRemoteAddress().getPort());
+        byte[] body = "<html></html>".getBytes("US-ASCII");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+      }
+    });
+    server.start();
+    DatagramChannel dns = DatagramChannel.open();
+    try {
+      dns.bind(new InetSocketAddress(loopback, 0));
+      BackgroundTraffic traffic = new BackgroundTraffic(new RateProfile(
+        RateProfile.CONSTANT, 1000, period), 16, 2);
+      traffic.setMix(1, 1, 1);
+      traffic.setHttpPort(server.getAddress().getPort());
+      traffic.setDnsPort(((InetSocketAddress) dns.getLocalAddress()).getPort());
+      traffic.start(loopback);
+      // the rate is tested on the token bucket, only wait for each kind of
+      // request (the deadline only guards against a hang)
+      long deadline = System.currentTimeMillis() + 30000;
+      while ((traffic.getSentRequests(BackgroundTraffic.BROWSE) == 0
+        || traffic.getSentRequests(BackgroundTraffic.KEEP_ALIVE) == 0
+        || traffic.getSentRequests(BackgroundTraffic.DNS) == 0
+        || traffic.getResponses() == 0)
+        && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      traffic.stop();
+
+      assertTrue("browse", traffic.getSentRequests(BackgroundTraffic.BROWSE) > 0);
+      assertTrue("keep-alive",
+        traffic.getSentRequests(BackgroundTraffic.KEEP_ALIVE) > 0);
+      assertTrue("dns", traffic.getSentRequests(BackgroundTraffic.DNS) > 0);
+      assertTrue("responses", traffic.getResponses() > 0);
+      assertFalse("connections", ports.isEmpty());
+      for (int port : ports) {
+        assertTrue("local port " + port, port >= BackgroundTraffic.MIN_LOCAL_PORT
+          && port <= BackgroundTraffic.MAX_LOCAL_PORT);
+      }
+      dns.configureBlocking(false);
+      assertNotNull("query", dns.receive(ByteBuffer.allocate(512)));
+    } finally {
+      server.stop(0);
+      dns.close();
+    }
+  }
+
+  /**
+   * tests whether generators running at the same time produce the same
+   * instances as generators running one after the other
+   */
+  public void testConcurrentGenerations() throws Exception {
+    final int[] formats = { Pcap.FORMAT_PACKET, Pcap.FORMAT_FLOW,
+      Pcap.FORMAT_WINDOW };
+    List<List<String>> expected = new ArrayList<List<String>>();
+    for (int format : formats) {
+      expected.add(generate(format, false));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Future<List<String>>> results = new ArrayList<Future<List<String>>>();
+      for (int i = 0; i < THREADS * 3; i++) {
+        final int format = formats[i % formats.length];
+        final boolean streaming = (i / formats.length) % 2 == 1;
+        results.add(executor.submit(new Callable<List<String>>() {
+          @Override
+          public List<String> call() throws Exception {
+            return generate(format, streaming);
+          }
+        }));
+      }
+      for (int i = 0; i < results.size(); i++) {
+        assertEquals("generation " + i, expected.get(i % formats.length),
+          results.get(i).get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  public static Test suite() {
+    return new TestSuite(PcapTest.class);
+  }
+
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
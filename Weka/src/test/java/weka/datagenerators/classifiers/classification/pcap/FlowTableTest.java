@@ -0,0 +1,318 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * FlowTableTest.java
+ */
+
+package weka.datagenerators.classifiers.classification.pcap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests the aggregation of hand-built packets into flows. Run from the command
+ * line with:<p/>
+ * java weka.datagenerators.classifiers.classification.pcap.FlowTableTest
+ */
+public class FlowTableTest extends TestCase {
+
+  /** the hosts (IPv4) */
+  protected static final int CLIENT = 0x0a000001;
+  protected static final int SERVER = 0x0a000002;
+
+  /** timeout long enough to never expire */
+  protected static final long NEVER = Long.MAX_VALUE / 2;
+
+  /** the completed flows */
+  protected List<Flow> m_Completed;
+
+  /** the listener collecting the completed flows */
+  protected FlowTable.FlowListener m_Listener;
+
+  public FlowTableTest(String name) {
+    super(name);
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    m_Completed = new ArrayList<Flow>();
+    m_Listener = new FlowTable.FlowListener() {
+      @Override
+      public void flowCompleted(Flow flow) {
+        m_Completed.add(flow);
+      }
+    };
+  }
+
+  /**
+   * Gets a packet.
+   */
+  protected static PacketRecord packet(int src, int srcPort, int dst,
+    int dstPort, int protocol, int tcpFlags, int length) {
+    PacketRecord result = new PacketRecord();
+    result.clear();
+    result.version = 4;
+    result.srcAddrLow = 0x0000ffff00000000L | (src & 0xffffffffL);
+    result.dstAddrLow = 0x0000ffff00000000L | (dst & 0xffffffffL);
+    result.srcPort = srcPort;
+    result.dstPort = dstPort;
+    result.protocol = protocol;
+    result.tcpFlags = tcpFlags;
+    result.length = length;
+    return result;
+  }
+
+  /**
+   * Gets a TCP segment.
+   */
+  protected static PacketRecord tcp(int src, int srcPort, int dst,
+    int dstPort, int tcpFlags) {
+    return packet(src, srcPort, dst, dstPort, PacketDecoder.PROTOCOL_TCP,
+      tcpFlags, 60);
+  }
+
+  /**
+   * Gets a segment from the client to the server.
+   */
+  protected static PacketRecord request(int clientPort, int tcpFlags) {
+    return tcp(CLIENT, clientPort, SERVER, 80, tcpFlags);
+  }
+
+  /**
+   * Gets a segment from the server to the client.
+   */
+  protected static PacketRecord response(int clientPort, int tcpFlags) {
+    return tcp(SERVER, 80, CLIENT, clientPort, tcpFlags);
+  }
+
+  /**
+   * Tests that both directions share a flow, split into forward and backward
+   * counters.
+   */
+  public void testBidirectionalKey() {
+    FlowTable table = new FlowTable(NEVER, NEVER, 100, m_Listener);
+    table.add(packet(CLIENT, 5000, SERVER, 53, PacketDecoder.PROTOCOL_UDP,
+      PacketRecord.ABSENT, 70), 0L);
+    table.add(packet(SERVER, 53, CLIENT, 5000, PacketDecoder.PROTOCOL_UDP,
+      PacketRecord.ABSENT, 200), 1L);
+    table.add(packet(CLIENT, 5000, SERVER, 53, PacketDecoder.PROTOCOL_UDP,
+      PacketRecord.ABSENT, 80), 2L);
+    // Same endpoints, another protocol
+    table.add(packet(CLIENT, 5000, SERVER, 53, PacketDecoder.PROTOCOL_TCP,
+      PacketDecoder.TCP_SYN, 60), 3L);
+    assertEquals(2, table.size());
+
+    table.flush();
+    assertEquals(2, m_Completed.size());
+    Flow flow = m_Completed.get(0);
+    assertEquals(PacketDecoder.PROTOCOL_UDP, flow.getProtocol());
+    assertEquals(5000, flow.getSrcPort());
+    assertEquals(53, flow.getDstPort());
+    assertEquals(2, flow.getFwdPackets());
+    assertEquals(1, flow.getBwdPackets());
+    assertEquals(150, flow.getFwdBytes());
+    assertEquals(200, flow.getBwdBytes());
+    assertEquals(0, table.size());
+  }
+
+  /**
+   * Tests that the forward direction is the one of the first packet, whatever
+   * the order of the endpoints in the key.
+   */
+  public void testForwardDirection() {
+    FlowTable table = new FlowTable(NEVER, NEVER, 100, m_Listener);
+    // The server has the highest address, and sends first
+    table.add(response(5000, PacketDecoder.TCP_ACK), 0L);
+    table.add(request(5000, PacketDecoder.TCP_ACK), 1L);
+    table.add(request(5000, PacketDecoder.TCP_ACK), 2L);
+    table.flush();
+
+    Flow flow = m_Completed.get(0);
+    assertEquals(80, flow.getSrcPort());
+    assertEquals(5000, flow.getDstPort());
+    assertEquals(1, flow.getFwdPackets());
+    assertEquals(2, flow.getBwdPackets());
+    assertEquals(3, flow.getAckCount());
+  }
+
+  /**
+   * Tests the inter-arrival time statistics.
+   */
+  public void testInterArrivalTimes() {
+    FlowTable table = new FlowTable(NEVER, NEVER, 100, m_Listener);
+    // Inter-arrival times 10, 20 and 30
+    table.add(request(5000, PacketDecoder.TCP_ACK), 100L);
+    table.add(response(5000, PacketDecoder.TCP_ACK), 110L);
+    table.add(request(5000, PacketDecoder.TCP_ACK), 130L);
+    table.add(response(5000, PacketDecoder.TCP_ACK), 160L);
+    // Single packet
+    table.add(request(5001, PacketDecoder.TCP_ACK), 200L);
+    table.flush();
+
+    Flow flow = m_Completed.get(0);
+    assertEquals(100L, flow.getFirstSeen());
+    assertEquals(160L, flow.getLastSeen());
+    assertEquals(60L, flow.getDuration());
+    assertEquals(20.0, flow.getIatMean(), 1e-9);
+    assertEquals(10.0, flow.getIatStd(), 1e-9);
+    assertEquals(10L, flow.getIatMin());
+    assertEquals(30L, flow.getIatMax());
+
+    Flow single = m_Completed.get(1);
+    assertEquals(0L, single.getDuration());
+    assertEquals(0.0, single.getIatMean(), 0.0);
+    assertEquals(0.0, single.getIatStd(), 0.0);
+    assertEquals(0L, single.getIatMin());
+    assertEquals(0L, single.getIatMax());
+  }
+
+  /**
+   * Tests the completion of the idle flows.
+   */
+  public void testIdleTimeout() {
+    FlowTable table = new FlowTable(100L, NEVER, 100, m_Listener);
+    table.add(request(5000, PacketDecoder.TCP_SYN), 0L);
+    table.add(request(5001, PacketDecoder.TCP_SYN), 50L);
+
+    table.expireIdleFlows(99L);
+    assertEquals(0, m_Completed.size());
+    assertEquals(2, table.size());
+
+    // A packet expires the flows idle at its timestamp
+    table.add(request(5002, PacketDecoder.TCP_SYN), 100L);
+    assertEquals(1, m_Completed.size());
+    assertEquals(5000, m_Completed.get(0).getSrcPort());
+    assertEquals(2, table.size());
+
+    table.expireIdleFlows(200L);
+    assertEquals(3, m_Completed.size());
+    assertEquals(5001, m_Completed.get(1).getSrcPort());
+    assertEquals(5002, m_Completed.get(2).getSrcPort());
+    assertEquals(0, table.size());
+  }
+
+  /**
+   * Tests that a flow lasting for the active timeout is completed, and a new
+   * flow starts with the same key.
+   */
+  public void testActiveTimeout() {
+    FlowTable table = new FlowTable(NEVER, 100L, 100, m_Listener);
+    table.add(request(5000, PacketDecoder.TCP_ACK), 0L);
+    table.add(response(5000, PacketDecoder.TCP_ACK), 50L);
+    table.add(request(5000, PacketDecoder.TCP_ACK), 99L);
+    assertEquals(0, m_Completed.size());
+
+    table.add(response(5000, PacketDecoder.TCP_ACK), 100L);
+    assertEquals(1, m_Completed.size());
+    assertEquals(1, table.size());
+    Flow first = m_Completed.get(0);
+    assertEquals(3, first.getFwdPackets() + first.getBwdPackets());
+    assertEquals(99L, first.getLastSeen());
+
+    table.flush();
+    Flow second = m_Completed.get(1);
+    assertEquals(100L, second.getFirstSeen());
+    assertEquals(1, second.getFwdPackets());
+    // The new flow starts in the direction of its first packet
+    assertEquals(80, second.getSrcPort());
+  }
+
+  /**
+   * Tests the completion of a TCP connection closed with a FIN in each
+   * direction.
+   */
+  public void testFinTermination() {
+    FlowTable table = new FlowTable(NEVER, NEVER, 100, m_Listener);
+    table.add(request(5000, PacketDecoder.TCP_SYN), 0L);
+    table.add(request(5000, PacketDecoder.TCP_FIN | PacketDecoder.TCP_ACK),
+      1L);
+    table.add(request(5000, PacketDecoder.TCP_FIN | PacketDecoder.TCP_ACK),
+      2L);
+    // A FIN in one direction only keeps the flow
+    assertEquals(0, m_Completed.size());
+    assertEquals(1, table.size());
+
+    table.add(response(5000, PacketDecoder.TCP_FIN | PacketDecoder.TCP_ACK),
+      3L);
+    assertEquals(1, m_Completed.size());
+    assertEquals(0, table.size());
+    Flow flow = m_Completed.get(0);
+    assertEquals(3, flow.getFinCount());
+    assertEquals(1, flow.getSynCount());
+
+    // The last ACK starts a new flow
+    table.add(request(5000, PacketDecoder.TCP_ACK), 4L);
+    assertEquals(1, table.size());
+  }
+
+  /**
+   * Tests the completion of a TCP connection reset in either direction.
+   */
+  public void testRstTermination() {
+    FlowTable table = new FlowTable(NEVER, NEVER, 100, m_Listener);
+    table.add(request(5000, PacketDecoder.TCP_SYN), 0L);
+    table.add(response(5000, PacketDecoder.TCP_RST), 1L);
+    table.add(request(5001, PacketDecoder.TCP_RST), 2L);
+
+    assertEquals(2, m_Completed.size());
+    assertEquals(0, table.size());
+    assertEquals(1, m_Completed.get(0).getRstCount());
+    assertEquals(1, m_Completed.get(0).getBwdPackets());
+    assertEquals(1, m_Completed.get(1).getRstCount());
+  }
+
+  /**
+   * Tests that the least recently active flow is evicted when the table is
+   * full.
+   */
+  public void testEviction() {
+    FlowTable table = new FlowTable(NEVER, NEVER, 2, m_Listener);
+    table.add(request(5000, PacketDecoder.TCP_SYN), 0L);
+    table.add(request(5001, PacketDecoder.TCP_SYN), 1L);
+    // The first flow becomes the most recently active one
+    table.add(response(5000, PacketDecoder.TCP_ACK), 2L);
+
+    table.add(request(5002, PacketDecoder.TCP_SYN), 3L);
+    assertEquals(2, table.size());
+    assertEquals(1, m_Completed.size());
+    assertEquals(5001, m_Completed.get(0).getSrcPort());
+
+    table.add(request(5003, PacketDecoder.TCP_SYN), 4L);
+    assertEquals(2, table.size());
+    assertEquals(5000, m_Completed.get(1).getSrcPort());
+    assertEquals(2, m_Completed.get(1).getFwdPackets()
+      + m_Completed.get(1).getBwdPackets());
+
+    // The remaining flows are flushed by last activity
+    table.flush();
+    assertEquals(4, m_Completed.size());
+    assertEquals(5002, m_Completed.get(2).getSrcPort());
+    assertEquals(5003, m_Completed.get(3).getSrcPort());
+  }
+
+  public static Test suite() {
+    return new TestSuite(FlowTableTest.class);
+  }
+
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
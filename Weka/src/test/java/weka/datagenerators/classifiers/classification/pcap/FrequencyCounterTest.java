@@ -0,0 +1,152 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * FrequencyCounterTest.java
+ */
+
+package weka.datagenerators.classifiers.classification.pcap;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests the incremental counts and entropy of FrequencyCounter. Run from the
+ * command line with:<p/>
+ * java weka.datagenerators.classifiers.classification.pcap.FrequencyCounterTest
+ */
+public class FrequencyCounterTest extends TestCase {
+
+  /** the tolerance of the entropies (bits) */
+  protected static final double EPSILON = 1e-9;
+
+  public FrequencyCounterTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Computes the entropy of counts directly.
+   *
+   * @param counts the counts of the keys
+   * @return the entropy (bits)
+   */
+  public static double entropy(Map<?, Integer> counts) {
+    long total = 0;
+    for (int count : counts.values()) {
+      total += count;
+    }
+    double result = 0.0;
+    for (int count : counts.values()) {
+      if (count > 0) {
+        double p = (double) count / total;
+        result -= p * Math.log(p) / Math.log(2.0);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Tests an empty counter, and a counter emptied by the decrements.
+   */
+  public void testEmpty() {
+    FrequencyCounter counter = new FrequencyCounter();
+    assertEquals(0, counter.distinct());
+    assertEquals(0, counter.total());
+    assertEquals(0.0, counter.entropy(), 0.0);
+
+    counter.increment(0L, 1L);
+    counter.increment(0L, 2L);
+    counter.decrement(0L, 1L);
+    counter.decrement(0L, 2L);
+    assertEquals(0, counter.distinct());
+    assertEquals(0, counter.total());
+    assertEquals(0.0, counter.entropy(), 0.0);
+
+    // Unknown keys are ignored
+    counter.decrement(0L, 3L);
+    assertEquals(0, counter.total());
+  }
+
+  /**
+   * Tests the entropy of known distributions.
+   */
+  public void testKnownEntropies() {
+    FrequencyCounter counter = new FrequencyCounter();
+    for (int i = 0; i < 10; i++) {
+      counter.increment(1L, 7L);
+    }
+    assertEquals(1, counter.distinct());
+    assertEquals(0.0, counter.entropy(), EPSILON);
+
+    counter.clear();
+    for (int i = 0; i < 400; i++) {
+      counter.increment(i % 4, 7L);
+    }
+    assertEquals(4, counter.distinct());
+    assertEquals(400, counter.total());
+    assertEquals(2.0, counter.entropy(), EPSILON);
+
+    // The high and low bits are both part of the key
+    counter.clear();
+    counter.increment(1L, 2L);
+    counter.increment(2L, 1L);
+    assertEquals(2, counter.distinct());
+    assertEquals(1.0, counter.entropy(), EPSILON);
+  }
+
+  /**
+   * Tests the incremental entropy against its direct computation, over random
+   * increments and decrements.
+   */
+  public void testIncrementalEntropy() {
+    Random random = new Random(42);
+    FrequencyCounter counter = new FrequencyCounter();
+    Map<Long, Integer> counts = new HashMap<Long, Integer>();
+    long total = 0;
+    for (int i = 0; i < 20000; i++) {
+      long key = random.nextInt(50);
+      Integer count = counts.get(key);
+      if (random.nextInt(3) > 0 || count == null) {
+        counter.increment(0L, key);
+        counts.put(key, count == null ? 1 : count + 1);
+        total++;
+      } else {
+        counter.decrement(0L, key);
+        if (count == 1) {
+          counts.remove(key);
+        } else {
+          counts.put(key, count - 1);
+        }
+        total--;
+      }
+      assertEquals(counts.size(), counter.distinct());
+      assertEquals(total, counter.total());
+      assertEquals("step " + i, entropy(counts), counter.entropy(), EPSILON);
+    }
+  }
+
+  public static Test suite() {
+    return new TestSuite(FrequencyCounterTest.class);
+  }
+
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
@@ -0,0 +1,361 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * MappedPcapSourceTest.java
+ */
+
+package weka.datagenerators.classifiers.classification.pcap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests the pcap and pcapng formats of MappedPcapSource, in one chunk and in
+ * chunks and segments small enough for the records to cross their
+ * boundaries. The fixtures are converted from a little-endian microsecond
+ * pcap written by SyntheticPcapWriter. Run from the command line with:<p/>
+ * java weka.datagenerators.classifiers.classification.pcap.MappedPcapSourceTest
+ */
+public class MappedPcapSourceTest extends TestCase {
+
+  /** the number of packets of the fixtures */
+  protected static final int PACKETS = 300;
+
+  /** the small chunk and segment sizes (bytes) */
+  protected static final int CHUNK = 1000;
+  protected static final long SEGMENT = 8192;
+  protected static final long OVERLAP = 4096;
+
+  /** the pcapng block types */
+  protected static final int SECTION = 0x0a0d0d0a;
+  protected static final int INTERFACE = 1;
+  protected static final int PACKET = 2;
+  protected static final int SIMPLE_PACKET = 3;
+  protected static final int NAME_RESOLUTION = 4;
+  protected static final int ENHANCED_PACKET = 6;
+
+  /** the frames of the fixtures */
+  protected List<byte[]> m_Frames;
+
+  /** the timestamps of the frames (nanoseconds, microsecond precision) */
+  protected List<Long> m_Timestamps;
+
+  /** the pool decoding the chunks */
+  protected ForkJoinPool m_Pool;
+
+  /** the fixture files */
+  protected List<File> m_Files;
+
+  public MappedPcapSourceTest(String name) {
+    super(name);
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    m_Pool = new ForkJoinPool(4);
+    m_Files = new ArrayList<File>();
+
+    // Frames of a little-endian microsecond pcap
+    SyntheticPcapWriter writer = new SyntheticPcapWriter();
+    writer.setSeed(13);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writer.write(out, PACKETS);
+    ByteBuffer pcap = ByteBuffer.wrap(out.toByteArray());
+    pcap.order(ByteOrder.LITTLE_ENDIAN);
+    m_Frames = new ArrayList<byte[]>();
+    m_Timestamps = new ArrayList<Long>();
+    int pos = 24;
+    while (pos < pcap.limit()) {
+      long seconds = pcap.getInt(pos) & 0xffffffffL;
+      long micros = pcap.getInt(pos + 4) & 0xffffffffL;
+      byte[] frame = new byte[pcap.getInt(pos + 8)];
+      pcap.position(pos + 16);
+      pcap.get(frame);
+      m_Frames.add(frame);
+      m_Timestamps.add(seconds * 1000000000L + micros * 1000L);
+      pos += 16 + frame.length;
+    }
+    assertEquals(PACKETS, m_Frames.size());
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    m_Pool.shutdownNow();
+    for (File file : m_Files) {
+      file.delete();
+    }
+    super.tearDown();
+  }
+
+  /**
+   * Writes a fixture file.
+   */
+  protected File write(byte[] content) throws IOException {
+    File result = File.createTempFile("pcap", ".pcap");
+    m_Files.add(result);
+    Files.write(result.toPath(), content);
+    return result;
+  }
+
+  /**
+   * Gets a pcap file of the frames.
+   *
+   * @param order the byte order
+   * @param nanos true for the nanosecond magic
+   * @param extraNanos the nanoseconds added to the timestamps (nanosecond
+   *          magic)
+   */
+  protected byte[] pcap(ByteOrder order, boolean nanos, int extraNanos) {
+    int size = 24;
+    for (byte[] frame : m_Frames) {
+      size += 16 + frame.length;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(size).order(order);
+    buffer.putInt(nanos ? 0xa1b23c4d : 0xa1b2c3d4);
+    buffer.putShort((short) 2).putShort((short) 4);
+    buffer.putInt(0).putInt(0).putInt(65535);
+    buffer.putInt(PacketDecoder.LINKTYPE_ETHERNET);
+    for (int i = 0; i < m_Frames.size(); i++) {
+      byte[] frame = m_Frames.get(i);
+      long timestamp = m_Timestamps.get(i);
+      buffer.putInt((int) (timestamp / 1000000000L));
+      buffer.putInt(nanos ? (int) (timestamp % 1000000000L) + extraNanos
+        : (int) (timestamp % 1000000000L / 1000L));
+      buffer.putInt(frame.length).putInt(frame.length);
+      buffer.put(frame);
+    }
+    return buffer.array();
+  }
+
+  /**
+   * Appends a pcapng block.
+   */
+  protected static void block(ByteArrayOutputStream out, ByteOrder order,
+    int type, byte[] body) {
+    int length = 12 + ((body.length + 3) & ~3);
+    ByteBuffer buffer = ByteBuffer.allocate(length).order(order);
+    buffer.putInt(type).putInt(length).put(body);
+    buffer.putInt(length - 4, length);
+    out.write(buffer.array(), 0, length);
+  }
+
+  /**
+   * Appends a section header block.
+   */
+  protected static void section(ByteArrayOutputStream out, ByteOrder order) {
+    ByteBuffer body = ByteBuffer.allocate(16).order(order);
+    body.putInt(0x1a2b3c4d).putShort((short) 1).putShort((short) 0);
+    body.putLong(-1L);
+    block(out, order, SECTION, body.array());
+  }
+
+  /**
+   * Appends an interface description block.
+   *
+   * @param tsresol the if_tsresol option, or -1 for none (microseconds)
+   */
+  protected static void iface(ByteArrayOutputStream out, ByteOrder order,
+    int tsresol) {
+    ByteBuffer body = ByteBuffer.allocate(tsresol < 0 ? 8 : 20).order(order);
+    body.putShort((short) PacketDecoder.LINKTYPE_ETHERNET).putShort((short) 0);
+    body.putInt(65535);
+    if (tsresol >= 0) {
+      body.putShort((short) 9).putShort((short) 1);
+      body.put((byte) tsresol).put(new byte[3]);
+      body.putShort((short) 0).putShort((short) 0);
+    }
+    block(out, order, INTERFACE, body.array());
+  }
+
+  /**
+   * Appends an enhanced packet block, or an obsolete packet block.
+   */
+  protected static void packet(ByteArrayOutputStream out, ByteOrder order,
+    boolean obsolete, int id, long ticks, byte[] frame) {
+    ByteBuffer body = ByteBuffer.allocate(20 + frame.length).order(order);
+    if (obsolete) {
+      body.putShort((short) id).putShort((short) 0);
+    } else {
+      body.putInt(id);
+    }
+    body.putInt((int) (ticks >>> 32)).putInt((int) ticks);
+    body.putInt(frame.length).putInt(frame.length);
+    body.put(frame);
+    block(out, order, obsolete ? PACKET : ENHANCED_PACKET, body.array());
+  }
+
+  /**
+   * Gets the expected description of a packet.
+   */
+  protected String expected(int i, long timestamp) {
+    PacketRecord record = new PacketRecord();
+    byte[] frame = m_Frames.get(i);
+    assertTrue(PacketDecoder.decode(frame, 0, frame.length,
+      PacketDecoder.LINKTYPE_ETHERNET, record));
+    return describe(record, timestamp);
+  }
+
+  /**
+   * Describes a decoded packet.
+   */
+  protected static String describe(PacketRecord record, long timestamp) {
+    return timestamp + " " + record.version + " " + record.protocol + " "
+      + Long.toHexString(record.srcAddrLow) + ":" + record.srcPort + " > "
+      + Long.toHexString(record.dstAddrLow) + ":" + record.dstPort + " "
+      + record.length + " " + record.identification + " " + record.tcpFlags
+      + " " + record.tcpSeq + " " + record.payloadLength;
+  }
+
+  /**
+   * Reads a file.
+   *
+   * @param small true to read it in small chunks and segments
+   */
+  protected List<String> read(File file, boolean small) throws IOException {
+    MappedPcapSource source = small
+      ? new MappedPcapSource(file.getPath(), m_Pool, false, null, 0, CHUNK,
+        SEGMENT, OVERLAP)
+      : new MappedPcapSource(file.getPath(), m_Pool);
+    List<String> result = new ArrayList<String>();
+    try {
+      PacketRecord record = new PacketRecord();
+      while (source.next(record)) {
+        result.add(describe(record, source.getTimestamp()));
+      }
+    } finally {
+      source.close();
+    }
+    return result;
+  }
+
+  /**
+   * Checks a file, read in one chunk and in small chunks.
+   */
+  protected void check(List<String> expected, File file) throws IOException {
+    assertTrue(file.length() > 4 * SEGMENT);
+    assertEquals(expected, read(file, false));
+    assertEquals(expected, read(file, true));
+  }
+
+  /**
+   * Gets the expected packets of the pcap fixtures.
+   */
+  protected List<String> expectedPcap(int extraNanos) {
+    List<String> result = new ArrayList<String>();
+    for (int i = 0; i < m_Frames.size(); i++) {
+      result.add(expected(i, m_Timestamps.get(i) + extraNanos));
+    }
+    return result;
+  }
+
+  /**
+   * Tests little and big endian pcap files with microsecond timestamps.
+   */
+  public void testMicroseconds() throws Exception {
+    List<String> expected = expectedPcap(0);
+    check(expected, write(pcap(ByteOrder.LITTLE_ENDIAN, false, 0)));
+    check(expected, write(pcap(ByteOrder.BIG_ENDIAN, false, 0)));
+  }
+
+  /**
+   * Tests little and big endian pcap files with the nanosecond magic.
+   */
+  public void testNanoseconds() throws Exception {
+    List<String> expected = expectedPcap(123);
+    check(expected, write(pcap(ByteOrder.LITTLE_ENDIAN, true, 123)));
+    check(expected, write(pcap(ByteOrder.BIG_ENDIAN, true, 123)));
+  }
+
+  /**
+   * Tests that a truncated record at the end of a file is ignored.
+   */
+  public void testTruncated() throws Exception {
+    List<String> expected = expectedPcap(0);
+    expected.remove(expected.size() - 1);
+    byte[] content = pcap(ByteOrder.BIG_ENDIAN, false, 0);
+    byte[] truncated = new byte[content.length - 10];
+    System.arraycopy(content, 0, truncated, 0, truncated.length);
+    check(expected, write(truncated));
+  }
+
+  /**
+   * Tests a pcapng file with a little-endian and a big-endian section, each
+   * with interfaces of several timestamp resolutions, enhanced and obsolete
+   * packet blocks, and blocks that hold no timestamped packet.
+   */
+  public void testPcapng() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    List<String> expected = new ArrayList<String>();
+    int half = m_Frames.size() / 2;
+    ByteOrder order = ByteOrder.LITTLE_ENDIAN;
+    for (int i = 0; i < m_Frames.size(); i++) {
+      if (i == 0 || i == half) {
+        // Interfaces 0: nanoseconds, 1: microseconds (default), 2: ms
+        order = i == 0 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+        section(out, order);
+        iface(out, order, 9);
+        iface(out, order, -1);
+        iface(out, order, 3);
+      }
+      long timestamp = m_Timestamps.get(i);
+      int id = i % 3;
+      long ticks = id == 0 ? timestamp : id == 1 ? timestamp / 1000L
+        : timestamp / 1000000L;
+      packet(out, order, i % 5 == 0, id, ticks, m_Frames.get(i));
+      expected.add(expected(i, id == 2 ? ticks * 1000000L : timestamp));
+      if (i % 7 == 0) {
+        // No timestamp: skipped
+        ByteBuffer body = ByteBuffer.allocate(4 + m_Frames.get(i).length)
+          .order(order);
+        body.putInt(m_Frames.get(i).length).put(m_Frames.get(i));
+        block(out, order, SIMPLE_PACKET, body.array());
+        block(out, order, NAME_RESOLUTION, new byte[4]);
+      }
+    }
+    check(expected, write(out.toByteArray()));
+  }
+
+  /**
+   * Tests the conversion of the pcapng timestamps.
+   */
+  public void testTimestampResolutions() {
+    assertEquals(1500000000L, MappedPcapSource.toNanos(1500000L, 6));
+    assertEquals(1500000000L, MappedPcapSource.toNanos(1500000000L, 9));
+    assertEquals(1500000000L, MappedPcapSource.toNanos(15L, 1));
+    assertEquals(1500000000L, MappedPcapSource.toNanos(1500000000000L, 12));
+    assertEquals(1500000000L, MappedPcapSource.toNanos(3L << 19, 0x80 | 20));
+  }
+
+  public static Test suite() {
+    return new TestSuite(MappedPcapSourceTest.class);
+  }
+
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
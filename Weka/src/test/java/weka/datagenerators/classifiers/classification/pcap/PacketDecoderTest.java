@@ -0,0 +1,112 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * PacketDecoderTest.java
+ */
+
+package weka.datagenerators.classifiers.classification.pcap;
+
+import java.nio.ByteBuffer;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests the decoding of the identification of the IPv4 and IPv6 packets. Run
+ * from the command line with:<p/>
+ * java weka.datagenerators.classifiers.classification.pcap.PacketDecoderTest
+ */
+public class PacketDecoderTest extends TestCase {
+
+  public PacketDecoderTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Gets a raw IPv4 UDP packet.
+   */
+  protected static byte[] ipv4(int identification) {
+    ByteBuffer buffer = ByteBuffer.allocate(28);
+    buffer.put((byte) 0x45).put((byte) 0).putShort((short) 28);
+    buffer.putShort((short) identification).putShort((short) 0);
+    buffer.put((byte) 64).put((byte) PacketDecoder.PROTOCOL_UDP);
+    buffer.putShort((short) 0);
+    buffer.putInt(0x0a000001).putInt(0x0a000002);
+    buffer.putShort((short) 5000).putShort((short) 53);
+    buffer.putShort((short) 8).putShort((short) 0);
+    return buffer.array();
+  }
+
+  /**
+   * Gets a raw IPv6 UDP packet with a fragment header.
+   */
+  protected static byte[] ipv6(int identification, int fragmentOffset) {
+    ByteBuffer buffer = ByteBuffer.allocate(56);
+    buffer.putInt(0x60000000).putShort((short) 16);
+    buffer.put((byte) 44).put((byte) 64);
+    buffer.putLong(0xfd00000000000000L).putLong(1L);
+    buffer.putLong(0xfd00000000000000L).putLong(2L);
+    // Fragment header
+    buffer.put((byte) PacketDecoder.PROTOCOL_UDP).put((byte) 0);
+    buffer.putShort((short) (fragmentOffset << 3)).putInt(identification);
+    buffer.putShort((short) 5000).putShort((short) 53);
+    buffer.putShort((short) 8).putShort((short) 0);
+    return buffer.array();
+  }
+
+  /**
+   * Decodes a raw IP packet.
+   */
+  protected static PacketRecord decode(byte[] frame) {
+    PacketRecord result = new PacketRecord();
+    assertTrue(PacketDecoder.decode(frame, 0, frame.length,
+      PacketDecoder.LINKTYPE_RAW, result));
+    return result;
+  }
+
+  /**
+   * Tests that the IPv4 identifications are unsigned 16 bits values.
+   */
+  public void testIpV4Identification() {
+    assertEquals(0L, decode(ipv4(0)).identification);
+    assertEquals(0x8000L, decode(ipv4(0x8000)).identification);
+    assertEquals(0xffffL, decode(ipv4(0xffff)).identification);
+  }
+
+  /**
+   * Tests that the IPv6 identifications are unsigned 32 bits values, never
+   * confused with an absent identification.
+   */
+  public void testIpV6Identification() {
+    PacketRecord record = decode(ipv6(0xffffffff, 3));
+    assertEquals(0xffffffffL, record.identification);
+    assertTrue(record.identification != PacketRecord.ABSENT);
+    assertEquals(3, record.fragmentOffset);
+    assertEquals(PacketDecoder.PROTOCOL_UDP, record.protocol);
+
+    assertEquals(0x80000000L, decode(ipv6(0x80000000, 0)).identification);
+    assertEquals(1L, decode(ipv6(1, 0)).identification);
+  }
+
+  public static Test suite() {
+    return new TestSuite(PacketDecoderTest.class);
+  }
+
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
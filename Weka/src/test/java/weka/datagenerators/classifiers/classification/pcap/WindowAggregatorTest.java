@@ -0,0 +1,246 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * WindowAggregatorTest.java
+ */
+
+package weka.datagenerators.classifiers.classification.pcap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests the tumbling and sliding windows of WindowAggregator on hand-built
+ * packets. Run from the command line with:<p/>
+ * java weka.datagenerators.classifiers.classification.pcap.WindowAggregatorTest
+ */
+public class WindowAggregatorTest extends TestCase {
+
+  /** the destinations (IPv4) */
+  protected static final int SERVER_A = 0x0a000001;
+  protected static final int SERVER_B = 0x0a000002;
+
+  /** the emitted rows */
+  protected List<WindowStatistics> m_Rows;
+
+  /** the listener collecting the rows */
+  protected WindowAggregator.WindowListener m_Listener;
+
+  public WindowAggregatorTest(String name) {
+    super(name);
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    m_Rows = new ArrayList<WindowStatistics>();
+    m_Listener = new WindowAggregator.WindowListener() {
+      @Override
+      public void windowCompleted(WindowStatistics statistics) {
+        m_Rows.add(statistics);
+      }
+    };
+  }
+
+  /**
+   * Gets an IPv4 address as decoded (low 64 bits).
+   */
+  protected static long address(int ipv4) {
+    return 0x0000ffff00000000L | (ipv4 & 0xffffffffL);
+  }
+
+  /**
+   * Gets a packet.
+   */
+  protected static PacketRecord packet(int src, int dst, int dstPort,
+    int length, int label) {
+    PacketRecord result = new PacketRecord();
+    result.clear();
+    result.version = 4;
+    result.srcAddrLow = address(src);
+    result.dstAddrLow = address(dst);
+    result.srcPort = 40000;
+    result.dstPort = dstPort;
+    result.length = length;
+    result.label = label;
+    return result;
+  }
+
+  /**
+   * Gets the row of a destination.
+   */
+  protected static WindowStatistics row(List<WindowStatistics> rows,
+    int dst) {
+    for (WindowStatistics row : rows) {
+      if (row.getDstAddrLow() == address(dst)) {
+        return row;
+      }
+    }
+    fail("No row for " + Integer.toHexString(dst));
+    return null;
+  }
+
+  /**
+   * Tests that a tumbling window is emitted when it closes, one row per
+   * destination, and that the empty windows are skipped.
+   */
+  public void testTumblingWindows() {
+    WindowAggregator aggregator = new WindowAggregator(false, 100L, m_Listener);
+    aggregator.add(packet(1, SERVER_A, 80, 100, 0), 1000L);
+    aggregator.add(packet(2, SERVER_A, 81, 200, 2), 1010L);
+    aggregator.add(packet(2, SERVER_A, 81, 300, 2), 1020L);
+    aggregator.add(packet(1, SERVER_B, 53, 50, 0), 1099L);
+    assertEquals(0, m_Rows.size());
+
+    // Closes [1000, 1100)
+    aggregator.add(packet(3, SERVER_A, 80, 10, 0), 1100L);
+    assertEquals(2, m_Rows.size());
+    WindowStatistics a = row(m_Rows, SERVER_A);
+    assertEquals(1000L, a.getWindowStart());
+    assertEquals(3, a.getPackets());
+    assertEquals(600, a.getBytes());
+    assertEquals(2, a.getDistinctSrcIps());
+    assertEquals(2, a.getDistinctDstPorts());
+    assertEquals(2, a.getLabel());
+    WindowStatistics b = row(m_Rows, SERVER_B);
+    assertEquals(1000L, b.getWindowStart());
+    assertEquals(1, b.getPackets());
+    assertEquals(0.0, b.getSrcIpEntropy(), 0.0);
+
+    // Closes [1100, 1200), [1200, 1500) is empty
+    aggregator.add(packet(3, SERVER_B, 53, 10, 0), 1550L);
+    assertEquals(3, m_Rows.size());
+    assertEquals(1100L, m_Rows.get(2).getWindowStart());
+    assertEquals(address(SERVER_A), m_Rows.get(2).getDstAddrLow());
+
+    aggregator.flush();
+    assertEquals(4, m_Rows.size());
+    assertEquals(1500L, m_Rows.get(3).getWindowStart());
+    assertEquals(address(SERVER_B), m_Rows.get(3).getDstAddrLow());
+
+    // Nothing is pending after the flush
+    aggregator.flush();
+    assertEquals(4, m_Rows.size());
+  }
+
+  /**
+   * Tests that a sliding window emits one row per packet, evicts the packets
+   * older than the window size, and drops the destinations left without
+   * packet.
+   */
+  public void testSlidingWindows() {
+    WindowAggregator aggregator = new WindowAggregator(true, 100L, m_Listener);
+    aggregator.add(packet(1, SERVER_A, 80, 100, 0), 0L);
+    aggregator.add(packet(2, SERVER_A, 81, 100, 3), 50L);
+    aggregator.add(packet(1, SERVER_B, 53, 10, 0), 60L);
+    assertEquals(3, m_Rows.size());
+    WindowStatistics a = m_Rows.get(1);
+    assertEquals(address(SERVER_A), a.getDstAddrLow());
+    assertEquals(-50L, a.getWindowStart());
+    assertEquals(2, a.getPackets());
+    assertEquals(1.0, a.getSrcIpEntropy(), 1e-9);
+    assertEquals(3, a.getLabel());
+
+    // The first packet left the window
+    aggregator.add(packet(3, SERVER_A, 80, 100, 0), 100L);
+    a = m_Rows.get(3);
+    assertEquals(2, a.getPackets());
+    assertEquals(200, a.getBytes());
+    assertEquals(2, a.getDistinctSrcIps());
+    assertEquals(3, a.getLabel());
+
+    // All the packets of A left the window: A starts over
+    aggregator.add(packet(1, SERVER_B, 53, 10, 0), 165L);
+    aggregator.add(packet(4, SERVER_A, 80, 100, 0), 200L);
+    a = m_Rows.get(5);
+    assertEquals(1, a.getPackets());
+    assertEquals(100, a.getBytes());
+    assertEquals(1, a.getDistinctSrcIps());
+    assertEquals(0, a.getLabel());
+    WindowStatistics b = m_Rows.get(4);
+    assertEquals(address(SERVER_B), b.getDstAddrLow());
+    assertEquals(1, b.getPackets());
+
+    // Nothing is pending with sliding windows
+    aggregator.flush();
+    assertEquals(6, m_Rows.size());
+  }
+
+  /**
+   * Tests a sliding window holding more packets than the initial ring buffer,
+   * wrapped around when it grows, against the statistics recomputed from the
+   * packets in the window.
+   */
+  public void testRingGrowth() {
+    final int window = 3000;
+    WindowAggregator aggregator =
+      new WindowAggregator(true, window, m_Listener);
+    int[] ports = new int[10000];
+    int[] sources = new int[ports.length];
+    for (int i = 0; i < ports.length; i++) {
+      ports[i] = (i * 7) % 1500;
+      sources[i] = i % 40;
+      // Idle gap: the ring is not full when it grows
+      long timestamp = i < 2000 ? i : i + 500;
+      aggregator.add(packet(sources[i], SERVER_A, ports[i], i % 100, 0),
+        timestamp);
+    }
+    assertEquals(ports.length, m_Rows.size());
+
+    for (int i = 0; i < ports.length; i += 97) {
+      long now = i < 2000 ? i : i + 500;
+      Map<Integer, Integer> portCounts = new HashMap<Integer, Integer>();
+      Map<Integer, Integer> sourceCounts = new HashMap<Integer, Integer>();
+      long packets = 0;
+      long bytes = 0;
+      for (int j = 0; j <= i; j++) {
+        long timestamp = j < 2000 ? j : j + 500;
+        if (now - timestamp < window) {
+          packets++;
+          bytes += j % 100;
+          Integer count = portCounts.get(ports[j]);
+          portCounts.put(ports[j], count == null ? 1 : count + 1);
+          count = sourceCounts.get(sources[j]);
+          sourceCounts.put(sources[j], count == null ? 1 : count + 1);
+        }
+      }
+      WindowStatistics row = m_Rows.get(i);
+      assertEquals("packet " + i, packets, row.getPackets());
+      assertEquals("packet " + i, bytes, row.getBytes());
+      assertEquals("packet " + i, portCounts.size(), row.getDistinctDstPorts());
+      assertEquals("packet " + i, sourceCounts.size(),
+        row.getDistinctSrcIps());
+      assertEquals("packet " + i, FrequencyCounterTest.entropy(portCounts),
+        row.getDstPortEntropy(), 1e-6);
+      assertEquals("packet " + i, FrequencyCounterTest.entropy(sourceCounts),
+        row.getSrcIpEntropy(), 1e-6);
+    }
+  }
+
+  public static Test suite() {
+    return new TestSuite(WindowAggregatorTest.class);
+  }
+
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
@@ -0,0 +1,299 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * AttackTimelineTest.java
+ */
+
+package weka.datagenerators.classifiers.classification.pcap.attack;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import weka.datagenerators.classifiers.classification.pcap.PacketRecord;
+
+/**
+ * Tests the labelling of the packets with the attack phases. Run from the
+ * command line with:<p/>
+ * java weka.datagenerators.classifiers.classification.pcap.attack.AttackTimelineTest
+ */
+public class AttackTimelineTest extends TestCase {
+
+  /** the IP protocol numbers */
+  protected static final int TCP = 6;
+  protected static final int UDP = 17;
+
+  /** one second (nanoseconds) */
+  protected static final long SECOND = 1000000000L;
+
+  protected InetAddress m_Attacker;
+  protected InetAddress m_Target;
+  protected InetAddress m_Other;
+
+  public AttackTimelineTest(String name) {
+    super(name);
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    m_Attacker = InetAddress.getByName("10.0.0.1");
+    m_Target = InetAddress.getByName("10.0.0.2");
+    m_Other = InetAddress.getByName("10.0.0.3");
+  }
+
+  /**
+   * Gets a set of local ports.
+   */
+  protected static BitSet ports(int... ports) {
+    BitSet result = new BitSet(65536);
+    for (int port : ports) {
+      result.set(port);
+    }
+    return result;
+  }
+
+  /**
+   * Gets a phase from the attacker to the target.
+   */
+  protected AttackPhase phase(String name, long start, long stop,
+    int protocol, BitSet localPorts) {
+    return new AttackPhase(name, start, stop, m_Attacker, m_Target, protocol,
+      localPorts);
+  }
+
+  /**
+   * Gets a packet between two hosts.
+   */
+  protected static PacketRecord packet(InetAddress src, int srcPort,
+    InetAddress dst, int dstPort, int protocol) {
+    PacketRecord result = new PacketRecord();
+    result.srcAddrHigh = high(src);
+    result.srcAddrLow = low(src);
+    result.dstAddrHigh = high(dst);
+    result.dstAddrLow = low(dst);
+    result.srcPort = srcPort;
+    result.dstPort = dstPort;
+    result.protocol = protocol;
+    return result;
+  }
+
+  /**
+   * Gets the high 64 bits of an address, as decoded (IPv4 mapped to IPv6).
+   */
+  protected static long high(InetAddress address) {
+    byte[] bytes = address.getAddress();
+    return bytes.length == 4 ? 0L : toLong(bytes, 0);
+  }
+
+  /**
+   * Gets the low 64 bits of an address, as decoded (IPv4 mapped to IPv6).
+   */
+  protected static long low(InetAddress address) {
+    byte[] bytes = address.getAddress();
+    if (bytes.length == 4) {
+      return 0x0000ffff00000000L
+        | ((bytes[0] & 0xffL) << 24 | (bytes[1] & 0xffL) << 16
+          | (bytes[2] & 0xffL) << 8 | (bytes[3] & 0xffL));
+    }
+    return toLong(bytes, 8);
+  }
+
+  protected static long toLong(byte[] bytes, int offset) {
+    long value = 0L;
+    for (int i = 0; i < 8; i++) {
+      value = value << 8 | (bytes[offset + i] & 0xff);
+    }
+    return value;
+  }
+
+  /**
+   * Gets a timeline.
+   */
+  protected static AttackTimeline timeline(AttackPhase... phases) {
+    return new AttackTimeline(new ArrayList<AttackPhase>(Arrays
+      .asList(phases)));
+  }
+
+  /**
+   * Tests that every packet of a timeline without attack is benign.
+   */
+  public void testEmptyTimeline() {
+    AttackTimeline timeline = new AttackTimeline();
+    PacketRecord record = packet(m_Attacker, 4000, m_Target, 80, TCP);
+
+    assertEquals(0, timeline.label(record, 0L));
+    assertEquals(0, timeline.label(record, Long.MIN_VALUE));
+    assertEquals(0, timeline.label(record, Long.MAX_VALUE));
+    assertTrue(timeline.getPhases().isEmpty());
+  }
+
+  /**
+   * Tests the labels of the attacks.
+   */
+  public void testLabels() {
+    List<String> labels = AttackTimeline.getLabels();
+
+    assertEquals(AttackTimeline.BENIGN, labels.get(0));
+    assertEquals(Attacks.NAMES.length + 1, labels.size());
+    for (String name : Attacks.NAMES) {
+      assertEquals(name, labels.get(AttackTimeline.labelOf(name)));
+    }
+    assertEquals(0, AttackTimeline.labelOf("unknown"));
+  }
+
+  /**
+   * Tests the packets at the bounds of a phase and of its grace time.
+   */
+  public void testGraceBoundary() {
+    long start = 100 * SECOND;
+    long stop = 200 * SECOND;
+    AttackTimeline timeline =
+      timeline(phase("syn", start, stop, TCP, ports(4000)));
+    PacketRecord record = packet(m_Attacker, 4000, m_Target, 80, TCP);
+    int syn = AttackTimeline.labelOf("syn");
+
+    assertEquals(0, timeline.label(record, start - 1));
+    assertEquals(syn, timeline.label(record, start));
+    assertEquals(syn, timeline.label(record, stop));
+    assertEquals(syn, timeline.label(record, stop + AttackTimeline.GRACE));
+    assertEquals(0, timeline.label(record, stop + AttackTimeline.GRACE + 1));
+  }
+
+  /**
+   * Tests that the answers of the target are labelled with the phase.
+   */
+  public void testReverseDirection() {
+    AttackTimeline timeline =
+      timeline(phase("http", 0L, 10 * SECOND, TCP, ports(4000)));
+    int http = AttackTimeline.labelOf("http");
+
+    assertEquals(http,
+      timeline.label(packet(m_Target, 80, m_Attacker, 4000, TCP), SECOND));
+    // The local port is the destination port of the answers
+    assertEquals(0,
+      timeline.label(packet(m_Target, 4000, m_Attacker, 80, TCP), SECOND));
+    // Neither endpoint is the attacker
+    assertEquals(0,
+      timeline.label(packet(m_Other, 4000, m_Target, 80, TCP), SECOND));
+    assertEquals(0,
+      timeline.label(packet(m_Target, 80, m_Other, 4000, TCP), SECOND));
+  }
+
+  /**
+   * Tests the packets of the attacker from ports the attack did not use, or
+   * with another protocol.
+   */
+  public void testOtherPorts() {
+    AttackTimeline timeline =
+      timeline(phase("udp", 0L, 10 * SECOND, UDP, ports(5000, 5002)));
+    int udp = AttackTimeline.labelOf("udp");
+
+    assertEquals(udp,
+      timeline.label(packet(m_Attacker, 5000, m_Target, 53, UDP), SECOND));
+    assertEquals(udp,
+      timeline.label(packet(m_Attacker, 5002, m_Target, 53, UDP), SECOND));
+    assertEquals(0,
+      timeline.label(packet(m_Attacker, 5001, m_Target, 53, UDP), SECOND));
+    assertEquals(0,
+      timeline.label(packet(m_Attacker, 5000, m_Target, 53, TCP), SECOND));
+    // No port, e.g. a fragment or ICMP
+    assertEquals(0, timeline.label(packet(m_Attacker, PacketRecord.ABSENT,
+      m_Target, PacketRecord.ABSENT, UDP), SECOND));
+  }
+
+  /**
+   * Tests overlapping phases: a long phase covering shorter ones that started
+   * later, with a gap between them.
+   */
+  public void testOverlappingPhases() {
+    AttackTimeline timeline =
+      timeline(phase("portscan", 40 * SECOND, 50 * SECOND, TCP, ports(7000)),
+        phase("slowloris", 0L, 100 * SECOND, TCP, ports(6000)),
+        phase("syn", 10 * SECOND, 20 * SECOND, TCP, ports(4000)));
+    PacketRecord slowloris = packet(m_Attacker, 6000, m_Target, 80, TCP);
+    PacketRecord syn = packet(m_Attacker, 4000, m_Target, 80, TCP);
+    PacketRecord portscan = packet(m_Attacker, 7000, m_Target, 22, TCP);
+
+    // The phases are sorted by start time
+    List<AttackPhase> phases = timeline.getPhases();
+    assertEquals("slowloris", phases.get(0).getName());
+    assertEquals("syn", phases.get(1).getName());
+    assertEquals("portscan", phases.get(2).getName());
+
+    // The long phase is found behind the phases that started after it
+    for (long t = 0L; t <= 100 * SECOND; t += 5 * SECOND) {
+      assertEquals("at " + t, AttackTimeline.labelOf("slowloris"),
+        timeline.label(slowloris, t));
+    }
+    assertEquals(AttackTimeline.labelOf("syn"),
+      timeline.label(syn, 15 * SECOND));
+    assertEquals(0, timeline.label(syn, 30 * SECOND));
+    assertEquals(0, timeline.label(portscan, 30 * SECOND));
+    assertEquals(AttackTimeline.labelOf("portscan"),
+      timeline.label(portscan, 45 * SECOND));
+  }
+
+  /**
+   * Tests phases starting at the same time.
+   */
+  public void testEqualStarts() {
+    long start = 10 * SECOND;
+    AttackTimeline timeline =
+      timeline(phase("udp", start, start + SECOND, UDP, ports(5000)),
+        phase("syn", start, start + 5 * SECOND, TCP, ports(4000)),
+        phase("http", start, start + 3 * SECOND, TCP, ports(4001)));
+
+    assertEquals(AttackTimeline.labelOf("udp"),
+      timeline.label(packet(m_Attacker, 5000, m_Target, 53, UDP), start));
+    assertEquals(AttackTimeline.labelOf("syn"),
+      timeline.label(packet(m_Attacker, 4000, m_Target, 80, TCP), start));
+    assertEquals(AttackTimeline.labelOf("http"),
+      timeline.label(packet(m_Attacker, 4001, m_Target, 80, TCP), start));
+    assertEquals(0,
+      timeline.label(packet(m_Attacker, 4001, m_Target, 80, TCP), start - 1));
+    assertEquals(AttackTimeline.labelOf("syn"), timeline.label(
+      packet(m_Target, 80, m_Attacker, 4000, TCP), start + 5 * SECOND));
+  }
+
+  /**
+   * Tests the labelling of IPv6 packets.
+   */
+  public void testIPv6() throws Exception {
+    InetAddress attacker = InetAddress.getByName("fd00::1");
+    InetAddress target = InetAddress.getByName("fd00::2");
+    AttackTimeline timeline = timeline(new AttackPhase("udp", 0L, SECOND,
+      attacker, target, UDP, ports(5000)));
+
+    assertEquals(AttackTimeline.labelOf("udp"),
+      timeline.label(packet(attacker, 5000, target, 53, UDP), 0L));
+    assertEquals(0,
+      timeline.label(packet(m_Attacker, 5000, m_Target, 53, UDP), 0L));
+  }
+
+  public static Test suite() {
+    return new TestSuite(AttackTimelineTest.class);
+  }
+
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TokenBucketTest.java
+ */
+
+package weka.datagenerators.classifiers.classification.pcap.attack;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests the token bucket pacer on a manual clock. Run from the command line
+ * with:<p/>
+ * java weka.datagenerators.classifiers.classification.pcap.attack.TokenBucketTest
+ */
+public class TokenBucketTest extends TestCase {
+
+  /** one millisecond (nanoseconds) */
+  protected static final long MILLISECOND = 1000000L;
+
+  /**
+   * Token bucket whose time only moves when the test advances it.
+   */
+  protected static class ManualBucket extends TokenBucket {
+
+    /** the current time (nanoseconds), 0 at the creation */
+    protected long m_Time;
+
+    public ManualBucket(double tokensPerSecond, double burst) {
+      super(tokensPerSecond, burst);
+    }
+
+    @Override
+    protected long nanoTime() {
+      return m_Time;
+    }
+
+    /**
+     * Takes all the available tokens.
+     *
+     * @return the number of tokens taken
+     */
+    public int drain() {
+      int result = 0;
+      while (tryAcquire()) {
+        result++;
+      }
+      return result;
+    }
+  }
+
+  public TokenBucketTest(String name) {
+    super(name);
+  }
+
+  /**
+   * tests that the bucket starts empty and is refilled at its rate
+   */
+  public void testRefill() {
+    ManualBucket bucket = new ManualBucket(1000, 10);
+    assertEquals("empty", 0, bucket.drain());
+    bucket.m_Time += 55 * MILLISECOND / 10;
+    assertEquals("5.5 ms", 5, bucket.drain());
+    bucket.m_Time += 4 * MILLISECOND / 10;
+    assertEquals("0.9 token", 0, bucket.drain());
+    bucket.m_Time += 2 * MILLISECOND / 10;
+    assertEquals("1.1 token", 1, bucket.drain());
+  }
+
+  /**
+   * tests that the tokens of a pause are capped by the burst
+   */
+  public void testBurst() {
+    ManualBucket bucket = new ManualBucket(1000, 10);
+    bucket.m_Time += 1000 * MILLISECOND;
+    assertEquals("burst", 10, bucket.drain());
+  }
+
+  /**
+   * tests that a sender polling the bucket keeps the rate over a second, the
+   * fractions of tokens being carried over
+   */
+  public void testRate() {
+    ManualBucket bucket = new ManualBucket(1000, 10);
+    int sent = 0;
+    for (int i = 0; i < 300; i++) {
+      bucket.m_Time += 10 * MILLISECOND / 3;
+      sent += bucket.drain();
+    }
+    // 300 steps of 3333333 ns
+    assertEquals("sent", 999, sent);
+  }
+
+  /**
+   * tests that a new rate keeps the tokens refilled at the old one
+   */
+  public void testSetRate() {
+    ManualBucket bucket = new ManualBucket(1000, 100);
+    bucket.m_Time += 20 * MILLISECOND;
+    bucket.setRate(100, 10);
+    assertEquals("capped tokens", 10, bucket.drain());
+    bucket.m_Time += 25 * MILLISECOND;
+    assertEquals("new rate", 2, bucket.drain());
+  }
+
+  public static Test suite() {
+    return new TestSuite(TokenBucketTest.class);
+  }
+
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
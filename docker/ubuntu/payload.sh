@@ -3,6 +3,8 @@
 # Set the default values for the arguments
 DURATION=180
 OUTPUT=/data/capture.pcap
+FILTER=""
+SNAPLEN=0
 
 # Arguments manager
 while [[ $# -gt 0 ]]; do
@@ -17,11 +19,23 @@ while [[ $# -gt 0 ]]; do
             shift
             shift
             ;;
+        -f|--filter)
+            FILTER="$2"
+            shift
+            shift
+            ;;
+        -s|--snaplen)
+            SNAPLEN="$2"
+            shift
+            shift
+            ;;
         -h|--help)
             echo "Usage: $0 [options]"
             echo "Options:"
             echo "  -d, --duration <duration>  Duration of the capture (default: 180 seconds)"
             echo "  -o, --output <output>      Output file (default: /data/capture.pcap))"
+            echo "  -f, --filter <filter>      BPF capture filter (default: none)"
+            echo "  -s, --snaplen <bytes>      Bytes captured per frame, 0 for no limit (default: 0)"
             echo "  -h, --help                 Show this help message"
             exit 0
             ;;
@@ -37,6 +51,8 @@ done
 echo "Entrypoint arguments:"
 echo "  Duration:   $DURATION"
 echo "  Output:     $OUTPUT"
+echo "  Filter:     $FILTER"
+echo "  Snaplen:    $SNAPLEN"
 echo ""
 
 # Create the output directory if it doesn't exist
@@ -44,7 +60,11 @@ echo "Creating output directory: $(dirname $OUTPUT)"
 mkdir -p $(dirname $OUTPUT)
 
 # Run Wireshark for 60 seconds and save the output to a file in the mounted volume
-tshark -i eth0 -a duration:${DURATION} -w ${OUTPUT}
+if [[ -n "$FILTER" ]]; then
+    tshark -i eth0 -a duration:${DURATION} -s ${SNAPLEN} -f "$FILTER" -w ${OUTPUT}
+else
+    tshark -i eth0 -a duration:${DURATION} -s ${SNAPLEN} -w ${OUTPUT}
+fi
 
 # Make the output file readable by all users
 chmod a+r /data/capture.pcap